@@ -0,0 +1,42 @@
+package registry.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+
+/**
+ * Runs the JMH benchmarks once per thread count, from a single thread up to one per available processor, with the GC profiler enabled to report allocation rates.
+ * <br><br> Accepts the regular JMH command line options, e.g. <code>java -jar benchmarks.jar RegistryBenchmark.getItem -p catalogSize=1000,100000</code>.
+ * A thread count given with <code>-t</code> replaces the sweep over thread counts. The 10M item catalogs need a large heap, e.g. <code>-jvmArgsAppend -Xmx8g</code>.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+
+        ArrayList<Integer> threadCounts = new ArrayList<>();
+        if (commandLine.getThreads().hasValue()) {
+            threadCounts.add(commandLine.getThreads().get());
+        } else {
+            int cores = Runtime.getRuntime().availableProcessors();
+            for (int t = 1; t < cores; t *= 2)
+                threadCounts.add(t);
+            threadCounts.add(cores);
+        }
+
+        for (int threads : threadCounts) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class);
+            if (commandLine.getIncludes().isEmpty())
+                options.include("registry\\.bench\\..*Benchmark\\..*");
+            new Runner(options.build()).run();
+        }
+    }
+}
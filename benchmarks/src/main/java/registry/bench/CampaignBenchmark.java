@@ -0,0 +1,85 @@
+package registry.bench;
+
+import registry.CampaignScheduler;
+import registry.CatalogGenerator;
+import registry.DiscountCampaign;
+import registry.Item;
+import registry.ItemFilter;
+import registry.ItemRegistry;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.function.Predicate;
+
+/**
+ * Measures how long starting and ending discount campaigns on many Items takes, by a controllable clock, and checks that every discount is restored afterwards.
+ * <br><br> Schedules overlapping campaigns on a quarter of the Items and on all of them, moves the clock past every start and end,
+ * and times each <code>runDue</code>, which applies the campaigns due in one pass.
+ * Usage: <code>CampaignBenchmark [numItems] [rounds]</code>
+ */
+public class CampaignBenchmark {
+    private static final int DEFAULT_NUM_ITEMS = 200_000;
+    private static final int DEFAULT_ROUNDS = 10;
+    private static final long START = Instant.parse("2024-11-25T00:00:00Z").toEpochMilli();
+    private static final long DAY = 24 * 60 * 60 * 1000;
+
+    public static void main(String[] args) {
+        int numItems = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUM_ITEMS;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+
+        ItemRegistry registry = new ItemRegistry();
+        new CatalogGenerator(1).fill(registry, numItems);
+        double discountsBefore = totalDiscount(registry);
+        long[] now = { START };
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now[0]);
+            }
+        };
+        CampaignScheduler scheduler = new CampaignScheduler(registry, clock);
+        Predicate<Item> quarter = item -> (item.getItemNumber().hashCode() & 3) == 0;
+        System.out.println("Java " + Runtime.version() + ", " + numItems + " items");
+
+        for (int round = 1; round <= rounds; round++) {
+            long day = START + (round - 1) * 4 * DAY;
+            DiscountCampaign week = scheduler.schedule("Quarter off", quarter, 25, Instant.ofEpochMilli(day), Instant.ofEpochMilli(day + 3 * DAY), 0);
+            scheduler.schedule("Black Friday", ItemFilter.all(), 40, Instant.ofEpochMilli(day + DAY), Instant.ofEpochMilli(day + 2 * DAY), 1);
+
+            StringBuilder line = new StringBuilder("Round " + round + ":");
+            for (int d = 0; d <= 3; d++) {
+                now[0] = day + d * DAY;
+                long start = System.nanoTime();
+                int changed = scheduler.runDue();
+                line.append(String.format(" %,d items in %.1f ms,", changed, (System.nanoTime() - start) / 1e6));
+            }
+            if (round == 1 || round == rounds)
+                System.out.println(line + " the first campaign covering " + week.getItemCount() + " items");
+        }
+
+        double discountsAfter = totalDiscount(registry);
+        boolean restored = discountsAfter == discountsBefore && scheduler.getActiveCampaigns().length == 0;
+        System.out.println(restored ? "Every discount was restored" : "NOT RESTORED: total discount " + discountsAfter + ", expected " + discountsBefore);
+        if (!restored)
+            System.exit(1);
+    }
+
+    private static double totalDiscount(ItemRegistry registry) {
+        double total = 0;
+        for (Item item : registry.getAll())
+            total += item.getPriceDiscount();
+        return total;
+    }
+}
@@ -0,0 +1,28 @@
+package registry.bench;
+
+import registry.CatalogGenerator;
+import registry.ItemRegistry;
+
+/**
+ * The catalog of test items shared by the benchmarks, generated by a <code>CatalogGenerator</code> with a fixed seed so every run measures the same data.
+ */
+final class Catalog {
+    private static final long SEED = 20240601L;
+    private static final CatalogGenerator GENERATOR = new CatalogGenerator(SEED);
+
+    private Catalog() {}
+
+    /**
+     * Returns the item number of the i-th item of the catalog.
+     */
+    static String itemNumber(int i) {
+        return GENERATOR.itemNumber(i);
+    }
+
+    /**
+     * Registers the first 'size' items of the catalog to the submitted registry.
+     */
+    static void fill(ItemRegistry registry, int size) {
+        GENERATOR.fill(registry, size);
+    }
+}
@@ -0,0 +1,140 @@
+package registry.bench;
+
+import registry.Item;
+import registry.ItemCategory;
+import registry.ItemNumberCodec;
+import registry.LongItemMap;
+
+import java.util.HashMap;
+import java.util.SplittableRandom;
+
+/**
+ * Compares <code>LongItemMap</code> keyed by packed item numbers with a <code>HashMap&lt;String, Item&gt;</code>, as the directory of a registry.
+ * <br><br> Reports the memory used per entry by the directory structure alone (the Items and their item number Strings are shared by both, and excluded),
+ * and the average latency of looking up an existing item number, which includes packing it for the <code>LongItemMap</code>. Lookups are measured twice:
+ * with item numbers read fresh from input, as when they arrive in a request, and with the very String instances used as keys in the <code>HashMap</code>,
+ * which lets <code>HashMap</code> skip hashing and comparing the characters.
+ * Usage: <code>DirectoryBenchmark [numItems]</code>
+ */
+public class DirectoryBenchmark {
+    private static final int DEFAULT_NUM_ITEMS = 1_000_000;
+    private static final int LOOKUPS_PER_ROUND = 2_000_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final String DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    public static void main(String[] args) {
+        int numItems = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUM_ITEMS;
+
+        String[] itemNumbers = new String[numItems];
+        SplittableRandom random = new SplittableRandom(42);
+        HashMap<String, Boolean> unique = new HashMap<>();
+        for (int i = 0; i < numItems; ) {
+            char[] c = new char[6];
+            for (int j = 0; j < c.length; j++)
+                c[j] = DIGITS.charAt(random.nextInt(DIGITS.length()));
+            String s = new String(c);
+            if (unique.put(s, Boolean.TRUE) == null)
+                itemNumbers[i++] = s;
+        }
+        unique = null;
+        Item item = new Item("X", "Shared item", 1, 1, ItemCategory.Wood, "Bendell", 1f, 1f, 1f, "Brown");
+        String[] queries = new String[LOOKUPS_PER_ROUND];
+        for (int i = 0; i < queries.length; i++)
+            queries[i] = itemNumbers[random.nextInt(numItems)];
+        char[] input = new char[LOOKUPS_PER_ROUND * 6];
+        for (int i = 0; i < LOOKUPS_PER_ROUND; i++)
+            queries[i].getChars(0, 6, input, i * 6);
+
+        long baseline = usedMemory();
+        HashMap<String, Item> hashMap = new HashMap<>();
+        for (String s : itemNumbers)
+            hashMap.put(s, item);
+        long hashMapBytes = usedMemory() - baseline;
+
+        baseline = usedMemory();
+        LongItemMap longMap = new LongItemMap();
+        for (String s : itemNumbers)
+            longMap.put(ItemNumberCodec.pack(s), item);
+        long longMapBytes = usedMemory() - baseline;
+
+        System.out.println("Entries: " + numItems);
+        System.out.printf("Bytes per entry, HashMap<String, Item>: %.1f%n", (double) hashMapBytes / numItems);
+        System.out.printf("Bytes per entry, LongItemMap:          %.1f%n", (double) longMapBytes / numItems);
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            lookUpHashMap(hashMap, queries);
+            lookUpLongMap(longMap, queries);
+            lookUpHashMap(hashMap, input);
+            lookUpLongMap(longMap, input);
+        }
+        long[] nanos = new long[4];
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            nanos[0] += lookUpHashMap(hashMap, input);
+            nanos[1] += lookUpLongMap(longMap, input);
+            nanos[2] += lookUpHashMap(hashMap, queries);
+            nanos[3] += lookUpLongMap(longMap, queries);
+        }
+        double lookups = (double) LOOKUPS_PER_ROUND * MEASURED_ROUNDS;
+        System.out.printf("Nanoseconds per lookup from input, HashMap<String, Item>: %.1f%n", nanos[0] / lookups);
+        System.out.printf("Nanoseconds per lookup from input, LongItemMap:          %.1f%n", nanos[1] / lookups);
+        System.out.printf("Nanoseconds per lookup by key instance, HashMap<String, Item>: %.1f%n", nanos[2] / lookups);
+        System.out.printf("Nanoseconds per lookup by key instance, LongItemMap:          %.1f%n", nanos[3] / lookups);
+    }
+
+    private static long lookUpHashMap(HashMap<String, Item> map, char[] input) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < LOOKUPS_PER_ROUND; i++)
+            if (map.get(new String(input, i * 6, 6)) != null)
+                found++;
+        long elapsed = System.nanoTime() - start;
+        check(found, LOOKUPS_PER_ROUND);
+        return elapsed;
+    }
+
+    private static long lookUpLongMap(LongItemMap map, char[] input) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < LOOKUPS_PER_ROUND; i++)
+            if (map.get(ItemNumberCodec.pack(new String(input, i * 6, 6))) != null)
+                found++;
+        long elapsed = System.nanoTime() - start;
+        check(found, LOOKUPS_PER_ROUND);
+        return elapsed;
+    }
+
+    private static long lookUpHashMap(HashMap<String, Item> map, String[] queries) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (String q : queries)
+            if (map.get(q) != null)
+                found++;
+        long elapsed = System.nanoTime() - start;
+        check(found, queries.length);
+        return elapsed;
+    }
+
+    private static long lookUpLongMap(LongItemMap map, String[] queries) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (String q : queries)
+            if (map.get(ItemNumberCodec.pack(q)) != null)
+                found++;
+        long elapsed = System.nanoTime() - start;
+        check(found, queries.length);
+        return elapsed;
+    }
+
+    private static void check(int found, int expected) {
+        if (found != expected)
+            throw new IllegalStateException("Only found " + found + " of " + expected + " item numbers");
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
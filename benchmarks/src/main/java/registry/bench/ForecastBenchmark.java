@@ -0,0 +1,70 @@
+package registry.bench;
+
+import registry.CatalogGenerator;
+import registry.ConsumptionEstimate;
+import registry.ItemRegistry;
+
+import java.util.SplittableRandom;
+
+/**
+ * Measures what the consumption forecast adds to every stock change, and how long ranking every Item by days until stockout takes.
+ * <br><br> Makes the same random stock changes to two registries, one without and one with a forecast, and then ranks the Items of the second one.
+ * Usage: <code>ForecastBenchmark [changes] [numItems]</code>
+ */
+public class ForecastBenchmark {
+    private static final int DEFAULT_CHANGES = 5_000_000;
+    private static final int DEFAULT_NUM_ITEMS = 100_000;
+    private static final int INITIAL_AMOUNT = 1_000_000;
+    private static final int ROUNDS = 3;
+    private static final int QUERIES = 20;
+    private static final int LIMIT = 100;
+
+    public static void main(String[] args) {
+        int numChanges = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CHANGES;
+        int numItems = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUM_ITEMS;
+        System.out.println("Java " + Runtime.version() + ", " + numChanges + " stock changes to " + numItems + " items");
+
+        ItemRegistry plain = registry(numItems);
+        ItemRegistry forecast = registry(numItems);
+        forecast.getConsumptionForecast();
+        String[] itemNumbers = new String[numItems];
+        CatalogGenerator catalog = new CatalogGenerator(1);
+        for (int i = 0; i < numItems; i++)
+            itemNumbers[i] = catalog.itemNumber(i);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            double without = run(plain, itemNumbers, numChanges);
+            double with = run(forecast, itemNumbers, numChanges);
+            System.out.printf("Round %d: %.0f ns per change without a forecast, %.0f ns with%n", round, without, with);
+        }
+
+        ConsumptionEstimate[] urgent = null;
+        long start = System.nanoTime();
+        for (int q = 0; q < QUERIES; q++)
+            urgent = forecast.getConsumptionForecast().getMostUrgent(LIMIT);
+        System.out.printf("Ranking %,d items: %.1f ms per query%n", forecast.getConsumptionForecast().size(), (System.nanoTime() - start) / 1e6 / QUERIES);
+        System.out.println("Running out first: " + urgent[0]);
+    }
+
+    private static ItemRegistry registry(int numItems) {
+        CatalogGenerator catalog = new CatalogGenerator(1);
+        ItemRegistry registry = new ItemRegistry();
+        catalog.fill(registry, numItems);
+        for (int i = 0; i < numItems; i++) {
+            String itemNumber = catalog.itemNumber(i);
+            registry.changeAmountInStorage(itemNumber, INITIAL_AMOUNT - registry.getItem(itemNumber).getAmountInStorage());
+        }
+        return registry;
+    }
+
+    /** Makes mostly withdrawals, skewed towards the first Items. Returns the time per change in nanoseconds. */
+    private static double run(ItemRegistry registry, String[] itemNumbers, int numChanges) {
+        SplittableRandom random = new SplittableRandom(1);
+        long start = System.nanoTime();
+        for (int c = 0; c < numChanges; c++) {
+            int i = (int) (itemNumbers.length * Math.pow(random.nextDouble(), 3));
+            registry.changeAmountInStorage(itemNumbers[i], random.nextInt(10) == 0 ? 5 : -1);
+        }
+        return (System.nanoTime() - start) / (double) numChanges;
+    }
+}
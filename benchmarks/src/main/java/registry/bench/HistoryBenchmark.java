@@ -0,0 +1,102 @@
+package registry.bench;
+
+import registry.CatalogGenerator;
+import registry.ItemRegistry;
+import registry.ItemSnapshot;
+import registry.RegistryHistory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.SplittableRandom;
+
+/**
+ * Measures the cost of recording an audit history, and of point-in-time queries as the history grows, and checks the answers.
+ * <br><br> Makes stock changes to random Items while the history records them, one millisecond apart by a fixed clock offset for every change.
+ * At every report, it looks up the values of random Items at random points in the past, which costs the same however long the history is,
+ * and checks the totals it reconstructs against the totals it recorded at those points.
+ * Usage: <code>HistoryBenchmark [changes] [numItems]</code>
+ */
+public class HistoryBenchmark {
+    private static final int DEFAULT_CHANGES = 5_000_000;
+    private static final int DEFAULT_NUM_ITEMS = 1_000;
+    private static final int REPORT_EVERY = 1_000_000;
+    private static final int LOOKUPS = 100_000;
+    private static final int INITIAL_AMOUNT = 1_000_000;
+    private static final long START = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+    public static void main(String[] args) {
+        int numChanges = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CHANGES;
+        int numItems = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUM_ITEMS;
+
+        CatalogGenerator catalog = new CatalogGenerator(1);
+        ItemRegistry registry = new ItemRegistry();
+        catalog.fill(registry, numItems);
+        String[] itemNumbers = new String[numItems];
+        for (int i = 0; i < numItems; i++) {
+            itemNumbers[i] = catalog.itemNumber(i);
+            registry.changeAmountInStorage(itemNumbers[i], INITIAL_AMOUNT - registry.getItem(itemNumbers[i]).getAmountInStorage());
+        }
+
+        long[] now = { START };
+        Clock clock = new Clock() {
+            @Override
+            public ZoneOffset getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(java.time.ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now[0]);
+            }
+        };
+        RegistryHistory history = new RegistryHistory(clock);
+        registry.addListener(history, true);
+
+        System.out.println("Java " + Runtime.version() + ", " + numChanges + " stock changes to " + numItems + " items");
+        SplittableRandom random = new SplittableRandom(1);
+        long[] totals = new long[numChanges / REPORT_EVERY + 1];
+        totals[0] = registry.totalAmountInStorage();
+        long start = System.nanoTime();
+        for (int c = 1; c <= numChanges; c++) {
+            now[0]++;
+            registry.changeAmountInStorage(itemNumbers[random.nextInt(numItems)], random.nextInt(-3, 6));
+            if (c % REPORT_EVERY != 0)
+                continue;
+            long recorded = System.nanoTime() - start;
+            int report = c / REPORT_EVERY;
+            totals[report] = registry.totalAmountInStorage();
+
+            long lookupStart = System.nanoTime();
+            for (int l = 0; l < LOOKUPS; l++) {
+                ItemSnapshot snapshot = history.getItemAt(itemNumbers[random.nextInt(numItems)], Instant.ofEpochMilli(START + random.nextLong(c)));
+                if (snapshot == null)
+                    throw new IllegalStateException("Missing history");
+            }
+            double lookupNanos = (System.nanoTime() - lookupStart) / (double) LOOKUPS;
+
+            boolean consistent = true;
+            for (int r = 0; r <= report; r++)
+                consistent &= total(history.getRegistryAt(Instant.ofEpochMilli(START + (long) r * REPORT_EVERY))) == totals[r];
+            System.out.printf("%,10d changes: %4.0f ns per change, %5.0f ns per lookup, %5.2f bytes per change, totals %s%n", c, recorded / (double) REPORT_EVERY,
+                    lookupNanos, history.getEncodedBytes() / (double) history.getRecordCount(), consistent ? "consistent" : "INCONSISTENT");
+            if (!consistent)
+                System.exit(1);
+            start = System.nanoTime();
+        }
+        System.out.println("History spans " + Duration.ofMillis(now[0] - START));
+    }
+
+    private static long total(ItemSnapshot[] snapshots) {
+        long total = 0;
+        for (ItemSnapshot snapshot : snapshots)
+            total += snapshot.getAmountInStorage();
+        return total;
+    }
+}
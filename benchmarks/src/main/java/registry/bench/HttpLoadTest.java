@@ -0,0 +1,135 @@
+package registry.bench;
+
+import registry.CatalogGenerator;
+import registry.ItemRegistry;
+import registry.LatencyHistogram;
+import registry.RegistryServer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A load test for <code>RegistryServer</code>. Starts a server on a generated catalog in this JVM, and lets a number of clients send requests over
+ * persistent HTTP/1.1 connections as fast as they can: item lookups, with a share of stock changes.
+ * <br><br> The clients write requests and parse responses directly on sockets, so that the client side costs as little as possible and the server is what is measured.
+ * Usage: <code>HttpLoadTest [connections] [seconds] [numItems] [writePercent]</code>
+ */
+public class HttpLoadTest {
+    private static final int DEFAULT_CONNECTIONS = 64;
+    private static final double DEFAULT_SECONDS = 10;
+    private static final int DEFAULT_NUM_ITEMS = 100_000;
+    private static final int DEFAULT_WRITE_PERCENT = 10;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONNECTIONS;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_SECONDS;
+        int numItems = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_NUM_ITEMS;
+        int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_WRITE_PERCENT;
+
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true"); // See RegistryServer
+        CatalogGenerator catalog = new CatalogGenerator(1);
+        ItemRegistry registry = new ItemRegistry();
+        catalog.fill(registry, numItems);
+        for (int i = 0; i < numItems; i++)
+            registry.increaseAmountInStorage(catalog.itemNumber(i), 1_000_000); // So withdrawals do not run out
+
+        try (RegistryServer server = new RegistryServer(registry, 0)) {
+            System.out.println("Java " + Runtime.version() + ", " + Runtime.getRuntime().availableProcessors() + " cores, " + connections + " connections, "
+                    + writePercent + "% stock changes, " + numItems + " items");
+            run(server.getPort(), catalog, numItems, connections, Math.min(2, seconds), writePercent); // Warmup
+            LatencyHistogram latencies = new LatencyHistogram();
+            LongAdder errors = new LongAdder();
+            long start = System.nanoTime();
+            long requests = run(server.getPort(), catalog, numItems, connections, seconds, writePercent, latencies, errors);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%,d requests in %.1f s: %,.0f requests/s, %d errors%n", requests, elapsed, requests / elapsed, errors.sum());
+            System.out.printf("latency us: mean %.1f, p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n", latencies.getMean() / 1e3, latencies.getValueAtPercentile(50) / 1e3,
+                    latencies.getValueAtPercentile(99) / 1e3, latencies.getValueAtPercentile(99.9) / 1e3, latencies.getMax() / 1e3);
+        }
+    }
+
+    private static void run(int port, CatalogGenerator catalog, int numItems, int connections, double seconds, int writePercent) throws InterruptedException, IOException {
+        run(port, catalog, numItems, connections, seconds, writePercent, new LatencyHistogram(), new LongAdder());
+    }
+
+    private static long run(int port, CatalogGenerator catalog, int numItems, int connections, double seconds, int writePercent,
+                            LatencyHistogram latencies, LongAdder errors) throws InterruptedException, IOException {
+        LongAdder requests = new LongAdder();
+        CountDownLatch done = new CountDownLatch(connections);
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        for (int c = 0; c < connections; c++) {
+            Socket socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            SplittableRandom random = new SplittableRandom(c);
+            Thread client = new Thread(() -> {
+                try (socket) {
+                    OutputStream out = socket.getOutputStream();
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    while (System.nanoTime() < end) {
+                        String itemNumber = catalog.itemNumber(random.nextInt(numItems));
+                        String request;
+                        if (random.nextInt(100) < writePercent) {
+                            String body = "{\"delta\":" + (random.nextBoolean() ? 1 : -1) + "}";
+                            request = "POST /items/" + itemNumber + "/stock HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\nContent-Length: "
+                                    + body.length() + "\r\n\r\n" + body;
+                        } else {
+                            request = "GET /items/" + itemNumber + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+                        }
+                        long start = System.nanoTime();
+                        out.write(request.getBytes(StandardCharsets.US_ASCII));
+                        out.flush();
+                        int status = readResponse(in);
+                        latencies.record(System.nanoTime() - start);
+                        requests.increment();
+                        if (status != 200)
+                            errors.increment();
+                    }
+                } catch (IOException e) {
+                    errors.increment();
+                } finally {
+                    done.countDown();
+                }
+            }, "http-client-" + c);
+            client.setDaemon(true);
+            client.start();
+        }
+        done.await();
+        return requests.sum();
+    }
+
+    /**
+     * Reads a response with a Content-Length header, and returns its status code.
+     */
+    private static int readResponse(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        int contentLength = 0;
+        String header;
+        while (!(header = readLine(in)).isEmpty())
+            if (header.regionMatches(true, 0, "Content-Length:", 0, 15))
+                contentLength = Integer.parseInt(header.substring(15).trim());
+        in.skipNBytes(contentLength);
+        return status;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0)
+                throw new IOException("Connection closed");
+            if (b != '\r')
+                sb.append((char) b);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package registry.bench;
+
+import org.openjdk.jmh.annotations.*;
+import registry.Item;
+import registry.ItemRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks <code>Item.createTable(...)</code>, used when printing the registry, over tables of different sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItemTableBenchmark {
+    private static final int DECIMAL_PLACES = 2;
+
+    @Param({ "1", "100", "10000" })
+    public int rows;
+
+    private Item[] items;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        ItemRegistry registry = new ItemRegistry();
+        Catalog.fill(registry, rows);
+        items = registry.getAll();
+    }
+
+    @Benchmark
+    public String createTable() {
+        return Item.createTable(items, DECIMAL_PLACES);
+    }
+}
@@ -0,0 +1,124 @@
+package registry.bench;
+
+import registry.CatalogGenerator;
+import registry.ItemRegistry;
+import registry.StockReservation;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks that multi-item withdrawals conserve stock under concurrency, and measures their throughput with and without overlapping orders.
+ * <br><br> Every thread places random orders of several items: withdrawals with <code>withdrawAll</code>, reservations with <code>reserveAll</code>
+ * which are then confirmed or released, and restocking with single-item changes, which run alongside without the locks of the orders.
+ * With disjoint orders, every thread orders from items of its own; with overlapping orders, every thread orders from the same small set of items.
+ * Afterwards, the total amount in storage must equal the initial amount, minus every amount withdrawn or confirmed, plus every amount restocked,
+ * and no amount may have gone below zero. The build runs the same checks on every change in <code>OrderTransactionTest</code>; this harness repeats them at scale.
+ * Usage: <code>OrderTransactionBenchmark [threads] [secondsPerRun] [linesPerOrder]</code>
+ */
+public class OrderTransactionBenchmark {
+    private static final int DEFAULT_THREADS = 32;
+    private static final double DEFAULT_SECONDS_PER_RUN = 3.0;
+    private static final int DEFAULT_LINES_PER_ORDER = 8;
+    private static final int ITEMS_PER_THREAD = 1_000;
+    private static final int HOT_ITEMS = 64;
+    private static final int INITIAL_AMOUNT = 500;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_SECONDS_PER_RUN;
+        int linesPerOrder = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_LINES_PER_ORDER;
+
+        System.out.println("Java " + Runtime.version() + ", " + Runtime.getRuntime().availableProcessors() + " cores, " + threads + " threads, "
+                + linesPerOrder + " lines per order");
+        boolean conserved = run(threads, seconds, linesPerOrder, false) & run(threads, seconds, linesPerOrder, true);
+        if (!conserved)
+            System.exit(1);
+    }
+
+    private static boolean run(int numThreads, double seconds, int linesPerOrder, boolean overlapping) throws InterruptedException {
+        int numItems = numThreads * ITEMS_PER_THREAD;
+        CatalogGenerator catalog = new CatalogGenerator(1);
+        ItemRegistry registry = new ItemRegistry();
+        catalog.fill(registry, numItems);
+        String[] itemNumbers = new String[numItems];
+        for (int i = 0; i < numItems; i++) {
+            itemNumbers[i] = catalog.itemNumber(i);
+            registry.changeAmountInStorage(itemNumbers[i], INITIAL_AMOUNT - registry.getItem(itemNumbers[i]).getAmountInStorage());
+        }
+        long initialTotal = registry.totalAmountInStorage();
+
+        LongAdder orders = new LongAdder();
+        LongAdder refused = new LongAdder();
+        LongAdder removed = new LongAdder();
+        LongAdder restocked = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(numThreads);
+        long[] end = new long[1];
+
+        for (int t = 0; t < numThreads; t++) {
+            int firstItem = overlapping ? 0 : t * ITEMS_PER_THREAD;
+            int itemRange = overlapping ? HOT_ITEMS : ITEMS_PER_THREAD;
+            SplittableRandom random = new SplittableRandom(t);
+            Thread thread = new Thread(() -> {
+                String[] lines = new String[linesPerOrder];
+                int[] amounts = new int[linesPerOrder];
+                try {
+                    start.await();
+                    while (System.nanoTime() < end[0]) {
+                        int total = 0;
+                        for (int i = 0; i < linesPerOrder; i++) {
+                            lines[i] = itemNumbers[firstItem + random.nextInt(itemRange)];
+                            amounts[i] = 1 + random.nextInt(5);
+                            total += amounts[i];
+                        }
+                        int kind = random.nextInt(10);
+                        if (kind < 4) {
+                            if (registry.withdrawAll(lines, amounts))
+                                removed.add(total);
+                            else
+                                refused.increment();
+                        } else if (kind < 8) {
+                            StockReservation reservation = registry.reserveAll(lines, amounts);
+                            if (reservation == null)
+                                refused.increment();
+                            else if (random.nextBoolean())
+                                reservation.release();
+                            else if (reservation.confirm())
+                                removed.add(total);
+                        } else {
+                            for (int i = 0; i < linesPerOrder; i++)
+                                registry.increaseAmountInStorage(lines[i], amounts[i]);
+                            restocked.add(total);
+                        }
+                        orders.increment();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+
+        end[0] = System.nanoTime() + (long) (seconds * 1e9);
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+
+        long expected = initialTotal - removed.sum() + restocked.sum();
+        long actual = registry.totalAmountInStorage();
+        int negative = 0;
+        for (String itemNumber : itemNumbers)
+            if (registry.getItem(itemNumber).getAmountInStorage() < 0)
+                negative++;
+        boolean conserved = actual == expected && negative == 0;
+        System.out.printf("%-11s %,12.0f orders/s, %5.1f%% refused, stock %s%n", overlapping ? "overlapping" : "disjoint", orders.sum() / elapsed,
+                100.0 * refused.sum() / Math.max(1, orders.sum()),
+                conserved ? "conserved (" + actual + ")" : "NOT CONSERVED: " + actual + ", expected " + expected + ", " + negative + " negative amounts");
+        return conserved;
+    }
+}
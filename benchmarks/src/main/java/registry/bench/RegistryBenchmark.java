@@ -0,0 +1,107 @@
+package registry.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import registry.Item;
+import registry.ItemCategory;
+import registry.ItemRegistry;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks the lookups and changes of <code>ItemRegistry</code>, over registries of different sizes.
+ * The number of threads is set when running the benchmarks, see <code>BenchmarkRunner</code>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistryBenchmark {
+    private static final int ITEMS_PER_GET_ITEMS = 100;
+
+    @State(Scope.Benchmark)
+    public static class Registry {
+        @Param({ "1000", "100000", "1000000", "10000000" })
+        public int catalogSize;
+
+        public ItemRegistry registry;
+        /**
+         * Hands out unique item numbers to the threads registering new items.
+         */
+        public final AtomicInteger nextNewItem = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void fill() {
+            registry = new ItemRegistry();
+            Catalog.fill(registry, catalogSize);
+            for (int i = 0; i < catalogSize; i++)
+                registry.increaseAmountInStorage(Catalog.itemNumber(i), 1_000_000); // So withdrawals do not run out, some Items start with none
+        }
+
+        /**
+         * Removes the items registered during an iteration, so every iteration starts with the same catalog.
+         */
+        @TearDown(Level.Iteration)
+        public void removeNewItems() {
+            for (int i = nextNewItem.getAndSet(0) - 1; i >= 0; i--)
+                registry.deleteItemEntry("NEW" + i);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Keys {
+        private final SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+        private final String[] batch = new String[ITEMS_PER_GET_ITEMS];
+
+        String randomItemNumber(Registry r) {
+            return Catalog.itemNumber(random.nextInt(r.catalogSize));
+        }
+
+        String[] randomBatch(Registry r) {
+            for (int i = 0; i < batch.length; i++)
+                batch[i] = randomItemNumber(r);
+            return batch;
+        }
+
+        int randomDelta() {
+            return random.nextBoolean() ? 1 : -1;
+        }
+    }
+
+    @Benchmark
+    public void registerNewItem(Registry r) {
+        r.registry.registerNewItem("NEW" + r.nextNewItem.getAndIncrement(), "Benchmark item", 1, 100, ItemCategory.Wood, "Bendell", 1f, 1f, 1f, "Brown");
+    }
+
+    @Benchmark
+    public Item getItem(Registry r, Keys k) {
+        return r.registry.getItem(k.randomItemNumber(r));
+    }
+
+    @Benchmark
+    public Item[] getItems(Registry r, Keys k) {
+        return r.registry.getItems(k.randomBatch(r));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Item[] getAll(Registry r) {
+        return r.registry.getAll();
+    }
+
+    @Benchmark
+    public void changeAmountInStorage(Registry r, Keys k) {
+        r.registry.changeAmountInStorage(k.randomItemNumber(r), k.randomDelta());
+    }
+
+    @Benchmark
+    public void getItemAndChangeAmount(Registry r, Keys k, Blackhole bh) {
+        String itemNumber = k.randomItemNumber(r);
+        bh.consume(r.registry.getItem(itemNumber));
+        r.registry.changeAmountInStorage(itemNumber, k.randomDelta());
+    }
+}
@@ -0,0 +1,285 @@
+package registry.bench;
+
+import registry.Item;
+import registry.ItemRegistry;
+import registry.ReplicaRegistry;
+import registry.ReplicationServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the read throughput of a primary registry taking stock changes, alone and with read replicas in other processes on the same machine,
+ * and checks that every replica ends up with the same Items as the primary.
+ * <br><br> The primary takes a steady stream of stock changes and price changes throughout, while every process runs the same mix of lookups and searches
+ * on as many threads as there are processors, after warming up for a few seconds. The replicas are started as child processes of this one, replicating over the loopback interface.
+ * The total read throughput can only scale with the replicas if the machine has cores to spare for them, so the benchmark only reports scaling as
+ * demonstrated when every process had cores of its own and the processes together read faster than the primary alone.
+ * <br><br> Scaling has not been demonstrated so far: the only runs so far were on a single core, where the primary and the replicas share the CPU,
+ * and together read at about 0.1x to 0.5x the rate of the primary alone. Those runs only show that the replicas stay consistent with the primary.
+ * Usage: <code>ReplicationBenchmark [numItems] [seconds] [replicas]</code>
+ */
+public class ReplicationBenchmark {
+    private static final int DEFAULT_NUM_ITEMS = 100_000;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int DEFAULT_REPLICAS = 2;
+    private static final int CHANGES_PER_SECOND = 20_000;
+    private static final int WARMUP_SECONDS = 2;
+    private static final String[] TERMS = { "door", "oak planks", "tiles", "window", "carved", "pine", "walnut table", "no such item" };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--replica")) {
+            runReplica(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        int numItems = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUM_ITEMS;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        int replicas = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_REPLICAS;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        ItemRegistry primary = new ItemRegistry();
+        Catalog.fill(primary, numItems);
+        System.out.println("Java " + Runtime.version() + ", " + threads + " processors, " + numItems + " items, "
+                + CHANGES_PER_SECOND + " changes per second to the primary, " + threads + " reading threads per process");
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> write(primary, numItems, writing), "writer");
+        writer.start();
+
+        readLoad(primary, numItems, WARMUP_SECONDS, threads);
+        double alone = readLoad(primary, numItems, seconds, threads);
+        System.out.printf("Primary alone:                 %,12.0f reads/s%n", alone);
+
+        try (ReplicationServer server = new ReplicationServer(primary, 0)) {
+            List<Process> processes = new ArrayList<>();
+            List<BufferedReader> outputs = new ArrayList<>();
+            for (int r = 0; r < replicas; r++) {
+                Process p = new ProcessBuilder(ProcessHandle.current().info().command().orElse("java"), "-cp", System.getProperty("java.class.path"),
+                        ReplicationBenchmark.class.getName(), "--replica", String.valueOf(server.getPort()), String.valueOf(seconds), String.valueOf(numItems))
+                        .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+                processes.add(p);
+                outputs.add(new BufferedReader(new InputStreamReader(p.getInputStream())));
+            }
+            for (BufferedReader out : outputs)
+                expect(out, "READY");
+            System.out.println(replicas + " replicas bootstrapped from " + numItems + " items");
+
+            for (Process p : processes)
+                send(p, "GO");
+            double withReplicas = readLoad(primary, numItems, seconds, threads);
+            double total = withReplicas;
+            for (int r = 0; r < replicas; r++) {
+                String[] result = expect(outputs.get(r), "READ").split(" ");
+                double reads = Double.parseDouble(result[1]);
+                total += reads;
+                System.out.printf("Replica %d:                     %,12.0f reads/s, lag %s ms on average, %s ms at most%n", r + 1, reads, result[2], result[3]);
+            }
+            System.out.printf("Primary with %d replicas:       %,12.0f reads/s%n", replicas, withReplicas);
+            System.out.printf("Primary and replicas together: %,12.0f reads/s, %.2fx the primary alone%n", total, total / alone);
+            if (threads < 2 * (replicas + 1))
+                System.out.println("Scaling NOT demonstrated: " + threads + " processors cannot give each of the " + (replicas + 1) + " processes cores of its own");
+            else
+                System.out.println(total > alone ? "Scaling demonstrated" : "Scaling NOT demonstrated: the replicas added no read throughput");
+
+            writing.set(false);
+            writer.join();
+            String expected = state(primary);
+            boolean consistent = true;
+            for (int r = 0; r < replicas; r++) {
+                send(processes.get(r), "CHECK");
+                String state = expect(outputs.get(r), "STATE").substring("STATE ".length());
+                if (!state.equals(expected)) {
+                    System.out.println("Replica " + (r + 1) + " DIFFERS: " + state + ", primary " + expected);
+                    consistent = false;
+                }
+            }
+            for (Process p : processes)
+                p.waitFor();
+            System.out.println(consistent ? "Every replica matches the primary: " + expected : "REPLICAS DIFFER");
+            if (!consistent)
+                System.exit(1);
+        }
+    }
+
+    /**
+     * Runs in a child process: replicates the primary, then runs the read load when told to, and reports its state when told to.
+     */
+    private static void runReplica(int port, int seconds, int numItems) throws Exception {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        try (ReplicaRegistry replica = new ReplicaRegistry(port)) {
+            if (!replica.awaitBootstrap(1, TimeUnit.MINUTES))
+                throw new IllegalStateException("The snapshot did not arrive in time");
+            readLoad(replica, numItems, WARMUP_SECONDS, Runtime.getRuntime().availableProcessors());
+            System.out.println("READY");
+            System.out.flush();
+            if (!"GO".equals(in.readLine()))
+                return;
+
+            long[] lag = new long[2]; // Sum and maximum, sampled every 10 ms during the load
+            int[] samples = { 0 };
+            AtomicBoolean sampling = new AtomicBoolean(true);
+            Thread sampler = new Thread(() -> {
+                while (sampling.get()) {
+                    long l = replica.getLagMillis();
+                    lag[0] += l;
+                    lag[1] = Math.max(lag[1], l);
+                    samples[0]++;
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            sampler.start();
+            double reads = readLoad(replica, numItems, seconds, Runtime.getRuntime().availableProcessors());
+            sampling.set(false);
+            sampler.join();
+            System.out.println("READ " + reads + " " + (samples[0] > 0 ? lag[0] / samples[0] : -1) + " " + lag[1]);
+            System.out.flush();
+
+            if (!"CHECK".equals(in.readLine()))
+                return;
+            long sequence;
+            do { // Wait for the primary's last changes, which are followed by a heartbeat at most
+                sequence = replica.getAppliedSequence();
+                Thread.sleep(300);
+            } while (replica.getAppliedSequence() != sequence);
+            System.out.println("STATE " + state(replica.size(), replica.totalAmountInStorage(), replica.totalValueInStorage(), replica.getAll()));
+            System.out.flush();
+        }
+    }
+
+    private static void write(ItemRegistry registry, int numItems, AtomicBoolean writing) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long start = System.nanoTime();
+        long changes = 0;
+        while (writing.get()) {
+            String itemNumber = Catalog.itemNumber(random.nextInt(numItems));
+            if (random.nextInt(100) == 0) {
+                registry.setItemPrice(itemNumber, 1 + random.nextInt(10_000));
+            } else {
+                int amount = 1 + random.nextInt(5);
+                if (registry.getItem(itemNumber).getAmountInStorage() >= amount && random.nextBoolean())
+                    amount = -amount;
+                registry.changeAmountInStorage(itemNumber, amount); // Only withdrawn from here, so never more than in storage
+            }
+            changes++;
+            long ahead = changes * 1_000_000_000L / CHANGES_PER_SECOND - (System.nanoTime() - start);
+            if (ahead > 1_000_000)
+                try {
+                    Thread.sleep(ahead / 1_000_000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+        }
+    }
+
+    private interface Reads {
+        Item getItem(String itemNumber);
+
+        String[] searchByRelevance(String query, boolean matchAllWords, int maxResults);
+
+        String[] searchByItemNumberPrefix(String prefix, int maxResults);
+    }
+
+    private static double readLoad(ItemRegistry registry, int numItems, int seconds, int threads) throws InterruptedException {
+        return readLoad(new Reads() {
+            @Override
+            public Item getItem(String itemNumber) {
+                return registry.getItem(itemNumber);
+            }
+
+            @Override
+            public String[] searchByRelevance(String query, boolean matchAllWords, int maxResults) {
+                return registry.searchByRelevance(query, matchAllWords, maxResults);
+            }
+
+            @Override
+            public String[] searchByItemNumberPrefix(String prefix, int maxResults) {
+                return registry.searchByItemNumberPrefix(prefix, maxResults);
+            }
+        }, numItems, seconds, threads);
+    }
+
+    private static double readLoad(ReplicaRegistry replica, int numItems, int seconds, int threads) throws InterruptedException {
+        return readLoad(new Reads() {
+            @Override
+            public Item getItem(String itemNumber) {
+                return replica.getItem(itemNumber);
+            }
+
+            @Override
+            public String[] searchByRelevance(String query, boolean matchAllWords, int maxResults) {
+                return replica.searchByRelevance(query, matchAllWords, maxResults);
+            }
+
+            @Override
+            public String[] searchByItemNumberPrefix(String prefix, int maxResults) {
+                return replica.searchByItemNumberPrefix(prefix, maxResults);
+            }
+        }, numItems, seconds, threads);
+    }
+
+    /**
+     * Runs lookups, relevance searches and prefix searches, 8 to 1 to 1, on several threads for a number of seconds.
+     * @return The reads per second, over every thread.
+     */
+    private static double readLoad(Reads reads, int numItems, int seconds, int threads) throws InterruptedException {
+        LongAdder count = new LongAdder();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long n = 0, sink = 0;
+                while ((n & 63) != 0 || System.nanoTime() < end) {
+                    String itemNumber = Catalog.itemNumber(random.nextInt(numItems));
+                    switch ((int) (n % 10)) {
+                        case 8 -> sink += reads.searchByRelevance(TERMS[random.nextInt(TERMS.length)], false, 20).length;
+                        case 9 -> sink += reads.searchByItemNumberPrefix(itemNumber.substring(0, 3), 20).length;
+                        default -> sink += reads.getItem(itemNumber).getAmountInStorage();
+                    }
+                    n++;
+                }
+                count.add(n + (sink == Long.MIN_VALUE ? 1 : 0));
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers)
+            w.join();
+        return count.sum() / (double) seconds;
+    }
+
+    private static String state(ItemRegistry registry) {
+        return state(registry.size(), registry.totalAmountInStorage(), registry.totalValueInStorage(), registry.getAll());
+    }
+
+    private static String state(int size, long totalAmount, long totalValue, Item[] items) {
+        long checksum = 0; // Independent of the order of the Items
+        for (Item item : items)
+            checksum += (item.getItemNumber().hashCode() * 31L + item.getPrice()) * 31L + item.getAmountInStorage() + Float.floatToIntBits(item.getPriceDiscount());
+        return size + " items, " + totalAmount + " in storage worth " + totalValue + ", checksum " + Long.toHexString(checksum);
+    }
+
+    private static String expect(BufferedReader out, String prefix) throws IOException {
+        String line;
+        while ((line = out.readLine()) != null)
+            if (line.startsWith(prefix))
+                return line;
+        throw new IOException("A replica exited before reporting " + prefix);
+    }
+
+    private static void send(Process process, String line) {
+        PrintWriter in = new PrintWriter(process.getOutputStream(), true);
+        in.println(line);
+    }
+}
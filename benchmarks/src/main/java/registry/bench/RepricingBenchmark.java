@@ -0,0 +1,87 @@
+package registry.bench;
+
+import registry.BulkRepricing;
+import registry.CatalogGenerator;
+import registry.Item;
+import registry.ItemCategory;
+import registry.ItemFilter;
+import registry.ItemRegistry;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Compares a discount campaign made by one <code>discountAll</code> with the same campaign made by one <code>setItemDiscount</code> per Item, and checks that readers
+ * never see a campaign half applied.
+ * <br><br> Starts and undoes a campaign on every Door from Heidal repeatedly, both ways. Then does it in bulk again while a reader thread takes snapshots of the registry,
+ * and checks that every Item of the campaign has the same discount in each of them.
+ * Usage: <code>RepricingBenchmark [numItems] [rounds]</code>
+ */
+public class RepricingBenchmark {
+    private static final int DEFAULT_NUM_ITEMS = 200_000;
+    private static final int DEFAULT_ROUNDS = 20;
+    private static final float PERCENT_OFF = 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        int numItems = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUM_ITEMS;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+
+        ItemRegistry registry = new ItemRegistry();
+        new CatalogGenerator(1).fill(registry, numItems);
+        Predicate<Item> campaign = ItemFilter.category(ItemCategory.Doors).and(ItemFilter.brand("Heidal"));
+        System.out.println("Java " + Runtime.version() + ", " + numItems + " items, " + Runtime.getRuntime().availableProcessors() + " processors");
+
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            BulkRepricing repricing = registry.discountAll(campaign, PERCENT_OFF);
+            long bulk = System.nanoTime() - start;
+            start = System.nanoTime();
+            int undone = repricing.undo();
+            long undo = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (Item item : registry.getAll())
+                if (campaign.test(item))
+                    registry.setItemDiscount(item.getItemNumber(), PERCENT_OFF);
+            long single = System.nanoTime() - start;
+            for (String itemNumber : repricing.getItemNumbers())
+                registry.setItemDiscount(itemNumber, 0);
+
+            if (round == 1 || round == rounds)
+                System.out.printf("Round %d: %,d items discounted in %.2f ms in bulk, undone (%,d items) in %.2f ms, and in %.2f ms one by one%n", round,
+                        repricing.size(), bulk / 1e6, undone, undo / 1e6, single / 1e6);
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong snapshots = new AtomicLong(), torn = new AtomicLong();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                float discount = Float.NaN;
+                for (Item item : registry.getAll()) {
+                    if (!campaign.test(item))
+                        continue;
+                    if (Float.isNaN(discount))
+                        discount = item.getPriceDiscount();
+                    else if (item.getPriceDiscount() != discount) {
+                        torn.incrementAndGet();
+                        break;
+                    }
+                }
+                snapshots.incrementAndGet();
+            }
+        });
+        reader.start();
+        for (int round = 0; round < rounds; round++) {
+            registry.discountAll(campaign, PERCENT_OFF).undo();
+            Thread.sleep(1);
+        }
+        running.set(false);
+        reader.join();
+
+        System.out.println(snapshots.get() + " snapshots read during the campaigns, " + torn.get() + " of them with the campaign half applied");
+        System.out.println(torn.get() == 0 ? "Every campaign was applied atomically" : "Campaigns were NOT applied atomically");
+        if (torn.get() != 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,85 @@
+package registry.bench;
+
+import registry.CatalogGenerator;
+import registry.ItemRegistry;
+import registry.StockReservation;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+/**
+ * Measures the cost of reservations with a time limit as the number of pending reservations grows, and checks that expiry returns every reserved unit.
+ * <br><br> Makes a number of single-item reservations with random times to live, confirms or releases a share of them, and then waits for the rest to expire.
+ * The time per reservation and per cancellation stays flat however many are pending, since both are constant-time operations on the timer wheel.
+ * Afterwards, every amount in storage must equal its initial amount minus what was confirmed, with nothing reserved or pending.
+ * Usage: <code>ReservationExpiryBenchmark [reservations] [maxSecondsToLive] [numItems]</code>
+ */
+public class ReservationExpiryBenchmark {
+    private static final int DEFAULT_RESERVATIONS = 2_000_000;
+    private static final int DEFAULT_MAX_SECONDS_TO_LIVE = 5;
+    private static final int DEFAULT_NUM_ITEMS = 10_000;
+    private static final int INITIAL_AMOUNT = 1_000_000;
+    private static final int REPORT_EVERY = 500_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int numReservations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RESERVATIONS;
+        int maxSecondsToLive = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_SECONDS_TO_LIVE;
+        int numItems = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_NUM_ITEMS;
+
+        CatalogGenerator catalog = new CatalogGenerator(1);
+        ItemRegistry registry = new ItemRegistry();
+        catalog.fill(registry, numItems);
+        String[] itemNumbers = new String[numItems];
+        for (int i = 0; i < numItems; i++) {
+            itemNumbers[i] = catalog.itemNumber(i);
+            registry.changeAmountInStorage(itemNumbers[i], INITIAL_AMOUNT - registry.getItem(itemNumbers[i]).getAmountInStorage());
+        }
+
+        System.out.println("Java " + Runtime.version() + ", " + numReservations + " reservations living up to " + maxSecondsToLive + " s, " + numItems + " items");
+        SplittableRandom random = new SplittableRandom(1);
+        long totalConfirmed = 0;
+        StockReservation[] reservations = new StockReservation[numReservations];
+        String[] line = new String[1];
+        int[] amount = new int[1];
+        long start = System.nanoTime();
+        for (int r = 0; r < numReservations; r++) {
+            line[0] = itemNumbers[random.nextInt(numItems)];
+            amount[0] = 1;
+            reservations[r] = registry.reserveAll(line, amount, Duration.ofMillis(1000 + random.nextInt(maxSecondsToLive * 1000)));
+            if ((r + 1) % REPORT_EVERY == 0) {
+                long now = System.nanoTime();
+                System.out.printf("%,10d pending: %6.0f ns per reservation%n", registry.pendingReservationExpiries(), (now - start) / (double) REPORT_EVERY);
+                start = now;
+            }
+        }
+
+        start = System.nanoTime();
+        int cancelled = 0;
+        for (int r = 0; r < numReservations; r += 2) {
+            StockReservation reservation = reservations[r];
+            boolean confirm = random.nextBoolean();
+            if (confirm ? reservation.confirm() : reservation.release()) {
+                cancelled++;
+                if (confirm)
+                    totalConfirmed++;
+            }
+        }
+        System.out.printf("Confirmed or released %,d: %.0f ns each, %,d still pending%n", cancelled, (System.nanoTime() - start) / (double) Math.max(1, cancelled),
+                registry.pendingReservationExpiries());
+
+        long waitStart = System.nanoTime();
+        while (registry.pendingReservationExpiries() > 0)
+            Thread.sleep(100);
+        System.out.printf("The rest expired within %.1f s%n", (System.nanoTime() - waitStart) / 1e9);
+
+        long expected = (long) numItems * INITIAL_AMOUNT - totalConfirmed;
+        long reserved = 0;
+        for (String itemNumber : itemNumbers)
+            reserved += registry.getReservedAmount(itemNumber);
+        boolean consistent = registry.totalAmountInStorage() == expected && reserved == 0;
+        System.out.println(consistent ? "Every unreleased reservation expired, and the stock is consistent"
+                : "INCONSISTENT: " + registry.totalAmountInStorage() + " in storage, expected " + expected + ", " + reserved + " still reserved");
+        if (!consistent)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,56 @@
+package registry.bench;
+
+import org.openjdk.jmh.annotations.*;
+import registry.ItemRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the searches of <code>ItemRegistry</code>, over registries of different sizes, with and without the search cache.
+ * <br><br> The searches cycle through a fixed set of terms, like terminals repeating the same handful of searches, so with the cache enabled nearly every search is a cache hit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final String[] DESCRIPTION_TERMS = { "door", "planks", "tiles, 12", "WINDOW", "carved", "no such item" };
+    private static final String[] ITEM_NUMBER_TERMS = { "C1", "ZZ", "c2a", "A0", "Q", "-" };
+
+    @State(Scope.Benchmark)
+    public static class Registry {
+        @Param({ "1000", "100000", "1000000", "10000000" })
+        public int catalogSize;
+
+        @Param({ "false", "true" })
+        public boolean searchCache;
+
+        public ItemRegistry registry;
+
+        @Setup(Level.Trial)
+        public void fill() {
+            registry = searchCache ? new ItemRegistry() : new ItemRegistry(0);
+            Catalog.fill(registry, catalogSize);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Terms {
+        private int next = 0;
+
+        String next(String[] terms) {
+            return terms[next++ % terms.length];
+        }
+    }
+
+    @Benchmark
+    public String[] searchByDescription(Registry r, Terms t) {
+        return r.registry.searchByDescription(t.next(DESCRIPTION_TERMS));
+    }
+
+    @Benchmark
+    public String[] searchByItemNumber(Registry r, Terms t) {
+        return r.registry.searchByItemNumber(t.next(ITEM_NUMBER_TERMS));
+    }
+}
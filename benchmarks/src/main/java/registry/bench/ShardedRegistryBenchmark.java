@@ -0,0 +1,96 @@
+package registry.bench;
+
+import registry.ItemCategory;
+import registry.ShardedItemRegistry;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how the throughput of <code>ShardedItemRegistry</code> scales with the number of shards and the number of threads.
+ * <br><br> Every combination of shard count and thread count runs three workloads for a fixed time: point reads (<code>getItem</code>), point writes
+ * (<code>changeAmountInStorage</code>) and scatter-gather searches (<code>searchByDescription</code>, with the search cache defeated by unique terms).
+ * Usage: <code>ShardedRegistryBenchmark [numItems] [secondsPerRun]</code>
+ */
+public class ShardedRegistryBenchmark {
+    private static final int DEFAULT_NUM_ITEMS = 200_000;
+    private static final double DEFAULT_SECONDS_PER_RUN = 1.0;
+    private static final int[] SHARD_COUNTS = { 1, 2, 4, 8, 16 };
+
+    private enum Workload { READ, WRITE, SEARCH }
+
+    public static void main(String[] args) throws InterruptedException {
+        int numItems = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUM_ITEMS;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_SECONDS_PER_RUN;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        ArrayList<Integer> threadCounts = new ArrayList<>();
+        for (int t = 1; t < cores; t *= 2)
+            threadCounts.add(t);
+        threadCounts.add(cores);
+
+        System.out.println("Items: " + numItems + ", cores: " + cores + ", seconds per run: " + seconds);
+        System.out.printf("%-8s %-8s %-8s %15s%n", "shards", "threads", "workload", "ops/s");
+        for (int numShards : SHARD_COUNTS) {
+            try (ShardedItemRegistry registry = createRegistry(numShards, numItems)) {
+                for (int threads : threadCounts)
+                    for (Workload workload : Workload.values()) {
+                        double opsPerSecond = run(registry, numItems, threads, workload, seconds);
+                        System.out.printf("%-8d %-8d %-8s %,15.0f%n", numShards, threads, workload, opsPerSecond);
+                    }
+            }
+        }
+    }
+
+    private static ShardedItemRegistry createRegistry(int numShards, int numItems) {
+        ShardedItemRegistry registry = new ShardedItemRegistry(numShards);
+        for (int i = 0; i < numItems; i++)
+            registry.registerNewItem(itemNumber(i), "Item number " + i, 1_000_000, 100, ItemCategory.Wood, "Bendell", 1f, 1f, 1f, "Brown");
+        return registry;
+    }
+
+    private static String itemNumber(int i) {
+        return "IT" + i;
+    }
+
+    private static double run(ShardedItemRegistry registry, int numItems, int numThreads, Workload workload, double seconds) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long durationNanos = (long) (seconds * 1e9);
+        Thread[] threads = new Thread[numThreads];
+
+        for (int t = 0; t < numThreads; t++) {
+            final long seed = t;
+            threads[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long end = System.nanoTime() + durationNanos;
+                long count = 0;
+                long searchNumber = seed << 40;
+                while (System.nanoTime() < end) {
+                    String itemNumber = itemNumber(random.nextInt(numItems));
+                    switch (workload) {
+                        case READ -> registry.getItem(itemNumber);
+                        case WRITE -> registry.changeAmountInStorage(itemNumber, random.nextBoolean() ? 1 : -1);
+                        case SEARCH -> registry.searchByDescription("#" + searchNumber++); // Unique terms, so the search cache never answers
+                    }
+                    count++;
+                }
+                operations.add(count);
+            });
+            threads[t].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread t : threads)
+            t.join();
+        return operations.sum() / ((System.nanoTime() - begin) / 1e9);
+    }
+}
@@ -0,0 +1,216 @@
+package registry.bench;
+
+import registry.Item;
+import registry.ItemCategory;
+import registry.StockCounter;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the throughput of a single hot amount in storage changed by many threads at once, with <code>StockCounter</code> against a synchronized counter
+ * and a compare-and-set counter, and through <code>Item.tryChangeAmountInStorage</code> which moves to a <code>StockCounter</code> once contended.
+ * <br><br> Every thread adds or withdraws one unit at random. With plenty in stock, withdrawals are served from the local share of each thread.
+ * With little in stock, withdrawals keep running out of their share and have to gather the amount from every cell.
+ * After every run, the final amount is checked against the changes that succeeded.
+ * Usage: <code>StockCounterBenchmark [secondsPerRun] [threadCounts, e.g. 1,8,32,64]</code>
+ */
+public class StockCounterBenchmark {
+    private static final double DEFAULT_SECONDS_PER_RUN = 2.0;
+    private static final int[] DEFAULT_THREAD_COUNTS = { 1, 4, 16, 32, 64 };
+    private static final long PLENTY = 1_000_000_000;
+    private static final long SCARCE = 64;
+
+    /**
+     * The operations of each kind of counter.
+     */
+    private interface Counter {
+        void add(long amount);
+
+        boolean tryWithdraw(long amount);
+
+        long get();
+    }
+
+    private static final class SynchronizedCounter implements Counter {
+        private long amount;
+
+        SynchronizedCounter(long amount) {
+            this.amount = amount;
+        }
+
+        @Override
+        public synchronized void add(long amount) {
+            this.amount += amount;
+        }
+
+        @Override
+        public synchronized boolean tryWithdraw(long amount) {
+            if (this.amount < amount)
+                return false;
+            this.amount -= amount;
+            return true;
+        }
+
+        @Override
+        public synchronized long get() {
+            return amount;
+        }
+    }
+
+    private static final class CasCounter implements Counter {
+        private final AtomicLong amount;
+
+        CasCounter(long amount) {
+            this.amount = new AtomicLong(amount);
+        }
+
+        @Override
+        public void add(long amount) {
+            this.amount.addAndGet(amount);
+        }
+
+        @Override
+        public boolean tryWithdraw(long amount) {
+            long current;
+            do {
+                current = this.amount.get();
+                if (current < amount)
+                    return false;
+            } while (!this.amount.compareAndSet(current, current - amount));
+            return true;
+        }
+
+        @Override
+        public long get() {
+            return amount.get();
+        }
+    }
+
+    private static final class StripedCounter implements Counter {
+        private final StockCounter amount;
+
+        StripedCounter(long amount) {
+            this.amount = new StockCounter(amount);
+        }
+
+        @Override
+        public void add(long amount) {
+            this.amount.add(amount);
+        }
+
+        @Override
+        public boolean tryWithdraw(long amount) {
+            return this.amount.tryWithdraw(amount);
+        }
+
+        @Override
+        public long get() {
+            return amount.get();
+        }
+    }
+
+    private static final class ItemCounter implements Counter {
+        private final Item item;
+
+        ItemCounter(long amount) {
+            item = new Item("BW9S24", "Maple planks, 2x4 inches", (int) amount, 56, ItemCategory.Wood, "Dynamik", 4.7f, 0.1016f, 1f, "Brown");
+        }
+
+        @Override
+        public void add(long amount) {
+            item.tryChangeAmountInStorage((int) amount);
+        }
+
+        @Override
+        public boolean tryWithdraw(long amount) {
+            return item.tryChangeAmountInStorage((int) -amount);
+        }
+
+        @Override
+        public long get() {
+            return item.getAmountInStorage();
+        }
+    }
+
+    private enum Kind { SYNCHRONIZED, CAS, STRIPED, ITEM }
+
+    public static void main(String[] args) throws InterruptedException {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_SECONDS_PER_RUN;
+        int[] threadCounts = DEFAULT_THREAD_COUNTS;
+        if (args.length > 1) {
+            String[] counts = args[1].split(",");
+            threadCounts = new int[counts.length];
+            for (int i = 0; i < counts.length; i++)
+                threadCounts[i] = Integer.parseInt(counts[i].trim());
+        }
+
+        System.out.println("Java " + Runtime.version() + ", " + Runtime.getRuntime().availableProcessors() + " cores, " + seconds + " seconds per run");
+        System.out.printf("%-13s %-8s %-8s %15s %12s  %s%n", "counter", "stock", "threads", "ops/s", "refused", "final amount");
+        for (long initial : new long[]{ PLENTY, SCARCE })
+            for (int threads : threadCounts)
+                for (Kind kind : Kind.values())
+                    run(kind, initial, threads, seconds);
+    }
+
+    private static void run(Kind kind, long initial, int numThreads, double seconds) throws InterruptedException {
+        Counter counter = switch (kind) {
+            case SYNCHRONIZED -> new SynchronizedCounter(initial);
+            case CAS -> new CasCounter(initial);
+            case STRIPED -> new StripedCounter(initial);
+            case ITEM -> new ItemCounter(initial);
+        };
+        LongAdder operations = new LongAdder();
+        LongAdder refused = new LongAdder();
+        LongAdder added = new LongAdder();
+        LongAdder withdrawn = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(numThreads);
+        long[] end = new long[1];
+
+        for (int t = 0; t < numThreads; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            Thread thread = new Thread(() -> {
+                long ops = 0, refusals = 0, adds = 0, withdrawals = 0;
+                try {
+                    start.await();
+                    while (System.nanoTime() < end[0]) {
+                        for (int i = 0; i < 256; i++) {
+                            if (random.nextBoolean()) {
+                                counter.add(1);
+                                adds++;
+                            } else if (counter.tryWithdraw(1)) {
+                                withdrawals++;
+                            } else {
+                                refusals++;
+                            }
+                        }
+                        ops += 256;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    operations.add(ops);
+                    refused.add(refusals);
+                    added.add(adds);
+                    withdrawn.add(withdrawals);
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+
+        end[0] = System.nanoTime() + (long) (seconds * 1e9);
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+
+        long expected = initial + added.sum() - withdrawn.sum();
+        long actual = counter.get();
+        System.out.printf("%-13s %-8s %-8d %,15.0f %12d  %s%n", kind, initial == PLENTY ? "plenty" : "scarce", numThreads, operations.sum() / elapsed,
+                refused.sum(), actual == expected ? "consistent" : "INCONSISTENT: " + actual + ", expected " + expected);
+    }
+}
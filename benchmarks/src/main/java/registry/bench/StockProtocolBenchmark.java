@@ -0,0 +1,97 @@
+package registry.bench;
+
+import registry.CatalogGenerator;
+import registry.ItemRegistry;
+import registry.StockClient;
+import registry.StockServer;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A throughput test for <code>StockServer</code>. Starts a server on a generated catalog in this JVM, and lets a number of clients stream stock changes to it
+ * over loopback as fast as they can. Every client keeps a fixed window of requests in flight, each holding a batch of increments and decrements of random items.
+ * <br><br> The target is a million changes per second, which is within reach with batches of a few dozen changes and a handful of requests in flight per connection.
+ * Usage: <code>StockProtocolBenchmark [connections] [seconds] [changesPerRequest] [requestsInFlight] [numItems]</code>
+ */
+public class StockProtocolBenchmark {
+    private static final int DEFAULT_CONNECTIONS = 4;
+    private static final double DEFAULT_SECONDS = 10;
+    private static final int DEFAULT_CHANGES_PER_REQUEST = 64;
+    private static final int DEFAULT_REQUESTS_IN_FLIGHT = 8;
+    private static final int DEFAULT_NUM_ITEMS = 100_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONNECTIONS;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_SECONDS;
+        int changesPerRequest = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CHANGES_PER_REQUEST;
+        int requestsInFlight = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_REQUESTS_IN_FLIGHT;
+        int numItems = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_NUM_ITEMS;
+
+        CatalogGenerator catalog = new CatalogGenerator(1);
+        ItemRegistry registry = new ItemRegistry();
+        catalog.fill(registry, numItems);
+        String[] itemNumbers = new String[numItems];
+        for (int i = 0; i < numItems; i++) {
+            itemNumbers[i] = catalog.itemNumber(i);
+            registry.increaseAmountInStorage(itemNumbers[i], 1_000_000); // So withdrawals do not run out
+        }
+
+        try (StockServer server = new StockServer(registry, 0)) {
+            System.out.println("Java " + Runtime.version() + ", " + Runtime.getRuntime().availableProcessors() + " cores, " + connections + " connections, "
+                    + changesPerRequest + " changes per request, " + requestsInFlight + " requests in flight, " + numItems + " items");
+            run(server.getPort(), itemNumbers, connections, Math.min(2, seconds), changesPerRequest, requestsInFlight, new LongAdder(), new LongAdder()); // Warmup
+            LongAdder changes = new LongAdder();
+            LongAdder failures = new LongAdder();
+            long start = System.nanoTime();
+            run(server.getPort(), itemNumbers, connections, seconds, changesPerRequest, requestsInFlight, changes, failures);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%,d changes in %.1f s: %,.0f changes/s, %,.0f requests/s, %d failed changes%n", changes.sum(), elapsed, changes.sum() / elapsed,
+                    changes.sum() / elapsed / changesPerRequest, failures.sum());
+        }
+    }
+
+    private static void run(int port, String[] itemNumbers, int connections, double seconds, int changesPerRequest, int requestsInFlight,
+                            LongAdder changes, LongAdder failures) throws IOException, InterruptedException {
+        CountDownLatch done = new CountDownLatch(connections);
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        for (int c = 0; c < connections; c++) {
+            StockClient client = new StockClient("localhost", port);
+            SplittableRandom random = new SplittableRandom(c);
+            Thread thread = new Thread(() -> {
+                String[] batch = new String[changesPerRequest];
+                int[] amounts = new int[changesPerRequest];
+                int[] results = new int[changesPerRequest];
+                try (client) {
+                    while (true) {
+                        boolean running = System.nanoTime() < end;
+                        while (running && client.pending() < requestsInFlight) {
+                            for (int i = 0; i < changesPerRequest; i++) {
+                                batch[i] = itemNumbers[random.nextInt(itemNumbers.length)];
+                                amounts[i] = random.nextBoolean() ? 1 : -1;
+                            }
+                            client.send(batch, amounts, changesPerRequest);
+                        }
+                        if (client.pending() == 0)
+                            break;
+                        int count = client.receive(results);
+                        changes.add(count);
+                        for (int i = 0; i < count; i++)
+                            if (results[i] < 0)
+                                failures.increment();
+                    }
+                } catch (IOException e) {
+                    failures.increment();
+                } finally {
+                    done.countDown();
+                }
+            }, "stock-client-" + c);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,135 @@
+package registry.bench;
+
+import registry.CatalogGenerator;
+import registry.ItemRegistry;
+import registry.StockTimeSeries;
+import registry.StockTimeSeries.Metric;
+import registry.TimeSeriesBucket;
+import registry.TimeSeriesRange;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Measures the memory taken by the compressed time series of stock levels and prices, and the cost of range queries and downsampling, and checks the answers.
+ * <br><br> Makes stock changes and occasional price changes to random Items, a jittered 0 to 2 seconds apart by a fixed clock, while the store records them.
+ * Afterwards, every point of one Item read back must equal what was written, and the hourly buckets must match those computed from the raw points.
+ * Usage: <code>TimeSeriesBenchmark [changes] [numItems]</code>
+ */
+public class TimeSeriesBenchmark {
+    private static final int DEFAULT_CHANGES = 5_000_000;
+    private static final int DEFAULT_NUM_ITEMS = 100;
+    private static final int INITIAL_AMOUNT = 1_000_000;
+    private static final int QUERIES = 1_000;
+    private static final long START = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final Duration BUCKET_WIDTH = Duration.ofHours(1);
+
+    public static void main(String[] args) {
+        int numChanges = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CHANGES;
+        int numItems = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUM_ITEMS;
+
+        CatalogGenerator catalog = new CatalogGenerator(1);
+        ItemRegistry registry = new ItemRegistry();
+        catalog.fill(registry, numItems);
+        String[] itemNumbers = new String[numItems];
+        for (int i = 0; i < numItems; i++) {
+            itemNumbers[i] = catalog.itemNumber(i);
+            registry.changeAmountInStorage(itemNumbers[i], INITIAL_AMOUNT - registry.getItem(itemNumbers[i]).getAmountInStorage());
+        }
+
+        long[] now = { START };
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now[0]);
+            }
+        };
+        StockTimeSeries store = new StockTimeSeries(clock);
+        registry.addListener(store, true);
+
+        System.out.println("Java " + Runtime.version() + ", " + numChanges + " changes to " + numItems + " items");
+        SplittableRandom random = new SplittableRandom(1);
+        long[] times = new long[16], amounts = new long[16];
+        int traced = 1;
+        times[0] = START;
+        amounts[0] = INITIAL_AMOUNT;
+        long start = System.nanoTime();
+        for (int c = 0; c < numChanges; c++) {
+            now[0] += random.nextInt(2000);
+            int i = random.nextInt(numItems);
+            if (random.nextInt(1000) == 0) {
+                registry.setItemPrice(itemNumbers[i], 100 + random.nextInt(900));
+                continue;
+            }
+            registry.changeAmountInStorage(itemNumbers[i], random.nextInt(-5, 10));
+            if (i == 0) {
+                if (traced == times.length) {
+                    times = Arrays.copyOf(times, traced * 2);
+                    amounts = Arrays.copyOf(amounts, traced * 2);
+                }
+                times[traced] = now[0];
+                amounts[traced++] = registry.getItem(itemNumbers[0]).getAmountInStorage();
+            }
+        }
+        long recorded = System.nanoTime() - start;
+        System.out.printf("Recorded %,d points in %,d bytes: %.2f bytes per point, %.0f ns per change%n", store.getPointCount(), store.getEncodedBytes(),
+                store.getEncodedBytes() / (double) store.getPointCount(), recorded / (double) numChanges);
+
+        Instant first = Instant.ofEpochMilli(START), last = Instant.ofEpochMilli(now[0] + 1);
+        TimeSeriesRange all = store.getRange(itemNumbers[0], Metric.AMOUNT_IN_STORAGE, first, last);
+        boolean consistent = all.size() == traced;
+        for (int p = 0; consistent && p < traced; p++)
+            consistent = all.getTimeMillis(p) == times[p] && all.getValue(p) == amounts[p];
+
+        TimeSeriesBucket[] buckets = store.getBuckets(itemNumbers[0], Metric.AMOUNT_IN_STORAGE, first, last, BUCKET_WIDTH);
+        long width = BUCKET_WIDTH.toMillis();
+        int p = 0;
+        for (TimeSeriesBucket bucket : buckets) {
+            long bucketStart = bucket.getStart().toEpochMilli();
+            long count = 0, min = Long.MAX_VALUE, max = Long.MIN_VALUE, sum = 0;
+            while (p < traced && times[p] < bucketStart)
+                p++;
+            for (; p < traced && times[p] < bucketStart + width; p++) {
+                count++;
+                min = Math.min(min, amounts[p]);
+                max = Math.max(max, amounts[p]);
+                sum += amounts[p];
+            }
+            consistent &= bucket.getCount() == count && bucket.getMin() == min && bucket.getMax() == max && bucket.getAverage() == sum / (double) count;
+        }
+
+        long span = now[0] - START;
+        long points = 0;
+        start = System.nanoTime();
+        for (int q = 0; q < QUERIES; q++) {
+            long from = START + random.nextLong(span);
+            points += store.getRange(itemNumbers[random.nextInt(numItems)], Metric.AMOUNT_IN_STORAGE, Instant.ofEpochMilli(from),
+                    Instant.ofEpochMilli(from + width)).size();
+        }
+        System.out.printf("One hour ranges: %.1f us per query, %.0f points each%n", (System.nanoTime() - start) / 1e3 / QUERIES, points / (double) QUERIES);
+
+        start = System.nanoTime();
+        for (int q = 0; q < QUERIES; q++)
+            store.getBuckets(itemNumbers[random.nextInt(numItems)], Metric.PRICE_AFTER_DISCOUNT, first, last, Duration.ofDays(1));
+        System.out.printf("Daily buckets over %s: %.1f us per query%n", Duration.ofMillis(span), (System.nanoTime() - start) / 1e3 / QUERIES);
+
+        System.out.println(consistent ? "Every point and bucket read back is consistent" : "INCONSISTENT points or buckets read back");
+        if (!consistent)
+            System.exit(1);
+    }
+}
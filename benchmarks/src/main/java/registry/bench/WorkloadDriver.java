@@ -0,0 +1,318 @@
+package registry.bench;
+
+import registry.CatalogGenerator;
+import registry.ItemRegistry;
+import registry.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A multi-threaded load generator for <code>ItemRegistry</code>, in the style of YCSB. It runs a weighted mix of operations on a generated catalog
+ * and reports throughput and latency percentiles per operation, as JSON.
+ * <br><br> Item popularity follows a Zipfian distribution, so a few items receive most of the traffic, as in a real warehouse.
+ * With a target rate the driver runs open-loop: every operation has an intended start time on a fixed schedule, and its response time is measured from that
+ * intended start, not from when the thread got around to it. A stall therefore shows up in the latency of every operation it delayed, instead of silently
+ * lowering the request rate (coordinated omission). The service time, measured from the actual start, is reported alongside.
+ * Without a target rate the driver runs closed-loop at full speed, where the two are the same.
+ * <br><br> Usage: <code>WorkloadDriver [key=value ...]</code>, with the keys:
+ * <ul>
+ *     <li><code>workload</code>: A preset mix from A to F, modelled on the YCSB core workloads (default B).</li>
+ *     <li><code>mix</code>: A custom mix overriding the preset, e.g. <code>read=80,search=5,increase=5,decrease=5,price=4,register=1</code>.</li>
+ *     <li><code>items</code>: The number of items in the catalog (default 1000000).</li>
+ *     <li><code>threads</code>: The number of client threads (default one per processor).</li>
+ *     <li><code>rate</code>: The target rate in operations per second over all threads, or 0 to run closed-loop (default 0).</li>
+ *     <li><code>warmup</code> and <code>seconds</code>: The length of the discarded warmup and of the measurement (default 5 and 20).</li>
+ *     <li><code>zipf</code>: The skew of the item popularity, where 0 is uniform (default 0.99).</li>
+ *     <li><code>cache</code>: The number of search cache entries (default 256).</li>
+ *     <li><code>seed</code>: The seed of the catalog and the request streams (default 1).</li>
+ *     <li><code>report</code>: A file to write the JSON report to, besides printing it.</li>
+ * </ul>
+ */
+public class WorkloadDriver {
+    private static final String[] SEARCH_TERMS = { "door", "window", "tiles", "planks", "oak", "birch", "chair", "table", "carved", "8-pack", "dark wood", "sofa" };
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+    private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p99_9", "p99_99" };
+
+    enum Operation { READ, SEARCH, INCREASE, DECREASE, PRICE, REGISTER }
+
+    private static final Map<String, String> PRESETS = Map.of(
+            "A", "read=50,increase=25,decrease=25",                      // Update heavy
+            "B", "read=95,increase=2,decrease=2,price=1",                // Read mostly
+            "C", "read=100",                                             // Read only
+            "D", "read=95,register=5",                                   // Read while the catalog grows
+            "E", "search=95,register=5",                                 // Searches instead of scans
+            "F", "read=50,decrease=50"                                   // Read-modify-write: look an item up, then withdraw it
+    );
+
+    /**
+     * The results of one client thread.
+     */
+    private static final class Results {
+        final EnumMap<Operation, LatencyHistogram> response = new EnumMap<>(Operation.class);
+        final EnumMap<Operation, LatencyHistogram> service = new EnumMap<>(Operation.class);
+        final EnumMap<Operation, long[]> errors = new EnumMap<>(Operation.class);
+
+        Results() {
+            for (Operation op : Operation.values()) {
+                response.put(op, new LatencyHistogram());
+                service.put(op, new LatencyHistogram());
+                errors.put(op, new long[1]);
+            }
+        }
+
+        void add(Results other) {
+            for (Operation op : Operation.values()) {
+                response.get(op).add(other.response.get(op));
+                service.get(op).add(other.service.get(op));
+                errors.get(op)[0] += other.errors.get(op)[0];
+            }
+        }
+    }
+
+    /**
+     * Draws item ranks from a Zipfian distribution, using the method of Gray et al. as in YCSB. Rank 0 is the most popular.
+     */
+    static final class Zipfian {
+        private final long n;
+        private final double alpha, zetaN, eta, halfPowTheta;
+
+        Zipfian(long n, double theta) {
+            if (n < 1 || theta < 0 || theta >= 1)
+                throw new IllegalArgumentException("A Zipfian distribution needs at least one item and a skew in [0, 1)");
+            this.n = n;
+            double zeta2 = 1 + Math.pow(0.5, theta);
+            double z = 0;
+            for (long i = 1; i <= n; i++)
+                z += 1 / Math.pow(i, theta);
+            zetaN = z;
+            alpha = 1 / (1 - theta);
+            eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetaN);
+            halfPowTheta = Math.pow(0.5, theta);
+        }
+
+        long next(SplittableRandom random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1)
+                return 0;
+            if (uz < 1 + halfPowTheta)
+                return Math.min(1, n - 1);
+            return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0)
+                throw new IllegalArgumentException("Arguments must be on the form key=value: " + arg);
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        String workload = options.getOrDefault("workload", "B").toUpperCase(Locale.ROOT);
+        String mixSpec = options.containsKey("mix") ? options.get("mix") : PRESETS.get(workload);
+        if (mixSpec == null)
+            throw new IllegalArgumentException("Unknown workload " + workload + ", expected one of A to F");
+        double[] mix = parseMix(mixSpec);
+
+        int numItems = Integer.parseInt(options.getOrDefault("items", "1000000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        double warmup = Double.parseDouble(options.getOrDefault("warmup", "5"));
+        double seconds = Double.parseDouble(options.getOrDefault("seconds", "20"));
+        double zipf = Double.parseDouble(options.getOrDefault("zipf", "0.99"));
+        int cache = Integer.parseInt(options.getOrDefault("cache", "256"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+
+        System.err.println("Generating " + numItems + " items...");
+        CatalogGenerator catalog = new CatalogGenerator(seed);
+        ItemRegistry registry = new ItemRegistry(cache);
+        catalog.fill(registry, numItems);
+        Zipfian popularity = new Zipfian(numItems, zipf);
+        AtomicLong nextNewItem = new AtomicLong(numItems);
+
+        System.err.println("Warming up for " + warmup + " s...");
+        run(registry, catalog, popularity, nextNewItem, mix, threads, rate, warmup, seed);
+        System.err.println("Measuring for " + seconds + " s...");
+        long start = System.nanoTime();
+        Results results = run(registry, catalog, popularity, nextNewItem, mix, threads, rate, seconds, seed + 1);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        String report = report(options, workload, mixSpec, numItems, threads, rate, elapsed, results);
+        System.out.println(report);
+        if (options.containsKey("report"))
+            Files.writeString(Path.of(options.get("report")), report, StandardCharsets.UTF_8);
+    }
+
+    private static double[] parseMix(String spec) {
+        double[] weights = new double[Operation.values().length];
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            if (kv.length != 2)
+                throw new IllegalArgumentException("Malformed operation mix: " + spec);
+            weights[Operation.valueOf(kv[0].trim().toUpperCase(Locale.ROOT)).ordinal()] = Double.parseDouble(kv[1]);
+        }
+        double total = 0;
+        for (int i = 0; i < weights.length; i++)
+            weights[i] = total += weights[i];
+        if (total <= 0)
+            throw new IllegalArgumentException("The operation mix must have a positive weight");
+        for (int i = 0; i < weights.length; i++)
+            weights[i] /= total;
+        return weights;
+    }
+
+    private static Results run(ItemRegistry registry, CatalogGenerator catalog, Zipfian popularity, AtomicLong nextNewItem, double[] mix,
+                               int numThreads, double rate, double seconds, long seed) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(numThreads);
+        CountDownLatch go = new CountDownLatch(1);
+        long[] startTime = new long[1];
+        long duration = (long) (seconds * 1e9);
+        // Every thread takes its share of the target rate, on its own schedule
+        long interval = rate > 0 ? Math.max(1, (long) (1e9 * numThreads / rate)) : 0;
+
+        ArrayList<Results> perThread = new ArrayList<>();
+        ArrayList<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            Results results = new Results();
+            perThread.add(results);
+            SplittableRandom random = new SplittableRandom(seed * 1_000_003 + t);
+            Thread worker = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long end = startTime[0] + duration;
+                long intended = startTime[0];
+                while (true) {
+                    if (interval > 0) {
+                        intended += interval;
+                        long now;
+                        while ((now = System.nanoTime()) < intended)
+                            LockSupport.parkNanos(intended - now);
+                    }
+                    long actual = System.nanoTime();
+                    if (actual >= end)
+                        break;
+
+                    Operation op = pick(mix, random);
+                    boolean ok = execute(op, registry, catalog, popularity, nextNewItem, random);
+                    long done = System.nanoTime();
+
+                    results.service.get(op).record(done - actual);
+                    results.response.get(op).record(done - (interval > 0 ? intended : actual));
+                    if (!ok)
+                        results.errors.get(op)[0]++;
+                }
+            }, "workload-client-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+
+        ready.await();
+        startTime[0] = System.nanoTime();
+        go.countDown();
+        for (Thread worker : workers)
+            worker.join();
+
+        Results total = new Results();
+        for (Results r : perThread)
+            total.add(r);
+        return total;
+    }
+
+    private static Operation pick(double[] cumulative, SplittableRandom random) {
+        double u = random.nextDouble();
+        for (int i = 0; i < cumulative.length; i++)
+            if (u < cumulative[i])
+                return Operation.values()[i];
+        return Operation.values()[cumulative.length - 1];
+    }
+
+    /**
+     * Performs one operation.
+     * @return False if the registry rejected the operation, e.g. a withdrawal of more than is in storage.
+     */
+    private static boolean execute(Operation op, ItemRegistry registry, CatalogGenerator catalog, Zipfian popularity, AtomicLong nextNewItem, SplittableRandom random) {
+        try {
+            switch (op) {
+                case READ -> registry.getItem(catalog.itemNumber(popularity.next(random)));
+                case SEARCH -> registry.searchByDescription(SEARCH_TERMS[random.nextInt(SEARCH_TERMS.length)]);
+                case INCREASE -> registry.increaseAmountInStorage(catalog.itemNumber(popularity.next(random)), 1 + random.nextInt(10));
+                case DECREASE -> registry.decreaseAmountInStorage(catalog.itemNumber(popularity.next(random)), 1 + random.nextInt(3));
+                case PRICE -> registry.setItemPrice(catalog.itemNumber(popularity.next(random)), 10 + random.nextInt(10_000));
+                case REGISTER -> {
+                    var item = catalog.generate(nextNewItem.getAndIncrement());
+                    registry.registerNewItem(item.getItemNumber(), item.getDescription(), item.getAmountInStorage(), item.getPrice(), item.getCategory(),
+                            item.getBrand(), item.getWeight(), item.getWidth(), item.getLength(), item.getColor());
+                }
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String report(Map<String, String> options, String workload, String mix, int numItems, int threads, double rate, double elapsed, Results results) {
+        StringBuilder json = new StringBuilder();
+        long totalOps = 0;
+        for (Operation op : Operation.values())
+            totalOps += results.service.get(op).getCount();
+
+        json.append("{\n");
+        json.append("  \"workload\": \"").append(options.containsKey("mix") ? "custom" : workload).append("\",\n");
+        json.append("  \"mix\": \"").append(mix).append("\",\n");
+        json.append("  \"items\": ").append(numItems).append(",\n");
+        json.append("  \"threads\": ").append(threads).append(",\n");
+        json.append("  \"targetRate\": ").append(format(rate)).append(",\n");
+        json.append("  \"openLoop\": ").append(rate > 0).append(",\n");
+        json.append("  \"seconds\": ").append(format(elapsed)).append(",\n");
+        json.append("  \"operations\": ").append(totalOps).append(",\n");
+        json.append("  \"throughput\": ").append(format(totalOps / elapsed)).append(",\n");
+        json.append("  \"results\": {");
+        String separator = "\n";
+        for (Operation op : Operation.values()) {
+            LatencyHistogram response = results.response.get(op);
+            if (response.getCount() == 0)
+                continue;
+            json.append(separator).append("    \"").append(op.name().toLowerCase(Locale.ROOT)).append("\": {\n");
+            json.append("      \"operations\": ").append(response.getCount()).append(",\n");
+            json.append("      \"errors\": ").append(results.errors.get(op)[0]).append(",\n");
+            json.append("      \"throughput\": ").append(format(response.getCount() / elapsed)).append(",\n");
+            json.append("      \"responseTimeMicros\": ").append(latencies(response)).append(",\n");
+            json.append("      \"serviceTimeMicros\": ").append(latencies(results.service.get(op))).append("\n");
+            json.append("    }");
+            separator = ",\n";
+        }
+        json.append("\n  }\n}");
+        return json.toString();
+    }
+
+    private static String latencies(LatencyHistogram h) {
+        StringBuilder json = new StringBuilder("{ \"mean\": ").append(format(h.getMean() / 1e3));
+        for (int i = 0; i < PERCENTILES.length; i++)
+            json.append(", \"").append(PERCENTILE_NAMES[i]).append("\": ").append(format(h.getValueAtPercentile(PERCENTILES[i]) / 1e3));
+        return json.append(", \"max\": ").append(format(h.getMax() / 1e3)).append(" }").toString();
+    }
+
+    private static String format(double d) {
+        if (d == Math.rint(d) && Math.abs(d) < 1e15)
+            return Long.toString((long) d);
+        return String.format(Locale.ROOT, "%.3f", d);
+    }
+}
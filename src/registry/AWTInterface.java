@@ -15,6 +15,8 @@ public class AWTInterface implements ActionListener, ListSelectionListener, Docu
     private static final String BUTTON_TEXT_EDIT = "edit";
     private static final String BUTTON_TEXT_ADD = "Add";
     private static final String BUTTON_TEXT_WITHDRAW = "Withdraw";
+    private static final String BUTTON_TEXT_FORECAST = "Running out first";
+    private static final int NUM_FORECAST_ENTRIES = 20;
 
     private final JFrame frame = new JFrame("Item Registry");
     private final ItemRegistry registry;
@@ -42,6 +44,7 @@ public class AWTInterface implements ActionListener, ListSelectionListener, Docu
 
     private final JPanel selectionPanel = new JPanel();
     private final JTextField searchField = new JTextField("");
+    private final JLabel searchHint = new JLabel("");
     private final JRadioButton searchByItemNumber = new JRadioButton("Item number");
     private final JRadioButton searchByDescription = new JRadioButton("Description");
     private final ButtonGroup searchByButtonGroup = new ButtonGroup();
@@ -49,6 +52,7 @@ public class AWTInterface implements ActionListener, ListSelectionListener, Docu
     private final JButton b_printAll = new JButton(BUTTON_TEXT_PRINT_ALL);
     private final JButton b_delete = new JButton(BUTTON_TEXT_DELETE);
     private final JButton b_new = new JButton(BUTTON_TEXT_NEW);
+    private final JButton b_forecast = new JButton(BUTTON_TEXT_FORECAST);
 
 
 
@@ -90,6 +94,7 @@ public class AWTInterface implements ActionListener, ListSelectionListener, Docu
         b_printAll.addActionListener(this);
         b_delete.addActionListener(this);
         b_new.addActionListener(this);
+        b_forecast.addActionListener(this);
     }
 
     /**
@@ -134,10 +139,17 @@ public class AWTInterface implements ActionListener, ListSelectionListener, Docu
         searchByItemNumber_c.weighty = 0;
         searchByItemNumber_c.gridx = 2;
         searchByItemNumber_c.gridy = 0;
+        GridBagConstraints searchHint_c = new GridBagConstraints();
+        searchHint_c.fill = GridBagConstraints.HORIZONTAL;
+        searchHint_c.weightx = 1;
+        searchHint_c.weighty = 0;
+        searchHint_c.gridx = 0;
+        searchHint_c.gridy = 1;
+        searchHint_c.gridwidth = 3;
         GridBagConstraints list_c = new GridBagConstraints();
         list_c.fill = GridBagConstraints.BOTH;
         list_c.gridx = 0;
-        list_c.gridy = 1;
+        list_c.gridy = 2;
         list_c.gridwidth = 3;
         list_c.gridheight = 1;
         list_c.weightx = 0;
@@ -145,7 +157,7 @@ public class AWTInterface implements ActionListener, ListSelectionListener, Docu
         GridBagConstraints printAll_c = new GridBagConstraints();
         printAll_c.fill = GridBagConstraints.HORIZONTAL;
         printAll_c.gridx = 2;
-        printAll_c.gridy = 2;
+        printAll_c.gridy = 3;
         printAll_c.gridwidth = 1;
         printAll_c.gridheight = 1;
         printAll_c.weightx = 0;
@@ -154,16 +166,22 @@ public class AWTInterface implements ActionListener, ListSelectionListener, Docu
         delete_c.gridx = 1;
         GridBagConstraints new_c = (GridBagConstraints) printAll_c.clone();
         new_c.gridx = 0;
+        GridBagConstraints forecast_c = (GridBagConstraints) printAll_c.clone();
+        forecast_c.gridx = 0;
+        forecast_c.gridy = 4;
+        forecast_c.gridwidth = 3;
 
         // Add all components to the selection panel
         selectionPanel.setLayout(selectionLayout);
         selectionPanel.add(searchField, searchField_c);
         selectionPanel.add(searchByDescription, searchByDescription_c);
         selectionPanel.add(searchByItemNumber, searchByItemNumber_c);
+        selectionPanel.add(searchHint, searchHint_c);
         selectionPanel.add(sp, list_c);
         selectionPanel.add(b_printAll, printAll_c);
         selectionPanel.add(b_delete, delete_c);
         selectionPanel.add(b_new, new_c);
+        selectionPanel.add(b_forecast, forecast_c);
     }
 
     /**
@@ -366,6 +384,25 @@ public class AWTInterface implements ActionListener, ListSelectionListener, Docu
         updateList();
     }
 
+    private void buttonForecast() {
+        StringBuilder text = new StringBuilder();
+        if (getSelectedItem() != null) {
+            ConsumptionEstimate selected = registry.getConsumptionForecast().getEstimate(getSelectedItem().getItemNumber());
+            if (selected != null)
+                text.append("Selected: ").append(selected).append("\n\n");
+        }
+        ConsumptionEstimate[] urgent = registry.getConsumptionForecast().getMostUrgent(NUM_FORECAST_ENTRIES);
+        if (urgent.length == 0)
+            text.append("No withdrawals registered yet");
+        for (ConsumptionEstimate estimate : urgent)
+            text.append(estimate).append('\n');
+
+        JTextArea area = new JTextArea(text.toString());
+        area.setEditable(false);
+        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JOptionPane.showMessageDialog(frame, new JScrollPane(area), "Items running out first", JOptionPane.PLAIN_MESSAGE);
+    }
+
     private void updateList() {
         int index = list.getSelectedIndex();
         list.setListData(registry.getAll());
@@ -448,6 +485,8 @@ public class AWTInterface implements ActionListener, ListSelectionListener, Docu
                 buttonAdd();
             else if (b.equals(b_withdraw))
                 buttonWithdraw();
+            else if (b.equals(b_forecast))
+                buttonForecast();
         }
 
         if (e.getSource() instanceof JRadioButton rb)
@@ -481,6 +520,7 @@ public class AWTInterface implements ActionListener, ListSelectionListener, Docu
     private void textUpdated(DocumentEvent e) {
         // If this event was triggered by the search field
         if (e.getDocument().equals(searchField.getDocument())) {
+            searchHint.setText("");
             if (searchField.getText() == null || searchField.getText().equals("")) {
                 list.setListData(registry.getAll());
                 return;
@@ -499,6 +539,13 @@ public class AWTInterface implements ActionListener, ListSelectionListener, Docu
                 return;
             }
 
+            // If no item number contains the search term, suggest item numbers close to it instead
+            if (results.length == 0 && searchByItemNumber.isSelected()) {
+                results = registry.suggestItemNumbers(searchField.getText());
+                if (results.length > 0)
+                    searchHint.setText("No results. Did you mean...");
+            }
+
             // Extract the all resulting Items from the registry
             Item[] hits = registry.getItems(results);
 
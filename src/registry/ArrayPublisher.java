@@ -0,0 +1,108 @@
+package registry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A <code>Flow.Publisher</code> of the elements of an array computed asynchronously, used by <code>AsyncItemRegistry</code> to publish search results.
+ * <br><br> Every subscription asks the source for the array, and publishes its elements in order as they are requested, on the executor of the publisher.
+ * A null array is published as an empty one, and a failed computation is published as an error.
+ * @param <T> The type of the elements.
+ */
+final class ArrayPublisher<T> implements Flow.Publisher<T> {
+    private final Supplier<CompletableFuture<T[]>> source;
+    private final Executor executor;
+
+    ArrayPublisher(Supplier<CompletableFuture<T[]>> source, Executor executor) {
+        this.source = source;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null)
+            throw new NullPointerException("The subscriber is null");
+        ArraySubscription<T> subscription = new ArraySubscription<>(subscriber, executor);
+        subscriber.onSubscribe(subscription);
+        source.get().whenComplete(subscription::arrived);
+    }
+
+    private static final class ArraySubscription<T> implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Executor executor;
+        private final AtomicLong demand = new AtomicLong();
+        /**
+         * The number of times the subscription has been signalled while publishing. Only the signal raising it from 0 publishes, and it publishes until it is back at 0.
+         */
+        private final AtomicInteger signals = new AtomicInteger();
+        private volatile T[] items = null;
+        private volatile Throwable error = null;
+        private volatile boolean cancelled = false;
+        // Only accessed while publishing
+        private int index = 0;
+        private boolean done = false;
+
+        ArraySubscription(Flow.Subscriber<? super T> subscriber, Executor executor) {
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0)
+                error = new IllegalArgumentException("The number of requested elements must be positive, not " + n);
+            else
+                demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @SuppressWarnings("unchecked")
+        void arrived(T[] array, Throwable e) {
+            if (e != null)
+                error = e;
+            else
+                items = array != null ? array : (T[]) new Object[0];
+            signal();
+        }
+
+        private void signal() {
+            if (signals.getAndIncrement() == 0)
+                executor.execute(this::publish);
+        }
+
+        private void publish() {
+            int missed = 1;
+            do {
+                if (!done && !cancelled) {
+                    T[] array = items;
+                    if (error != null) {
+                        done = true;
+                        subscriber.onError(error);
+                    } else if (array != null) {
+                        long requested = demand.get();
+                        long emitted = 0;
+                        while (emitted < requested && index < array.length && !cancelled) {
+                            subscriber.onNext(array[index++]);
+                            emitted++;
+                        }
+                        if (emitted != 0 && requested != Long.MAX_VALUE)
+                            demand.addAndGet(-emitted);
+                        if (index == array.length && !cancelled) {
+                            done = true;
+                            subscriber.onComplete();
+                        }
+                    }
+                }
+            } while ((missed = signals.addAndGet(-missed)) != 0);
+        }
+    }
+}
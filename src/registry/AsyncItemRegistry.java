@@ -0,0 +1,292 @@
+package registry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A non-blocking view of an <code>ItemRegistry</code>, for callers which must not wait on its lock. Every operation runs on an executor of this view,
+ * and returns a <code>CompletableFuture</code> of a <code>RegistryResult</code>, or a <code>Flow.Publisher</code> for searches.
+ * <br><br> Expected failures, such as a missing item number or a withdrawal larger than the amount in storage, complete the future normally with a failed result,
+ * so that no exception is thrown or caught for them. Futures only complete exceptionally for unexpected errors, or once this view has been closed.
+ * <br><br> Identical reads which are running at the same time are coalesced: only the first of them reads the registry, and the rest share its result.
+ * A read never shares the result of a read started before a write through this view completed, so a caller which waits for its write sees the write.
+ * Writes to the same item number are applied one at a time in the order they were submitted, while writes to different item numbers run concurrently.
+ * Changes made to the registry directly, rather than through this view, are not ordered with the writes of this view.
+ */
+public class AsyncItemRegistry implements AutoCloseable {
+    private static final long CLOSE_TIMEOUT_SECONDS = 1;
+
+    private final ItemRegistry registry;
+    private final ExecutorService executor;
+    /**
+     * The reads in progress, by their kind, arguments and the number of writes completed when they started.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<?>> reads = new ConcurrentHashMap<>();
+    /**
+     * The last write submitted for each item number with writes in progress, completed once the write has been applied.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> writes = new ConcurrentHashMap<>();
+    private final AtomicLong completedWrites = new AtomicLong();
+
+    /**
+     * Creates a non-blocking view of a registry, with an executor of its own: a virtual thread per operation on Java 21 and later, or a pool of platform threads otherwise.
+     * @param registry The registry to access.
+     */
+    public AsyncItemRegistry(ItemRegistry registry) {
+        this.registry = registry;
+        executor = RegistryServer.newRequestExecutor("async-registry-");
+    }
+
+    /**
+     * Returns the registry accessed by this view.
+     * @return The registry accessed by this view.
+     */
+    public ItemRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Looks up an Item.
+     * @param itemNumber The item number of the requested Item.
+     * @return A copy of the Item, or <code>NO_SUCH_ITEM</code>.
+     */
+    public CompletableFuture<RegistryResult<Item>> getItem(String itemNumber) {
+        return read("item\u0000" + itemNumber, () -> {
+            Item item = registry.findItem(itemNumber);
+            return item != null ? RegistryResult.ok(item) : RegistryResult.<Item>failure(RegistryResult.Status.NO_SUCH_ITEM, "No such item: " + itemNumber);
+        }).thenApply(result -> result.map(Item::clone)); // Coalesced reads share an Item, so every caller gets a copy of its own
+    }
+
+    /**
+     * Publishes the item numbers of every Item whose description contains a search term, ignoring case, see <code>ItemRegistry.searchByDescription</code>.
+     * The term is matched as a whole, so a term of several words only matches descriptions containing those words next to each other, in that order.
+     * @param searchTerm The text to search for.
+     * @return A publisher of the item numbers found, which runs the search for every subscriber.
+     */
+    public Flow.Publisher<String> searchByDescription(String searchTerm) {
+        return search("description\u0000" + searchTerm, () -> registry.searchByDescription(searchTerm));
+    }
+
+    /**
+     * Publishes the item numbers of every Item of a brand, see <code>ItemRegistry.searchByBrand</code>.
+     * @param brand The brand to search for.
+     * @return A publisher of the item numbers found, which runs the search for every subscriber.
+     */
+    public Flow.Publisher<String> searchByBrand(String brand) {
+        return search("brand\u0000" + brand, () -> registry.searchByBrand(brand));
+    }
+
+    /**
+     * Publishes the item numbers of every Item of a color, see <code>ItemRegistry.searchByColor</code>.
+     * @param color The color to search for.
+     * @return A publisher of the item numbers found, which runs the search for every subscriber.
+     */
+    public Flow.Publisher<String> searchByColor(String color) {
+        return search("color\u0000" + color, () -> registry.searchByColor(color));
+    }
+
+    /**
+     * Publishes every item number containing a search term, see <code>ItemRegistry.searchByItemNumber</code>.
+     * @param searchTerm The term to search for.
+     * @return A publisher of the item numbers found, which runs the search for every subscriber.
+     */
+    public Flow.Publisher<String> searchByItemNumber(String searchTerm) {
+        return search("itemNumber\u0000" + searchTerm, () -> registry.searchByItemNumber(searchTerm));
+    }
+
+    /**
+     * Publishes the item numbers of the Items most relevant to a query, best first, see <code>ItemRegistry.searchByRelevance</code>.
+     * @param query The words to search for.
+     * @param matchAllWords Whether only Items matching every word of the query are found.
+     * @param maxResults The maximum number of item numbers to publish.
+     * @return A publisher of the item numbers found, which runs the search for every subscriber.
+     */
+    public Flow.Publisher<String> searchByRelevance(String query, boolean matchAllWords, int maxResults) {
+        return search("relevance\u0000" + matchAllWords + '\u0000' + maxResults + '\u0000' + query, () -> registry.searchByRelevance(query, matchAllWords, maxResults));
+    }
+
+    /**
+     * Changes the amount of an item in storage.
+     * @param itemNumber The item number of the Item to have its amount changed.
+     * @param amount The amount to add (positive values) or withdraw (negative values).
+     * @return The amount in storage after the change, or <code>NO_SUCH_ITEM</code> or <code>INSUFFICIENT_AMOUNT</code>.
+     */
+    public CompletableFuture<RegistryResult<Integer>> changeAmountInStorage(String itemNumber, int amount) {
+        return write(itemNumber, () -> {
+            int[] result = new int[1];
+            registry.changeAmountsInStorage(new String[]{itemNumber}, new int[]{amount}, 1, result);
+            if (result[0] == ItemRegistry.NO_SUCH_ITEM)
+                return RegistryResult.failure(RegistryResult.Status.NO_SUCH_ITEM, "No such item: " + itemNumber);
+            if (result[0] == ItemRegistry.INSUFFICIENT_AMOUNT)
+                return RegistryResult.failure(RegistryResult.Status.INSUFFICIENT_AMOUNT, "Cannot change the amount in storage of " + itemNumber + " by " + amount);
+            return RegistryResult.ok(result[0]);
+        });
+    }
+
+    /**
+     * Registers a new Item.
+     * @param item The Item to register. A copy of it is registered, so later changes to it do not affect the registry.
+     * @return An empty result, <code>ITEM_NUMBER_TAKEN</code>, or <code>INVALID_ARGUMENT</code>.
+     */
+    public CompletableFuture<RegistryResult<Void>> registerNewItem(Item item) {
+        return write(item.getItemNumber(), () -> {
+            if (registry.itemNumberTaken(item.getItemNumber()))
+                return RegistryResult.failure(RegistryResult.Status.ITEM_NUMBER_TAKEN, "The item number is taken: " + item.getItemNumber());
+            registry.registerNewItems(new Item[]{item});
+            return RegistryResult.ok();
+        });
+    }
+
+    /**
+     * Deletes an Item.
+     * @param itemNumber The item number of the Item to delete.
+     * @return An empty result, or <code>NO_SUCH_ITEM</code>.
+     */
+    public CompletableFuture<RegistryResult<Void>> deleteItem(String itemNumber) {
+        return write(itemNumber, () -> registry.deleteItemEntry(itemNumber) ? RegistryResult.ok()
+                : RegistryResult.failure(RegistryResult.Status.NO_SUCH_ITEM, "No such item: " + itemNumber));
+    }
+
+    /**
+     * Sets the price of an Item.
+     * @param itemNumber The item number of the Item.
+     * @param newPrice The new price.
+     * @return An empty result, <code>NO_SUCH_ITEM</code>, or <code>INVALID_ARGUMENT</code>.
+     */
+    public CompletableFuture<RegistryResult<Void>> setItemPrice(String itemNumber, int newPrice) {
+        return write(itemNumber, () -> {
+            if (!registry.itemNumberTaken(itemNumber))
+                return RegistryResult.failure(RegistryResult.Status.NO_SUCH_ITEM, "No such item: " + itemNumber);
+            registry.setItemPrice(itemNumber, newPrice);
+            return RegistryResult.ok();
+        });
+    }
+
+    /**
+     * Sets the discount of an Item.
+     * @param itemNumber The item number of the Item.
+     * @param percentOff The new discount, in percent.
+     * @return An empty result, <code>NO_SUCH_ITEM</code>, or <code>INVALID_ARGUMENT</code>.
+     */
+    public CompletableFuture<RegistryResult<Void>> setItemDiscount(String itemNumber, float percentOff) {
+        return write(itemNumber, () -> {
+            if (!registry.itemNumberTaken(itemNumber))
+                return RegistryResult.failure(RegistryResult.Status.NO_SUCH_ITEM, "No such item: " + itemNumber);
+            registry.setItemDiscount(itemNumber, percentOff);
+            return RegistryResult.ok();
+        });
+    }
+
+    /**
+     * Sets the description of an Item.
+     * @param itemNumber The item number of the Item.
+     * @param description The new description.
+     * @return An empty result, <code>NO_SUCH_ITEM</code>, or <code>INVALID_ARGUMENT</code>.
+     */
+    public CompletableFuture<RegistryResult<Void>> setItemDescription(String itemNumber, String description) {
+        return write(itemNumber, () -> {
+            if (!registry.itemNumberTaken(itemNumber))
+                return RegistryResult.failure(RegistryResult.Status.NO_SUCH_ITEM, "No such item: " + itemNumber);
+            registry.setItemDescription(itemNumber, description);
+            return RegistryResult.ok();
+        });
+    }
+
+    /**
+     * Stops accepting operations, and waits a second for the operations in progress to complete. Operations submitted afterwards complete exceptionally.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Flow.Publisher<String> search(String key, Supplier<String[]> search) {
+        return new ArrayPublisher<>(() -> read(key, search), executor);
+    }
+
+    /**
+     * Runs a read on the executor, unless an identical read started since the last completed write is still running, in which case its result is shared.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> read(String key, Supplier<T> read) {
+        String versionedKey = completedWrites.get() + "\u0000" + key;
+        CompletableFuture<?> running = reads.get(versionedKey);
+        if (running != null)
+            return (CompletableFuture<T>) running;
+        CompletableFuture<T> future = new CompletableFuture<>();
+        running = reads.putIfAbsent(versionedKey, future);
+        if (running != null)
+            return (CompletableFuture<T>) running;
+
+        submit(() -> {
+            try {
+                T result = read.get();
+                reads.remove(versionedKey, future);
+                future.complete(result);
+            } catch (Throwable e) {
+                reads.remove(versionedKey, future);
+                future.completeExceptionally(e);
+            }
+        }, () -> reads.remove(versionedKey, future), future);
+        return future;
+    }
+
+    /**
+     * Runs a write on the executor once every earlier write to the same item number has been applied.
+     * An <code>IllegalArgumentException</code> from the registry is reported as <code>INVALID_ARGUMENT</code>.
+     */
+    private <T> CompletableFuture<RegistryResult<T>> write(String itemNumber, Supplier<RegistryResult<T>> write) {
+        CompletableFuture<RegistryResult<T>> future = new CompletableFuture<>();
+        CompletableFuture<Void> applied = new CompletableFuture<>();
+        Runnable release = () -> {
+            writes.remove(itemNumber, applied);
+            applied.complete(null);
+        };
+        Runnable task = () -> {
+            RegistryResult<T> result;
+            try {
+                result = write.get();
+            } catch (IllegalArgumentException e) {
+                result = RegistryResult.failure(RegistryResult.Status.INVALID_ARGUMENT, e.getMessage());
+            } catch (Throwable e) {
+                completedWrites.incrementAndGet();
+                release.run();
+                future.completeExceptionally(e);
+                return;
+            }
+            completedWrites.incrementAndGet();
+            release.run();
+            future.complete(result);
+        };
+
+        CompletableFuture<Void> previous = writes.put(itemNumber, applied);
+        if (previous == null)
+            submit(task, release, future);
+        else
+            previous.whenComplete((r, e) -> submit(task, release, future));
+        return future;
+    }
+
+    /**
+     * Submits a task to the executor. If the executor has been closed, cleans up after the task and fails its future instead.
+     */
+    private void submit(Runnable task, Runnable cleanup, CompletableFuture<?> future) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            cleanup.run();
+            future.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package registry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for registering a batch of Items with <code>ItemRegistry.registerNewItems(...)</code>. Bulk loads are rare and long, so every one is recorded by default.
+ */
+@Name("registry.BulkLoad")
+@Label("Registry Bulk Load")
+@Category({ "Warehouse Registry", "Mutation" })
+@Description("Registering a batch of Items at once")
+@Threshold("0 ms")
+@StackTrace(false)
+final class BulkLoadEvent extends jdk.jfr.Event {
+    @Label("Items")
+    int items;
+
+    @Label("Registry Size")
+    @Description("The number of Items in the registry after the load")
+    int registrySize;
+}
@@ -0,0 +1,34 @@
+package registry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for changing the prices or discounts of many Items at once with <code>ItemRegistry.repriceAll(...)</code> or <code>discountAll(...)</code>,
+ * or undoing such a change. Recorded once per bulk change rather than once per Item, and every one is recorded by default.
+ */
+@Name("registry.BulkReprice")
+@Label("Registry Bulk Reprice")
+@Category({ "Warehouse Registry", "Mutation" })
+@Description("Changing the prices or discounts of many Items at once")
+@Threshold("0 ms")
+@StackTrace(false)
+final class BulkRepriceEvent extends jdk.jfr.Event {
+    @Label("Field")
+    @Description("The field that was changed, price or discount, or undo")
+    String field;
+
+    @Label("Items Scanned")
+    int scanned;
+
+    @Label("Items Changed")
+    int changed;
+
+    @Label("Partitions")
+    @Description("The number of partitions the Items were scanned in, in parallel")
+    int partitions;
+}
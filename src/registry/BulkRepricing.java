@@ -0,0 +1,82 @@
+package registry;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The record of a change to the prices or discounts of many Items made by <code>ItemRegistry.repriceAll</code> or <code>discountAll</code>,
+ * holding the previous values of every Item changed so that the change can be undone.
+ */
+public final class BulkRepricing {
+    private final ItemRegistry registry;
+    private final String field;
+    private final String[] itemNumbers;
+    private final int[] previousPrices;
+    private final float[] previousDiscounts;
+    private final int[] prices;
+    private final float[] discounts;
+    private final AtomicBoolean undone = new AtomicBoolean();
+
+    /**
+     * @param field The field changed, <code>MutationEvent.PRICE</code> or <code>MutationEvent.DISCOUNT</code>.
+     */
+    BulkRepricing(ItemRegistry registry, String field, String[] itemNumbers, int[] previousPrices, float[] previousDiscounts, int[] prices, float[] discounts) {
+        this.registry = registry;
+        this.field = field;
+        this.itemNumbers = itemNumbers;
+        this.previousPrices = previousPrices;
+        this.previousDiscounts = previousDiscounts;
+        this.prices = prices;
+        this.discounts = discounts;
+    }
+
+    /**
+     * Returns the number of Items changed.
+     * @return The number of Items changed.
+     */
+    public int size() {
+        return itemNumbers.length;
+    }
+
+    /**
+     * Returns the item numbers of the Items changed.
+     * @return A copy of the item numbers of the Items changed.
+     */
+    public String[] getItemNumbers() {
+        return itemNumbers.clone();
+    }
+
+    /**
+     * Returns the prices of the Items before the change, one to one with <code>getItemNumbers</code>.
+     * @return A copy of the previous prices.
+     */
+    public int[] getPreviousPrices() {
+        return previousPrices.clone();
+    }
+
+    /**
+     * Returns the discounts of the Items before the change, one to one with <code>getItemNumbers</code>.
+     * @return A copy of the previous discounts, in percent.
+     */
+    public float[] getPreviousDiscounts() {
+        return previousDiscounts.clone();
+    }
+
+    /**
+     * Returns whether this change has been undone.
+     * @return True if <code>undo</code> has been called.
+     */
+    public boolean isUndone() {
+        return undone.get();
+    }
+
+    /**
+     * Restores the previous prices, or the previous discounts, of the Items changed, atomically from a reader's point of view.
+     * Items deleted since, or whose price or discount has been changed again since, are left as they are.
+     * @return The number of Items restored, or 0 if this change has already been undone.
+     */
+    public int undo() {
+        if (!undone.compareAndSet(false, true))
+            return 0;
+        return registry.undoRepricing(field, itemNumbers, prices, discounts, previousPrices, previousDiscounts);
+    }
+}
@@ -0,0 +1,351 @@
+package registry;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Starts and ends discount campaigns on the Items of a registry at given times, see <code>DiscountCampaign</code>.
+ * <br><br> The starts and ends of every campaign are kept in a heap ordered by time, by the given clock. <code>runDue</code> takes every start and end due
+ * at the time of the clock off the heap, works out the discount every Item they touch ends up with, and sets all of them with one change to the registry,
+ * so that a campaign starting on 50 000 Items costs one scan selecting them and one pass setting their discounts, seen by readers all at once.
+ * <br><br> When the last campaign on an Item ends, the Item gets back the discount it had before the first one started, unless its discount has been changed
+ * by hand since the campaigns last set it, in which case that discount is kept.
+ * <br><br> <code>start</code> runs <code>runDue</code> on a background thread whenever a start or end is due. With a controllable clock, call
+ * <code>runDue</code> after moving the clock instead, which makes campaigns testable without waiting for them.
+ */
+public class CampaignScheduler implements AutoCloseable {
+    private final ItemRegistry registry;
+    private final Clock clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition transitionsChanged = lock.newCondition();
+    private final PriorityQueue<Transition> transitions = new PriorityQueue<>();
+    private final ArrayList<DiscountCampaign> scheduled = new ArrayList<>();
+    private final ArrayList<DiscountCampaign> active = new ArrayList<>();
+    private final HashMap<String, Coverage> coverage = new HashMap<>();
+    private long sequence = 0;
+    private Thread thread = null;
+    private boolean closed = false;
+
+    /**
+     * A campaign starting or ending at a time, in milliseconds since the epoch. Ends come before starts at the same time.
+     */
+    private record Transition(long time, boolean start, DiscountCampaign campaign) implements Comparable<Transition> {
+        @Override
+        public int compareTo(Transition other) {
+            if (time != other.time)
+                return Long.compare(time, other.time);
+            if (start != other.start)
+                return start ? 1 : -1;
+            return Long.compare(campaign.sequence, other.campaign.sequence);
+        }
+    }
+
+    /**
+     * The campaigns active on one Item, the discount it had before them, and the discount they last set.
+     */
+    private static final class Coverage {
+        final ArrayList<DiscountCampaign> campaigns = new ArrayList<>(2);
+        float base = Float.NaN;
+        float applied = Float.NaN;
+
+        DiscountCampaign top() {
+            DiscountCampaign top = null;
+            for (DiscountCampaign c : campaigns)
+                if (top == null || c.precedes(top))
+                    top = c;
+            return top;
+        }
+    }
+
+    /**
+     * Creates a scheduler for a registry, timing campaigns by the system clock. Call <code>start</code> to have campaigns start and end on their own.
+     * @param registry The registry holding the Items of the campaigns.
+     */
+    public CampaignScheduler(ItemRegistry registry) {
+        this(registry, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a scheduler for a registry.
+     * @param registry The registry holding the Items of the campaigns.
+     * @param clock The clock deciding when campaigns are due.
+     */
+    public CampaignScheduler(ItemRegistry registry, Clock clock) {
+        if (registry == null || clock == null)
+            throw new IllegalArgumentException("Parameters 'registry' and 'clock' cannot be null");
+        this.registry = registry;
+        this.clock = clock;
+    }
+
+    /**
+     * Schedules a discount campaign. A campaign starting in the past starts at the next <code>runDue</code>.
+     * @param name The name of the campaign.
+     * @param filter Selects the Items of the campaign when it starts, see <code>ItemFilter</code>. Runs on several threads at once, and must not call back into the registry.
+     * @param percentOff The discount, in percentage between 0 and 100.
+     * @param start When the campaign starts.
+     * @param end When the campaign ends, after the start.
+     * @param priority The priority of the campaign over others on the same Items. The highest one wins.
+     * @return The campaign.
+     */
+    public DiscountCampaign schedule(String name, Predicate<Item> filter, float percentOff, Instant start, Instant end, int priority) {
+        if (name == null || filter == null || start == null || end == null)
+            throw new IllegalArgumentException("Parameters 'name', 'filter', 'start' and 'end' cannot be null");
+        if (!(percentOff >= 0 && percentOff <= 100))
+            throw new IllegalArgumentException("percentOff must be a positive value between 0 and 100");
+        if (!end.isAfter(start))
+            throw new IllegalArgumentException("A campaign must end after it starts");
+        lock.lock();
+        try {
+            DiscountCampaign campaign = new DiscountCampaign(name, filter, percentOff, start, end, priority, sequence++);
+            transitions.add(new Transition(start.toEpochMilli(), true, campaign));
+            transitions.add(new Transition(end.toEpochMilli(), false, campaign));
+            scheduled.add(campaign);
+            transitionsChanged.signalAll();
+            return campaign;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels a campaign. A campaign which has started ends at once.
+     * @param campaign The campaign to cancel.
+     * @return True if the campaign was cancelled, or false if it had already ended or been cancelled.
+     */
+    public boolean cancel(DiscountCampaign campaign) {
+        lock.lock();
+        try {
+            if (!transitions.removeIf(t -> t.campaign() == campaign))
+                return false;
+            LinkedHashMap<String, Coverage> touched = new LinkedHashMap<>();
+            if (campaign.getState() == DiscountCampaign.State.ACTIVE)
+                end(campaign, touched);
+            scheduled.remove(campaign);
+            campaign.setState(DiscountCampaign.State.CANCELLED);
+            apply(touched);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts and ends every campaign due at the time of the clock, setting the resulting discounts with one change to the registry.
+     * If the filter of a campaign throws, that campaign is cancelled, and the exception is thrown once the others have been applied.
+     * @return The number of Items whose discount was set.
+     */
+    public int runDue() {
+        lock.lock();
+        try {
+            long now = clock.millis();
+            LinkedHashMap<String, Coverage> touched = new LinkedHashMap<>();
+            RuntimeException failure = null;
+            Transition t;
+            while ((t = transitions.peek()) != null && t.time() <= now) {
+                transitions.poll();
+                DiscountCampaign campaign = t.campaign();
+                if (!t.start()) {
+                    end(campaign, touched);
+                    campaign.setState(DiscountCampaign.State.ENDED);
+                    continue;
+                }
+
+                scheduled.remove(campaign);
+                String[] itemNumbers;
+                try {
+                    itemNumbers = registry.selectItemNumbers(campaign.getFilter());
+                } catch (RuntimeException e) {
+                    transitions.removeIf(other -> other.campaign() == campaign);
+                    campaign.setState(DiscountCampaign.State.CANCELLED);
+                    if (failure == null)
+                        failure = e;
+                    continue;
+                }
+                campaign.setItemNumbers(itemNumbers);
+                campaign.setState(DiscountCampaign.State.ACTIVE);
+                active.add(campaign);
+                for (String itemNumber : itemNumbers) {
+                    Coverage c = coverage.computeIfAbsent(itemNumber, n -> new Coverage());
+                    c.campaigns.add(campaign);
+                    touched.put(itemNumber, c);
+                }
+            }
+            int changed = apply(touched);
+            if (failure != null)
+                throw failure;
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns when the next campaign starts or ends.
+     * @return The time of the next start or end, or null if no campaign is scheduled or active.
+     */
+    public Instant getNextTransition() {
+        lock.lock();
+        try {
+            Transition next = transitions.peek();
+            return next != null ? Instant.ofEpochMilli(next.time()) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the campaigns which have not started yet.
+     * @return The campaigns scheduled, in the order they were scheduled in.
+     */
+    public DiscountCampaign[] getScheduledCampaigns() {
+        lock.lock();
+        try {
+            return scheduled.toArray(new DiscountCampaign[0]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the campaigns which have started and not yet ended.
+     * @return The campaigns active, in the order they started in.
+     */
+    public DiscountCampaign[] getActiveCampaigns() {
+        lock.lock();
+        try {
+            return active.toArray(new DiscountCampaign[0]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a background thread running <code>runDue</code> whenever a campaign is due to start or end, by the clock of this scheduler.
+     * Exceptions from <code>runDue</code> go to the thread's uncaught exception handler, and the thread carries on.
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (thread != null || closed)
+                return;
+            thread = new Thread(this::run, "campaign-scheduler");
+            thread.setDaemon(true);
+            thread.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the background thread, if started. Active campaigns are left as they are, and no more campaigns start or end on their own.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            transitionsChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        lock.lock();
+        try {
+            while (!closed) {
+                Transition next = transitions.peek();
+                long wait = next != null ? next.time() - clock.millis() : Long.MAX_VALUE;
+                if (wait > 0) {
+                    transitionsChanged.await(Math.min(wait, TimeUnit.DAYS.toMillis(1)), TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                try {
+                    runDue();
+                } catch (RuntimeException e) {
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a campaign off every Item it covers, marking them as touched.
+     */
+    private void end(DiscountCampaign campaign, Map<String, Coverage> touched) {
+        active.remove(campaign);
+        String[] itemNumbers = campaign.itemNumbers();
+        if (itemNumbers == null)
+            return;
+        for (String itemNumber : itemNumbers) {
+            Coverage c = coverage.get(itemNumber);
+            if (c != null && c.campaigns.remove(campaign))
+                touched.put(itemNumber, c);
+        }
+    }
+
+    /**
+     * Sets the discount of every touched Item to that of the campaign taking precedence on it, or back to its discount from before, in one change to the registry.
+     * @return The number of Items whose discount was set.
+     */
+    private int apply(Map<String, Coverage> touched) {
+        String[] itemNumbers = new String[touched.size()];
+        float[] discounts = new float[touched.size()], expected = new float[touched.size()];
+        int n = 0;
+        for (Map.Entry<String, Coverage> e : touched.entrySet()) {
+            Coverage c = e.getValue();
+            DiscountCampaign top = c.top();
+            if (top == null) {
+                coverage.remove(e.getKey());
+                if (Float.isNaN(c.base))
+                    continue; // Started and ended within the same run, never applied
+                itemNumbers[n] = e.getKey();
+                discounts[n] = c.base;
+                expected[n++] = c.applied; // Keep a discount set by hand since
+            } else if (Float.isNaN(c.applied) || top.getPercentOff() != c.applied) {
+                itemNumbers[n] = e.getKey();
+                discounts[n] = top.getPercentOff();
+                expected[n++] = Float.NaN;
+            }
+        }
+        if (n == 0)
+            return 0;
+        if (n < itemNumbers.length) {
+            itemNumbers = Arrays.copyOf(itemNumbers, n);
+            discounts = Arrays.copyOf(discounts, n);
+            expected = Arrays.copyOf(expected, n);
+        }
+
+        float[] previous = registry.setItemDiscounts(itemNumbers, discounts, expected);
+        int changed = 0;
+        for (int i = 0; i < n; i++) {
+            if (!Float.isNaN(previous[i]))
+                changed++;
+            Coverage c = touched.get(itemNumbers[i]);
+            if (c.campaigns.isEmpty())
+                continue;
+            if (Float.isNaN(previous[i])) {
+                coverage.remove(itemNumbers[i]); // Deleted from the registry
+                continue;
+            }
+            if (Float.isNaN(c.base))
+                c.base = previous[i];
+            c.applied = discounts[i];
+        }
+        return changed;
+    }
+}
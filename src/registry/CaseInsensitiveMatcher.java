@@ -0,0 +1,83 @@
+package registry;
+
+import java.util.Arrays;
+
+/**
+ * Finds a search term within case-folded texts using the Boyer-Moore-Horspool algorithm.
+ * <br><br> The search term is folded and its skip table is built once, when the matcher is created. After that, matching a text allocates nothing,
+ * which lets a single matcher be run against every Item in a registry. The texts matched against must already be folded by <code>fold(...)</code>.
+ */
+final class CaseInsensitiveMatcher {
+    /**
+     * The size of the skip table. Characters are mapped to a slot by their lowest 8 bits. Characters sharing a slot share the smallest of their shifts, which keeps every shift safe.
+     */
+    private static final int TABLE_SIZE = 256;
+
+    private final char[] pattern;
+    private final int[] shift = new int[TABLE_SIZE];
+
+    /**
+     * Creates a matcher for the submitted search term.
+     * @param searchTerm The term to look for. It is folded before use, so the resulting search is NOT case-sensitive.
+     */
+    CaseInsensitiveMatcher(String searchTerm) {
+        pattern = fold(searchTerm);
+
+        int m = pattern.length;
+        Arrays.fill(shift, Math.max(m, 1));
+        for (int i = 0; i < m - 1; i++)          // Shifts decrease as i increases, so a later assignment to the same slot...
+            shift[pattern[i] & 0xFF] = m - 1 - i; // ... always keeps the smallest shift.
+    }
+
+    /**
+     * Checks if the search term of this matcher is contained within the submitted text.
+     * @param foldedText The text to search through, folded by <code>fold(...)</code>.
+     * @return True if the text contains the search term, otherwise false.
+     */
+    boolean matches(char[] foldedText) {
+        final int m = pattern.length;
+        final int n = foldedText.length;
+        if (m == 0)
+            return true;
+        if (m > n)
+            return false;
+
+        final char last = pattern[m - 1];
+        int i = m - 1; // Index in the text aligned with the last character of the pattern
+        while (i < n) {
+            char c = foldedText[i];
+            if (c == last) {
+                int j = m - 2;
+                int k = i - 1;
+                while (j >= 0 && foldedText[k] == pattern[j]) {
+                    j--;
+                    k--;
+                }
+                if (j < 0)
+                    return true;
+            }
+            i += shift[c & 0xFF];
+        }
+        return false;
+    }
+
+    /**
+     * Returns the folded search term of this matcher as a String. Two search terms that only differ by case give the same folded term.
+     * @return The folded search term.
+     */
+    String foldedTerm() {
+        return new String(pattern);
+    }
+
+    /**
+     * Case-folds a String, character by character. Unlike <code>String.toLowerCase()</code>, this neither depends on the default locale, nor changes the length of the String.
+     * @param s The String to fold.
+     * @return The folded characters of the submitted String.
+     */
+    static char[] fold(String s) {
+        char[] folded = new char[s.length()];
+        for (int i = 0; i < folded.length; i++)
+            folded[i] = Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+        return folded;
+    }
+}
@@ -0,0 +1,346 @@
+package registry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates large, realistic catalogs of Items for load and capacity testing.
+ * <br><br> A catalog is fully determined by its seed: the i-th Item of a catalog is computed from the seed and i alone, so Items can be generated in any order and in parallel,
+ * and the same seed always gives the same catalog. Brands, colors and categories are drawn from skewed distributions, where a few values are far more common than the rest,
+ * and descriptions are built from the vocabulary of <code>ItemRegistry.fillWithTestData()</code>.
+ * <br><br> Item numbers are six characters of digits and capital letters, given by a permutation of the Item's index. They are unique within a catalog and look random,
+ * so a catalog does not favor any particular prefix.
+ */
+public final class CatalogGenerator {
+    /**
+     * The largest number of Items in a catalog, which is the number of distinct six character item numbers.
+     */
+    public static final long MAX_ITEMS = 2_176_782_336L; // 36^6
+    private static final int ITEM_NUMBER_LENGTH = 6;
+    private static final int BATCH_SIZE = 1 << 16;
+    private static final String SEPARATOR = "\t";
+    private static final String HEADER = String.join(SEPARATOR, "itemNumber", "description", "amountInStorage", "price", "discount", "category", "brand", "weight", "width", "length", "color");
+
+    private static final String[] BRANDS = {
+            "Bendell", "Dynamik", "Ikea", "Heidal", "Nordwood", "Valtor", "Haugen", "Lindqvist", "Morella", "Oakridge", "Casavi", "Tamberg",
+            "Rovik", "Fjellstad", "Brannmor", "Estrel", "Kvarn", "Solheim", "Auren", "Trellis", "Marwood", "Vinter", "Holmgaard", "Sarek"
+    };
+    private static final String[] COLORS = {
+            "Brown", "White", "Beige", "Grey", "Black", "Dark brown", "Chrome", "Natural", "Oak", "Walnut", "Light grey", "Silver", "Red", "Green", "Blue"
+    };
+    private static final String[] MATERIALS = { "birch", "oak", "pine", "maple", "mahogany", "willow", "walnut", "teak", "ash", "spruce" };
+
+    /**
+     * How common every category is, in the order of <code>ItemCategory.values()</code>.
+     */
+    private static final double[] CATEGORY_WEIGHTS = { 20, 15, 10, 30, 12, 13 };
+
+    private static final double[] BRAND_DISTRIBUTION = cumulative(zipfWeights(BRANDS.length, 1.1));
+    private static final double[] COLOR_DISTRIBUTION = cumulative(zipfWeights(COLORS.length, 0.9));
+    private static final double[] CATEGORY_DISTRIBUTION = cumulative(CATEGORY_WEIGHTS);
+
+    private final long seed;
+    private final long multiplier1, increment1, multiplier2, increment2;
+
+    /**
+     * Creates a new generator for the catalog given by the submitted seed.
+     * @param seed The seed of the catalog. Generators with the same seed generate the same catalog.
+     */
+    public CatalogGenerator(long seed) {
+        this.seed = seed;
+        SplittableRandom random = new SplittableRandom(seed);
+        multiplier1 = unitModulo36(random.nextLong(MAX_ITEMS));
+        increment1 = random.nextLong(MAX_ITEMS);
+        multiplier2 = unitModulo36(random.nextLong(MAX_ITEMS));
+        increment2 = random.nextLong(MAX_ITEMS);
+    }
+
+    /**
+     * Returns the item number of an Item in this catalog. Every index gives a different item number.
+     * @param index The index of the Item in this catalog.
+     * @return The item number of the Item.
+     */
+    public String itemNumber(long index) {
+        if (index < 0 || index >= MAX_ITEMS)
+            throw new IllegalArgumentException("The index of an Item in a catalog must be between 0 and " + (MAX_ITEMS - 1));
+
+        // Two affine permutations around a reversal of the digits, each a bijection on the six digit numbers, so the reversal mixes the high digits into the low ones
+        long x = (index * multiplier1 + increment1) % MAX_ITEMS;
+        long reversed = 0;
+        for (int i = 0; i < ITEM_NUMBER_LENGTH; i++) {
+            reversed = reversed * Character.MAX_RADIX + x % Character.MAX_RADIX;
+            x /= Character.MAX_RADIX;
+        }
+        x = (reversed * multiplier2 + increment2) % MAX_ITEMS;
+
+        char[] code = new char[ITEM_NUMBER_LENGTH];
+        for (int i = ITEM_NUMBER_LENGTH - 1; i >= 0; i--) {
+            code[i] = Character.toUpperCase(Character.forDigit((int) (x % Character.MAX_RADIX), Character.MAX_RADIX));
+            x /= Character.MAX_RADIX;
+        }
+        return new String(code);
+    }
+
+    /**
+     * Generates an Item of this catalog.
+     * @param index The index of the Item in this catalog.
+     * @return A new Item, the same every time for the same index.
+     */
+    public Item generate(long index) {
+        String itemNumber = itemNumber(index);
+        SplittableRandom random = new SplittableRandom(seed ^ (index * 0x9E3779B97F4A7C15L));
+
+        ItemCategory category = ItemCategory.values()[pick(CATEGORY_DISTRIBUTION, random)];
+        String brand = BRANDS[pick(BRAND_DISTRIBUTION, random)];
+        String color = COLORS[pick(COLOR_DISTRIBUTION, random)];
+        String material = MATERIALS[random.nextInt(MATERIALS.length)];
+        String capitalized = Character.toUpperCase(material.charAt(0)) + material.substring(1);
+
+        String description;
+        float width, length, weight;
+        int price;
+        switch (category) {
+            case Doors -> {
+                int height = 200 + 10 * random.nextInt(7);
+                description = switch (random.nextInt(3)) {
+                    case 0 -> capitalized + " door, " + height + "cm";
+                    case 1 -> "Designer door carved from " + material;
+                    default -> "Sliding door in " + material + ", " + height + "cm";
+                };
+                width = 0.7f + 0.1f * random.nextInt(5);
+                length = height / 100f;
+                weight = 10 + (float) random.nextDouble(15);
+                price = logNormal(random, 1500, 0.6);
+            }
+            case Windows -> {
+                int w = 1 + random.nextInt(4), h = 1 + random.nextInt(6);
+                description = switch (random.nextInt(3)) {
+                    case 0 -> "Small circular window";
+                    case 1 -> "Large window, " + w + "x" + h + " meters";
+                    default -> "Double-glazed window in " + material + ", " + w + "x" + h + " meters";
+                };
+                width = w + 0.16f;
+                length = h + 0.16f;
+                weight = 2 + w * h * 1.1f;
+                price = logNormal(random, 2000, 0.7);
+            }
+            case Floors -> {
+                int pack = 4 + 2 * random.nextInt(12);
+                description = switch (random.nextInt(3)) {
+                    case 0 -> "Bathroom tiles, " + pack + "-pack";
+                    case 1 -> "Kitchen tiles, " + pack + "-pack";
+                    default -> capitalized + " floor planks, " + pack + "-pack";
+                };
+                width = 0.098f + 0.1f * random.nextInt(2);
+                length = 0.198f + 0.4f * random.nextInt(3);
+                weight = pack * (0.2f + (float) random.nextDouble(0.6));
+                price = logNormal(random, 600, 0.5);
+            }
+            case Wood -> {
+                int inches = 2 + 2 * random.nextInt(4);
+                description = switch (random.nextInt(3)) {
+                    case 0 -> capitalized + " planks, 2x" + inches + " inches";
+                    case 1 -> capitalized + " beam, " + (100 + 20 * random.nextInt(11)) + "cm";
+                    default -> "Lawn chair in " + material;
+                };
+                width = 0.0254f * inches;
+                length = 1f + random.nextInt(3);
+                weight = 2 + (float) random.nextDouble(8);
+                price = logNormal(random, 60, 0.8);
+            }
+            case Tables -> {
+                description = switch (random.nextInt(3)) {
+                    case 0 -> "Epoxy office desk in " + material;
+                    case 1 -> capitalized + " dining table for " + (2 + 2 * random.nextInt(4)) + " people";
+                    default -> "Coffee table in dark wood";
+                };
+                width = 0.6f + 0.2f * random.nextInt(5);
+                length = 1.0f + 0.2f * random.nextInt(9);
+                weight = 10 + (float) random.nextDouble(40);
+                price = logNormal(random, 4000, 0.7);
+            }
+            default -> { // Chairs
+                description = switch (random.nextInt(3)) {
+                    case 0 -> "Charger X" + (1 + random.nextInt(9)) + " Sofa";
+                    case 1 -> capitalized + " dining chair";
+                    default -> "Office chair with " + material + " armrests";
+                };
+                width = 0.5f + 0.1f * random.nextInt(20);
+                length = 0.5f + 0.1f * random.nextInt(8);
+                weight = 4 + (float) random.nextDouble(50);
+                price = logNormal(random, 1800, 0.8);
+            }
+        }
+
+        // Most Items have a modest stock, a few have a very large one, and some are sold out
+        int amountInStorage = random.nextInt(20) == 0 ? 0 : logNormal(random, 60, 1.3);
+
+        Item item = new Item(itemNumber, description, amountInStorage, price, category, brand, weight, width, length, color);
+        if (random.nextInt(10) == 0)
+            item.setDiscount(5 * (1 + random.nextInt(6)));
+        return item;
+    }
+
+    /**
+     * Returns a parallel stream of the first Items of this catalog, in order of their index.
+     * @param numItems The number of Items to generate.
+     * @return A stream of new Items.
+     */
+    public Stream<Item> stream(long numItems) {
+        checkNumItems(numItems);
+        return LongStream.range(0, numItems).parallel().mapToObj(this::generate);
+    }
+
+    /**
+     * Registers the first Items of this catalog to a registry. The Items are generated in parallel, in batches, while the previous batch is being registered.
+     * @param registry The registry to register the Items to.
+     * @param numItems The number of Items to register.
+     * @throws IllegalArgumentException if an item number of this catalog is already in use in the registry.
+     */
+    public void fill(ItemRegistry registry, long numItems) {
+        checkNumItems(numItems);
+        CompletableFuture<Item[]> next = CompletableFuture.supplyAsync(() -> generateBatch(0, Math.min(numItems, BATCH_SIZE)));
+        for (long start = 0; start < numItems; start += BATCH_SIZE) {
+            Item[] batch = next.join();
+            long nextStart = start + BATCH_SIZE;
+            if (nextStart < numItems)
+                next = CompletableFuture.supplyAsync(() -> generateBatch(nextStart, Math.min(numItems, nextStart + BATCH_SIZE)));
+            registry.registerNewItems(batch);
+        }
+    }
+
+    private Item[] generateBatch(long start, long end) {
+        return LongStream.range(start, end).parallel().mapToObj(this::generate).toArray(Item[]::new);
+    }
+
+    /**
+     * Writes the first Items of this catalog to a file, as tab separated values with a header line. The Items are generated in parallel and written as they are generated.
+     * @param file The file to write. Any existing file is overwritten.
+     * @param numItems The number of Items to write.
+     * @throws IOException if the file could not be written.
+     */
+    public void write(Path file, long numItems) throws IOException {
+        checkNumItems(numItems);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            stream(numItems).map(CatalogGenerator::format).forEachOrdered(line -> {
+                try {
+                    out.write(line);
+                    out.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reads the Items of a catalog written by <code>write(...)</code>. The returned stream must be closed to close the file.
+     * @param file The file to read.
+     * @return A stream of the Items in the file, in the order they were written.
+     * @throws IOException if the file could not be opened.
+     */
+    public static Stream<Item> read(Path file) throws IOException {
+        Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8);
+        return lines.skip(1).map(CatalogGenerator::parse);
+    }
+
+    private static String format(Item i) {
+        return String.join(SEPARATOR, i.getItemNumber(), i.getDescription(), Integer.toString(i.getAmountInStorage()), Integer.toString(i.getPrice()),
+                Float.toString(i.getPriceDiscount()), i.getCategory().name(), i.getBrand(), Float.toString(i.getWeight()), Float.toString(i.getWidth()),
+                Float.toString(i.getLength()), i.getColor());
+    }
+
+    private static Item parse(String line) {
+        String[] f = line.split(SEPARATOR, -1);
+        if (f.length != 11)
+            throw new IllegalArgumentException("Malformed catalog line: " + line);
+        Item item = new Item(f[0], f[1], Integer.parseInt(f[2]), Integer.parseInt(f[3]), ItemCategory.valueOf(f[5]), f[6],
+                Float.parseFloat(f[7]), Float.parseFloat(f[8]), Float.parseFloat(f[9]), f[10]);
+        item.setDiscount(Float.parseFloat(f[4]));
+        return item;
+    }
+
+    private static void checkNumItems(long numItems) {
+        if (numItems < 0 || numItems > MAX_ITEMS)
+            throw new IllegalArgumentException("The number of Items in a catalog must be between 0 and " + MAX_ITEMS);
+    }
+
+    /**
+     * Returns the nearest number at or above 'x' with no factor in common with 36, which makes multiplying by it a permutation modulo a power of 36.
+     */
+    private static long unitModulo36(long x) {
+        x |= 1;
+        while (x % 3 == 0)
+            x += 2; // Stays below 36^6, since 36^6 - 1 is odd and not a multiple of 3
+        return x;
+    }
+
+    /**
+     * Returns a random number following a log-normal distribution, at least 1.
+     * @param median The median of the distribution.
+     * @param spread The standard deviation of the logarithm of the numbers.
+     */
+    private static int logNormal(SplittableRandom random, double median, double spread) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.round(median * Math.exp(spread * random.nextGaussian()))));
+    }
+
+    /**
+     * Picks an index at random from a cumulative distribution.
+     */
+    private static int pick(double[] cumulative, SplittableRandom random) {
+        int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    /**
+     * Returns weights where the value of rank r is 1/r^exponent as common as the most common one.
+     */
+    private static double[] zipfWeights(int n, double exponent) {
+        double[] weights = new double[n];
+        for (int r = 0; r < n; r++)
+            weights[r] = 1 / Math.pow(r + 1, exponent);
+        return weights;
+    }
+
+    /**
+     * Turns weights into a cumulative distribution ending at 1.
+     */
+    private static double[] cumulative(double[] weights) {
+        double total = 0;
+        for (double w : weights)
+            total += w;
+        double[] result = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            result[i] = sum / total;
+        }
+        result[result.length - 1] = 1;
+        return result;
+    }
+
+    /**
+     * Writes a catalog to a file. Usage: <code>CatalogGenerator numItems file [seed]</code>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: CatalogGenerator numItems file [seed]");
+            return;
+        }
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        new CatalogGenerator(seed).write(Path.of(args[1]), Long.parseLong(args[0]));
+    }
+}
@@ -7,6 +7,18 @@ public class ConsoleInterface {
      * A term for the user to enter when they wish to cancel an operation where they are supposed to enter a text.
      */
     private static final String CANCEL_TERM = "-";
+    /**
+     * The number of item numbers suggested at once, whether free item numbers or autocompleted ones.
+     */
+    private static final int NUM_SUGGESTIONS = 5;
+    /**
+     * The largest number of autocompleted item numbers to select among.
+     */
+    private static final int MAX_AUTOCOMPLETE_RESULTS = 70;
+    /**
+     * The number of Items listed by the consumption forecast.
+     */
+    private static final int NUM_FORECAST_ENTRIES = 10;
     private final ItemRegistry registry;
     private final Scanner scanner = new Scanner(System.in);
     private boolean exit = false;
@@ -29,6 +41,8 @@ public class ConsoleInterface {
         System.out.println("4: Increase the amount of an item");
         System.out.println("5: Decrease the amount of an item");
         System.out.println("6: Select an item to edit");
+        System.out.println("7: Show the items running out first");
+        System.out.println("8: Show the items withdrawn the fastest");
         System.out.println("0: Exit");
 
         Integer ans = getAnsAsInt();
@@ -42,6 +56,8 @@ public class ConsoleInterface {
             case 4 -> dialogIncreaseAmountInStorage(selectItem());
             case 5 -> dialogDecreaseAmountInStorage(selectItem());
             case 6 -> editItem();
+            case 7 -> printForecast("Items running out first:", registry.getConsumptionForecast().getMostUrgent(NUM_FORECAST_ENTRIES));
+            case 8 -> printForecast("Items withdrawn the fastest:", registry.getConsumptionForecast().getFastestMoving(NUM_FORECAST_ENTRIES));
             case 0 -> exit = true;
             default -> System.out.println("Invalid input");
         }
@@ -52,6 +68,15 @@ public class ConsoleInterface {
         System.out.println();
     }
 
+    private void printForecast(String heading, ConsumptionEstimate[] estimates) {
+        System.out.println(heading);
+        if (estimates.length == 0)
+            System.out.println("No withdrawals registered yet");
+        for (ConsumptionEstimate estimate : estimates)
+            System.out.println(estimate);
+        System.out.println();
+    }
+
     /**
      * Performs a "Register new item" dialog with the user, letting them enter values for all 10 fields of the new item.
      * The user can immediately cancel the process at any time by following the instructions given.
@@ -106,6 +131,9 @@ public class ConsoleInterface {
 
             if (registry.itemNumberTaken(itemNumber)) {
                 System.out.println("Item number already claimed by another item");
+                String[] free = registry.suggestFreeItemNumbers(itemNumber, NUM_SUGGESTIONS);
+                if (free.length > 0)
+                    System.out.println("Free item numbers: " + String.join(", ", free));
                 continue;
             }
 
@@ -272,6 +300,9 @@ public class ConsoleInterface {
 
         while (!exitItem) {
             System.out.println("\nSelected item: " + registry.getItem(itemNumber).toStringFull());
+            ConsumptionEstimate estimate = registry.getConsumptionForecast().getEstimate(itemNumber);
+            if (estimate != null)
+                System.out.println("Forecast: " + estimate);
             System.out.println("What do you want to do with this item?");
             System.out.println("1: Increase its amount in storage");
             System.out.println("2: Decrease its amount in storage");
@@ -346,6 +377,7 @@ public class ConsoleInterface {
             System.out.println("Select an item by...");
             System.out.println("1: Page turning");
             System.out.println("2: Search");
+            System.out.println("3: Item number autocomplete");
             System.out.println("0: [Cancel]");
 
             Integer ans = getAnsAsInt();
@@ -358,6 +390,7 @@ public class ConsoleInterface {
             switch (ans) {
                 case 1 -> itemNumber = selectItemByPages(registry.getAll());
                 case 2 -> itemNumber = selectItemBySearch();
+                case 3 -> itemNumber = selectItemByPrefix();
                 default -> {
                     System.out.println("Invalid input");
                     continue;
@@ -468,10 +501,59 @@ public class ConsoleInterface {
                 }
 
                 System.out.println("No results for the term: " + searchTerm);
+
+                if (!searchByDescription) {
+                    String selected = dialogDidYouMean(searchTerm);
+                    if (selected != null)
+                        return selected;
+                }
             }
         }
     }
 
+    /**
+     * Performs a dialog with the user where they type the start of an item number, and are shown the item numbers starting with it until they select one.
+     * @return The item number of the selected item, or null if the user canceled the action.
+     */
+    private String selectItemByPrefix() {
+        while (true) {
+            System.out.println("Enter the start of an item number (or "+ CANCEL_TERM +" to cancel):");
+            String prefix = scanner.nextLine();
+            if (prefix.equals(CANCEL_TERM))
+                return null;
+
+            int count = registry.countItemNumbersWithPrefix(prefix);
+            if (count == 0) {
+                System.out.println("No item numbers start with: " + prefix);
+                continue;
+            }
+
+            String[] completions = registry.searchByItemNumberPrefix(prefix, MAX_AUTOCOMPLETE_RESULTS);
+            if (count > completions.length)
+                System.out.println(count + " item numbers start with " + prefix + ", showing the first " + completions.length + ". Type more characters to narrow it down.");
+            else
+                System.out.println(count + " item numbers start with " + prefix + ": " + String.join(", ", registry.searchByItemNumberPrefix(prefix, NUM_SUGGESTIONS)) + (count > NUM_SUGGESTIONS ? ", ..." : ""));
+
+            String selected = selectItemByPages(registry.getItems(completions));
+            if (selected != null)
+                return selected;
+        }
+    }
+
+    /**
+     * Offers the user to select among item numbers close to a search term that gave no results, in case the term was mistyped.
+     * @param searchTerm The item number search term that gave no results.
+     * @return The item number of the selected item, or null if there were no suggestions or the user canceled the action.
+     */
+    private String dialogDidYouMean(String searchTerm) {
+        String[] suggestions = registry.suggestItemNumbers(searchTerm);
+        if (suggestions.length == 0)
+            return null;
+
+        System.out.println("Did you mean...");
+        return selectItemByPages(registry.getItems(suggestions));
+    }
+
     /**
      * Helper-function. Reads an integer answer from the user and returns it.
      * If the answer could not be converted to an integer, it prints "Did not understand input" to the console and returns null.
@@ -0,0 +1,49 @@
+package registry;
+
+/**
+ * How fast an Item is withdrawn from storage, and how long its amount in storage lasts at that rate, as estimated by <code>ConsumptionForecast</code>.
+ */
+public final class ConsumptionEstimate {
+    private final String itemNumber;
+    private final int amountInStorage;
+    private final double withdrawalsPerDay;
+
+    ConsumptionEstimate(String itemNumber, int amountInStorage, double withdrawalsPerDay) {
+        this.itemNumber = itemNumber;
+        this.amountInStorage = amountInStorage;
+        this.withdrawalsPerDay = withdrawalsPerDay;
+    }
+
+    public String getItemNumber() {
+        return itemNumber;
+    }
+
+    public int getAmountInStorage() {
+        return amountInStorage;
+    }
+
+    /**
+     * Returns the estimated number of units withdrawn per day.
+     * @return The exponentially weighted average of the units withdrawn per day, or 0 if none have been withdrawn.
+     */
+    public double getWithdrawalsPerDay() {
+        return withdrawalsPerDay;
+    }
+
+    /**
+     * Returns the number of days until the amount in storage runs out at the estimated rate, if it is not restocked.
+     * @return The number of days until the amount in storage runs out, 0 if it already has, or <code>Double.POSITIVE_INFINITY</code> if nothing is withdrawn.
+     */
+    public double getDaysUntilStockout() {
+        if (amountInStorage <= 0)
+            return 0;
+        return withdrawalsPerDay > 0 ? amountInStorage / withdrawalsPerDay : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public String toString() {
+        double days = getDaysUntilStockout();
+        return String.format("%s: %d in storage, %.1f withdrawn per day, %s", itemNumber, amountInStorage, withdrawalsPerDay,
+                Double.isInfinite(days) ? "no withdrawals" : String.format("out of stock in %.1f days", days));
+    }
+}
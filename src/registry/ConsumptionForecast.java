@@ -0,0 +1,179 @@
+package registry;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimates how fast every Item of a registry is withdrawn from storage, and when it runs out, from the withdrawals as they are made.
+ * <br><br> The forecast listens to the changes of the registry, and keeps an exponentially decaying sum of the units withdrawn for every Item: at every withdrawal,
+ * the sum is multiplied by <code>exp(-t / tau)</code>, where t is the time since the previous one, and the units withdrawn are added.
+ * The rate is then that sum divided by tau, so a withdrawal weighs half as much after every half-life, and every Item takes the same few fields of memory however
+ * long it is tracked. Until an Item has been tracked for a few half-lives, the sum is divided by the part of tau it has been tracked for instead, but at least a tenth of tau,
+ * so the first withdrawals read as neither a slow rate nor a burst. Additions to storage are restocking, and do not lower the rate.
+ * <br><br> A reservation withdraws its amounts when made, and is counted like any withdrawal. If it is released or expires instead of being confirmed,
+ * the amounts it puts back are taken out of the sum again, at their full weight, which slightly overstates the decay the withdrawal had gone through
+ * if the reservation was long-lived, and never leaves the sum negative. Only confirmed reservations therefore count as consumption.
+ * <br><br> Estimates are computed when asked for, in constant time per Item. <code>getMostUrgent</code> and <code>getFastestMoving</code> rank every Item,
+ * keeping only the ones asked for, in a heap.
+ */
+public class ConsumptionForecast implements RegistryListener {
+    /** The half-life of the weight of a withdrawal, unless another one is chosen. */
+    public static final Duration DEFAULT_HALF_LIFE = Duration.ofDays(7);
+
+    private static final double MILLIS_PER_DAY = 24 * 60 * 60 * 1000.0;
+
+    private final Clock clock;
+    private final double tauMillis;
+    private final ConcurrentHashMap<String, Consumption> consumption = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty forecast weighting withdrawals by the default half-life and timing them by the system clock. It tracks nothing until added as a listener to a registry.
+     */
+    public ConsumptionForecast() {
+        this(DEFAULT_HALF_LIFE, Clock.systemUTC());
+    }
+
+    /**
+     * Creates an empty forecast. It tracks nothing until added as a listener to a registry.
+     * Throws an <code>IllegalArgumentException</code> if the half-life is shorter than a millisecond.
+     * @param halfLife The time after which a withdrawal weighs half as much. Shorter half-lives follow changes in demand faster, and longer ones are steadier.
+     * @param clock The clock timing the withdrawals.
+     */
+    public ConsumptionForecast(Duration halfLife, Clock clock) {
+        if (halfLife.toMillis() < 1)
+            throw new IllegalArgumentException("The half-life must be at least one millisecond");
+        this.clock = clock;
+        this.tauMillis = halfLife.toMillis() / Math.log(2);
+    }
+
+    /**
+     * Returns the estimate of an Item.
+     * @param itemNumber The item number of the Item.
+     * @return The estimate, or null if the Item is not tracked by this forecast.
+     */
+    public ConsumptionEstimate getEstimate(String itemNumber) {
+        Consumption c = consumption.get(itemNumber);
+        return c != null ? c.estimate(itemNumber, clock.millis()) : null;
+    }
+
+    /**
+     * Returns the estimates of the Items running out of storage first, at their current rates of withdrawal.
+     * @param limit The largest number of estimates to return.
+     * @return The estimates of the Items with the fewest days until stockout, fewest first, leaving out Items nobody withdraws.
+     */
+    public ConsumptionEstimate[] getMostUrgent(int limit) {
+        return top(limit, Comparator.comparingDouble(ConsumptionEstimate::getDaysUntilStockout).reversed());
+    }
+
+    /**
+     * Returns the estimates of the Items withdrawn the fastest.
+     * @param limit The largest number of estimates to return.
+     * @return The estimates of the Items with the most units withdrawn per day, most first, leaving out Items nobody withdraws.
+     */
+    public ConsumptionEstimate[] getFastestMoving(int limit) {
+        return top(limit, Comparator.comparingDouble(ConsumptionEstimate::getWithdrawalsPerDay));
+    }
+
+    /**
+     * Returns the number of Items tracked.
+     * @return The number of Items tracked by this forecast.
+     */
+    public int size() {
+        return consumption.size();
+    }
+
+    @Override
+    public void itemRegistered(Item item) {
+        consumption.put(item.getItemNumber(), new Consumption(clock.millis(), item.getAmountInStorage()));
+    }
+
+    @Override
+    public void itemDeleted(String itemNumber) {
+        consumption.remove(itemNumber);
+    }
+
+    @Override
+    public void amountInStorageChanged(String itemNumber, int difference) {
+        Consumption c = consumption.get(itemNumber);
+        if (c != null)
+            c.changed(clock.millis(), difference);
+    }
+
+    @Override
+    public void reservationReleased(String itemNumber, int amount) {
+        Consumption c = consumption.get(itemNumber);
+        if (c != null)
+            c.released(clock.millis(), amount);
+    }
+
+    /**
+     * Keeps the estimates ranked highest by a comparator in a heap of the limit's size, with the lowest ranked on top to be replaced.
+     * @param order Orders estimates from the lowest ranked to the highest.
+     */
+    private ConsumptionEstimate[] top(int limit, Comparator<ConsumptionEstimate> order) {
+        if (limit < 0)
+            throw new IllegalArgumentException("The limit cannot be negative");
+        if (limit == 0)
+            return new ConsumptionEstimate[0];
+        long now = clock.millis();
+        PriorityQueue<ConsumptionEstimate> heap = new PriorityQueue<>(Math.min(limit, 1024), order);
+        consumption.forEach((itemNumber, c) -> {
+            ConsumptionEstimate estimate = c.estimate(itemNumber, now);
+            if (estimate.getWithdrawalsPerDay() <= 0)
+                return;
+            if (heap.size() < limit)
+                heap.add(estimate);
+            else if (order.compare(estimate, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(estimate);
+            }
+        });
+        ArrayList<ConsumptionEstimate> ranked = new ArrayList<>(heap);
+        ranked.sort(order.reversed());
+        return ranked.toArray(new ConsumptionEstimate[0]);
+    }
+
+    /** The decaying sum of withdrawals of one Item, along with its amount in storage, guarded by itself. */
+    private final class Consumption {
+        private final long trackedSince;
+        private long lastWithdrawal;
+        private double decayedWithdrawals = 0;
+        private int amountInStorage;
+
+        Consumption(long now, int amountInStorage) {
+            this.trackedSince = now;
+            this.lastWithdrawal = now;
+            this.amountInStorage = amountInStorage;
+        }
+
+        synchronized void changed(long now, int difference) {
+            amountInStorage += difference;
+            if (difference >= 0)
+                return;
+            now = Math.max(now, lastWithdrawal);
+            decayedWithdrawals = decayedWithdrawals * Math.exp((lastWithdrawal - now) / tauMillis) - difference;
+            lastWithdrawal = now;
+        }
+
+        /**
+         * Takes back a withdrawal made by a reservation which has been released. The amount put back has already been added by <code>changed</code>.
+         */
+        synchronized void released(long now, int amount) {
+            now = Math.max(now, lastWithdrawal);
+            decayedWithdrawals = Math.max(0, decayedWithdrawals * Math.exp((lastWithdrawal - now) / tauMillis) - amount);
+            lastWithdrawal = now;
+        }
+
+        synchronized ConsumptionEstimate estimate(String itemNumber, long now) {
+            now = Math.max(now, lastWithdrawal);
+            double sum = decayedWithdrawals * Math.exp((lastWithdrawal - now) / tauMillis);
+            // The weight of the time tracked: 1 - exp(-age / tau), times tau, which approaches tau as the age grows
+            double weightedMillis = Math.max(-tauMillis * Math.expm1((trackedSince - now) / tauMillis), tauMillis / 10);
+            return new ConsumptionEstimate(itemNumber, amountInStorage, sum / weightedMillis * MILLIS_PER_DAY);
+        }
+    }
+}
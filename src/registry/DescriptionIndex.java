@@ -0,0 +1,320 @@
+package registry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A tokenized inverted index over the description, brand and color of the Items in a registry, ranking matches by the Okapi BM25 relevance score.
+ * <br><br> Every indexed Item is a document with a number. The postings list of a term holds, in increasing document order, the gap from the previous document number and the term frequency,
+ * both as variable length integers in a growing byte array. Changing or removing an Item marks its document as deleted, and an edited Item is added again as a new document at the end of every postings list.
+ * Deleted documents are skipped while searching, and are dropped from the postings lists once they outnumber the live documents.
+ */
+final class DescriptionIndex {
+    /**
+     * Controls how quickly repeated occurrences of a term stop adding to the score.
+     */
+    private static final float K1 = 1.2f;
+    /**
+     * Controls how much the score is normalized by the length of a document, where 0 disables length normalization.
+     */
+    private static final float B = 0.75f;
+    /**
+     * The number of deleted documents to accept before even considering to compact the index.
+     */
+    private static final int MIN_DELETED_BEFORE_COMPACTION = 1024;
+
+    /**
+     * The postings list of a single term.
+     */
+    private static final class Postings {
+        private byte[] data = new byte[8];
+        private int length = 0;
+        private int lastDocument = 0;
+        /**
+         * The number of live documents containing this term.
+         */
+        private int documentFrequency = 0;
+
+        private void append(int document, int termFrequency) {
+            if (length + 10 > data.length)
+                data = Arrays.copyOf(data, data.length * 2);
+            length = writeVarInt(data, length, document - lastDocument);
+            length = writeVarInt(data, length, termFrequency);
+            lastDocument = document;
+        }
+    }
+
+    /**
+     * Reads the documents of a postings list one by one, in increasing order.
+     */
+    private static final class Cursor {
+        private final Postings postings;
+        private final float idf;
+        private int position = 0;
+        private int document = 0;
+        private int termFrequency;
+
+        private Cursor(Postings postings, float idf) {
+            this.postings = postings;
+            this.idf = idf;
+        }
+
+        /**
+         * Moves to the next document of the postings list.
+         * @return False if there are no more documents, otherwise true.
+         */
+        private boolean next() {
+            if (position >= postings.length) {
+                document = Integer.MAX_VALUE;
+                return false;
+            }
+            int gap = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = postings.data[position++];
+                gap |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            int tf = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = postings.data[position++];
+                tf |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            document += gap;
+            termFrequency = tf;
+            return true;
+        }
+    }
+
+    private record Hit(String itemNumber, float score) {}
+
+    private final HashMap<String, Postings> postings = new HashMap<>();
+    private final HashMap<String, Integer> documentOf = new HashMap<>();
+    private String[] itemNumberOf = new String[16];
+    private int[] documentLength = new int[16];
+    private final BitSet deleted = new BitSet();
+    private int numDocuments = 0;
+    private int numDeleted = 0;
+    private long totalLength = 0;
+
+    /**
+     * Adds an Item to this index.
+     * @param item The Item to index. Its description, brand and color are searchable.
+     */
+    void add(Item item) {
+        HashMap<String, Integer> frequencies = new HashMap<>();
+        int length = tokenize(item, frequencies);
+
+        int document = numDocuments++;
+        if (document == itemNumberOf.length) {
+            itemNumberOf = Arrays.copyOf(itemNumberOf, document * 2);
+            documentLength = Arrays.copyOf(documentLength, document * 2);
+        }
+        itemNumberOf[document] = item.getItemNumber();
+        documentLength[document] = length;
+        documentOf.put(item.getItemNumber(), document);
+        totalLength += length;
+
+        for (Map.Entry<String, Integer> e : frequencies.entrySet()) {
+            Postings p = postings.computeIfAbsent(e.getKey(), term -> new Postings());
+            p.append(document, e.getValue());
+            p.documentFrequency++;
+        }
+    }
+
+    /**
+     * Removes an Item from this index. Must be called with the Item as it was when it was added, so the terms it was indexed by can be found again.
+     * @param item The Item to remove.
+     */
+    void remove(Item item) {
+        Integer document = documentOf.remove(item.getItemNumber());
+        if (document == null)
+            return;
+
+        HashMap<String, Integer> frequencies = new HashMap<>();
+        tokenize(item, frequencies);
+        for (String term : frequencies.keySet()) {
+            Postings p = postings.get(term);
+            if (--p.documentFrequency == 0)
+                postings.remove(term);
+        }
+
+        deleted.set(document);
+        itemNumberOf[document] = null;
+        totalLength -= documentLength[document];
+        numDeleted++;
+
+        if (numDeleted >= MIN_DELETED_BEFORE_COMPACTION && numDeleted > numDocuments - numDeleted)
+            compact();
+    }
+
+    /**
+     * Returns the number of Items in this index.
+     * @return The number of Items in this index.
+     */
+    int size() {
+        return numDocuments - numDeleted;
+    }
+
+    /**
+     * Returns the number of distinct terms in this index.
+     * @return The number of distinct terms in this index.
+     */
+    int numTerms() {
+        return postings.size();
+    }
+
+    /**
+     * Finds the Items most relevant to the submitted query, ranked by their BM25 score.
+     * @param query One or more search terms. The search performed is NOT case-sensitive.
+     * @param matchAllTerms True if an Item must contain every term of the query to be returned, or false if containing any of them is enough.
+     * @param maxResults The largest number of item numbers to return.
+     * @return The item numbers of the best matching Items, the most relevant first.
+     */
+    String[] search(String query, boolean matchAllTerms, int maxResults) {
+        if (maxResults < 0)
+            throw new IllegalArgumentException("The maximum number of results cannot be negative");
+
+        HashMap<String, Integer> queryTerms = new HashMap<>();
+        tokenize(query, queryTerms);
+        if (queryTerms.isEmpty() || maxResults == 0)
+            return new String[0];
+
+        int liveDocuments = size();
+        float averageLength = liveDocuments == 0 ? 1 : (float) totalLength / liveDocuments;
+
+        ArrayList<Cursor> cursors = new ArrayList<>();
+        for (String term : queryTerms.keySet()) {
+            Postings p = postings.get(term);
+            if (p == null) {
+                if (matchAllTerms)
+                    return new String[0];
+                continue;
+            }
+            float df = p.documentFrequency;
+            float idf = (float) Math.log(1 + (liveDocuments - df + 0.5f) / (df + 0.5f));
+            Cursor c = new Cursor(p, idf);
+            c.next();
+            cursors.add(c);
+        }
+
+        // Merge the postings lists document by document, keeping the best hits in a min-heap
+        PriorityQueue<Hit> best = new PriorityQueue<>((a, b) -> a.score() != b.score() ? Float.compare(a.score(), b.score()) : b.itemNumber().compareTo(a.itemNumber()));
+        while (true) {
+            int document = Integer.MAX_VALUE;
+            for (Cursor c : cursors)
+                document = Math.min(document, c.document);
+            if (document == Integer.MAX_VALUE)
+                break;
+
+            float score = 0;
+            int matchedTerms = 0;
+            for (Cursor c : cursors) {
+                if (c.document != document)
+                    continue;
+                float tf = c.termFrequency;
+                score += c.idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * documentLength[document] / averageLength));
+                matchedTerms++;
+                c.next();
+            }
+
+            if (deleted.get(document) || (matchAllTerms && matchedTerms < queryTerms.size()))
+                continue;
+
+            Hit hit = new Hit(itemNumberOf[document], score);
+            if (best.size() < maxResults)
+                best.add(hit);
+            else if (best.comparator().compare(hit, best.peek()) > 0) {
+                best.poll();
+                best.add(hit);
+            }
+        }
+
+        String[] result = new String[best.size()];
+        for (int i = result.length - 1; i >= 0; i--)
+            result[i] = best.poll().itemNumber();
+        return result;
+    }
+
+    /**
+     * Renumbers the live documents from 0 and rewrites every postings list without the deleted documents. Document numbers keep their order, so the rewritten lists stay sorted.
+     */
+    private void compact() {
+        int[] renumbered = new int[numDocuments];
+        int live = 0;
+        for (int document = 0; document < numDocuments; document++) {
+            if (deleted.get(document)) {
+                renumbered[document] = -1;
+                continue;
+            }
+            renumbered[document] = live;
+            itemNumberOf[live] = itemNumberOf[document];
+            documentLength[live] = documentLength[document];
+            documentOf.put(itemNumberOf[live], live);
+            live++;
+        }
+        Arrays.fill(itemNumberOf, live, numDocuments, null);
+
+        for (Postings p : postings.values()) {
+            Postings old = new Postings();
+            old.data = p.data;
+            old.length = p.length;
+            Cursor c = new Cursor(old, 0);
+
+            p.data = new byte[Math.max(8, p.documentFrequency * 2)];
+            p.length = 0;
+            p.lastDocument = 0;
+            while (c.next())
+                if (renumbered[c.document] >= 0)
+                    p.append(renumbered[c.document], c.termFrequency);
+        }
+
+        deleted.clear();
+        numDocuments = live;
+        numDeleted = 0;
+    }
+
+    /**
+     * Splits the searchable fields of an Item into terms and counts them.
+     * @return The total number of terms found.
+     */
+    private static int tokenize(Item item, HashMap<String, Integer> frequencies) {
+        return tokenize(item.getDescription(), frequencies) + tokenize(item.getBrand(), frequencies) + tokenize(item.getColor(), frequencies);
+    }
+
+    /**
+     * Splits a text into case-folded terms consisting of letters and digits, and counts them.
+     * @return The number of terms found.
+     */
+    private static int tokenize(String text, HashMap<String, Integer> frequencies) {
+        char[] folded = CaseInsensitiveMatcher.fold(text);
+        int numTerms = 0;
+        int start = -1;
+        for (int i = 0; i <= folded.length; i++) {
+            boolean partOfTerm = i < folded.length && Character.isLetterOrDigit(folded[i]);
+            if (partOfTerm && start < 0)
+                start = i;
+            else if (!partOfTerm && start >= 0) {
+                frequencies.merge(new String(folded, start, i - start), 1, Integer::sum);
+                numTerms++;
+                start = -1;
+            }
+        }
+        return numTerms;
+    }
+
+    private static int writeVarInt(byte[] data, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[position++] = (byte) value;
+        return position;
+    }
+}
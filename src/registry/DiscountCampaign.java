@@ -0,0 +1,120 @@
+package registry;
+
+import java.time.Instant;
+import java.util.function.Predicate;
+
+/**
+ * A discount on a set of Items during a period of time, scheduled by <code>CampaignScheduler.schedule</code>.
+ * <br><br> The Items of a campaign are selected by its filter when it starts, and it ends for exactly those Items.
+ * When campaigns overlap on an Item, the one with the highest priority sets its discount, and among equal priorities, the one that started last.
+ */
+public final class DiscountCampaign {
+    /**
+     * Whether a campaign has started, ended, or been cancelled.
+     */
+    public enum State {
+        SCHEDULED,
+        ACTIVE,
+        ENDED,
+        CANCELLED
+    }
+
+    private final String name;
+    private final Predicate<Item> filter;
+    private final float percentOff;
+    private final Instant start;
+    private final Instant end;
+    private final int priority;
+    /** The order campaigns were scheduled in, breaking ties between campaigns starting at the same time. */
+    final long sequence;
+
+    private State state = State.SCHEDULED;
+    private String[] itemNumbers = null;
+
+    DiscountCampaign(String name, Predicate<Item> filter, float percentOff, Instant start, Instant end, int priority, long sequence) {
+        this.name = name;
+        this.filter = filter;
+        this.percentOff = percentOff;
+        this.start = start;
+        this.end = end;
+        this.priority = priority;
+        this.sequence = sequence;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    Predicate<Item> getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns the discount of this campaign.
+     * @return The discount, in percent.
+     */
+    public float getPercentOff() {
+        return percentOff;
+    }
+
+    public Instant getStart() {
+        return start;
+    }
+
+    public Instant getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns the priority of this campaign over others on the same Items.
+     * @return The priority. The highest one wins.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns whether this campaign has started, ended, or been cancelled.
+     * @return The state of this campaign.
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    synchronized void setState(State state) {
+        this.state = state;
+    }
+
+    synchronized String[] itemNumbers() {
+        return itemNumbers;
+    }
+
+    synchronized void setItemNumbers(String[] itemNumbers) {
+        this.itemNumbers = itemNumbers;
+    }
+
+    /**
+     * Returns the number of Items this campaign applies to.
+     * @return The number of Items selected when this campaign started, or 0 if it has not started.
+     */
+    public synchronized int getItemCount() {
+        return itemNumbers != null ? itemNumbers.length : 0;
+    }
+
+    /**
+     * Returns whether this campaign takes precedence over another one on the same Items.
+     * @param other Another campaign.
+     * @return True if this campaign has a higher priority, or the same priority and starts later, or the same start and was scheduled later.
+     */
+    boolean precedes(DiscountCampaign other) {
+        if (priority != other.priority)
+            return priority > other.priority;
+        int order = start.compareTo(other.start);
+        return order != 0 ? order > 0 : sequence > other.sequence;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + percentOff + " % off from " + start + " to " + end + ", priority " + priority + ", " + getState().name().toLowerCase();
+    }
+}
@@ -1,5 +1,7 @@
 package registry;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Formatter;
 
 /**
@@ -8,17 +10,49 @@ import java.util.Formatter;
  * This fits well with most factory warehouses, where the number of similar items exceed the number of dissimilar item.
  */
 public class Item {
+    /**
+     * The dictionaries encoding the brands and colors of every Item. Shared by all Items, so Items with the same brand or color share the same code and String instance.
+     */
+    static final StringDictionary BRANDS = new StringDictionary();
+    static final StringDictionary COLORS = new StringDictionary();
+
+    /**
+     * The value of <code>amountInStorage</code> once the amount has been moved to <code>stripedAmountInStorage</code>.
+     */
+    private static final int STRIPED = -1;
+    private static final VarHandle AMOUNT_IN_STORAGE;
+
+    static {
+        try {
+            AMOUNT_IN_STORAGE = MethodHandles.lookup().findVarHandle(Item.class, "amountInStorage", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private String itemNumber;
     private String description;
-    private int amountInStorage;
+    /**
+     * The amount in storage, changed with compare-and-set. The first time two threads change it at the same time, the amount is moved to a
+     * <code>StockCounter</code>, spreading it over cells so that the threads changing it no longer contend, and this field is set to <code>STRIPED</code>.
+     * Items which are never contended thereby cost no more than an <code>int</code> and a null reference.
+     */
+    private volatile int amountInStorage;
+    private volatile StockCounter stripedAmountInStorage = null;
     private int price;
     private float priceDiscount = 0;
     private ItemCategory category;
-    private String brand;
+    private int brandCode;
     private float weight;
     private float width;
     private float length;
-    private String color;
+    private int colorCode;
+
+    /**
+     * Case-folded copies of the item number and description, kept up to date by their setters so that case-insensitive searches do not have to fold them again on every query.
+     */
+    private char[] foldedItemNumber;
+    private char[] foldedDescription;
 
     /**
      * Creates a new instance of 
@@ -79,7 +113,7 @@ public class Item {
      */
     @Override
     public Item clone() {
-        Item i = new Item(itemNumber, description, amountInStorage, price, category, brand, weight, width, length, color);
+        Item i = new Item(itemNumber, description, getAmountInStorage(), price, category, getBrand(), weight, width, length, getColor());
         i.setDiscount(this.priceDiscount);
         return i;
     }
@@ -100,6 +134,9 @@ public class Item {
         if (items.length == 0)
             return null;
 
+        ItemTableEvent event = new ItemTableEvent();
+        event.begin();
+
         String[][] fields = new String[items.length][];
         fields[0] = items[0].fieldsAsStrings(decimalPlaces); // Perform first iteration outside the loop...
         int numFields = fields[0].length;                    // ... to find the number of fields in a single  ...
@@ -116,6 +153,12 @@ public class Item {
             sb.append(items[i].toTableString(columnLengths, decimalPlaces)).append("\n");
         sb.append(items[items.length - 1].toTableString(columnLengths, decimalPlaces));
 
+        event.end();
+        if (event.shouldCommit()) {
+            event.rows = items.length;
+            event.length = sb.length();
+            event.commit();
+        }
         return sb.toString();
     }
 
@@ -128,15 +171,15 @@ public class Item {
         return new String[] {
                 itemNumber,
                 description,
-                String.valueOf(amountInStorage),
+                String.valueOf(getAmountInStorage()),
                 String.valueOf(price),
                 String.format("%."+decimalPlaces+"f", priceDiscount),
                 category.name(),
-                brand,
+                getBrand(),
                 String.format("%."+decimalPlaces+"f", weight),
                 String.format("%."+decimalPlaces+"f", width),
                 String.format("%."+decimalPlaces+"f", length),
-                color
+                getColor()
         };
     }
 
@@ -150,15 +193,15 @@ public class Item {
         Formatter sf = new Formatter();
         sf.format("%"    + columnWidths[0]  + "s - ",                             itemNumber);
         sf.format("%-"   + columnWidths[1]  + "s : [",                            description);
-        sf.format("%"    + columnWidths[2]  + "d units| ",                        amountInStorage);
+        sf.format("%"    + columnWidths[2]  + "d units| ",                        getAmountInStorage());
         sf.format("%"    + columnWidths[3]  + "d kr| ",                           price);
         sf.format("%"    + columnWidths[4]  + "." + decimalPlaces + "f %% off| ", priceDiscount);
         sf.format("%"    + columnWidths[5]  + "s| ",                              category);
-        sf.format("%"    + columnWidths[6]  + "s| ",                              brand);
+        sf.format("%"    + columnWidths[6]  + "s| ",                              getBrand());
         sf.format("%"    + columnWidths[7]  + "." + decimalPlaces + "f kg| ",     weight);
         sf.format("w=%"  + columnWidths[8]  + "." + decimalPlaces + "fm| ",       width);
         sf.format("l=%"  + columnWidths[9]  + "." + decimalPlaces + "fm| ",       length);
-        sf.format("%"    + columnWidths[10] + "s]",                               color);
+        sf.format("%"    + columnWidths[10] + "s]",                               getColor());
         return sf.toString();
     }
 
@@ -172,6 +215,7 @@ public class Item {
         if (isBlank(itemNumber))
             throw new IllegalArgumentException("The item number of an  cannot be empty");
         this.itemNumber = itemNumber;
+        this.foldedItemNumber = CaseInsensitiveMatcher.fold(itemNumber);
     }
 
     /**
@@ -182,16 +226,59 @@ public class Item {
         if (isBlank(description))
             throw new IllegalArgumentException("The description of an  cannot be empty");
         this.description = description;
+        this.foldedDescription = CaseInsensitiveMatcher.fold(description);
     }
 
     /**
      * Sets the amount of this item currently in storage. Throws an <code>IllegalArgumentException</code> if the submitted parameter is a non-positive number.
+     * Changes made at the same time with <code>tryChangeAmountInStorage</code> may be lost.
      * @param amountInStorage The new amount of this item currently in storage.
      */
     public void setAmountInStorage(int amountInStorage) {
         if (amountInStorage < 0)
             throw new IllegalArgumentException("The amount of this  in storage must be a positive value");
-        this.amountInStorage = amountInStorage;
+        int current;
+        do {
+            current = this.amountInStorage;
+            if (current == STRIPED) {
+                stripedAmountInStorage.set(amountInStorage);
+                return;
+            }
+        } while (!AMOUNT_IN_STORAGE.compareAndSet(this, current, amountInStorage));
+    }
+
+    /**
+     * Adds to or withdraws from the amount of this item in storage, atomically and without locking, unless that would leave a negative amount.
+     * Any number of threads may change the amount at the same time, see <code>StockCounter</code>.
+     * @param amount The amount to add (positive values) or withdraw (negative values).
+     * @return True if the amount was changed, or false if there was not enough in storage, or the result would not fit in an <code>int</code>.
+     */
+    public boolean tryChangeAmountInStorage(int amount) {
+        int current = amountInStorage;
+        if (current != STRIPED) {
+            long changed = (long) current + amount;
+            if (changed < 0 || changed > Integer.MAX_VALUE)
+                return false;
+            if (AMOUNT_IN_STORAGE.compareAndSet(this, current, (int) changed))
+                return true;
+            stripeAmountInStorage();
+        }
+        StockCounter striped = stripedAmountInStorage;
+        if (amount < 0)
+            return striped.tryWithdraw(-(long) amount);
+        return striped.tryAdd(amount, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Moves the amount in storage to a <code>StockCounter</code>, once contended.
+     */
+    private synchronized void stripeAmountInStorage() {
+        int current;
+        while ((current = amountInStorage) != STRIPED) {
+            stripedAmountInStorage = new StockCounter(current);
+            if (AMOUNT_IN_STORAGE.compareAndSet(this, current, STRIPED))
+                return;
+        }
     }
 
     /**
@@ -222,7 +309,7 @@ public class Item {
     private void setBrand(String brand) {
         if (isBlank(brand))
             throw new IllegalArgumentException("The brand of an  cannot be empty");
-        this.brand = brand;
+        this.brandCode = BRANDS.encode(brand);
     }
 
     /**
@@ -262,7 +349,7 @@ public class Item {
     private void setColor(String color) {
         if (isBlank(color))
             throw new IllegalArgumentException("The color of an  cannot be empty");
-        this.color = color;
+        this.colorCode = COLORS.encode(color);
     }
 
     /**
@@ -330,7 +417,7 @@ public class Item {
      * @return The brand this  is associated with.
      */
     public String getBrand() {
-        return brand;
+        return BRANDS.decode(brandCode);
     }
 
     /**
@@ -362,7 +449,7 @@ public class Item {
      * @return The color of this .
      */
     public String getColor() {
-        return color;
+        return COLORS.decode(colorCode);
     }
 
     /**
@@ -370,10 +457,43 @@ public class Item {
      * @return The amount of this  currently in storage.
      */
     public int getAmountInStorage() {
-        return amountInStorage;
+        int current = amountInStorage;
+        return current != STRIPED ? current : (int) Math.min(Integer.MAX_VALUE, stripedAmountInStorage.get()); // Above only for an instant, see StockCounter.tryAdd
     }
 
     public ItemCategory getCategory() {
         return category;
     }
+
+    /**
+     * Returns the code of the brand of this Item in the <code>BRANDS</code> dictionary. Items share the same code if, and only if, they have equal brands.
+     * @return The code of the brand of this Item.
+     */
+    int getBrandCode() {
+        return brandCode;
+    }
+
+    /**
+     * Returns the code of the color of this Item in the <code>COLORS</code> dictionary. Items share the same code if, and only if, they have equal colors.
+     * @return The code of the color of this Item.
+     */
+    int getColorCode() {
+        return colorCode;
+    }
+
+    /**
+     * Returns the item number of this Item, case-folded by <code>CaseInsensitiveMatcher.fold(...)</code>. The returned array must not be modified.
+     * @return The case-folded item number of this Item.
+     */
+    char[] getFoldedItemNumber() {
+        return foldedItemNumber;
+    }
+
+    /**
+     * Returns the description of this Item, case-folded by <code>CaseInsensitiveMatcher.fold(...)</code>. The returned array must not be modified.
+     * @return The case-folded description of this Item.
+     */
+    char[] getFoldedDescription() {
+        return foldedDescription;
+    }
 }
@@ -0,0 +1,98 @@
+package registry;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The directory of a registry, finding Items by their item numbers.
+ * <br><br> Item numbers that can be packed by <code>ItemNumberCodec</code> are stored as primitive keys in a <code>LongItemMap</code>,
+ * which is smaller and faster than a <code>HashMap</code> with String keys. Any other item numbers fall back to a <code>HashMap</code>.
+ */
+final class ItemDirectory implements Iterable<Item> {
+    private final LongItemMap packed = new LongItemMap();
+    private final HashMap<String, Item> unpacked = new HashMap<>();
+
+    Item get(String itemNumber) {
+        long key = ItemNumberCodec.pack(itemNumber);
+        return key == ItemNumberCodec.NOT_PACKABLE ? unpacked.get(itemNumber) : packed.get(key);
+    }
+
+    boolean containsKey(String itemNumber) {
+        return get(itemNumber) != null;
+    }
+
+    Item put(String itemNumber, Item item) {
+        long key = ItemNumberCodec.pack(itemNumber);
+        return key == ItemNumberCodec.NOT_PACKABLE ? unpacked.put(itemNumber, item) : packed.put(key, item);
+    }
+
+    Item remove(String itemNumber) {
+        long key = ItemNumberCodec.pack(itemNumber);
+        return key == ItemNumberCodec.NOT_PACKABLE ? unpacked.remove(itemNumber) : packed.remove(key);
+    }
+
+    int size() {
+        return packed.size() + unpacked.size();
+    }
+
+    /**
+     * Returns the number of Items stored under a packed item number.
+     * @return The number of Items stored under a packed item number.
+     */
+    int numPacked() {
+        return packed.size();
+    }
+
+    /**
+     * Returns every Item in this directory.
+     * @return A new array holding every Item in this directory.
+     */
+    Item[] toArray() {
+        Item[] result = new Item[size()];
+        packed.copyValuesTo(result, 0);
+        int i = packed.size();
+        for (Item item : unpacked.values())
+            result[i++] = item;
+        return result;
+    }
+
+    /**
+     * Iterates over every Item in this directory, without copying them. The directory must not be changed during the iteration.
+     */
+    @Override
+    public Iterator<Item> iterator() {
+        return new Iterator<>() {
+            private final Item[] slots = packed.slots();
+            private int slot = nextSlot(0);
+            private Iterator<Item> rest = null;
+
+            private int nextSlot(int from) {
+                while (from < slots.length && slots[from] == null)
+                    from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (slot < slots.length)
+                    return true;
+                if (rest == null)
+                    rest = unpacked.values().iterator();
+                return rest.hasNext();
+            }
+
+            @Override
+            public Item next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                if (slot < slots.length) {
+                    Item item = slots[slot];
+                    slot = nextSlot(slot + 1);
+                    return item;
+                }
+                return rest.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package registry;
+
+import java.util.function.Predicate;
+
+/**
+ * Predicates selecting the Items changed by bulk operations such as <code>ItemRegistry.repriceAll</code>. Combine them with <code>and</code>, <code>or</code> and <code>negate</code>.
+ * <br><br> Example: all Doors from Heidal priced between 1000 and 5000 kr, <code>ItemFilter.category(ItemCategory.Doors).and(ItemFilter.brand("Heidal")).and(ItemFilter.priceBetween(1000, 5000))</code>.
+ */
+public final class ItemFilter {
+    private ItemFilter() {}
+
+    /**
+     * Selects every Item.
+     * @return A predicate true for every Item.
+     */
+    public static Predicate<Item> all() {
+        return item -> true;
+    }
+
+    /**
+     * Selects the Items of a category.
+     * @param category The category to select.
+     * @return A predicate true for the Items of the category.
+     */
+    public static Predicate<Item> category(ItemCategory category) {
+        if (category == null)
+            throw new IllegalArgumentException("Parameter 'category' cannot be null");
+        return item -> item.getCategory() == category;
+    }
+
+    /**
+     * Selects the Items of a brand, matched exactly like <code>ItemRegistry.searchByBrand</code>. The brand is looked up once, so that every Item is only
+     * checked by comparing codes; a brand no Item had when the predicate was created is never selected.
+     * @param brand The brand to select.
+     * @return A predicate true for the Items of the brand.
+     */
+    public static Predicate<Item> brand(String brand) {
+        if (brand == null)
+            throw new IllegalArgumentException("Parameter 'brand' cannot be null");
+        int code = Item.BRANDS.lookup(brand);
+        if (code == StringDictionary.NO_CODE)
+            return item -> false;
+        return item -> item.getBrandCode() == code;
+    }
+
+    /**
+     * Selects the Items with a price, before discount, within a range.
+     * @param min The lowest price selected.
+     * @param max The highest price selected.
+     * @return A predicate true for the Items priced from min to max, inclusive.
+     */
+    public static Predicate<Item> priceBetween(int min, int max) {
+        if (min > max)
+            throw new IllegalArgumentException("The lowest price cannot be higher than the highest price");
+        return item -> item.getPrice() >= min && item.getPrice() <= max;
+    }
+}
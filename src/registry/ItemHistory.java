@@ -0,0 +1,188 @@
+package registry;
+
+import java.util.Arrays;
+
+/**
+ * The history of the amount in storage, price and discount of one item number, kept by <code>RegistryHistory</code> as an append-only log of changes.
+ * <br><br> Every change is a record of a few bytes: a varint holding the time since the previous record in milliseconds along with the kind of change,
+ * followed by the change itself, as a zigzag varint of the difference to the previous value. Registrations hold the full values instead.
+ * After every <code>RECORDS_PER_CHECKPOINT</code> records, the values at that point are kept as a checkpoint, so that the values at any time are found
+ * by a binary search of the checkpoints, and by replaying at most that many records from the checkpoint before it.
+ * <br><br> Every method is synchronized, since records of stock changes arrive from any number of threads.
+ */
+final class ItemHistory {
+    static final int RECORDS_PER_CHECKPOINT = 64;
+
+    private static final int REGISTERED = 0;
+    private static final int DELETED = 1;
+    private static final int AMOUNT_IN_STORAGE = 2;
+    private static final int PRICE = 3;
+    private static final int DISCOUNT = 4;
+    private static final int KIND_BITS = 3;
+
+    private byte[] log = new byte[16];
+    private int length = 0;
+    private int records = 0;
+
+    // The values after the last record
+    private long time = 0;
+    private boolean exists = false;
+    private int amountInStorage = 0;
+    private int price = 0;
+    private int discountBits = 0;
+
+    // The values after every RECORDS_PER_CHECKPOINT records, and where the next record starts. The first checkpoint is the start of the log.
+    private int checkpoints = 1;
+    private long[] checkpointTimes = new long[1];
+    private int[] checkpointOffsets = new int[1];
+    private int[] checkpointValues = new int[4];
+
+    synchronized void registered(long time, int amountInStorage, int price, float percentOff) {
+        appendHeader(time, REGISTERED);
+        appendVarint(amountInStorage);
+        appendVarint(price);
+        appendVarint(Float.floatToIntBits(percentOff));
+        exists = true;
+        this.amountInStorage = amountInStorage;
+        this.price = price;
+        this.discountBits = Float.floatToIntBits(percentOff);
+        recordAppended();
+    }
+
+    synchronized void deleted(long time) {
+        appendHeader(time, DELETED);
+        exists = false;
+        recordAppended();
+    }
+
+    synchronized void amountInStorageChanged(long time, int difference) {
+        appendHeader(time, AMOUNT_IN_STORAGE);
+        appendVarint(zigzag(difference));
+        amountInStorage += difference;
+        recordAppended();
+    }
+
+    synchronized void priceChanged(long time, int price) {
+        appendHeader(time, PRICE);
+        appendVarint(zigzag(price - this.price));
+        this.price = price;
+        recordAppended();
+    }
+
+    synchronized void discountChanged(long time, float percentOff) {
+        int bits = Float.floatToIntBits(percentOff);
+        appendHeader(time, DISCOUNT);
+        appendVarint(zigzag(bits - discountBits));
+        discountBits = bits;
+        recordAppended();
+    }
+
+    /**
+     * Returns the values at a point in time.
+     * @param itemNumber The item number this history belongs to.
+     * @param at The point in time, in milliseconds since the epoch. Changes made in the same millisecond are included.
+     * @return The values, or null if no Item had the item number at that time.
+     */
+    synchronized ItemSnapshot valuesAt(String itemNumber, long at) {
+        if (at < 0)
+            return null;
+        // The last checkpoint at or before the time
+        int c = Arrays.binarySearch(checkpointTimes, 0, checkpoints, at);
+        if (c < 0)
+            c = -c - 2;
+        else
+            while (c + 1 < checkpoints && checkpointTimes[c + 1] == at)
+                c++;
+
+        long t = checkpointTimes[c];
+        int amount = checkpointValues[4 * c], p = checkpointValues[4 * c + 1], bits = checkpointValues[4 * c + 2];
+        boolean present = checkpointValues[4 * c + 3] != 0;
+        int[] position = { checkpointOffsets[c] };
+        while (position[0] < length) {
+            long header = readVarint(position);
+            t += header >>> KIND_BITS;
+            if (t > at)
+                break;
+            switch ((int) (header & ((1 << KIND_BITS) - 1))) {
+                case REGISTERED -> {
+                    present = true;
+                    amount = (int) readVarint(position);
+                    p = (int) readVarint(position);
+                    bits = (int) readVarint(position);
+                }
+                case DELETED -> present = false;
+                case AMOUNT_IN_STORAGE -> amount += unzigzag(readVarint(position));
+                case PRICE -> p += unzigzag(readVarint(position));
+                case DISCOUNT -> bits += unzigzag(readVarint(position));
+                default -> throw new IllegalStateException("Corrupt history of " + itemNumber);
+            }
+        }
+        return present ? new ItemSnapshot(itemNumber, at, amount, p, Float.intBitsToFloat(bits)) : null;
+    }
+
+    synchronized int records() {
+        return records;
+    }
+
+    synchronized int bytes() {
+        return length + checkpoints * (Long.BYTES + 5 * Integer.BYTES);
+    }
+
+    private void appendHeader(long time, int kind) {
+        time = Math.max(time, this.time); // A clock going backwards would break the deltas
+        appendVarint((time - this.time) << KIND_BITS | kind);
+        this.time = time;
+    }
+
+    private void recordAppended() {
+        if (++records % RECORDS_PER_CHECKPOINT != 0)
+            return;
+        if (checkpoints == checkpointTimes.length) {
+            checkpointTimes = Arrays.copyOf(checkpointTimes, checkpoints * 2);
+            checkpointOffsets = Arrays.copyOf(checkpointOffsets, checkpoints * 2);
+            checkpointValues = Arrays.copyOf(checkpointValues, checkpoints * 8);
+        }
+        checkpointTimes[checkpoints] = time;
+        checkpointOffsets[checkpoints] = length;
+        checkpointValues[4 * checkpoints] = amountInStorage;
+        checkpointValues[4 * checkpoints + 1] = price;
+        checkpointValues[4 * checkpoints + 2] = discountBits;
+        checkpointValues[4 * checkpoints + 3] = exists ? 1 : 0;
+        checkpoints++;
+    }
+
+    private void appendVarint(long value) {
+        if (length + 10 > log.length)
+            log = Arrays.copyOf(log, Math.max(log.length * 2, length + 10));
+        while ((value & ~0x7FL) != 0) {
+            log[length++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        log[length++] = (byte) value;
+    }
+
+    private void appendVarint(int value) {
+        appendVarint(value & 0xFFFFFFFFL);
+    }
+
+    private long readVarint(int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = log[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int zigzag(int value) {
+        return value << 1 ^ value >> 31;
+    }
+
+    private static int unzigzag(long value) {
+        int v = (int) value;
+        return v >>> 1 ^ -(v & 1);
+    }
+}
@@ -0,0 +1,65 @@
+package registry;
+
+/**
+ * Packs short item numbers into a single <code>long</code>, so they can be stored and compared as primitive values.
+ * <br><br> An item number can be packed if it consists of no more than 12 characters, each being a digit or an upper case letter from A to Z.
+ * Each character is stored as a base-37 digit from 1 to 36, leaving 0 unused, so that item numbers of different lengths never pack to the same value
+ * (e.g. "0" and "00" differ). 37 to the power of 12 is less than 2 to the power of 63, so every packed item number is a positive <code>long</code>.
+ */
+public final class ItemNumberCodec {
+    /**
+     * The longest item number that can be packed.
+     */
+    public static final int MAX_PACKED_LENGTH = 12;
+    /**
+     * Returned by <code>pack(...)</code> for item numbers that cannot be packed.
+     */
+    public static final long NOT_PACKABLE = -1;
+    private static final int RADIX = 37;
+    private static final String DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private ItemNumberCodec() {}
+
+    /**
+     * Packs an item number into a <code>long</code>.
+     * @param itemNumber The item number to pack.
+     * @return The packed item number, which is always positive, or <code>NOT_PACKABLE</code> if the item number is too long or contains other characters than digits and upper case letters.
+     */
+    public static long pack(String itemNumber) {
+        int length = itemNumber.length();
+        if (length == 0 || length > MAX_PACKED_LENGTH)
+            return NOT_PACKABLE;
+
+        long packed = 0;
+        for (int i = 0; i < length; i++) {
+            char c = itemNumber.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9')
+                digit = c - '0' + 1;
+            else if (c >= 'A' && c <= 'Z')
+                digit = c - 'A' + 11;
+            else
+                return NOT_PACKABLE;
+            packed = packed * RADIX + digit;
+        }
+        return packed;
+    }
+
+    /**
+     * Restores an item number packed by <code>pack(...)</code>.
+     * @param packed A value returned by <code>pack(...)</code>.
+     * @return The item number that was packed.
+     */
+    public static String unpack(long packed) {
+        if (packed <= 0)
+            throw new IllegalArgumentException("Not a packed item number: " + packed);
+
+        char[] buffer = new char[MAX_PACKED_LENGTH];
+        int start = buffer.length;
+        while (packed > 0) {
+            buffer[--start] = DIGITS.charAt((int) (packed % RADIX) - 1);
+            packed /= RADIX;
+        }
+        return new String(buffer, start, buffer.length - start);
+    }
+}
@@ -0,0 +1,519 @@
+package registry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * A radix tree over the case-folded item numbers of a registry. Supports prefix enumeration in sorted order, counting by prefix, suggesting free item numbers,
+ * and lookups of every item number within a given edit distance of a search term.
+ * <br><br> Chains of nodes with a single child are compressed into one node holding the whole chain as its edge. Like in an adaptive radix tree, a node stores its children
+ * in small sorted arrays that grow in steps as children are added, and switches to a table indexed directly by character once it has too many children to search quickly.
+ * Every node counts the item numbers below it, so counting by prefix only needs to find the node of the prefix.
+ * <br><br> The edit distance used is the optimal string alignment distance: insertions, deletions, substitutions and transpositions of two adjacent characters each count as one edit.
+ * A fuzzy lookup walks the tree while computing one row of the edit distance matrix per character, and leaves a branch as soon as every value in the row exceeds the maximum distance.
+ * Since item numbers sharing a prefix share the rows computed for that prefix, only a small part of the tree is visited, no matter how many item numbers it holds.
+ */
+final class ItemNumberIndex {
+    /**
+     * The capacities a sparse child array grows through. A node with more children than the last capacity switches to a direct table, if all its labels fit in it.
+     */
+    private static final int[] SPARSE_CAPACITIES = { 4, 16, 48 };
+    private static final int DENSE_SIZE = 256;
+    /**
+     * The characters item number suggestions are counted up through, in order.
+     */
+    private static final String SUGGESTION_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    /**
+     * The largest number of candidates examined when suggesting free item numbers, so a nearly saturated range cannot stall the caller.
+     */
+    private static final int MAX_SUGGESTION_CANDIDATES = 100_000;
+    private static final String[] NO_KEYS = new String[0];
+
+    private static final class Node {
+        /**
+         * The characters leading from the parent to this node. Only empty at the root.
+         */
+        private char[] edge;
+        /**
+         * Sorted labels of the children, while this node is sparse. Null once this node is dense.
+         */
+        private char[] labels = null;
+        /**
+         * The children of this node. Sorted one to one with 'labels' while sparse, or indexed by label while dense.
+         */
+        private Node[] children = null;
+        private int numChildren = 0;
+        /**
+         * The item numbers ending at this node. Usually holds no more than a single item number, but item numbers only differing by case end at the same node.
+         */
+        private String[] keys = NO_KEYS;
+        /**
+         * The number of item numbers ending at this node or below it.
+         */
+        private int count = 0;
+
+        private Node(char[] edge) {
+            this.edge = edge;
+        }
+
+        private boolean isDense() {
+            return children != null && labels == null;
+        }
+
+        private Node child(char label) {
+            if (children == null)
+                return null;
+            if (isDense())
+                return label < DENSE_SIZE ? children[label] : null;
+            int i = Arrays.binarySearch(labels, 0, numChildren, label);
+            return i >= 0 ? children[i] : null;
+        }
+
+        /**
+         * Returns the i-th child in sorted order. Only efficient for a sparse node.
+         */
+        private Node childAt(int i) {
+            if (!isDense())
+                return children[i];
+            for (Node c : children)
+                if (c != null && i-- == 0)
+                    return c;
+            throw new IndexOutOfBoundsException(i);
+        }
+
+        private void putChild(Node child) {
+            char label = child.edge[0];
+            if (isDense() && label < DENSE_SIZE) {
+                if (children[label] == null)
+                    numChildren++;
+                children[label] = child;
+                return;
+            }
+            if (isDense())
+                toSparse();
+
+            if (children == null) {
+                labels = new char[SPARSE_CAPACITIES[0]];
+                children = new Node[SPARSE_CAPACITIES[0]];
+            }
+            int i = Arrays.binarySearch(labels, 0, numChildren, label);
+            if (i >= 0) {
+                children[i] = child;
+                return;
+            }
+            i = -(i + 1);
+
+            if (numChildren == labels.length) {
+                if (labels.length >= SPARSE_CAPACITIES[SPARSE_CAPACITIES.length - 1] && labels[numChildren - 1] < DENSE_SIZE && label < DENSE_SIZE) {
+                    toDense();
+                    putChild(child);
+                    return;
+                }
+                int capacity = numChildren * 2;
+                for (int c : SPARSE_CAPACITIES)
+                    if (c > numChildren) {
+                        capacity = c;
+                        break;
+                    }
+                labels = Arrays.copyOf(labels, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(labels, i, labels, i + 1, numChildren - i);
+            System.arraycopy(children, i, children, i + 1, numChildren - i);
+            labels[i] = label;
+            children[i] = child;
+            numChildren++;
+        }
+
+        private void removeChild(char label) {
+            if (isDense()) {
+                if (children[label] != null) {
+                    children[label] = null;
+                    numChildren--;
+                }
+                if (numChildren <= SPARSE_CAPACITIES[SPARSE_CAPACITIES.length - 1] / 2)
+                    toSparse();
+                return;
+            }
+            int i = Arrays.binarySearch(labels, 0, numChildren, label);
+            if (i < 0)
+                return;
+            numChildren--;
+            System.arraycopy(labels, i + 1, labels, i, numChildren - i);
+            System.arraycopy(children, i + 1, children, i, numChildren - i);
+            children[numChildren] = null;
+            if (numChildren == 0) {
+                labels = null;
+                children = null;
+            }
+        }
+
+        private void toDense() {
+            Node[] table = new Node[DENSE_SIZE];
+            for (int i = 0; i < numChildren; i++)
+                table[labels[i]] = children[i];
+            labels = null;
+            children = table;
+        }
+
+        private void toSparse() {
+            Node[] table = children;
+            int capacity = Math.max(numChildren, SPARSE_CAPACITIES[SPARSE_CAPACITIES.length - 1]);
+            labels = new char[capacity];
+            children = new Node[capacity];
+            int i = 0;
+            for (int label = 0; label < table.length; label++)
+                if (table[label] != null) {
+                    labels[i] = (char) label;
+                    children[i++] = table[label];
+                }
+        }
+    }
+
+    /**
+     * An item number found by a fuzzy lookup, along with its distance from the search term.
+     */
+    private record Match(String key, int distance) {}
+
+    private final Node root = new Node(new char[0]);
+    private int numNodes = 1;
+
+    /**
+     * Adds an item number to this index.
+     * @param itemNumber The item number to add.
+     */
+    void add(String itemNumber) {
+        char[] key = CaseInsensitiveMatcher.fold(itemNumber);
+        Node node = root;
+        node.count++;
+        int depth = 0;
+
+        while (depth < key.length) {
+            Node child = node.child(key[depth]);
+            if (child == null) {
+                Node leaf = new Node(Arrays.copyOfRange(key, depth, key.length));
+                node.putChild(leaf);
+                numNodes++;
+                node = leaf;
+                node.count++;
+                depth = key.length;
+                break;
+            }
+
+            int common = commonPrefixLength(child.edge, key, depth);
+            if (common < child.edge.length) { // The key leaves the edge of the child midway, so split the edge there
+                Node split = new Node(Arrays.copyOf(child.edge, common));
+                child.edge = Arrays.copyOfRange(child.edge, common, child.edge.length);
+                split.count = child.count;
+                split.putChild(child);
+                node.putChild(split);
+                numNodes++;
+                child = split;
+            }
+            node = child;
+            node.count++;
+            depth += common;
+        }
+
+        node.keys = Arrays.copyOf(node.keys, node.keys.length + 1);
+        node.keys[node.keys.length - 1] = itemNumber;
+    }
+
+    /**
+     * Removes an item number from this index. Nodes left without any item numbers below them are removed, and nodes left with a single child are merged with it.
+     * @param itemNumber The item number to remove.
+     * @return True if the item number was found and removed, otherwise false.
+     */
+    boolean remove(String itemNumber) {
+        char[] key = CaseInsensitiveMatcher.fold(itemNumber);
+        if (!remove(root, key, 0, itemNumber))
+            return false;
+        root.count--;
+        return true;
+    }
+
+    private boolean remove(Node node, char[] key, int depth, String itemNumber) {
+        if (depth == key.length) {
+            int i = Arrays.asList(node.keys).indexOf(itemNumber);
+            if (i < 0)
+                return false;
+
+            String[] keys = new String[node.keys.length - 1];
+            System.arraycopy(node.keys, 0, keys, 0, i);
+            System.arraycopy(node.keys, i + 1, keys, i, keys.length - i);
+            node.keys = keys.length == 0 ? NO_KEYS : keys;
+            return true;
+        }
+
+        Node child = node.child(key[depth]);
+        if (child == null || commonPrefixLength(child.edge, key, depth) < child.edge.length)
+            return false;
+        if (!remove(child, key, depth + child.edge.length, itemNumber))
+            return false;
+
+        child.count--;
+        if (child.count == 0) {
+            node.removeChild(child.edge[0]);
+            numNodes--;
+        } else if (child.keys.length == 0 && child.numChildren == 1) { // Restore path compression
+            Node grandchild = child.childAt(0);
+            char[] edge = Arrays.copyOf(child.edge, child.edge.length + grandchild.edge.length);
+            System.arraycopy(grandchild.edge, 0, edge, child.edge.length, grandchild.edge.length);
+            grandchild.edge = edge;
+            node.putChild(grandchild);
+            numNodes--;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of item numbers in this index.
+     * @return The number of item numbers in this index.
+     */
+    int size() {
+        return root.count;
+    }
+
+    /**
+     * Returns the number of nodes in this index, including the root.
+     * @return The number of nodes in this index.
+     */
+    int numNodes() {
+        return numNodes;
+    }
+
+    /**
+     * Checks if this index holds an item number equal to the submitted one, ignoring case.
+     * @param itemNumber The item number to look for.
+     * @return True if an item number equal to the submitted one was found, ignoring case. Otherwise, false.
+     */
+    boolean containsIgnoreCase(String itemNumber) {
+        char[] key = CaseInsensitiveMatcher.fold(itemNumber);
+        Node node = root;
+        int depth = 0;
+        while (depth < key.length) {
+            node = node.child(key[depth]);
+            if (node == null || commonPrefixLength(node.edge, key, depth) < node.edge.length)
+                return false;
+            depth += node.edge.length;
+        }
+        return node.keys.length > 0;
+    }
+
+    /**
+     * Counts the item numbers starting with the submitted prefix. The count performed is NOT case-sensitive.
+     * @param prefix The prefix to count the item numbers of.
+     * @return The number of item numbers starting with the prefix.
+     */
+    int countWithPrefix(String prefix) {
+        Node node = find(CaseInsensitiveMatcher.fold(prefix));
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Lists the item numbers starting with the submitted prefix, sorted by their case-folded form. The search performed is NOT case-sensitive.
+     * @param prefix The prefix of the returned item numbers.
+     * @param maxResults The largest number of item numbers to return.
+     * @return The first item numbers starting with the prefix, in sorted order.
+     */
+    String[] withPrefix(String prefix, int maxResults) {
+        if (maxResults < 0)
+            throw new IllegalArgumentException("The maximum number of results cannot be negative");
+
+        ArrayList<String> result = new ArrayList<>();
+        Node node = find(CaseInsensitiveMatcher.fold(prefix));
+        if (node != null)
+            collectSorted(node, result, maxResults);
+        return result.toArray(new String[0]);
+    }
+
+    private static void collectSorted(Node node, ArrayList<String> result, int maxResults) {
+        if (node.keys.length > 0) {
+            String[] keys = node.keys.clone();
+            Arrays.sort(keys);
+            for (String key : keys) {
+                if (result.size() == maxResults)
+                    return;
+                result.add(key);
+            }
+        }
+        if (node.children == null)
+            return;
+        for (Node child : node.children) {
+            if (result.size() == maxResults)
+                return;
+            if (child != null)
+                collectSorted(child, result, maxResults);
+        }
+    }
+
+    /**
+     * Suggests item numbers that are free, counting up from the submitted item number.
+     * Letters and digits are counted up through 0-9 followed by A-Z, with the rightmost character counting fastest. Any other characters are left as they are.
+     * An item number is only suggested if no item number in this index is equal to it, ignoring case.
+     * @param itemNumber The item number to start counting from. It is suggested first, if free.
+     * @param maxResults The largest number of suggestions to return.
+     * @return Free item numbers, in upper case, in the order they were counted.
+     */
+    String[] suggestFree(String itemNumber, int maxResults) {
+        char[] candidate = itemNumber.toUpperCase(Locale.ROOT).toCharArray();
+        ArrayList<String> result = new ArrayList<>();
+        for (int examined = 0; examined < MAX_SUGGESTION_CANDIDATES && result.size() < maxResults; examined++) {
+            String s = new String(candidate);
+            if (!containsIgnoreCase(s))
+                result.add(s);
+            if (!increment(candidate))
+                break;
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * Counts the submitted characters up by one, as an odometer over the suggestion alphabet.
+     * @return False if every counted position rolled over, meaning there are no further candidates of this length.
+     */
+    private static boolean increment(char[] candidate) {
+        for (int i = candidate.length - 1; i >= 0; i--) {
+            int digit = SUGGESTION_ALPHABET.indexOf(candidate[i]);
+            if (digit < 0)
+                continue;
+            if (digit + 1 < SUGGESTION_ALPHABET.length()) {
+                candidate[i] = SUGGESTION_ALPHABET.charAt(digit + 1);
+                return true;
+            }
+            candidate[i] = SUGGESTION_ALPHABET.charAt(0);
+        }
+        return false;
+    }
+
+    /**
+     * Finds the node containing everything starting with the submitted folded prefix. If the prefix ends midway along an edge, the node below that edge is returned.
+     * @return The node of the prefix, or null if nothing starts with the prefix.
+     */
+    private Node find(char[] prefix) {
+        Node node = root;
+        int depth = 0;
+        while (depth < prefix.length) {
+            Node child = node.child(prefix[depth]);
+            if (child == null)
+                return null;
+            int common = commonPrefixLength(child.edge, prefix, depth);
+            if (depth + common == prefix.length)
+                return child;
+            if (common < child.edge.length)
+                return null;
+            node = child;
+            depth += common;
+        }
+        return node;
+    }
+
+    private static int commonPrefixLength(char[] edge, char[] key, int offset) {
+        int max = Math.min(edge.length, key.length - offset);
+        int i = 0;
+        while (i < max && edge[i] == key[offset + i])
+            i++;
+        return i;
+    }
+
+    /**
+     * Finds every item number within the submitted edit distance of the search term. The search performed is NOT case-sensitive.
+     * @param searchTerm The term to compare the item numbers against.
+     * @param maxDistance The largest number of edits allowed between the search term and a returned item number.
+     * @return The matching item numbers, the closest first. Item numbers at the same distance are sorted alphabetically.
+     */
+    String[] findWithin(String searchTerm, int maxDistance) {
+        if (maxDistance < 0)
+            throw new IllegalArgumentException("The maximum edit distance cannot be negative");
+
+        char[] term = CaseInsensitiveMatcher.fold(searchTerm);
+        int[] firstRow = new int[term.length + 1];
+        for (int j = 0; j < firstRow.length; j++)
+            firstRow[j] = j;
+
+        ArrayList<Match> matches = new ArrayList<>();
+        collect(root, firstRow, matches, maxDistance);
+        findWithinChildren(root, (char) 0, null, firstRow, term, maxDistance, matches);
+
+        matches.sort(Comparator.comparingInt(Match::distance).thenComparing(Match::key));
+        String[] result = new String[matches.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = matches.get(i).key();
+        return result;
+    }
+
+    /**
+     * Continues a fuzzy lookup into every child of 'node'. The first character of each child is read from the labels of 'node',
+     * so children pruned at their first character are never touched.
+     */
+    private static void findWithinChildren(Node node, char previousChar, int[] previousPreviousRow, int[] previousRow, char[] term, int maxDistance, ArrayList<Match> matches) {
+        if (node.children == null)
+            return;
+        if (node.isDense()) {
+            for (int label = 0; label < DENSE_SIZE; label++)
+                if (node.children[label] != null)
+                    findWithin(node.children[label], (char) label, previousChar, previousPreviousRow, previousRow, term, maxDistance, matches);
+        } else {
+            for (int i = 0; i < node.numChildren; i++)
+                findWithin(node.children[i], node.labels[i], previousChar, previousPreviousRow, previousRow, term, maxDistance, matches);
+        }
+    }
+
+    /**
+     * Computes the edit distance rows for the characters along the edge of 'node', and continues into the children of 'node' as long as a match is still within reach.
+     * @param node The node to continue the search into.
+     * @param firstChar The first character of the edge of 'node'.
+     * @param previousChar The character before the edge of 'node', only used if 'previousPreviousRow' is not null.
+     * @param previousPreviousRow The row computed two characters ago, or null at the first character.
+     * @param previousRow The row computed for the last character before the edge of 'node'.
+     */
+    private static void findWithin(Node node, char firstChar, char previousChar, int[] previousPreviousRow, int[] previousRow, char[] term, int maxDistance, ArrayList<Match> matches) {
+        char c = firstChar;
+        int[] row = nextRow(c, previousChar, previousPreviousRow, previousRow, term, maxDistance);
+        if (row == null)
+            return;
+
+        for (int i = 1; i < node.edge.length; i++) {
+            previousPreviousRow = previousRow;
+            previousRow = row;
+            previousChar = c;
+            c = node.edge[i];
+            row = nextRow(c, previousChar, previousPreviousRow, previousRow, term, maxDistance);
+            if (row == null)
+                return;
+        }
+
+        collect(node, row, matches, maxDistance);
+        findWithinChildren(node, c, previousRow, row, term, maxDistance, matches);
+    }
+
+    /**
+     * Computes the row of the edit distance matrix for the next character of a prefix.
+     * @return The computed row, or null if every value in it exceeds the maximum distance, meaning no extension of this prefix can get back within reach.
+     */
+    private static int[] nextRow(char c, char previousChar, int[] previousPreviousRow, int[] previousRow, char[] term, int maxDistance) {
+        int[] row = new int[previousRow.length];
+        row[0] = previousRow[0] + 1;
+        int rowMin = row[0];
+
+        for (int j = 1; j < row.length; j++) {
+            int substitutionCost = term[j - 1] == c ? 0 : 1;
+            int d = Math.min(Math.min(row[j - 1] + 1, previousRow[j] + 1), previousRow[j - 1] + substitutionCost);
+            if (previousPreviousRow != null && j > 1 && term[j - 1] == previousChar && term[j - 2] == c)
+                d = Math.min(d, previousPreviousRow[j - 2] + 1); // Transposition of two adjacent characters
+            row[j] = d;
+            rowMin = Math.min(rowMin, d);
+        }
+
+        return rowMin > maxDistance ? null : row;
+    }
+
+    private static void collect(Node node, int[] row, ArrayList<Match> matches, int maxDistance) {
+        int distance = row[row.length - 1];
+        if (distance <= maxDistance)
+            for (String key : node.keys)
+                matches.add(new Match(key, distance));
+    }
+}
@@ -1,10 +1,106 @@
 package registry;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
-public class ItemRegistry {
-    private final HashMap<String, Item> registry = new HashMap<>();
+/**
+ * A registry of every Item stored in a warehouse, identified by their item numbers.
+ * <br><br> A registry is safe to use from multiple threads. Lookups and searches run concurrently with each other, while changes to the registry are made one at a time.
+ * The exception is changes to the amounts in storage, which run concurrently with lookups and with each other.
+ * <br><br> A registry starts a thread of its own for the first reservation made with a time limit, and registers an MBean if asked to. Whoever creates
+ * a registry owns them, and should <code>close</code> it once done with it; registries created by other classes, such as the shards of a
+ * <code>ShardedItemRegistry</code> or the registry of a <code>ReplicaRegistry</code>, are closed along with them.
+ */
+public class ItemRegistry implements AutoCloseable {
+    private static final int DEFAULT_SEARCH_CACHE_ENTRIES = 256;
+    private static final int DEFAULT_SEARCH_CACHE_RESULTS = 65536;
+    private static final int ORDER_LOCK_STRIPES = 1024;
+    private static final long RESERVATION_TICK_MILLIS = 100;
+    private static final int RESERVATION_WHEEL_BUCKETS = 4096;
+    private static final int REPRICE_PARTITION_SIZE = 4096;
+
+    /**
+     * Reported by <code>changeAmountsInStorage</code> for a change to an item number which does not exist in the registry.
+     */
+    public static final int NO_SUCH_ITEM = -1;
+    /**
+     * Reported by <code>changeAmountsInStorage</code> for a change which would have left a negative amount in storage, or one too large to store.
+     */
+    public static final int INSUFFICIENT_AMOUNT = -2;
+
+    private final ItemDirectory registry = new ItemDirectory();
+    private final SearchCache searchCache;
+    private final ItemNumberIndex itemNumberIndex = new ItemNumberIndex();
+    private final DescriptionIndex descriptionIndex = new DescriptionIndex();
+    private final RegistryMetrics metrics = new RegistryMetrics();
+    private ObjectName mbeanName = null;
+    /**
+     * Guards the registry along with its indexes and version counters. The search cache guards itself, since it is updated during searches.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Held by multi-item withdrawals for every item number they withdraw from, hashed to one of a fixed number of stripes, and always taken in ascending order
+     * so that withdrawals cannot deadlock. Withdrawals of different items rarely share a stripe, and run in parallel.
+     */
+    private final ReentrantLock[] orderLocks = new ReentrantLock[ORDER_LOCK_STRIPES];
+    /**
+     * The amounts held by open reservations, by item number. Item numbers without any are left out.
+     */
+    private final ConcurrentHashMap<String, Integer> reservedAmounts = new ConcurrentHashMap<>();
+    /**
+     * Releases reservations once their time is up. Started by the first reservation with a time limit.
+     */
+    private volatile TimerWheel reservationExpiry = null;
+    /**
+     * Set by <code>close</code>, after which no reservation expiry is started. Guarded by <code>reservedAmounts</code>.
+     */
+    private boolean closed = false;
+    private final CopyOnWriteArrayList<RegistryListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * Estimates the rates of withdrawal of the Items. Added as a listener by the first call to <code>getConsumptionForecast()</code>.
+     */
+    private volatile ConsumptionForecast consumptionForecast = null;
+
+    /**
+     * Incremented whenever an item number is added to or removed from this registry. Search results depending on the set of item numbers are only valid as long as this value is unchanged.
+     */
+    private long itemNumberVersion = 0;
+    /**
+     * Incremented whenever the description of an Item in this registry is changed.
+     */
+    private long descriptionVersion = 0;
+
+    /**
+     * Creates a new, empty registry with a search cache of default size.
+     */
+    public ItemRegistry() {
+        this(DEFAULT_SEARCH_CACHE_ENTRIES);
+    }
+
+    /**
+     * Creates a new, empty registry.
+     * @param searchCacheEntries The maximum number of search results kept in this registry's search cache. A value of 0 disables the cache.
+     */
+    public ItemRegistry(int searchCacheEntries) {
+        searchCache = new SearchCache(searchCacheEntries, DEFAULT_SEARCH_CACHE_RESULTS);
+        for (int i = 0; i < ORDER_LOCK_STRIPES; i++)
+            orderLocks[i] = new ReentrantLock();
+    }
 
     public void printAllEntries() {
         System.out.println(this);
@@ -12,12 +108,17 @@ public class ItemRegistry {
 
     @Override
     public String toString() {
-        final int NUM_DECIMALS = 2;
+        lock.readLock().lock();
+        try {
+            final int NUM_DECIMALS = 2;
 
-        if (registry.size() != 0)
-            return Item.createTable(getAllItemsRef(), NUM_DECIMALS);
-        else
-            return "[Empty]";
+            if (registry.size() != 0)
+                return Item.createTable(getAllItemsRef(), NUM_DECIMALS);
+            else
+                return "[Empty]";
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -27,12 +128,71 @@ public class ItemRegistry {
      * @return The search result as an array of item numbers, or null if no relevant items were found.
      */
     public String[] searchByItemNumber(String searchTerm) {
-        ArrayList<String> itemNumbers = new ArrayList<>();
-        for (String key : registry.keySet().toArray(new String[0]))
-            if (key.toLowerCase().contains(searchTerm.toLowerCase()))
-                itemNumbers.add(key);
+        long start = metrics.start();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        lock.readLock().lock();
+        try {
+            CaseInsensitiveMatcher matcher = new CaseInsensitiveMatcher(searchTerm);
+            String term = matcher.foldedTerm();
+            String[] cached = searchCache.get(SearchCache.Mode.ITEM_NUMBER, term, itemNumberVersion);
+            if (cached != null) {
+                event.commit(SearchEvent.ITEM_NUMBER, searchTerm, cached.length, 0, true);
+                return cached;
+            }
 
-        return itemNumbers.toArray(new String[0]);
+            ArrayList<String> itemNumbers = new ArrayList<>();
+            for (Item val : registry)
+                if (matcher.matches(val.getFoldedItemNumber()))
+                    itemNumbers.add(val.getItemNumber());
+
+            String[] result = itemNumbers.toArray(new String[0]);
+            searchCache.put(SearchCache.Mode.ITEM_NUMBER, term, itemNumberVersion, result);
+            event.commit(SearchEvent.ITEM_NUMBER, searchTerm, result.length, registry.size(), false);
+            return result;
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.SEARCH_BY_ITEM_NUMBER);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.SEARCH_BY_ITEM_NUMBER, start);
+        }
+    }
+
+    /**
+     * Searches through the registry for any item number within the submitted number of edits from the search term.
+     * Inserting, deleting or replacing a character each count as one edit, as does swapping two adjacent characters. The search performed is NOT case-sensitive.
+     * @param searchTerm The term to compare the item numbers against.
+     * @param maxDistance The largest number of edits allowed between the search term and a returned item number.
+     * @return The search result as an array of item numbers, the closest matches first.
+     */
+    public String[] searchByItemNumberFuzzy(String searchTerm, int maxDistance) {
+        long start = metrics.start();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        lock.readLock().lock();
+        try {
+            String[] result = itemNumberIndex.findWithin(searchTerm, maxDistance);
+            event.commit(SearchEvent.ITEM_NUMBER_FUZZY, searchTerm, result.length, 0, false);
+            return result;
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.SEARCH_BY_ITEM_NUMBER_FUZZY);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.SEARCH_BY_ITEM_NUMBER_FUZZY, start);
+        }
+    }
+
+    /**
+     * Suggests item numbers the user might have meant to type, for when a search by item number gave no results.
+     * Allows one edit for every four characters in the search term, and at least one.
+     * @param searchTerm The search term that gave no results.
+     * @return The suggested item numbers, the closest matches first.
+     */
+    public String[] suggestItemNumbers(String searchTerm) {
+        final int CHARACTERS_PER_EDIT = 4;
+        return searchByItemNumberFuzzy(searchTerm, Math.max(1, searchTerm.length() / CHARACTERS_PER_EDIT));
     }
 
     /**
@@ -42,12 +202,357 @@ public class ItemRegistry {
      * @return The search result as an array of item numbers, or null if no relevant items were found.
      */
     public String[] searchByDescription(String searchTerm) {
-        ArrayList<String> itemNumbers = new ArrayList<>();
-        for (Item val : registry.values().toArray(new Item[0]))
-            if (val.getDescription().toLowerCase().contains(searchTerm.toLowerCase()))
-                itemNumbers.add(val.getItemNumber());
+        long start = metrics.start();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        lock.readLock().lock();
+        try {
+            CaseInsensitiveMatcher matcher = new CaseInsensitiveMatcher(searchTerm);
+            String term = matcher.foldedTerm();
+            long version = descriptionSearchVersion();
+            String[] cached = searchCache.get(SearchCache.Mode.DESCRIPTION, term, version);
+            if (cached != null) {
+                event.commit(SearchEvent.DESCRIPTION, searchTerm, cached.length, 0, true);
+                return cached;
+            }
+
+            ArrayList<String> itemNumbers = new ArrayList<>();
+            for (Item val : registry)
+                if (matcher.matches(val.getFoldedDescription()))
+                    itemNumbers.add(val.getItemNumber());
+
+            String[] result = itemNumbers.toArray(new String[0]);
+            searchCache.put(SearchCache.Mode.DESCRIPTION, term, version, result);
+            event.commit(SearchEvent.DESCRIPTION, searchTerm, result.length, registry.size(), false);
+            return result;
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.SEARCH_BY_DESCRIPTION);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.SEARCH_BY_DESCRIPTION, start);
+        }
+    }
+
+    /**
+     * Searches through the registry for every Item of the submitted brand. The brand is translated to its dictionary code once, so each Item is checked by a single integer comparison.
+     * The search performed IS case-sensitive.
+     * @param brand The brand of the returned Items.
+     * @return The search result as an array of item numbers.
+     */
+    public String[] searchByBrand(String brand) {
+        long start = metrics.start();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        lock.readLock().lock();
+        try {
+            int code = Item.BRANDS.lookup(brand);
+            ArrayList<String> itemNumbers = new ArrayList<>();
+            if (code != StringDictionary.NO_CODE)
+                for (Item val : registry)
+                    if (val.getBrandCode() == code)
+                        itemNumbers.add(val.getItemNumber());
+            event.commit(SearchEvent.BRAND, brand, itemNumbers.size(), code == StringDictionary.NO_CODE ? 0 : registry.size(), false);
+            return itemNumbers.toArray(new String[0]);
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.SEARCH_BY_BRAND);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.SEARCH_BY_BRAND, start);
+        }
+    }
+
+    /**
+     * Searches through the registry for every Item of the submitted color. The color is translated to its dictionary code once, so each Item is checked by a single integer comparison.
+     * The search performed IS case-sensitive.
+     * @param color The color of the returned Items.
+     * @return The search result as an array of item numbers.
+     */
+    public String[] searchByColor(String color) {
+        long start = metrics.start();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        lock.readLock().lock();
+        try {
+            int code = Item.COLORS.lookup(color);
+            ArrayList<String> itemNumbers = new ArrayList<>();
+            if (code != StringDictionary.NO_CODE)
+                for (Item val : registry)
+                    if (val.getColorCode() == code)
+                        itemNumbers.add(val.getItemNumber());
+            event.commit(SearchEvent.COLOR, color, itemNumbers.size(), code == StringDictionary.NO_CODE ? 0 : registry.size(), false);
+            return itemNumbers.toArray(new String[0]);
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.SEARCH_BY_COLOR);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.SEARCH_BY_COLOR, start);
+        }
+    }
 
-        return itemNumbers.toArray(new String[0]);
+    /**
+     * Lists the item numbers starting with the submitted prefix, sorted alphabetically (ignoring case). Useful for autocompleting an item number while it is typed.
+     * The search performed is NOT case-sensitive.
+     * @param prefix The prefix of the returned item numbers.
+     * @param maxResults The largest number of item numbers to return.
+     * @return The first item numbers starting with the prefix, in sorted order.
+     */
+    public String[] searchByItemNumberPrefix(String prefix, int maxResults) {
+        long start = metrics.start();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        lock.readLock().lock();
+        try {
+            String[] result = itemNumberIndex.withPrefix(prefix, maxResults);
+            event.commit(SearchEvent.ITEM_NUMBER_PREFIX, prefix, result.length, 0, false);
+            return result;
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.SEARCH_BY_ITEM_NUMBER_PREFIX);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.SEARCH_BY_ITEM_NUMBER_PREFIX, start);
+        }
+    }
+
+    /**
+     * Counts the item numbers starting with the submitted prefix, without listing them. The count performed is NOT case-sensitive.
+     * @param prefix The prefix to count the item numbers of.
+     * @return The number of item numbers in this registry starting with the prefix.
+     */
+    public int countItemNumbersWithPrefix(String prefix) {
+        lock.readLock().lock();
+        try {
+            return itemNumberIndex.countWithPrefix(prefix);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Suggests free item numbers, counting up from the submitted item number. Letters and digits are counted through 0-9 and then A-Z, with the last character counting fastest.
+     * e.g. if "HA56Y3" and "HA56Y4" are taken, the first suggestion for "HA56Y3" is "HA56Y5". Item numbers only differing by case from a taken item number are not suggested.
+     * @param itemNumber The item number to start counting from. It is suggested first, if it is free.
+     * @param maxResults The largest number of suggestions to return.
+     * @return Free item numbers in upper case, in the order they were counted.
+     */
+    public String[] suggestFreeItemNumbers(String itemNumber, int maxResults) {
+        lock.readLock().lock();
+        try {
+            return itemNumberIndex.suggestFree(itemNumber, maxResults);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches through the description, brand and color of every Item for the words in the submitted query, and returns the most relevant Items first.
+     * Relevance is scored by the BM25 ranking function: rare words weigh more than common ones, and a match in a short description weighs more than one in a long description.
+     * Words consist of letters and digits only, so "10-pack" is searched for as the two words "10" and "pack". The search performed is NOT case-sensitive.
+     * @param query The words to search for, separated by spaces or punctuation.
+     * @param matchAllWords True if every word in the query must be found for an Item to be returned, or false if finding any of them is enough.
+     * @param maxResults The largest number of results to return.
+     * @return The search result as an array of item numbers, the most relevant first.
+     */
+    public String[] searchByRelevance(String query, boolean matchAllWords, int maxResults) {
+        long start = metrics.start();
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        lock.readLock().lock();
+        try {
+            String[] result = descriptionIndex.search(query, matchAllWords, maxResults);
+            event.commit(SearchEvent.RELEVANCE, query, result.length, 0, false);
+            return result;
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.SEARCH_BY_RELEVANCE);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.SEARCH_BY_RELEVANCE, start);
+        }
+    }
+
+    /**
+     * Returns a version number that changes whenever the result of any description search could have changed.
+     * Both underlying counters only ever increase, so their sum does too.
+     * @return The current version of the content searched by <code>searchByDescription(...)</code>.
+     */
+    private long descriptionSearchVersion() {
+        return itemNumberVersion + descriptionVersion;
+    }
+
+    /**
+     * Adds a listener receiving every change made to this registry from now on, see <code>RegistryListener</code>.
+     * @param listener The listener to add.
+     * @param reportExisting Whether every Item already in this registry is first reported to the listener as registered, atomically with adding it,
+     *                       so that the listener misses no change and sees no change twice.
+     */
+    public void addListener(RegistryListener listener, boolean reportExisting) {
+        if (listener == null)
+            throw new IllegalArgumentException("Parameter 'listener' cannot be null");
+        lock.writeLock().lock();
+        try {
+            if (reportExisting)
+                for (Item item : getAllItemsRef())
+                    listener.itemRegistered(item.clone());
+            listeners.add(listener);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a listener, which receives no changes made after this call.
+     * @param listener The listener to remove.
+     * @return True if the listener had been added to this registry.
+     */
+    public boolean removeListener(RegistryListener listener) {
+        lock.writeLock().lock(); // Waits for changes being reported to the listener
+        try {
+            return listeners.remove(listener);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the forecast of the rates of withdrawal of the Items in this registry, which starts tracking every Item at the first call.
+     * Call this once when setting up the registry to have the forecast follow every withdrawal.
+     * @return The consumption forecast of this registry.
+     */
+    public ConsumptionForecast getConsumptionForecast() {
+        ConsumptionForecast forecast = consumptionForecast;
+        if (forecast == null) {
+            synchronized (listeners) {
+                forecast = consumptionForecast;
+                if (forecast == null) {
+                    forecast = new ConsumptionForecast();
+                    addListener(forecast, true);
+                    consumptionForecast = forecast;
+                }
+            }
+        }
+        return forecast;
+    }
+
+    /**
+     * Returns the cache holding recent search results of this registry. Useful for inspecting its hit, miss and eviction counters.
+     * @return The search cache of this registry.
+     */
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    /**
+     * Returns the latency histograms and failure counters of the operations of this registry. Metrics are recorded from the creation of the registry, until disabled.
+     * @return The metrics of this registry.
+     */
+    public RegistryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Registers an MBean for this registry to the platform MBean server, exposing its size, index sizes, search cache and metrics through JMX,
+     * e.g. to JConsole or VisualVM. Replaces any MBean previously registered for this registry.
+     * @param name The name of the registry, which must be unique among the registries of this JVM.
+     * @return The name the MBean was registered under, on the form "registry:type=ItemRegistry,name=(name)".
+     * @throws IllegalArgumentException if the name is not valid in an ObjectName, or already used by another registry.
+     */
+    public synchronized ObjectName registerMBean(String name) {
+        unregisterMBean();
+        try {
+            ObjectName objectName = new ObjectName("registry:type=ItemRegistry,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new RegistryMonitor(this), objectName);
+            mbeanName = objectName;
+            return objectName;
+        } catch (MalformedObjectNameException | InstanceAlreadyExistsException e) {
+            throw new IllegalArgumentException("Cannot register an MBean for the registry " + name, e);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register an MBean for the registry " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters the MBean of this registry, if it has one.
+     */
+    public synchronized void unregisterMBean() {
+        if (mbeanName == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        } catch (InstanceNotFoundException e) {
+            // Already unregistered by someone else
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister the MBean " + mbeanName, e);
+        }
+        mbeanName = null;
+    }
+
+    /**
+     * Stops the reservation expiry thread of this registry, if started, and unregisters its MBean, if any. The registry can still be used otherwise,
+     * but open reservations with a time limit no longer expire, and must be confirmed or released, while new reservations can no longer be given one.
+     * Closing a registry more than once has no further effect.
+     */
+    @Override
+    public void close() {
+        TimerWheel wheel;
+        synchronized (reservedAmounts) {
+            closed = true;
+            wheel = reservationExpiry;
+        }
+        if (wheel != null)
+            wheel.close();
+        unregisterMBean();
+    }
+
+    /**
+     * Returns the number of Items stored under a packed item number, see <code>ItemNumberCodec</code>.
+     */
+    int packedItemNumbers() {
+        lock.readLock().lock();
+        try {
+            return registry.numPacked();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of nodes in the item number index.
+     */
+    int itemNumberIndexNodes() {
+        lock.readLock().lock();
+        try {
+            return itemNumberIndex.numNodes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of Items in the description index.
+     */
+    int descriptionIndexDocuments() {
+        lock.readLock().lock();
+        try {
+            return descriptionIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of distinct terms in the description index.
+     */
+    int descriptionIndexTerms() {
+        lock.readLock().lock();
+        try {
+            return descriptionIndex.numTerms();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
 
@@ -66,9 +571,82 @@ public class ItemRegistry {
      * @throws IllegalArgumentException if the submitted item number has already been claimed by another Item.
      */
     public void registerNewItem(String itemNumber, String description, int amountInStorage, int price, ItemCategory category, String brand, float weight, float width, float length, String color) {
-        if (itemNumberTaken(itemNumber))
-            throw new IllegalArgumentException("The item number " + itemNumber + " is already in use");
-        registry.put(itemNumber, new Item(itemNumber, description, amountInStorage, price, category, brand, weight, width, length, color));
+        long start = metrics.start();
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        lock.writeLock().lock();
+        try {
+            if (registry.containsKey(itemNumber))
+                throw new IllegalArgumentException("The item number " + itemNumber + " is already in use");
+            Item item = new Item(itemNumber, description, amountInStorage, price, category, brand, weight, width, length, color);
+            registry.put(itemNumber, item);
+            itemNumberIndex.add(itemNumber);
+            descriptionIndex.add(item);
+            itemNumberVersion++;
+            event.commit(itemNumber, MutationEvent.REGISTERED, amountInStorage);
+            for (RegistryListener l : listeners)
+                l.itemRegistered(item.clone());
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.REGISTER_ITEM);
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(RegistryOperation.REGISTER_ITEM, start);
+        }
+    }
+
+    /**
+     * Registers copies of several Items to this registry at once, taking the lock only once for the whole batch. Either every Item is registered, or none of them.
+     * @param items The Items to register. Changes made to these Items after the call does not make any changes to this registry.
+     * @throws IllegalArgumentException if any item number is already in use, or occurs more than once in 'items'.
+     */
+    public void registerNewItems(Item[] items) {
+        long start = metrics.start();
+        BulkLoadEvent event = new BulkLoadEvent();
+        event.begin();
+        if (items == null)
+            throw new IllegalArgumentException("Parameter 'items' cannot be null");
+
+        Item[] copies = new Item[items.length];
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] == null)
+                throw new IllegalArgumentException("Parameter 'items' cannot contain null");
+            copies[i] = items[i].clone();
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < copies.length; i++) {
+                String itemNumber = copies[i].getItemNumber();
+                if (registry.containsKey(itemNumber)) {
+                    for (int j = 0; j < i; j++) // Undo the batch so far, which may itself hold the duplicate
+                        registry.remove(copies[j].getItemNumber());
+                    throw new IllegalArgumentException("The item number " + itemNumber + " is already in use");
+                }
+                registry.put(itemNumber, copies[i]);
+            }
+            for (Item item : copies) {
+                itemNumberIndex.add(item.getItemNumber());
+                descriptionIndex.add(item);
+            }
+            itemNumberVersion++;
+            for (RegistryListener l : listeners)
+                for (Item item : copies)
+                    l.itemRegistered(item.clone());
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.items = copies.length;
+                event.registrySize = registry.size();
+                event.commit();
+            }
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.REGISTER_ITEMS);
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(RegistryOperation.REGISTER_ITEMS, start);
+        }
     }
 
 
@@ -97,15 +675,298 @@ public class ItemRegistry {
 
     /**
      * Changes the amount of a particular item currently stored in the warehouse.
+     * Changes to the amounts in storage run concurrently with each other and with lookups, even for the same Item, see <code>StockCounter</code>.
      * @param itemNumber The item number of the Item to have its amount increased or decreased.
      * @param amount The amount of items to add (positive values) or withdraw (negative values) from the warehouse storage.
      */
     public void changeAmountInStorage(String itemNumber, int amount) {
-        Item i = getItemRef(itemNumber);
-        i.setAmountInStorage(i.getAmountInStorage() + amount);
+        long start = metrics.start();
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        lock.readLock().lock(); // The amount of an Item changes atomically by itself, only the set of Items must not change
+        try {
+            if (!getItemRef(itemNumber).tryChangeAmountInStorage(amount))
+                throw new IllegalArgumentException("The amount of this item in storage must be a positive value");
+            event.commit(itemNumber, MutationEvent.AMOUNT_IN_STORAGE, amount);
+            for (RegistryListener l : listeners)
+                l.amountInStorageChanged(itemNumber, amount);
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.CHANGE_AMOUNT);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.CHANGE_AMOUNT, start);
+        }
+    }
+
+    /**
+     * Changes the amounts of several items in storage at once, taking the read lock of this registry only once for the whole batch.
+     * <br><br> Unlike the other methods of this registry, a change which cannot be made does not throw an exception. The change is left out and reported in
+     * <code>results</code> instead, while the rest of the batch is still applied. Changes are applied in order, so several changes to the same item number add up.
+     * @param itemNumbers The item numbers of the Items to have their amounts changed.
+     * @param amounts The amounts to add (positive values) or withdraw (negative values), one to one with <code>itemNumbers</code>. A change of 0 only reads the current amount.
+     * @param count The number of changes to apply, from index 0 of the arrays.
+     * @param results Receives the amount in storage of each Item just after its change, one to one with <code>itemNumbers</code>,
+     *                or <code>NO_SUCH_ITEM</code> or <code>INSUFFICIENT_AMOUNT</code> if the change could not be made.
+     * @return The number of changes that could not be made.
+     */
+    public int changeAmountsInStorage(String[] itemNumbers, int[] amounts, int count, int[] results) {
+        if (count < 0 || count > itemNumbers.length || count > amounts.length || count > results.length)
+            throw new IllegalArgumentException("The number of changes must fit in the submitted arrays");
+        return changeAmountsInStorage(itemNumbers, amounts, count, results, false);
+    }
+
+    /**
+     * Changes the amounts of several items in storage, see the public <code>changeAmountsInStorage</code>, reporting the changes as released reservations as well if asked to.
+     */
+    private int changeAmountsInStorage(String[] itemNumbers, int[] amounts, int count, int[] results, boolean released) {
+        long start = metrics.start();
+        int failures = 0;
+        lock.readLock().lock();
+        try {
+            for (int n = 0; n < count; n++) {
+                Item i = registry.get(itemNumbers[n]);
+                if (i == null) {
+                    results[n] = NO_SUCH_ITEM;
+                    failures++;
+                } else if (!i.tryChangeAmountInStorage(amounts[n])) {
+                    results[n] = INSUFFICIENT_AMOUNT;
+                    failures++;
+                } else {
+                    results[n] = i.getAmountInStorage();
+                    for (RegistryListener l : listeners) {
+                        l.amountInStorageChanged(itemNumbers[n], amounts[n]);
+                        if (released)
+                            l.reservationReleased(itemNumbers[n], amounts[n]);
+                    }
+                }
+            }
+            return failures;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.CHANGE_AMOUNTS, start);
+            if (failures != 0)
+                metrics.failed(RegistryOperation.CHANGE_AMOUNTS);
+        }
+    }
+
+
+
+    /**
+     * Withdraws amounts of several items from storage as one transaction: either every amount is withdrawn, or none of them is.
+     * <br><br> Withdrawals of several items hold a lock for each of their items, taken in a fixed order so that they cannot deadlock,
+     * so that two withdrawals with items in common are made one after the other, while withdrawals without any run in parallel.
+     * Each amount is withdrawn like <code>changeAmountInStorage</code> does, and if any of them is larger than the amount in storage,
+     * the amounts already withdrawn are added back.
+     * @param itemNumbers The item numbers of the Items to withdraw from. An item number may occur more than once, in which case its amounts add up.
+     * @param amounts The amounts to withdraw, at least 0, one to one with <code>itemNumbers</code>.
+     * @return True if every amount was withdrawn, or false if any of the Items had too little in storage, in which case nothing was withdrawn.
+     * @throws IllegalArgumentException if an item number does not exist in this registry, or an amount is negative.
+     */
+    public boolean withdrawAll(String[] itemNumbers, int[] amounts) {
+        long start = metrics.start();
+        try {
+            String[] merged = mergeOrderLines(itemNumbers, amounts);
+            return withdrawMerged(merged, amounts(merged, itemNumbers, amounts), false);
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.WITHDRAW_ALL);
+            throw e;
+        } finally {
+            metrics.stop(RegistryOperation.WITHDRAW_ALL, start);
+        }
+    }
+
+    /**
+     * Reserves amounts of several items in storage as one transaction, see <code>withdrawAll</code>, without a time limit.
+     * @param itemNumbers The item numbers of the Items to reserve. An item number may occur more than once, in which case its amounts add up.
+     * @param amounts The amounts to reserve, at least 0, one to one with <code>itemNumbers</code>.
+     * @return The reservation, or null if any of the Items had too little in storage, in which case nothing was reserved.
+     * @throws IllegalArgumentException if an item number does not exist in this registry, or an amount is negative.
+     */
+    public StockReservation reserveAll(String[] itemNumbers, int[] amounts) {
+        return reserveAll(itemNumbers, amounts, null);
+    }
+
+    /**
+     * Reserves amounts of several items in storage as one transaction, see <code>withdrawAll</code>. While the reservation is open, the reserved amounts
+     * are moved from the amounts in storage, which are what is available to other orders, to the reserved amounts, see <code>getReservedAmount</code>.
+     * <br><br> A reservation with a time limit is released automatically once the time is up, unless it has been confirmed or released before.
+     * Expiry is scheduled on a hashed timer wheel with ticks of 100 ms, so it costs the same however many reservations are pending, and a reservation
+     * expires up to a tick late.
+     * @param itemNumbers The item numbers of the Items to reserve. An item number may occur more than once, in which case its amounts add up.
+     * @param amounts The amounts to reserve, at least 0, one to one with <code>itemNumbers</code>.
+     * @param timeToLive How long the reservation lasts unless confirmed, or null for no time limit.
+     * @return The reservation, or null if any of the Items had too little in storage, in which case nothing was reserved.
+     * @throws IllegalArgumentException if an item number does not exist in this registry, an amount is negative, or the time to live is negative.
+     * @throws IllegalStateException if a time to live is given, and this registry has been closed.
+     */
+    public StockReservation reserveAll(String[] itemNumbers, int[] amounts, Duration timeToLive) {
+        if (timeToLive != null && timeToLive.isNegative())
+            throw new IllegalArgumentException("The time to live of a reservation cannot be negative");
+        long start = metrics.start();
+        try {
+            String[] merged = mergeOrderLines(itemNumbers, amounts);
+            int[] mergedAmounts = amounts(merged, itemNumbers, amounts);
+            if (!withdrawMerged(merged, mergedAmounts, true))
+                return null;
+            if (timeToLive == null)
+                return new StockReservation(this, merged, mergedAmounts, Long.MAX_VALUE);
+
+            long ttlMillis = timeToLive.toMillis();
+            StockReservation reservation = new StockReservation(this, merged, mergedAmounts, System.currentTimeMillis() + ttlMillis);
+            try {
+                reservation.setExpiry(reservationExpiry().schedule(reservation::expire, ttlMillis, TimeUnit.MILLISECONDS));
+            } catch (IllegalStateException e) {
+                reservation.release(); // Closed meanwhile: the reservation could never expire
+                throw e;
+            }
+            return reservation;
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.WITHDRAW_ALL);
+            throw e;
+        } finally {
+            metrics.stop(RegistryOperation.WITHDRAW_ALL, start);
+        }
+    }
+
+    /**
+     * Returns the distinct item numbers of an order, sorted.
+     */
+    private static String[] mergeOrderLines(String[] itemNumbers, int[] amounts) {
+        if (itemNumbers.length != amounts.length)
+            throw new IllegalArgumentException("Every item number needs an amount");
+        for (int amount : amounts)
+            if (amount < 0)
+                throw new IllegalArgumentException("Amount must be a positive value");
+        String[] sorted = itemNumbers.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++)
+            if (i == 0 || !sorted[i].equals(sorted[distinct - 1]))
+                sorted[distinct++] = sorted[i];
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    /**
+     * Returns the total amount of each of the distinct item numbers of an order.
+     */
+    private static int[] amounts(String[] distinctItemNumbers, String[] itemNumbers, int[] amounts) {
+        long[] totals = new long[distinctItemNumbers.length];
+        for (int i = 0; i < itemNumbers.length; i++)
+            totals[Arrays.binarySearch(distinctItemNumbers, itemNumbers[i])] += amounts[i];
+        int[] result = new int[totals.length];
+        for (int i = 0; i < totals.length; i++) {
+            if (totals[i] > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("The amounts of " + distinctItemNumbers[i] + " add up to more than can be stored");
+            result[i] = (int) totals[i];
+        }
+        return result;
+    }
+
+    /**
+     * Withdraws the amounts of the distinct item numbers of an order, and adds them to the reserved amounts if they are reserved.
+     */
+    private boolean withdrawMerged(String[] itemNumbers, int[] amounts, boolean reserve) {
+        int[] stripes = new int[itemNumbers.length];
+        for (int i = 0; i < itemNumbers.length; i++)
+            stripes[i] = orderLockStripe(itemNumbers[i]);
+        Arrays.sort(stripes);
+
+        lock.readLock().lock();
+        try {
+            Item[] items = getItemsRef(itemNumbers);
+            int locked = 0;
+            try {
+                for (int i = 0; i < stripes.length; i++) {
+                    if (i > 0 && stripes[i] == stripes[i - 1])
+                        continue;
+                    orderLocks[stripes[i]].lock();
+                    locked = i + 1;
+                }
+
+                int withdrawn = 0;
+                while (withdrawn < items.length && items[withdrawn].tryChangeAmountInStorage(-amounts[withdrawn]))
+                    withdrawn++;
+                if (withdrawn == items.length) {
+                    for (RegistryListener l : listeners)
+                        for (int i = 0; i < itemNumbers.length; i++)
+                            l.amountInStorageChanged(itemNumbers[i], -amounts[i]);
+                    if (reserve)
+                        for (int i = 0; i < itemNumbers.length; i++)
+                            addReservedAmount(itemNumbers[i], amounts[i]);
+                    return true;
+                }
+                for (int i = 0; i < withdrawn; i++)
+                    items[i].tryChangeAmountInStorage(amounts[i]);
+                return false;
+            } finally {
+                for (int i = locked - 1; i >= 0; i--)
+                    if (i == 0 || stripes[i] != stripes[i - 1])
+                        orderLocks[stripes[i]].unlock();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the amount of an item held by open reservations. These units are still in the warehouse, but not part of the amount in storage of the Item,
+     * which is what is available to new orders.
+     * @param itemNumber The item number of the Item.
+     * @return The reserved amount, or 0 if no open reservation holds any of the Item.
+     */
+    public int getReservedAmount(String itemNumber) {
+        return reservedAmounts.getOrDefault(itemNumber, 0);
+    }
+
+    /**
+     * Returns the number of reservations with a time limit which are still open.
+     * @return The number of open reservations with a time limit.
+     */
+    public long pendingReservationExpiries() {
+        TimerWheel wheel = reservationExpiry;
+        return wheel != null ? wheel.pending() : 0;
+    }
+
+    /**
+     * Takes the amounts of a reservation out of the reserved amounts, leaving them withdrawn for good.
+     */
+    void confirmReservation(String[] itemNumbers, int[] amounts) {
+        for (int i = 0; i < itemNumbers.length; i++)
+            addReservedAmount(itemNumbers[i], -amounts[i]);
+    }
+
+    /**
+     * Moves the amounts of a reservation from the reserved amounts back to the amounts in storage, reporting them to <code>reservationReleased</code> as well.
+     */
+    void releaseReservation(String[] itemNumbers, int[] amounts) {
+        changeAmountsInStorage(itemNumbers, amounts, itemNumbers.length, new int[itemNumbers.length], true);
+        confirmReservation(itemNumbers, amounts);
+    }
+
+    private void addReservedAmount(String itemNumber, int amount) {
+        if (amount != 0)
+            reservedAmounts.merge(itemNumber, amount, (a, b) -> a + b != 0 ? a + b : null);
     }
 
+    private TimerWheel reservationExpiry() {
+        TimerWheel wheel = reservationExpiry;
+        if (wheel == null) {
+            synchronized (reservedAmounts) {
+                if (closed)
+                    throw new IllegalStateException("The registry has been closed");
+                wheel = reservationExpiry;
+                if (wheel == null)
+                    reservationExpiry = wheel = new TimerWheel("reservation-expiry", RESERVATION_TICK_MILLIS, TimeUnit.MILLISECONDS, RESERVATION_WHEEL_BUCKETS);
+            }
+        }
+        return wheel;
+    }
 
+    private static int orderLockStripe(String itemNumber) {
+        int h = itemNumber.hashCode();
+        return (h ^ (h >>> 16)) & (ORDER_LOCK_STRIPES - 1);
+    }
 
     /**
      * Deletes from the registry the item with the submitted item number.
@@ -113,7 +974,28 @@ public class ItemRegistry {
      * @return True if the item was found and deleted. Otherwise, returns false.
      */
     public boolean deleteItemEntry(String itemNumber) {
-        return registry.remove(itemNumber) != null;
+        long start = metrics.start();
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        lock.writeLock().lock();
+        try {
+            Item item = registry.remove(itemNumber);
+            if (item == null)
+                return false;
+            itemNumberIndex.remove(itemNumber);
+            descriptionIndex.remove(item);
+            itemNumberVersion++;
+            event.commit(itemNumber, MutationEvent.DELETED, -item.getAmountInStorage());
+            for (RegistryListener l : listeners)
+                l.itemDeleted(itemNumber);
+            return true;
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.DELETE_ITEM);
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(RegistryOperation.DELETE_ITEM, start);
+        }
     }
 
     /**
@@ -122,7 +1004,24 @@ public class ItemRegistry {
      * @param newPrice The new price of the Item.
      */
     public void setItemPrice(String itemNumber, int newPrice) {
-        getItemRef(itemNumber).setPrice(newPrice);
+        long start = metrics.start();
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        lock.writeLock().lock();
+        try {
+            Item item = getItemRef(itemNumber);
+            int previous = item.getPrice();
+            item.setPrice(newPrice);
+            event.commit(itemNumber, MutationEvent.PRICE, newPrice - previous);
+            for (RegistryListener l : listeners)
+                l.priceChanged(itemNumber, newPrice);
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.SET_PRICE);
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(RegistryOperation.SET_PRICE, start);
+        }
     }
 
     /**
@@ -131,7 +1030,291 @@ public class ItemRegistry {
      * @param percentOff The discount to be assigned to the Item, in percentage between 0 and 100.
      */
     public void setItemDiscount(String itemNumber, float percentOff) {
-        getItemRef(itemNumber).setDiscount(percentOff);
+        long start = metrics.start();
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        lock.writeLock().lock();
+        try {
+            Item item = getItemRef(itemNumber);
+            float previous = item.getPriceDiscount();
+            item.setDiscount(percentOff);
+            event.commit(itemNumber, MutationEvent.DISCOUNT, percentOff - previous);
+            for (RegistryListener l : listeners)
+                l.discountChanged(itemNumber, item.getPriceDiscount());
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.SET_DISCOUNT);
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(RegistryOperation.SET_DISCOUNT, start);
+        }
+    }
+
+    /**
+     * Sets new prices for every Item selected by a filter, computed by a rule from their current prices.
+     * The Items are scanned in parallel partitions while holding the lock of this registry, so readers see either every new price or none of them.
+     * Listeners receive one <code>pricesChanged</code> for the whole change, and Flight Recorder one <code>registry.BulkReprice</code> event.
+     * <br><br> The filter and the rule run on several threads at once, and must not call back into this registry.
+     * If the rule throws, or returns a negative price, for any Item, no price is changed.
+     * <br><br> Example: 10 % up on every Item from Heidal, <code>repriceAll(ItemFilter.brand("Heidal"), price -> price * 110 / 100)</code>.
+     * @param filter Selects the Items to reprice, see <code>ItemFilter</code>.
+     * @param rule Computes the new price of an Item from its current price.
+     * @return The record of the change, holding the previous prices to undo it with.
+     */
+    public BulkRepricing repriceAll(Predicate<Item> filter, IntUnaryOperator rule) {
+        if (rule == null)
+            throw new IllegalArgumentException("Parameter 'rule' cannot be null");
+        return bulkReprice(filter, rule, 0);
+    }
+
+    /**
+     * Sets the same discount for every Item selected by a filter, atomically from a reader's point of view, as <code>repriceAll</code> does for prices.
+     * <br><br> Example: 20 % off all Doors from Heidal, <code>discountAll(ItemFilter.category(ItemCategory.Doors).and(ItemFilter.brand("Heidal")), 20)</code>.
+     * @param filter Selects the Items to discount, see <code>ItemFilter</code>. Runs on several threads at once, and must not call back into this registry.
+     * @param percentOff The discount, in percentage between 0 and 100. A discount of 0 % ends a campaign.
+     * @return The record of the change, holding the previous discounts to undo it with.
+     */
+    public BulkRepricing discountAll(Predicate<Item> filter, float percentOff) {
+        if (!(percentOff >= 0 && percentOff <= 100))
+            throw new IllegalArgumentException("percentOff must be a positive value between 0 and 100");
+        return bulkReprice(filter, null, percentOff);
+    }
+
+    /**
+     * Changes the prices, if given a rule, or else the discounts of every Item selected by a filter. New values are computed for every partition in parallel,
+     * and only written once all of them have been, so that a failing rule leaves every Item as it was.
+     */
+    private BulkRepricing bulkReprice(Predicate<Item> filter, IntUnaryOperator rule, float percentOff) {
+        if (filter == null)
+            throw new IllegalArgumentException("Parameter 'filter' cannot be null");
+        long start = metrics.start();
+        BulkRepriceEvent event = new BulkRepriceEvent();
+        event.begin();
+        lock.writeLock().lock();
+        try {
+            Item[] items = getAllItemsRef();
+            int partitions = repricePartitions(items.length);
+            Item[][] selected = new Item[partitions][];
+            int[][] newPrices = new int[partitions][];
+            IntStream.range(0, partitions).parallel().forEach(p -> {
+                int from = p * REPRICE_PARTITION_SIZE, to = Math.min(items.length, from + REPRICE_PARTITION_SIZE), n = 0;
+                Item[] partition = new Item[to - from];
+                int[] partitionPrices = rule != null ? new int[to - from] : null;
+                for (int i = from; i < to; i++) {
+                    Item item = items[i];
+                    if (!filter.test(item))
+                        continue;
+                    if (rule != null) {
+                        int price = rule.applyAsInt(item.getPrice());
+                        if (price < 0)
+                            throw new IllegalArgumentException("The rule priced the item " + item.getItemNumber() + " at " + price + ", prices cannot be negative");
+                        partitionPrices[n] = price;
+                    }
+                    partition[n++] = item;
+                }
+                selected[p] = Arrays.copyOf(partition, n);
+                newPrices[p] = partitionPrices != null ? Arrays.copyOf(partitionPrices, n) : null;
+            });
+
+            int[] offsets = new int[partitions + 1];
+            for (int p = 0; p < partitions; p++)
+                offsets[p + 1] = offsets[p] + selected[p].length;
+            int changed = offsets[partitions];
+            String[] itemNumbers = new String[changed];
+            int[] previousPrices = new int[changed], prices = new int[changed];
+            float[] previousDiscounts = new float[changed], discounts = new float[changed];
+            IntStream.range(0, partitions).parallel().forEach(p -> {
+                for (int j = 0; j < selected[p].length; j++) {
+                    Item item = selected[p][j];
+                    int i = offsets[p] + j;
+                    itemNumbers[i] = item.getItemNumber();
+                    previousPrices[i] = item.getPrice();
+                    previousDiscounts[i] = item.getPriceDiscount();
+                    if (rule != null)
+                        item.setPrice(newPrices[p][j]);
+                    else
+                        item.setDiscount(percentOff);
+                    prices[i] = item.getPrice();
+                    discounts[i] = item.getPriceDiscount();
+                }
+            });
+
+            if (changed > 0)
+                for (RegistryListener l : listeners) {
+                    if (rule != null)
+                        l.pricesChanged(itemNumbers, prices);
+                    else
+                        l.discountsChanged(itemNumbers, discounts);
+                }
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.field = rule != null ? MutationEvent.PRICE : MutationEvent.DISCOUNT;
+                event.scanned = items.length;
+                event.changed = changed;
+                event.partitions = partitions;
+                event.commit();
+            }
+            return new BulkRepricing(this, rule != null ? MutationEvent.PRICE : MutationEvent.DISCOUNT, itemNumbers, previousPrices, previousDiscounts, prices, discounts);
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.REPRICE_ALL);
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(RegistryOperation.REPRICE_ALL, start);
+        }
+    }
+
+    /**
+     * Returns the item numbers of every Item selected by a filter, scanning the Items in parallel partitions.
+     * @param filter Runs on several threads at once, and must not call back into this registry.
+     */
+    String[] selectItemNumbers(Predicate<Item> filter) {
+        lock.readLock().lock();
+        try {
+            Item[] items = getAllItemsRef();
+            String[][] selected = new String[repricePartitions(items.length)][];
+            IntStream.range(0, selected.length).parallel().forEach(p -> {
+                int from = p * REPRICE_PARTITION_SIZE, to = Math.min(items.length, from + REPRICE_PARTITION_SIZE), n = 0;
+                String[] partition = new String[to - from];
+                for (int i = from; i < to; i++)
+                    if (filter.test(items[i]))
+                        partition[n++] = items[i].getItemNumber();
+                selected[p] = Arrays.copyOf(partition, n);
+            });
+            int n = 0;
+            for (String[] partition : selected)
+                n += partition.length;
+            String[] itemNumbers = new String[n];
+            n = 0;
+            for (String[] partition : selected) {
+                System.arraycopy(partition, 0, itemNumbers, n, partition.length);
+                n += partition.length;
+            }
+            return itemNumbers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the discounts of several Items at once, atomically from a reader's point of view, with one <code>discountsChanged</code> to the listeners.
+     * Item numbers no longer in this registry are skipped, as are Items whose discount differs from the one expected.
+     * @param expected The discount every Item must have to be changed, or NaN to change it whatever its discount.
+     * @return The discounts of the Items before the change, one to one with the item numbers, or NaN for the Items skipped.
+     */
+    float[] setItemDiscounts(String[] itemNumbers, float[] percentOff, float[] expected) {
+        long start = metrics.start();
+        BulkRepriceEvent event = new BulkRepriceEvent();
+        event.begin();
+        lock.writeLock().lock();
+        try {
+            for (float discount : percentOff)
+                if (!(discount >= 0 && discount <= 100))
+                    throw new IllegalArgumentException("percentOff must be a positive value between 0 and 100");
+            float[] previous = new float[itemNumbers.length];
+            String[] changed = new String[itemNumbers.length];
+            float[] discounts = new float[itemNumbers.length];
+            int n = 0;
+            for (int i = 0; i < itemNumbers.length; i++) {
+                Item item = registry.get(itemNumbers[i]);
+                if (item == null || !Float.isNaN(expected[i]) && Float.compare(item.getPriceDiscount(), expected[i]) != 0) {
+                    previous[i] = Float.NaN;
+                    continue;
+                }
+                previous[i] = item.getPriceDiscount();
+                item.setDiscount(percentOff[i]);
+                changed[n] = itemNumbers[i];
+                discounts[n++] = percentOff[i];
+            }
+
+            if (n > 0) {
+                changed = Arrays.copyOf(changed, n);
+                discounts = Arrays.copyOf(discounts, n);
+                for (RegistryListener l : listeners)
+                    l.discountsChanged(changed, discounts);
+            }
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.field = MutationEvent.DISCOUNT;
+                event.scanned = itemNumbers.length;
+                event.changed = n;
+                event.partitions = 1;
+                event.commit();
+            }
+            return previous;
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.REPRICE_ALL);
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(RegistryOperation.REPRICE_ALL, start);
+        }
+    }
+
+    private static int repricePartitions(int numItems) {
+        return Math.max(1, (numItems + REPRICE_PARTITION_SIZE - 1) / REPRICE_PARTITION_SIZE);
+    }
+
+    /**
+     * Restores the field changed by a bulk change, for the Items still registered whose price and discount are still those set by the change,
+     * and reports only that field to the listeners.
+     * @param field The field changed, <code>MutationEvent.PRICE</code> or <code>MutationEvent.DISCOUNT</code>.
+     * @return The number of Items restored.
+     */
+    int undoRepricing(String field, String[] itemNumbers, int[] prices, float[] discounts, int[] previousPrices, float[] previousDiscounts) {
+        boolean repriced = field.equals(MutationEvent.PRICE);
+        long start = metrics.start();
+        BulkRepriceEvent event = new BulkRepriceEvent();
+        event.begin();
+        lock.writeLock().lock();
+        try {
+            String[] restored = new String[itemNumbers.length];
+            int[] restoredPrices = new int[itemNumbers.length];
+            float[] restoredDiscounts = new float[itemNumbers.length];
+            int n = 0;
+            for (int i = 0; i < itemNumbers.length; i++) {
+                Item item = registry.get(itemNumbers[i]);
+                if (item == null || item.getPrice() != prices[i] || Float.compare(item.getPriceDiscount(), discounts[i]) != 0)
+                    continue;
+                if (repriced)
+                    item.setPrice(previousPrices[i]);
+                else
+                    item.setDiscount(previousDiscounts[i]);
+                restored[n] = itemNumbers[i];
+                restoredPrices[n] = previousPrices[i];
+                restoredDiscounts[n++] = previousDiscounts[i];
+            }
+
+            if (n > 0) {
+                restored = Arrays.copyOf(restored, n);
+                restoredPrices = Arrays.copyOf(restoredPrices, n);
+                restoredDiscounts = Arrays.copyOf(restoredDiscounts, n);
+                for (RegistryListener l : listeners) {
+                    if (repriced)
+                        l.pricesChanged(restored, restoredPrices);
+                    else
+                        l.discountsChanged(restored, restoredDiscounts);
+                }
+            }
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.field = "undo";
+                event.scanned = itemNumbers.length;
+                event.changed = n;
+                event.partitions = 1;
+                event.commit();
+            }
+            return n;
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.REPRICE_ALL);
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(RegistryOperation.REPRICE_ALL, start);
+        }
     }
 
     /**
@@ -140,7 +1323,27 @@ public class ItemRegistry {
      * @param description The new description for the Item.
      */
     public void setItemDescription(String itemNumber, String description) {
-        getItemRef(itemNumber).setDescription(description);
+        long start = metrics.start();
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        lock.writeLock().lock();
+        try {
+            Item item = getItemRef(itemNumber);
+            Item previous = item.clone();
+            item.setDescription(description);
+            descriptionIndex.remove(previous);
+            descriptionIndex.add(item);
+            descriptionVersion++;
+            event.commit(itemNumber, MutationEvent.DESCRIPTION, 0);
+            for (RegistryListener l : listeners)
+                l.descriptionChanged(itemNumber, description);
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.SET_DESCRIPTION);
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+            metrics.stop(RegistryOperation.SET_DESCRIPTION, start);
+        }
     }
 
     /**
@@ -170,7 +1373,38 @@ public class ItemRegistry {
      * @return A copy of the requested Item.
      */
     public Item getItem(String itemNumber) {
-        return getItemRef(itemNumber).clone();
+        long start = metrics.start();
+        lock.readLock().lock();
+        try {
+            return getItemRef(itemNumber).clone();
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.GET_ITEM);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.GET_ITEM, start);
+        }
+    }
+
+    /**
+     * Returns a copy of the Item that has the submitted item number, or null if there is none. Unlike <code>getItem</code>, a missing item number does not throw an exception.
+     * @param itemNumber The item number of the requested Item.
+     * @return A copy of the requested Item, or null if no Item in this registry has the item number.
+     */
+    public Item findItem(String itemNumber) {
+        long start = metrics.start();
+        lock.readLock().lock();
+        try {
+            Item i = registry.get(itemNumber);
+            if (i == null) {
+                metrics.failed(RegistryOperation.GET_ITEM);
+                return null;
+            }
+            return i.clone();
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.GET_ITEM, start);
+        }
     }
 
     /**
@@ -193,12 +1427,22 @@ public class ItemRegistry {
      * @return An array of the requested Items, sorted one to one.
      */
     public Item[] getItems(String[] itemNumbers) {
-        Item[] result = new Item[itemNumbers.length];
+        long start = metrics.start();
+        lock.readLock().lock();
+        try {
+            Item[] result = new Item[itemNumbers.length];
 
-        for (int i = 0; i < itemNumbers.length; i++)
-            result[i] = getItem(itemNumbers[i]);
+            for (int i = 0; i < itemNumbers.length; i++)
+                result[i] = getItemRef(itemNumbers[i]).clone();
 
-        return result;
+            return result;
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.GET_ITEMS);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.GET_ITEMS, start);
+        }
     }
 
     /**
@@ -222,13 +1466,23 @@ public class ItemRegistry {
      * @return An array containing a copy of every Item in this registry.
      */
     public Item[] getAll() {
-        Item[] references = getAllItemsRef();
-        Item[] result = new Item[references.length];
+        long start = metrics.start();
+        lock.readLock().lock();
+        try {
+            Item[] references = getAllItemsRef();
+            Item[] result = new Item[references.length];
 
-        for (int i = 0; i < references.length; i++)
-            result[i] = references[i].clone();
+            for (int i = 0; i < references.length; i++)
+                result[i] = references[i].clone();
 
-        return result;
+            return result;
+        } catch (RuntimeException e) {
+            metrics.failed(RegistryOperation.GET_ALL);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+            metrics.stop(RegistryOperation.GET_ALL, start);
+        }
     }
 
     /**
@@ -236,7 +1490,52 @@ public class ItemRegistry {
      * @return An array of every Item in this registry.
      */
     private Item[] getAllItemsRef() {
-        return registry.values().toArray(new Item[0]);
+        return registry.toArray();
+    }
+
+    /**
+     * Returns the number of Items in this registry.
+     * @return The number of Items in this registry.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return registry.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the combined amount of every Item currently stored in the warehouse.
+     * @return The sum of the amount in storage of every Item in this registry.
+     */
+    public long totalAmountInStorage() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (Item i : registry)
+                total += i.getAmountInStorage();
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the combined value of every Item currently stored in the warehouse, using the prices adjusted by discount.
+     * @return The sum of the price after discount times the amount in storage, of every Item in this registry.
+     */
+    public long totalValueInStorage() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (Item i : registry)
+                total += (long) i.getPriceAfterDiscount() * i.getAmountInStorage();
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -245,6 +1544,11 @@ public class ItemRegistry {
      * @return True of the item number is claimed by another Item, or false if the item number is available.
      */
     public boolean itemNumberTaken(String itemNumber) {
-        return registry.containsKey(itemNumber);
+        lock.readLock().lock();
+        try {
+            return registry.containsKey(itemNumber);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 }
@@ -0,0 +1,51 @@
+package registry;
+
+import java.time.Instant;
+
+/**
+ * The amount in storage, price and discount an Item had at a point in time, as reconstructed by <code>RegistryHistory</code>.
+ */
+public final class ItemSnapshot {
+    private final String itemNumber;
+    private final long time;
+    private final int amountInStorage;
+    private final int price;
+    private final float percentOff;
+
+    ItemSnapshot(String itemNumber, long time, int amountInStorage, int price, float percentOff) {
+        this.itemNumber = itemNumber;
+        this.time = time;
+        this.amountInStorage = amountInStorage;
+        this.price = price;
+        this.percentOff = percentOff;
+    }
+
+    public String getItemNumber() {
+        return itemNumber;
+    }
+
+    /**
+     * Returns the point in time of this snapshot.
+     * @return The point in time the values were reconstructed for.
+     */
+    public Instant getTime() {
+        return Instant.ofEpochMilli(time);
+    }
+
+    public int getAmountInStorage() {
+        return amountInStorage;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    public float getPriceDiscount() {
+        return percentOff;
+    }
+
+    @Override
+    public String toString() {
+        return itemNumber + " at " + getTime() + ": " + amountInStorage + " units, " + price + " kr, " + percentOff + " % off";
+    }
+}
@@ -0,0 +1,26 @@
+package registry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for rendering a table of Items with <code>Item.createTable(...)</code>. Only tables taking at least 10 milliseconds are recorded by default.
+ */
+@Name("registry.ItemTable")
+@Label("Item Table Rendering")
+@Category({ "Warehouse Registry", "Rendering" })
+@Description("Rendering a table of Items as text")
+@Threshold("10 ms")
+@StackTrace(true)
+final class ItemTableEvent extends jdk.jfr.Event {
+    @Label("Rows")
+    int rows;
+
+    @Label("Length")
+    @Description("The number of characters in the rendered table")
+    long length;
+}
@@ -0,0 +1,165 @@
+package registry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The small subset of JSON used by <code>RegistryServer</code>: writing strings, numbers and Items, and reading flat objects whose values are strings, numbers, booleans or null.
+ */
+final class Json {
+    private Json() {}
+
+    /**
+     * Appends a String as a quoted JSON string, escaping it as needed.
+     */
+    static StringBuilder appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+                }
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * Appends a consumption estimate as a JSON object, with null days until stockout for Items nobody withdraws.
+     */
+    static StringBuilder appendEstimate(StringBuilder sb, ConsumptionEstimate estimate) {
+        appendString(sb.append("{\"itemNumber\":"), estimate.getItemNumber());
+        sb.append(",\"amountInStorage\":").append(estimate.getAmountInStorage());
+        sb.append(",\"withdrawalsPerDay\":").append(estimate.getWithdrawalsPerDay());
+        double days = estimate.getDaysUntilStockout();
+        sb.append(",\"daysUntilStockout\":").append(Double.isInfinite(days) ? "null" : String.valueOf(days));
+        return sb.append('}');
+    }
+
+    /**
+     * Appends every field of an Item as a JSON object.
+     */
+    static StringBuilder appendItem(StringBuilder sb, Item item) {
+        sb.append("{\"itemNumber\":");
+        appendString(sb, item.getItemNumber());
+        sb.append(",\"description\":");
+        appendString(sb, item.getDescription());
+        sb.append(",\"amountInStorage\":").append(item.getAmountInStorage());
+        sb.append(",\"price\":").append(item.getPrice());
+        sb.append(",\"percentOff\":").append(item.getPriceDiscount());
+        sb.append(",\"priceAfterDiscount\":").append(item.getPriceAfterDiscount());
+        sb.append(",\"category\":");
+        appendString(sb, item.getCategory().name());
+        sb.append(",\"brand\":");
+        appendString(sb, item.getBrand());
+        sb.append(",\"weight\":").append(item.getWeight());
+        sb.append(",\"width\":").append(item.getWidth());
+        sb.append(",\"length\":").append(item.getLength());
+        sb.append(",\"color\":");
+        appendString(sb, item.getColor());
+        return sb.append('}');
+    }
+
+    /**
+     * Reads a JSON object without nested objects or arrays.
+     * @param json The text of the object.
+     * @return The values of the object by their names. Strings are unescaped, and numbers, booleans and null are returned as they are written.
+     * @throws IllegalArgumentException if the text is not such an object.
+     */
+    static Map<String, String> parseFlatObject(String json) {
+        Parser p = new Parser(json);
+        Map<String, String> result = new LinkedHashMap<>();
+        p.expect('{');
+        if (!p.consume('}')) {
+            do {
+                String name = p.string();
+                p.expect(':');
+                result.put(name, p.peek() == '"' ? p.string() : p.literal());
+            } while (p.consume(','));
+            p.expect('}');
+        }
+        if (p.peek() != Parser.END)
+            throw new IllegalArgumentException("Unexpected text after the JSON object");
+        return result;
+    }
+
+    private static final class Parser {
+        static final char END = '\uFFFF';
+        private final String s;
+        private int i = 0;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        char peek() {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i)))
+                i++;
+            return i < s.length() ? s.charAt(i) : END;
+        }
+
+        boolean consume(char c) {
+            if (peek() != c)
+                return false;
+            i++;
+            return true;
+        }
+
+        void expect(char c) {
+            if (!consume(c))
+                throw new IllegalArgumentException("Malformed JSON: expected '" + c + "' at position " + i);
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (i >= s.length())
+                    throw new IllegalArgumentException("Malformed JSON: unterminated string");
+                char c = s.charAt(i++);
+                if (c == '"')
+                    return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (i >= s.length())
+                    throw new IllegalArgumentException("Malformed JSON: unterminated string");
+                char e = s.charAt(i++);
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (i + 4 > s.length())
+                            throw new IllegalArgumentException("Malformed JSON: incomplete unicode escape");
+                        sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                        i += 4;
+                    }
+                    default -> sb.append(e);
+                }
+            }
+        }
+
+        String literal() {
+            peek();
+            int start = i;
+            while (i < s.length() && ",}] \t\r\n".indexOf(s.charAt(i)) < 0)
+                i++;
+            if (start == i)
+                throw new IllegalArgumentException("Malformed JSON: expected a value at position " + i);
+            return s.substring(start, i);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package registry;
+
+/**
+ * A hash map from packed item numbers (see <code>ItemNumberCodec</code>) to Items, storing its keys as primitive <code>long</code> values.
+ * <br><br> Keys and values are kept in two parallel arrays using open addressing with linear probing, so a lookup touches no objects besides the found Item,
+ * and an entry costs no more than a <code>long</code> and a reference, plus the free slots kept to keep probe sequences short.
+ * Removal shifts the following entries of a probe sequence backwards instead of leaving markers behind, so lookups never slow down after many removals.
+ */
+public final class LongItemMap {
+    /**
+     * Marks a free slot. Packed item numbers are always positive, so 0 is never used as a key.
+     */
+    private static final long FREE = 0;
+    private static final int MIN_CAPACITY = 16;
+    /**
+     * The largest share of slots in use before the arrays are doubled.
+     */
+    private static final float MAX_LOAD = 0.7f;
+
+    private long[] keys;
+    private Item[] values;
+    private int mask;
+    private int size = 0;
+    private int resizeThreshold;
+
+    /**
+     * Creates a new, empty map.
+     */
+    public LongItemMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Item[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * MAX_LOAD);
+    }
+
+    /**
+     * Scrambles the bits of a key, so that keys differing only in their last characters do not end up in neighbouring slots. This is the finalizer of MurmurHash3.
+     */
+    private static int slotOf(long key, int mask) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    /**
+     * Returns the Item stored with the submitted key.
+     * @param key A packed item number.
+     * @return The Item stored with the key, or null if there is none.
+     */
+    public Item get(long key) {
+        for (int slot = slotOf(key, mask); ; slot = (slot + 1) & mask) {
+            long k = keys[slot];
+            if (k == key)
+                return values[slot];
+            if (k == FREE)
+                return null;
+        }
+    }
+
+    /**
+     * Stores an Item with the submitted key, replacing any Item already stored with it.
+     * @param key A packed item number.
+     * @param item The Item to store.
+     * @return The Item previously stored with the key, or null if there was none.
+     */
+    public Item put(long key, Item item) {
+        if (key <= 0)
+            throw new IllegalArgumentException("Not a packed item number: " + key);
+
+        int slot = slotOf(key, mask);
+        for (; keys[slot] != FREE; slot = (slot + 1) & mask)
+            if (keys[slot] == key) {
+                Item previous = values[slot];
+                values[slot] = item;
+                return previous;
+            }
+
+        keys[slot] = key;
+        values[slot] = item;
+        if (++size > resizeThreshold)
+            rehash(keys.length * 2);
+        return null;
+    }
+
+    /**
+     * Removes the Item stored with the submitted key.
+     * @param key A packed item number.
+     * @return The removed Item, or null if there was none.
+     */
+    public Item remove(long key) {
+        int slot = slotOf(key, mask);
+        for (; keys[slot] != key; slot = (slot + 1) & mask)
+            if (keys[slot] == FREE)
+                return null;
+
+        Item removed = values[slot];
+        size--;
+
+        // Shift back any following entry whose probe sequence passes through the freed slot
+        int free = slot;
+        for (int next = (free + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int home = slotOf(keys[next], mask);
+            boolean passesFree = free <= next ? (home <= free || home > next) : (home <= free && home > next);
+            if (passesFree) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        keys[free] = FREE;
+        values[free] = null;
+        return removed;
+    }
+
+    /**
+     * Returns the number of Items in this map.
+     * @return The number of Items in this map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copies every Item in this map into the submitted array, starting at the given index.
+     * @param destination The array to copy the Items into. It must have room for <code>size()</code> Items from 'offset'.
+     * @param offset The index of the first Item in 'destination'.
+     */
+    public void copyValuesTo(Item[] destination, int offset) {
+        for (Item value : values)
+            if (value != null)
+                destination[offset++] = value;
+    }
+
+    /**
+     * Returns the array holding the Items of this map, where free slots are null. For iteration without copying. The array must not be modified.
+     * @return The slot array of this map.
+     */
+    Item[] slots() {
+        return values;
+    }
+
+    /**
+     * Removes every Item from this map, and shrinks it to its initial capacity.
+     */
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Item[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == FREE)
+                continue;
+            int slot = slotOf(oldKeys[i], mask);
+            while (keys[slot] != FREE)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
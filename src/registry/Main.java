@@ -1,11 +1,103 @@
 package registry;
 
+import java.io.IOException;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
-    public static void main(String[] args) {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_STOCK_PORT = 7070;
+    private static final int DEFAULT_REPLICATION_PORT = 6060;
+
+    /**
+     * Starts the registry with the chosen interface.
+     * <br><br> Without arguments, asks whether to use the console or the graphical interface. With <code>--server [port]</code>, runs headless as an HTTP/JSON server instead,
+     * see <code>RegistryServer</code>. <code>--stock [port]</code> runs headless with the binary protocol for stock changes, see <code>StockServer</code>, and may be combined with
+     * <code>--server</code>. <code>--catalog (numItems)</code> fills the registry with a generated catalog instead of the test data.
+     * <br><br> <code>--replication [port]</code> streams the changes of the registry to replicas, see <code>ReplicationServer</code>. <code>--replica-of (port)</code>
+     * copies the registry of the process replicating on that port instead of filling its own, and with <code>--server</code>, serves it read-only, see <code>ReplicaRegistry</code>.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean serverMode = false;
+        int port = DEFAULT_PORT;
+        boolean stockMode = false;
+        int stockPort = DEFAULT_STOCK_PORT;
+        long catalogSize = -1;
+        boolean replicationMode = false;
+        int replicationPort = DEFAULT_REPLICATION_PORT;
+        int primaryPort = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--server")) {
+                serverMode = true;
+                if (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                    port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--stock")) {
+                stockMode = true;
+                if (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                    stockPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--catalog") && i + 1 < args.length) {
+                catalogSize = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--replication")) {
+                replicationMode = true;
+                if (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                    replicationPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--replica-of") && i + 1 < args.length) {
+                primaryPort = Integer.parseInt(args[++i]);
+            } else {
+                printUsage();
+                return;
+            }
+        }
+
+        if (serverMode && System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true"); // See RegistryServer
+
+        if (primaryPort >= 0) {
+            if (!serverMode || stockMode || replicationMode || catalogSize >= 0) {
+                printUsage();
+                return;
+            }
+            ReplicaRegistry replica = new ReplicaRegistry(primaryPort);
+            try {
+                replica.awaitBootstrap(Long.MAX_VALUE, TimeUnit.DAYS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            RegistryServer server = new RegistryServer(replica, port);
+            System.out.println("Serving a read-only replica of " + replica.size() + " items on http://localhost:" + server.getPort() + "/");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                replica.close();
+            }));
+            return;
+        }
+
         ItemRegistry reg = new ItemRegistry();
-        reg.fillWithTestData();
+        if (catalogSize >= 0)
+            new CatalogGenerator(0).fill(reg, catalogSize);
+        else
+            reg.fillWithTestData();
+        reg.registerMBean("main");
+        reg.getConsumptionForecast();
+        Runtime.getRuntime().addShutdownHook(new Thread(reg::close));
+
+        if (serverMode) {
+            RegistryServer server = new RegistryServer(reg, port);
+            System.out.println("Serving " + reg.size() + " items on http://localhost:" + server.getPort() + "/");
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        }
+        if (stockMode) {
+            StockServer server = new StockServer(reg, stockPort);
+            System.out.println("Serving stock changes for " + reg.size() + " items on port " + server.getPort());
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        }
+        if (replicationMode) {
+            ReplicationServer server = new ReplicationServer(reg, replicationPort);
+            System.out.println("Replicating " + reg.size() + " items on port " + server.getPort());
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        }
+        if (serverMode || stockMode)
+            return;
 
         Scanner in = new Scanner(System.in);
         String ans;
@@ -28,4 +120,9 @@ public class Main {
             i.run();
         }
     }
+
+    private static void printUsage() {
+        System.out.println("Usage: Main [--server [port]] [--stock [port]] [--catalog numItems] [--replication [port]]");
+        System.out.println("       Main --replica-of port --server [port]");
+    }
 }
@@ -0,0 +1,51 @@
+package registry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for a change to an Item in an <code>ItemRegistry</code>, including any time spent waiting for the registry's lock.
+ * Changes are frequent, so only those taking at least 100 microseconds are recorded by default, without stack traces.
+ */
+@Name("registry.Mutation")
+@Label("Registry Mutation")
+@Category({ "Warehouse Registry", "Mutation" })
+@Description("A change to an Item in an item registry")
+@Threshold("100 us")
+@StackTrace(false)
+final class MutationEvent extends jdk.jfr.Event {
+    static final String REGISTERED = "registered";
+    static final String DELETED = "deleted";
+    static final String AMOUNT_IN_STORAGE = "amountInStorage";
+    static final String PRICE = "price";
+    static final String DISCOUNT = "discount";
+    static final String DESCRIPTION = "description";
+
+    @Label("Item Number")
+    String itemNumber;
+
+    @Label("Field")
+    @Description("The field that was changed, or whether the Item was registered or deleted")
+    String field;
+
+    @Label("Delta")
+    @Description("The change of the field's value, for numeric fields")
+    double delta;
+
+    /**
+     * Ends this event, and commits it with the submitted values if it is enabled and exceeds its threshold.
+     */
+    void commit(String itemNumber, String field, double delta) {
+        end();
+        if (shouldCommit()) {
+            this.itemNumber = itemNumber;
+            this.field = field;
+            this.delta = delta;
+            commit();
+        }
+    }
+}
@@ -15,6 +15,10 @@ public class NewItemDialog implements ActionListener, DocumentListener {
 
     private static final Color BG_VALID_INPUT = Color.WHITE;
     private static final Color BG_INVALID_INPUT = Color.RED;
+    /**
+     * The number of existing item numbers listed as examples when typing a new item number.
+     */
+    private static final int NUM_EXAMPLES = 3;
 
     private final JFrame frame = new JFrame("Register new item");
     private final JTextField itemNumber             = new JTextField();
@@ -41,6 +45,13 @@ public class NewItemDialog implements ActionListener, DocumentListener {
             new JLabel("Color:")
     };
 
+    /**
+     * Shows existing item numbers starting with the typed item number, or free alternatives if it is taken.
+     */
+    private final JLabel itemNumberHint = new JLabel("");
+    private final JButton buttonUseSuggestion = new JButton();
+    private String suggestedItemNumber = null;
+
     private final JButton buttonSave = new JButton("Save");
     private final JButton buttonCancel = new JButton("Cancel");
 
@@ -61,6 +72,8 @@ public class NewItemDialog implements ActionListener, DocumentListener {
 
         buttonSave.addActionListener(this);
         buttonCancel.addActionListener(this);
+        buttonUseSuggestion.addActionListener(this);
+        buttonUseSuggestion.setVisible(false);
         category.addActionListener(this);
         for (JComponent c : allInputComponents)
             if (c instanceof JTextField) {
@@ -85,6 +98,13 @@ public class NewItemDialog implements ActionListener, DocumentListener {
             frame.add(allInputComponents[i], textField_c);
             label_c.gridy++;
             textField_c.gridy++;
+
+            if (allInputComponents[i] == itemNumber) {
+                frame.add(buttonUseSuggestion, label_c);
+                frame.add(itemNumberHint, textField_c);
+                label_c.gridy++;
+                textField_c.gridy++;
+            }
         }
 
         frame.add(new JLabel(""), label_c);
@@ -94,7 +114,7 @@ public class NewItemDialog implements ActionListener, DocumentListener {
         frame.add(buttonSave, label_c);
         frame.add(buttonCancel, textField_c);
 
-        frame.setSize(400, 280);
+        frame.setSize(400, 310);
         frame.setVisible(true);
     }
 
@@ -173,6 +193,8 @@ public class NewItemDialog implements ActionListener, DocumentListener {
                 save();
             else if (b.equals(buttonCancel))
                 cancel();
+            else if (b.equals(buttonUseSuggestion) && suggestedItemNumber != null)
+                itemNumber.setText(suggestedItemNumber);
         }
     }
 
@@ -191,6 +213,39 @@ public class NewItemDialog implements ActionListener, DocumentListener {
         textUpdated(e);
     }
 
+    /**
+     * Autocompletes the item number field: lists some existing item numbers starting with the typed text, and offers the next free item number if the typed one is taken.
+     */
+    private void updateItemNumberHint() {
+        String typed = itemNumber.getText();
+        suggestedItemNumber = null;
+        buttonUseSuggestion.setVisible(false);
+
+        if (!hasValidInput(itemNumber)) {
+            itemNumberHint.setText("");
+            return;
+        }
+
+        if (registry.itemNumberTaken(typed)) {
+            String[] free = registry.suggestFreeItemNumbers(typed, 1);
+            if (free.length == 0) {
+                itemNumberHint.setText("Already in use");
+                return;
+            }
+            suggestedItemNumber = free[0];
+            itemNumberHint.setText("Already in use");
+            buttonUseSuggestion.setText("Use " + suggestedItemNumber);
+            buttonUseSuggestion.setVisible(true);
+            return;
+        }
+
+        int count = registry.countItemNumbersWithPrefix(typed);
+        if (count == 0)
+            itemNumberHint.setText("");
+        else
+            itemNumberHint.setText(count + " in use, e.g. " + String.join(", ", registry.searchByItemNumberPrefix(typed, NUM_EXAMPLES)));
+    }
+
     private void textUpdated(DocumentEvent e) {
         JTextField src = null;
         for (JComponent c : allInputComponents) {
@@ -212,6 +267,9 @@ public class NewItemDialog implements ActionListener, DocumentListener {
 
             if (src.equals(itemNumber) && registry.itemNumberTaken(itemNumber.getText()))
                 itemNumber.setBackground(BG_INVALID_INPUT);
+
+            if (src.equals(itemNumber))
+                updateItemNumberHint();
         }
 
         else if (src.equals(weight) || src.equals(width) || src.equals(length)) {
@@ -0,0 +1,83 @@
+package registry;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A snapshot of the metrics recorded for one operation of an <code>ItemRegistry</code>. Latencies are in microseconds, computed from the operations sampled for timing.
+ */
+public class OperationStatistics {
+    private final String operation;
+    private final long count;
+    private final long failures;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+
+    @ConstructorProperties({ "operation", "count", "failures", "meanMicros", "p50Micros", "p99Micros", "p999Micros", "maxMicros" })
+    public OperationStatistics(String operation, long count, long failures, double meanMicros, double p50Micros, double p99Micros, double p999Micros, double maxMicros) {
+        this.operation = operation;
+        this.count = count;
+        this.failures = failures;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    /**
+     * Returns the name of the operation, as in <code>RegistryOperation</code>.
+     * @return The name of the operation.
+     */
+    public String getOperation() { return operation; }
+
+    /**
+     * Returns the number of times the operation was performed, including the times it failed.
+     * @return The number of times the operation was performed.
+     */
+    public long getCount() { return count; }
+
+    /**
+     * Returns the number of times the operation failed with an exception.
+     * @return The number of times the operation failed.
+     */
+    public long getFailures() { return failures; }
+
+    /**
+     * Returns the mean latency of the operation.
+     * @return The mean latency in microseconds.
+     */
+    public double getMeanMicros() { return meanMicros; }
+
+    /**
+     * Returns the median latency of the operation.
+     * @return The 50th percentile latency in microseconds.
+     */
+    public double getP50Micros() { return p50Micros; }
+
+    /**
+     * Returns the latency that 99% of the operations were faster than.
+     * @return The 99th percentile latency in microseconds.
+     */
+    public double getP99Micros() { return p99Micros; }
+
+    /**
+     * Returns the latency that 99.9% of the operations were faster than.
+     * @return The 99.9th percentile latency in microseconds.
+     */
+    public double getP999Micros() { return p999Micros; }
+
+    /**
+     * Returns the largest latency of the operation.
+     * @return The largest latency in microseconds.
+     */
+    public double getMaxMicros() { return maxMicros; }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d ops, %d failed, mean %.2f us, p50 %.2f us, p99 %.2f us, p99.9 %.2f us, max %.2f us",
+                operation, count, failures, meanMicros, p50Micros, p99Micros, p999Micros, maxMicros);
+    }
+}
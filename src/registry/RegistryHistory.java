@@ -0,0 +1,128 @@
+package registry;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An append-only audit history of the amounts in storage, prices and discounts of the Items of a registry, answering what they were at any point in time.
+ * <br><br> The history listens to every change of the registry, and keeps a compact log of changes for every item number, see <code>ItemHistory</code>.
+ * Finding the values of an Item at a point in time costs a binary search over the checkpoints of its log and a replay of at most 64 changes,
+ * however long the history, and finding those of the whole registry costs that once per item number.
+ * <br><br> Example: <code>RegistryHistory history = RegistryHistory.record(registry);</code>, and later
+ * <code>history.getItemAt("HA56Y3", Instant.parse("2024-06-04T14:00:00Z"))</code>.
+ */
+public class RegistryHistory implements RegistryListener {
+    private final Clock clock;
+    private final ConcurrentHashMap<String, ItemHistory> histories = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty history, timing changes by the system clock. It records nothing until added as a listener to a registry.
+     */
+    public RegistryHistory() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * Creates an empty history. It records nothing until added as a listener to a registry.
+     * @param clock The clock timing the changes.
+     */
+    public RegistryHistory(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a history of a registry, timing changes by the system clock, starting with every Item already in it.
+     * @param registry The registry to record the history of.
+     * @return The history, recording every change made to the registry from now on.
+     */
+    public static RegistryHistory record(ItemRegistry registry) {
+        RegistryHistory history = new RegistryHistory();
+        registry.addListener(history, true);
+        return history;
+    }
+
+    /**
+     * Returns the amount in storage, price and discount of an Item at a point in time.
+     * @param itemNumber The item number of the Item.
+     * @param time The point in time. Changes made in the same millisecond are included.
+     * @return The values of the Item, or null if no Item had the item number at that time, as far as this history knows.
+     */
+    public ItemSnapshot getItemAt(String itemNumber, Instant time) {
+        ItemHistory history = histories.get(itemNumber);
+        return history != null ? history.valuesAt(itemNumber, time.toEpochMilli()) : null;
+    }
+
+    /**
+     * Returns the amount in storage, price and discount of every Item of the registry at a point in time.
+     * @param time The point in time. Changes made in the same millisecond are included.
+     * @return The values of every Item in the registry at that time, sorted by item number.
+     */
+    public ItemSnapshot[] getRegistryAt(Instant time) {
+        long at = time.toEpochMilli();
+        ArrayList<ItemSnapshot> result = new ArrayList<>();
+        histories.forEach((itemNumber, history) -> {
+            ItemSnapshot snapshot = history.valuesAt(itemNumber, at);
+            if (snapshot != null)
+                result.add(snapshot);
+        });
+        ItemSnapshot[] snapshots = result.toArray(new ItemSnapshot[0]);
+        Arrays.sort(snapshots, Comparator.comparing(ItemSnapshot::getItemNumber));
+        return snapshots;
+    }
+
+    /**
+     * Returns the number of changes recorded.
+     * @return The number of changes recorded, registrations and deletions included.
+     */
+    public long getRecordCount() {
+        long records = 0;
+        for (ItemHistory history : histories.values())
+            records += history.records();
+        return records;
+    }
+
+    /**
+     * Returns the memory used by the logs and checkpoints of this history, not counting the overhead of the objects holding them.
+     * @return The size of the logs and checkpoints, in bytes.
+     */
+    public long getEncodedBytes() {
+        long bytes = 0;
+        for (ItemHistory history : histories.values())
+            bytes += history.bytes();
+        return bytes;
+    }
+
+    @Override
+    public void itemRegistered(Item item) {
+        historyOf(item.getItemNumber()).registered(clock.millis(), item.getAmountInStorage(), item.getPrice(), item.getPriceDiscount());
+    }
+
+    @Override
+    public void itemDeleted(String itemNumber) {
+        historyOf(itemNumber).deleted(clock.millis());
+    }
+
+    @Override
+    public void amountInStorageChanged(String itemNumber, int difference) {
+        historyOf(itemNumber).amountInStorageChanged(clock.millis(), difference);
+    }
+
+    @Override
+    public void priceChanged(String itemNumber, int price) {
+        historyOf(itemNumber).priceChanged(clock.millis(), price);
+    }
+
+    @Override
+    public void discountChanged(String itemNumber, float percentOff) {
+        historyOf(itemNumber).discountChanged(clock.millis(), percentOff);
+    }
+
+    private ItemHistory historyOf(String itemNumber) {
+        ItemHistory history = histories.get(itemNumber);
+        return history != null ? history : histories.computeIfAbsent(itemNumber, n -> new ItemHistory());
+    }
+}
@@ -0,0 +1,80 @@
+package registry;
+
+/**
+ * Receives every change made to an <code>ItemRegistry</code> it has been added to, see <code>ItemRegistry.addListener</code>.
+ * <br><br> Changes are reported by the thread making them, while it still holds the lock of the registry, right after they were made, so a listener sees
+ * the changes to the set of Items and to the fields of an Item in the order they were made. Changes to amounts in storage are made concurrently with each other,
+ * and may be reported concurrently and in any order, which is why they are reported as differences. Listeners must therefore be thread-safe, fast,
+ * and must not call back into the registry. An exception thrown by a listener is passed on to the caller, after the change has been made.
+ * <br><br> Every method does nothing by default, so listeners only implement the changes they need.
+ */
+public interface RegistryListener {
+    /**
+     * Reports that an Item has been registered.
+     * @param item A copy of the new Item.
+     */
+    default void itemRegistered(Item item) {}
+
+    /**
+     * Reports that an Item has been deleted.
+     * @param itemNumber The item number of the deleted Item.
+     */
+    default void itemDeleted(String itemNumber) {}
+
+    /**
+     * Reports that the amount of an Item in storage has changed.
+     * @param itemNumber The item number of the Item.
+     * @param difference The amount added (positive values) or withdrawn (negative values).
+     */
+    default void amountInStorageChanged(String itemNumber, int difference) {}
+
+    /**
+     * Reports that an amount withdrawn by a reservation has been put back in storage, by the reservation being released or expiring, see <code>StockReservation</code>.
+     * Reported right after the addition itself, which is also reported to <code>amountInStorageChanged</code>, so that listeners telling withdrawals
+     * from restocking can take back the withdrawal instead.
+     * @param itemNumber The item number of the Item.
+     * @param amount The amount put back, at least 0.
+     */
+    default void reservationReleased(String itemNumber, int amount) {}
+
+    /**
+     * Reports that the price of an Item has changed.
+     * @param itemNumber The item number of the Item.
+     * @param price The new price.
+     */
+    default void priceChanged(String itemNumber, int price) {}
+
+    /**
+     * Reports that the discount of an Item has changed.
+     * @param itemNumber The item number of the Item.
+     * @param percentOff The new discount, in percent.
+     */
+    default void discountChanged(String itemNumber, float percentOff) {}
+
+    /**
+     * Reports that the prices of several Items have changed at once, by a bulk change. Reports every Item to <code>priceChanged</code> by default.
+     * @param itemNumbers The item numbers of the Items.
+     * @param prices The new prices, one to one with the item numbers.
+     */
+    default void pricesChanged(String[] itemNumbers, int[] prices) {
+        for (int i = 0; i < itemNumbers.length; i++)
+            priceChanged(itemNumbers[i], prices[i]);
+    }
+
+    /**
+     * Reports that the discounts of several Items have changed at once, by a bulk change. Reports every Item to <code>discountChanged</code> by default.
+     * @param itemNumbers The item numbers of the Items.
+     * @param percentOff The new discounts, in percent, one to one with the item numbers.
+     */
+    default void discountsChanged(String[] itemNumbers, float[] percentOff) {
+        for (int i = 0; i < itemNumbers.length; i++)
+            discountChanged(itemNumbers[i], percentOff[i]);
+    }
+
+    /**
+     * Reports that the description of an Item has changed.
+     * @param itemNumber The item number of the Item.
+     * @param description The new description.
+     */
+    default void descriptionChanged(String itemNumber, String description) {}
+}
@@ -0,0 +1,37 @@
+package registry;
+
+/**
+ * The management interface of an <code>ItemRegistry</code>, exposing its size, the sizes of its indexes, its search cache and the metrics of its operations through JMX.
+ * Register it with <code>itemRegistry.registerMBean(...)</code>.
+ */
+public interface RegistryMXBean {
+    int getSize();
+
+    int getPackedItemNumbers();
+
+    int getItemNumberIndexNodes();
+
+    int getDescriptionIndexDocuments();
+
+    int getDescriptionIndexTerms();
+
+    int getSearchCacheSize();
+
+    long getSearchCacheHits();
+
+    long getSearchCacheMisses();
+
+    long getSearchCacheEvictions();
+
+    boolean isMetricsEnabled();
+
+    void setMetricsEnabled(boolean enabled);
+
+    int getSamplingInterval();
+
+    void setSamplingInterval(int interval);
+
+    OperationStatistics[] getOperations();
+
+    void resetMetrics();
+}
@@ -0,0 +1,134 @@
+package registry;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for every operation of an <code>ItemRegistry</code>.
+ * <br><br> Recording is lock-free, and takes a fixed amount of memory however many operations are recorded. Every operation is counted, while only a random sample of them is timed,
+ * by default one in 32: reading the clock twice costs far more than the rest of the bookkeeping, so timing every operation would slow down the fastest lookups noticeably.
+ * The sampled latencies give the same percentiles as timing every operation, given enough operations. The latency of an operation includes any time spent waiting for the registry's lock,
+ * and operations that fail with an exception are counted both as operations and as failures. When disabled, recording costs a single volatile read per operation.
+ */
+public final class RegistryMetrics {
+    /**
+     * The start time returned while the metrics are disabled, telling <code>stop(...)</code> not to record anything.
+     */
+    private static final long NOT_RECORDED = Long.MIN_VALUE;
+    /**
+     * The start time returned for operations that are counted but not timed.
+     */
+    private static final long NOT_TIMED = Long.MIN_VALUE + 1;
+    private static final int DEFAULT_SAMPLING_INTERVAL = 32;
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[RegistryOperation.values().length];
+    private final LongAdder[] counts = new LongAdder[RegistryOperation.values().length];
+    private final LongAdder[] failures = new LongAdder[RegistryOperation.values().length];
+    private volatile boolean enabled = true;
+    private volatile int samplingMask = DEFAULT_SAMPLING_INTERVAL - 1;
+
+    RegistryMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            counts[i] = new LongAdder();
+            failures[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Marks the start of an operation.
+     * @return The start time to pass to <code>stop(...)</code>.
+     */
+    long start() {
+        if (!enabled)
+            return NOT_RECORDED;
+        return (ThreadLocalRandom.current().nextInt() & samplingMask) == 0 ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * Counts an operation, and records its latency if it was picked for timing by <code>start()</code>.
+     */
+    void stop(RegistryOperation operation, long start) {
+        if (start == NOT_RECORDED)
+            return;
+        counts[operation.ordinal()].increment();
+        if (start != NOT_TIMED)
+            latencies[operation.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Records that an operation failed with an exception.
+     */
+    void failed(RegistryOperation operation) {
+        if (enabled)
+            failures[operation.ordinal()].increment();
+    }
+
+    /**
+     * Checks if metrics are being recorded.
+     * @return True if metrics are being recorded, otherwise false.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts or stops recording metrics. Metrics recorded so far are kept.
+     * @param enabled True to record metrics, false to stop recording them.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns how many operations there are for every operation that is timed.
+     * @return The sampling interval, where 1 means that every operation is timed.
+     */
+    public int getSamplingInterval() {
+        return samplingMask + 1;
+    }
+
+    /**
+     * Sets how many operations there are for every operation that is timed. Every operation is counted regardless.
+     * @param interval The sampling interval, which must be a power of two. 1 times every operation.
+     */
+    public void setSamplingInterval(int interval) {
+        if (interval < 1 || Integer.bitCount(interval) != 1)
+            throw new IllegalArgumentException("The sampling interval must be a positive power of two");
+        samplingMask = interval - 1;
+    }
+
+    /**
+     * Returns the statistics recorded for an operation.
+     * @param operation The operation to return the statistics of.
+     * @return A snapshot of the statistics of the operation.
+     */
+    public OperationStatistics getStatistics(RegistryOperation operation) {
+        LatencyHistogram h = latencies[operation.ordinal()];
+        return new OperationStatistics(operation.name(), counts[operation.ordinal()].sum(), failures[operation.ordinal()].sum(), h.getMean() / 1e3,
+                h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3, h.getValueAtPercentile(99.9) / 1e3, h.getMax() / 1e3);
+    }
+
+    /**
+     * Returns the statistics recorded for every operation.
+     * @return A snapshot of the statistics of every operation, in the order of <code>RegistryOperation.values()</code>.
+     */
+    public OperationStatistics[] getStatistics() {
+        RegistryOperation[] operations = RegistryOperation.values();
+        OperationStatistics[] result = new OperationStatistics[operations.length];
+        for (int i = 0; i < operations.length; i++)
+            result[i] = getStatistics(operations[i]);
+        return result;
+    }
+
+    /**
+     * Removes every recorded count, latency and failure.
+     */
+    public void reset() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i].reset();
+            counts[i].reset();
+            failures[i].reset();
+        }
+    }
+}
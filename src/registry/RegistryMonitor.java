@@ -0,0 +1,87 @@
+package registry;
+
+/**
+ * The MBean of an <code>ItemRegistry</code>, reading its values from the registry on every request.
+ */
+final class RegistryMonitor implements RegistryMXBean {
+    private final ItemRegistry registry;
+
+    RegistryMonitor(ItemRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public int getSize() {
+        return registry.size();
+    }
+
+    @Override
+    public int getPackedItemNumbers() {
+        return registry.packedItemNumbers();
+    }
+
+    @Override
+    public int getItemNumberIndexNodes() {
+        return registry.itemNumberIndexNodes();
+    }
+
+    @Override
+    public int getDescriptionIndexDocuments() {
+        return registry.descriptionIndexDocuments();
+    }
+
+    @Override
+    public int getDescriptionIndexTerms() {
+        return registry.descriptionIndexTerms();
+    }
+
+    @Override
+    public int getSearchCacheSize() {
+        return registry.getSearchCache().size();
+    }
+
+    @Override
+    public long getSearchCacheHits() {
+        return registry.getSearchCache().getHits();
+    }
+
+    @Override
+    public long getSearchCacheMisses() {
+        return registry.getSearchCache().getMisses();
+    }
+
+    @Override
+    public long getSearchCacheEvictions() {
+        return registry.getSearchCache().getEvictions();
+    }
+
+    @Override
+    public boolean isMetricsEnabled() {
+        return registry.getMetrics().isEnabled();
+    }
+
+    @Override
+    public void setMetricsEnabled(boolean enabled) {
+        registry.getMetrics().setEnabled(enabled);
+    }
+
+    @Override
+    public int getSamplingInterval() {
+        return registry.getMetrics().getSamplingInterval();
+    }
+
+    @Override
+    public void setSamplingInterval(int interval) {
+        registry.getMetrics().setSamplingInterval(interval);
+    }
+
+    @Override
+    public OperationStatistics[] getOperations() {
+        return registry.getMetrics().getStatistics();
+    }
+
+    @Override
+    public void resetMetrics() {
+        registry.getMetrics().reset();
+    }
+}
@@ -0,0 +1,27 @@
+package registry;
+
+/**
+ * The operations of an <code>ItemRegistry</code> that its metrics are recorded for.
+ */
+public enum RegistryOperation {
+    REGISTER_ITEM,
+    REGISTER_ITEMS,
+    GET_ITEM,
+    GET_ITEMS,
+    GET_ALL,
+    CHANGE_AMOUNT,
+    CHANGE_AMOUNTS,
+    WITHDRAW_ALL,
+    DELETE_ITEM,
+    SET_PRICE,
+    SET_DISCOUNT,
+    SET_DESCRIPTION,
+    REPRICE_ALL,
+    SEARCH_BY_ITEM_NUMBER,
+    SEARCH_BY_ITEM_NUMBER_FUZZY,
+    SEARCH_BY_ITEM_NUMBER_PREFIX,
+    SEARCH_BY_DESCRIPTION,
+    SEARCH_BY_BRAND,
+    SEARCH_BY_COLOR,
+    SEARCH_BY_RELEVANCE
+}
@@ -0,0 +1,105 @@
+package registry;
+
+import java.util.function.Function;
+
+/**
+ * The outcome of an operation of an <code>AsyncItemRegistry</code>: either a value, or the reason the operation could not be done.
+ * <br><br> Expected failures, such as a missing item number, are reported as results rather than exceptions, so that handling them costs no more than a successful call.
+ * @param <T> The type of the value of a successful operation.
+ */
+public final class RegistryResult<T> {
+    /**
+     * Why an operation did or did not succeed.
+     */
+    public enum Status {
+        OK,
+        NO_SUCH_ITEM,
+        ITEM_NUMBER_TAKEN,
+        INSUFFICIENT_AMOUNT,
+        INVALID_ARGUMENT
+    }
+
+    private static final RegistryResult<?> OK_WITHOUT_VALUE = new RegistryResult<>(Status.OK, null, null);
+
+    private final Status status;
+    private final T value;
+    private final String message;
+
+    private RegistryResult(Status status, T value, String message) {
+        this.status = status;
+        this.value = value;
+        this.message = message;
+    }
+
+    static <T> RegistryResult<T> ok(T value) {
+        return new RegistryResult<>(Status.OK, value, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> RegistryResult<T> ok() {
+        return (RegistryResult<T>) OK_WITHOUT_VALUE;
+    }
+
+    static <T> RegistryResult<T> failure(Status status, String message) {
+        if (status == Status.OK)
+            throw new IllegalArgumentException("A failure needs a status other than OK");
+        return new RegistryResult<>(status, null, message);
+    }
+
+    /**
+     * Returns whether the operation succeeded.
+     * @return True if the status is <code>OK</code>.
+     */
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    /**
+     * Returns whether the operation succeeded, or why not.
+     * @return The status of the operation.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the value of a successful operation.
+     * @return The value, or null if the operation failed or has no value.
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the value of a successful operation, or a fallback.
+     * @param other The value to return if the operation failed.
+     * @return The value of the operation, or <code>other</code> if it failed.
+     */
+    public T orElse(T other) {
+        return isOk() ? value : other;
+    }
+
+    /**
+     * Returns a description of why the operation failed.
+     * @return The description, or null if the operation succeeded.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns a result holding the value of this result converted by a function, or the same failure as this result.
+     * @param mapper The function to convert the value with, only called if the operation succeeded.
+     * @param <U> The type of the converted value.
+     * @return A successful result with the converted value, or this result if it is a failure.
+     */
+    @SuppressWarnings("unchecked")
+    public <U> RegistryResult<U> map(Function<? super T, ? extends U> mapper) {
+        return isOk() ? ok(mapper.apply(value)) : (RegistryResult<U>) this;
+    }
+
+    @Override
+    public String toString() {
+        return isOk() ? "OK: " + value : status + ": " + message;
+    }
+}
@@ -0,0 +1,399 @@
+package registry;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A headless HTTP server exposing the operations of an <code>ItemRegistry</code> as a JSON API, built on the JDK's own <code>HttpServer</code>.
+ * <br><br> Every request is handled on a virtual thread of its own when running on Java 21 or later, and on a pool of platform threads otherwise.
+ * Lists of Items and search results are streamed to the client as they are written, rather than built in memory first.
+ * <br><br> Endpoints, where <code>{n}</code> is an item number:
+ * <ul>
+ *     <li><code>GET /items/{n}</code>: The Item, or 404.</li>
+ *     <li><code>GET /items?limit=</code>: Every Item, as an array.</li>
+ *     <li><code>PUT /items/{n}</code>: Registers a new Item, from an object with every field of an Item. 409 if the item number is taken.</li>
+ *     <li><code>DELETE /items/{n}</code>: Deletes the Item, or 404.</li>
+ *     <li><code>POST /items/{n}/stock</code>: Changes the amount in storage by <code>{"delta": n}</code>.</li>
+ *     <li><code>PUT /items/{n}/price</code>, <code>/discount</code> and <code>/description</code>: Sets <code>{"price": n}</code>, <code>{"percentOff": n}</code> or <code>{"description": s}</code>.</li>
+ *     <li><code>GET /search/{mode}?q=&amp;limit=</code>: The item numbers found by a search, where mode is one of itemNumber, description, brand, color, prefix, fuzzy (with <code>distance=</code>) and relevance (with <code>all=true</code> to match every word).</li>
+ *     <li><code>GET /items/{n}/forecast</code>: The rate of withdrawal of the Item and its days until stockout, see <code>ConsumptionForecast</code>.</li>
+ *     <li><code>GET /forecast?order=&amp;limit=</code>: The forecasts of the Items running out first, or with <code>order=fastest</code>, of the Items withdrawn the fastest.</li>
+ *     <li><code>GET /stats</code>: The size and totals of the registry.</li>
+ * </ul>
+ * Errors are returned as <code>{"error": message}</code> with status 400, 404, 405 or 409.
+ * Any other failure is returned with status 500, unless the response had already started, in which case the connection is closed.
+ * <br><br> A read-only server, such as one serving a <code>ReplicaRegistry</code>, only answers <code>GET</code> requests, and responds to the others with 405.
+ * <br><br> The JDK's server writes the headers and the body of a response separately, so unless TCP_NODELAY is enabled, every response waits out the client's delayed ACK.
+ * Launch with <code>-Dsun.net.httpserver.nodelay=true</code>, which <code>Main</code> sets when serving, before the first server of the JVM is created.
+ */
+public class RegistryServer implements AutoCloseable {
+    private static final int DEFAULT_SEARCH_LIMIT = 1000;
+    private static final int DEFAULT_FORECAST_LIMIT = 100;
+    private static final int BACKLOG = 1024;
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final ItemRegistry registry;
+    private final boolean readOnly;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Thrown by the request handlers to respond with an error status.
+     */
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Creates and starts a server for a registry.
+     * @param registry The registry to serve.
+     * @param port The port to listen on, or 0 to pick a free port.
+     * @throws IOException if the server could not listen on the port.
+     */
+    public RegistryServer(ItemRegistry registry, int port) throws IOException {
+        this(registry, port, false);
+    }
+
+    /**
+     * Creates and starts a read-only server for a replica of a registry, see <code>ReplicaRegistry</code>.
+     * @param replica The replica to serve.
+     * @param port The port to listen on, or 0 to pick a free port.
+     * @throws IOException if the server could not listen on the port.
+     */
+    public RegistryServer(ReplicaRegistry replica, int port) throws IOException {
+        this(replica.registry(), port, true);
+    }
+
+    private RegistryServer(ItemRegistry registry, int port, boolean readOnly) throws IOException {
+        this.registry = registry;
+        this.readOnly = readOnly;
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        executor = newRequestExecutor("registry-server-");
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Returns an executor running every task on a new virtual thread on Java 21 and later, or a pool of platform threads on earlier versions.
+     * @param threadNamePrefix The start of the names of the platform threads, followed by their number.
+     */
+    static ExecutorService newRequestExecutor(String threadNamePrefix) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadFactory threads = r -> {
+                Thread t = new Thread(r, threadNamePrefix + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+            return Executors.newFixedThreadPool(Math.max(16, 4 * Runtime.getRuntime().availableProcessors()), threads);
+        }
+    }
+
+    /**
+     * Returns the port this server listens on.
+     * @return The port this server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops this server, giving ongoing requests a second to complete.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                route(exchange);
+            } catch (HttpError e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                if (exchange.getResponseCode() != -1)
+                    throw e; // The response has started, so all that is left is to close the connection
+                sendError(exchange, 500, e.toString());
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (readOnly && !method.equals("GET"))
+            throw new HttpError(405, "This registry is a read-only replica, make changes on the primary");
+        String[] path = pathSegments(exchange);
+        Map<String, String> query = queryParameters(exchange);
+
+        if (path.length == 1 && path[0].equals("items")) {
+            requireMethod(method, "GET");
+            streamItems(exchange, registry.getAll(), intParameter(query, "limit", Integer.MAX_VALUE));
+        } else if (path.length == 2 && path[0].equals("items")) {
+            String itemNumber = path[1];
+            switch (method) {
+                case "GET" -> sendItem(exchange, 200, getItem(itemNumber));
+                case "PUT" -> {
+                    Map<String, String> body = readBody(exchange);
+                    // Every field is read and checked before registering, so that a bad request registers nothing
+                    Item item = new Item(itemNumber, requireField(body, "description"), intField(body, "amountInStorage"), intField(body, "price"),
+                            categoryField(body), requireField(body, "brand"), floatField(body, "weight"), floatField(body, "width"), floatField(body, "length"),
+                            requireField(body, "color"));
+                    if (body.containsKey("percentOff"))
+                        item.setDiscount(floatField(body, "percentOff"));
+                    if (registry.itemNumberTaken(itemNumber))
+                        throw new HttpError(409, "The item number " + itemNumber + " is already in use");
+                    registry.registerNewItems(new Item[]{ item });
+                    sendItem(exchange, 201, getItem(itemNumber));
+                }
+                case "DELETE" -> {
+                    if (!registry.deleteItemEntry(itemNumber))
+                        throw new HttpError(404, "No item with the item number " + itemNumber);
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                default -> throw new HttpError(405, "Method " + method + " is not allowed here");
+            }
+        } else if (path.length == 3 && path[0].equals("items")) {
+            String itemNumber = path[1];
+            getItem(itemNumber); // Respond with 404 rather than 400 for unknown Items
+            Map<String, String> body;
+            switch (path[2]) {
+                case "stock" -> {
+                    requireMethod(method, "POST");
+                    body = readBody(exchange);
+                    registry.changeAmountInStorage(itemNumber, intField(body, "delta"));
+                }
+                case "price" -> {
+                    requireMethod(method, "PUT");
+                    body = readBody(exchange);
+                    registry.setItemPrice(itemNumber, intField(body, "price"));
+                }
+                case "discount" -> {
+                    requireMethod(method, "PUT");
+                    body = readBody(exchange);
+                    registry.setItemDiscount(itemNumber, floatField(body, "percentOff"));
+                }
+                case "description" -> {
+                    requireMethod(method, "PUT");
+                    body = readBody(exchange);
+                    registry.setItemDescription(itemNumber, requireField(body, "description"));
+                }
+                case "forecast" -> {
+                    requireMethod(method, "GET");
+                    ConsumptionEstimate estimate = registry.getConsumptionForecast().getEstimate(itemNumber);
+                    if (estimate == null)
+                        throw new HttpError(404, "No forecast for the item number " + itemNumber);
+                    send(exchange, 200, Json.appendEstimate(new StringBuilder(128), estimate).toString());
+                    return;
+                }
+                default -> throw new HttpError(404, "Unknown field " + path[2]);
+            }
+            sendItem(exchange, 200, getItem(itemNumber));
+        } else if (path.length == 2 && path[0].equals("search")) {
+            requireMethod(method, "GET");
+            String term = query.getOrDefault("q", "");
+            int limit = intParameter(query, "limit", DEFAULT_SEARCH_LIMIT);
+            String[] result = switch (path[1]) {
+                case "itemNumber" -> registry.searchByItemNumber(term);
+                case "description" -> registry.searchByDescription(term);
+                case "brand" -> registry.searchByBrand(term);
+                case "color" -> registry.searchByColor(term);
+                case "prefix" -> registry.searchByItemNumberPrefix(term, limit);
+                case "fuzzy" -> registry.searchByItemNumberFuzzy(term, intParameter(query, "distance", 1));
+                case "relevance" -> registry.searchByRelevance(term, Boolean.parseBoolean(query.get("all")), limit);
+                default -> throw new HttpError(404, "Unknown search mode " + path[1]);
+            };
+            streamStrings(exchange, result, limit);
+        } else if (path.length == 1 && path[0].equals("forecast")) {
+            requireMethod(method, "GET");
+            int limit = intParameter(query, "limit", DEFAULT_FORECAST_LIMIT);
+            ConsumptionEstimate[] estimates = switch (query.getOrDefault("order", "urgent")) {
+                case "urgent" -> registry.getConsumptionForecast().getMostUrgent(limit);
+                case "fastest" -> registry.getConsumptionForecast().getFastestMoving(limit);
+                default -> throw new HttpError(400, "Unknown order " + query.get("order") + ", expected urgent or fastest");
+            };
+            StringBuilder json = new StringBuilder(64 + 128 * estimates.length).append('[');
+            for (int i = 0; i < estimates.length; i++)
+                Json.appendEstimate(i > 0 ? json.append(',') : json, estimates[i]);
+            send(exchange, 200, json.append(']').toString());
+        } else if (path.length == 1 && path[0].equals("stats")) {
+            requireMethod(method, "GET");
+            String json = "{\"size\":" + registry.size() + ",\"totalAmountInStorage\":" + registry.totalAmountInStorage()
+                    + ",\"totalValueInStorage\":" + registry.totalValueInStorage() + "}";
+            send(exchange, 200, json);
+        } else {
+            throw new HttpError(404, "Unknown path " + exchange.getRequestURI().getPath());
+        }
+    }
+
+    private Item getItem(String itemNumber) {
+        if (!registry.itemNumberTaken(itemNumber))
+            throw new HttpError(404, "No item with the item number " + itemNumber);
+        return registry.getItem(itemNumber);
+    }
+
+    private static void requireMethod(String method, String allowed) {
+        if (!method.equals(allowed))
+            throw new HttpError(405, "Method " + method + " is not allowed here, use " + allowed);
+    }
+
+    private static String[] pathSegments(HttpExchange exchange) {
+        String raw = exchange.getRequestURI().getRawPath();
+        String[] segments = raw.replaceAll("^/+|/+$", "").split("/+");
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = URLDecoder.decode(segments[i].replace("+", "%2B"), StandardCharsets.UTF_8);
+        return segments;
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null)
+            return parameters;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            parameters.put(name, value);
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The parameter '" + name + "' must be an integer");
+        }
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return Json.parseFlatObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String requireField(Map<String, String> body, String name) {
+        String value = body.get(name);
+        if (value == null)
+            throw new IllegalArgumentException("The field '" + name + "' is required");
+        return value;
+    }
+
+    private static int intField(Map<String, String> body, String name) {
+        try {
+            return Integer.parseInt(requireField(body, name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The field '" + name + "' must be an integer");
+        }
+    }
+
+    private static float floatField(Map<String, String> body, String name) {
+        try {
+            return Float.parseFloat(requireField(body, name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The field '" + name + "' must be a number");
+        }
+    }
+
+    private static ItemCategory categoryField(Map<String, String> body) {
+        String value = requireField(body, "category");
+        for (ItemCategory category : ItemCategory.values())
+            if (category.name().equalsIgnoreCase(value))
+                return category;
+        throw new IllegalArgumentException("Unknown category " + value);
+    }
+
+    private static void sendItem(HttpExchange exchange, int status, Item item) throws IOException {
+        send(exchange, status, Json.appendItem(new StringBuilder(256), item).toString());
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, Json.appendString(new StringBuilder("{\"error\":"), String.valueOf(message)).append('}').toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Streams an array of Items to the client with chunked encoding, serializing them one by one.
+     */
+    private static void streamItems(HttpExchange exchange, Item[] items, int limit) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            StringBuilder sb = new StringBuilder(256);
+            out.write('[');
+            for (int i = 0; i < Math.min(limit, items.length); i++) {
+                sb.setLength(0);
+                if (i > 0)
+                    sb.append(',');
+                out.append(Json.appendItem(sb, items[i]));
+            }
+            out.write(']');
+        }
+    }
+
+    /**
+     * Streams an array of Strings to the client with chunked encoding.
+     */
+    private static void streamStrings(HttpExchange exchange, String[] strings, int limit) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            StringBuilder sb = new StringBuilder(32);
+            out.write('[');
+            for (int i = 0; i < Math.min(limit, strings.length); i++) {
+                sb.setLength(0);
+                if (i > 0)
+                    sb.append(',');
+                out.append(Json.appendString(sb, strings[i]));
+            }
+            out.write(']');
+        }
+    }
+}
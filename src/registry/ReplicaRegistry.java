@@ -0,0 +1,490 @@
+package registry;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A read-only copy of a registry in another process, kept up to date with the changes streamed by the <code>ReplicationServer</code> of that registry.
+ * <br><br> The replica starts from a snapshot of every Item in the primary, then applies the changes made since in the order the primary reported them,
+ * a frame at a time: consecutive registrations become one <code>registerNewItems</code>, and the changes to amounts in storage in a frame are added up
+ * per Item and applied with one <code>changeAmountsInStorage</code>, so that a replica behind the primary catches up in fewer, larger steps.
+ * <br><br> Changes to amounts in storage run in parallel on the primary, and may be reported in another order than they were made in. A withdrawal reported
+ * before the deposit making it possible is held back until the deposit arrives, so that the replica's amounts always add up to the primary's.
+ * <br><br> If the connection is lost, the replica keeps serving the Items it has, and reconnects in the background, bringing its Items up to date with
+ * a new snapshot. Lookups and searches run on the replica's own registry, and are never blocked by the primary or by the other replicas.
+ */
+public class ReplicaRegistry implements AutoCloseable {
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private final ItemRegistry registry = new ItemRegistry();
+    private final InetSocketAddress primary;
+    private final CountDownLatch bootstrapped = new CountDownLatch(1);
+    private final Thread receiver;
+    private volatile Socket socket;
+    private volatile boolean connected = false;
+    private volatile boolean closed = false;
+    private volatile long appliedSequence = 0;
+    private volatile long syncedMillis = 0;
+    private volatile long frames = 0;
+
+    // Only used by the receiver thread
+    private final ArrayList<Item> pendingItems = new ArrayList<>();
+    private final LinkedHashMap<String, Integer> pendingAmounts = new LinkedHashMap<>();
+    private final HashMap<String, Integer> heldBack = new HashMap<>();
+    private LinkedHashMap<String, Item> snapshot = new LinkedHashMap<>();
+    private String[] amountItemNumbers = new String[64];
+    private int[] amounts = new int[64];
+    private int[] amountResults = new int[64];
+
+    /**
+     * Connects to the replication server of a primary registry on this machine, and starts receiving its Items and changes.
+     * @param port The port of the replication server.
+     * @throws IOException if the replication server could not be reached.
+     */
+    public ReplicaRegistry(int port) throws IOException {
+        this(InetAddress.getLoopbackAddress().getHostAddress(), port);
+    }
+
+    /**
+     * Connects to the replication server of a primary registry, and starts receiving its Items and changes.
+     * @param host The host of the replication server.
+     * @param port The port of the replication server.
+     * @throws IOException if the replication server could not be reached.
+     */
+    public ReplicaRegistry(String host, int port) throws IOException {
+        if (host == null)
+            throw new IllegalArgumentException("Parameter 'host' cannot be null");
+        primary = new InetSocketAddress(host, port);
+        socket = connect();
+        receiver = new Thread(this::receive, "replica-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * Waits until the snapshot of the primary has been applied.
+     * @param timeout The longest time to wait.
+     * @param unit The unit of the timeout.
+     * @return True if the snapshot has been applied, or false if the timeout passed first.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitBootstrap(long timeout, TimeUnit unit) throws InterruptedException {
+        return bootstrapped.await(timeout, unit);
+    }
+
+    /**
+     * Returns whether this replica is connected to the primary.
+     * @return True if connected, or false while reconnecting or once closed.
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Returns the sequence number of the last change applied, counted from the start of the current connection, snapshot included.
+     * @return The number of records applied since the current connection was made.
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Returns the number of frames received, heartbeats included, over every connection.
+     * @return The number of frames received.
+     */
+    public long getFramesReceived() {
+        return frames;
+    }
+
+    /**
+     * Returns how far behind the primary this replica may be: the time since the primary sent the last frame applied, which held every change made before then.
+     * On a primary without changes, this stays below the heartbeat interval of the replication protocol plus the time to deliver a frame.
+     * @return The lag, in milliseconds, or -1 if the snapshot has not been applied yet.
+     */
+    public long getLagMillis() {
+        long synced = syncedMillis;
+        return synced == 0 ? -1 : Math.max(0, System.currentTimeMillis() - synced);
+    }
+
+    /**
+     * Disconnects from the primary. The Items of this replica can still be looked up, but are no longer kept up to date.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        receiver.interrupt();
+        registry.close();
+    }
+
+    /**
+     * Returns the registry changes are applied to, to serve it read-only, see <code>RegistryServer</code>. Changes must not be made to it directly.
+     */
+    ItemRegistry registry() {
+        return registry;
+    }
+
+    /**
+     * See <code>ItemRegistry.getItem</code>.
+     * @param itemNumber The item number of the requested Item.
+     * @return A copy of the requested Item.
+     */
+    public Item getItem(String itemNumber) {
+        return registry.getItem(itemNumber);
+    }
+
+    /**
+     * See <code>ItemRegistry.findItem</code>.
+     * @param itemNumber The item number of the requested Item.
+     * @return A copy of the requested Item, or null if no Item in this replica has the item number.
+     */
+    public Item findItem(String itemNumber) {
+        return registry.findItem(itemNumber);
+    }
+
+    /**
+     * See <code>ItemRegistry.getItems</code>.
+     * @param itemNumbers The item numbers of the requested Items.
+     * @return Copies of the requested Items, sorted one to one.
+     */
+    public Item[] getItems(String[] itemNumbers) {
+        return registry.getItems(itemNumbers);
+    }
+
+    /**
+     * See <code>ItemRegistry.getAll</code>.
+     * @return A copy of every Item in this replica.
+     */
+    public Item[] getAll() {
+        return registry.getAll();
+    }
+
+    /**
+     * See <code>ItemRegistry.size</code>.
+     * @return The number of Items in this replica.
+     */
+    public int size() {
+        return registry.size();
+    }
+
+    /**
+     * See <code>ItemRegistry.itemNumberTaken</code>.
+     * @param itemNumber The item number to check.
+     * @return True if an Item in this replica has the item number.
+     */
+    public boolean itemNumberTaken(String itemNumber) {
+        return registry.itemNumberTaken(itemNumber);
+    }
+
+    /**
+     * See <code>ItemRegistry.searchByItemNumber</code>.
+     * @param searchTerm The term to search for.
+     * @return The item numbers found.
+     */
+    public String[] searchByItemNumber(String searchTerm) {
+        return registry.searchByItemNumber(searchTerm);
+    }
+
+    /**
+     * See <code>ItemRegistry.searchByItemNumberFuzzy</code>.
+     * @param searchTerm The item number to search for.
+     * @param maxDistance The most edits between the search term and an item number found.
+     * @return The item numbers found.
+     */
+    public String[] searchByItemNumberFuzzy(String searchTerm, int maxDistance) {
+        return registry.searchByItemNumberFuzzy(searchTerm, maxDistance);
+    }
+
+    /**
+     * See <code>ItemRegistry.searchByItemNumberPrefix</code>.
+     * @param prefix The start of the item numbers to find.
+     * @param maxResults The most item numbers to return.
+     * @return The item numbers found.
+     */
+    public String[] searchByItemNumberPrefix(String prefix, int maxResults) {
+        return registry.searchByItemNumberPrefix(prefix, maxResults);
+    }
+
+    /**
+     * See <code>ItemRegistry.searchByDescription</code>.
+     * @param searchTerm The term to search for.
+     * @return The item numbers found.
+     */
+    public String[] searchByDescription(String searchTerm) {
+        return registry.searchByDescription(searchTerm);
+    }
+
+    /**
+     * See <code>ItemRegistry.searchByRelevance</code>.
+     * @param query The words to search for.
+     * @param matchAllWords Whether an Item must match every word.
+     * @param maxResults The most item numbers to return.
+     * @return The item numbers found, the most relevant first.
+     */
+    public String[] searchByRelevance(String query, boolean matchAllWords, int maxResults) {
+        return registry.searchByRelevance(query, matchAllWords, maxResults);
+    }
+
+    /**
+     * See <code>ItemRegistry.searchByBrand</code>.
+     * @param brand The brand to search for.
+     * @return The item numbers found.
+     */
+    public String[] searchByBrand(String brand) {
+        return registry.searchByBrand(brand);
+    }
+
+    /**
+     * See <code>ItemRegistry.searchByColor</code>.
+     * @param color The color to search for.
+     * @return The item numbers found.
+     */
+    public String[] searchByColor(String color) {
+        return registry.searchByColor(color);
+    }
+
+    /**
+     * See <code>ItemRegistry.totalAmountInStorage</code>.
+     * @return The sum of the amount in storage of every Item in this replica.
+     */
+    public long totalAmountInStorage() {
+        return registry.totalAmountInStorage();
+    }
+
+    /**
+     * See <code>ItemRegistry.totalValueInStorage</code>.
+     * @return The sum of the price after discount times the amount in storage, of every Item in this replica.
+     */
+    public long totalValueInStorage() {
+        return registry.totalValueInStorage();
+    }
+
+    private Socket connect() throws IOException {
+        Socket s = new Socket();
+        try {
+            s.connect(primary);
+            s.setTcpNoDelay(true);
+        } catch (IOException e) {
+            s.close();
+            throw e;
+        }
+        connected = true;
+        return s;
+    }
+
+    private void receive() {
+        while (!closed) {
+            try (Socket s = socket) {
+                if (closed)
+                    break;
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+                byte[] buffer = new byte[64 * 1024];
+                boolean inSnapshot = true;
+                appliedSequence = 0;
+                snapshot.clear();
+                heldBack.clear();
+                while (true) {
+                    int length = in.readInt();
+                    long last = in.readLong();
+                    long sent = in.readLong();
+                    int count = in.readInt();
+                    // Every record takes at least a byte
+                    if (length < ReplicationProtocol.HEADER_LENGTH || count < 0 || count > length - ReplicationProtocol.HEADER_LENGTH)
+                        throw new IOException("Malformed replication stream: frame of length " + length + " with " + count + " records");
+
+                    // The records are parsed from the frame alone, so that a record overrunning the frame cannot read into the next one
+                    int recordsLength = length - ReplicationProtocol.HEADER_LENGTH;
+                    byte[] frame = recordsLength <= buffer.length ? buffer : new byte[recordsLength]; // Only the snapshot is usually larger
+                    in.readFully(frame, 0, recordsLength);
+                    ByteArrayInputStream records = new ByteArrayInputStream(frame, 0, recordsLength);
+                    DataInputStream recordsIn = new DataInputStream(records);
+                    try {
+                        for (int n = 0; n < count; n++)
+                            inSnapshot = apply(recordsIn, inSnapshot);
+                    } catch (EOFException e) {
+                        throw new IOException("Malformed replication stream: the " + count + " records overrun the frame of length " + length, e);
+                    }
+                    if (records.available() != 0)
+                        throw new IOException("Malformed replication stream: " + records.available() + " bytes left over after the "
+                                + count + " records of the frame of length " + length);
+                    flush();
+                    appliedSequence = last;
+                    frames++;
+                    if (!inSnapshot)
+                        syncedMillis = sent;
+                }
+            } catch (EOFException e) {
+                // The primary closed the connection
+            } catch (IOException | RuntimeException e) {
+                if (!closed)
+                    receiver.getUncaughtExceptionHandler().uncaughtException(receiver, e);
+            }
+            connected = false;
+            pendingItems.clear();
+            pendingAmounts.clear();
+            while (!closed) {
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                    socket = connect();
+                    break;
+                } catch (IOException e) {
+                    // Still unreachable, try again
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+        connected = false;
+    }
+
+    /**
+     * Reads and applies one record, or holds it in a batch with the records following it.
+     * @return Whether the snapshot is still being received after this record.
+     */
+    private boolean apply(DataInputStream in, boolean inSnapshot) throws IOException {
+        byte kind = in.readByte();
+        if (inSnapshot) {
+            if (kind == ReplicationProtocol.REGISTERED) {
+                Item item = ReplicationProtocol.readItem(in);
+                snapshot.put(item.getItemNumber(), item);
+                return true;
+            }
+            if (kind != ReplicationProtocol.SNAPSHOT_END)
+                throw new IOException("Malformed replication stream: record of kind " + kind + " within the snapshot");
+            reconcile();
+            bootstrapped.countDown();
+            return false;
+        }
+
+        switch (kind) {
+            case ReplicationProtocol.REGISTERED -> {
+                Item item = ReplicationProtocol.readItem(in);
+                flushAmounts(); // The item number may have been deleted just before
+                heldBack.remove(item.getItemNumber());
+                pendingItems.add(item);
+            }
+            case ReplicationProtocol.DELETED -> {
+                String itemNumber = ReplicationProtocol.readString(in);
+                flush();
+                heldBack.remove(itemNumber);
+                registry.deleteItemEntry(itemNumber);
+            }
+            case ReplicationProtocol.AMOUNT_IN_STORAGE -> {
+                String itemNumber = ReplicationProtocol.readString(in);
+                int difference = in.readInt();
+                flushItems();
+                pendingAmounts.merge(itemNumber, difference, Integer::sum);
+            }
+            case ReplicationProtocol.PRICE -> {
+                String itemNumber = ReplicationProtocol.readString(in);
+                int price = in.readInt();
+                flushItems();
+                registry.setItemPrice(itemNumber, price);
+            }
+            case ReplicationProtocol.DISCOUNT -> {
+                String itemNumber = ReplicationProtocol.readString(in);
+                float percentOff = in.readFloat();
+                flushItems();
+                registry.setItemDiscount(itemNumber, percentOff);
+            }
+            case ReplicationProtocol.DESCRIPTION -> {
+                String itemNumber = ReplicationProtocol.readString(in);
+                String description = ReplicationProtocol.readString(in);
+                flushItems();
+                registry.setItemDescription(itemNumber, description);
+            }
+            default -> throw new IOException("Malformed replication stream: record of kind " + kind);
+        }
+        return false;
+    }
+
+    /**
+     * Brings the Items of this replica in line with a snapshot of the primary: deletes the Items gone from it, updates the ones changed, and registers the new ones.
+     * On the first connection, this replica is empty, and every Item is registered in one batch.
+     */
+    private void reconcile() {
+        if (registry.size() > 0) {
+            for (Item mine : registry.getAll()) {
+                Item theirs = snapshot.get(mine.getItemNumber());
+                if (theirs == null || !sameConstantFields(mine, theirs)) {
+                    registry.deleteItemEntry(mine.getItemNumber());
+                    continue;
+                }
+                snapshot.remove(mine.getItemNumber());
+                if (mine.getAmountInStorage() != theirs.getAmountInStorage())
+                    registry.changeAmountInStorage(mine.getItemNumber(), theirs.getAmountInStorage() - mine.getAmountInStorage());
+                if (mine.getPrice() != theirs.getPrice())
+                    registry.setItemPrice(mine.getItemNumber(), theirs.getPrice());
+                if (mine.getPriceDiscount() != theirs.getPriceDiscount())
+                    registry.setItemDiscount(mine.getItemNumber(), theirs.getPriceDiscount());
+                if (!mine.getDescription().equals(theirs.getDescription()))
+                    registry.setItemDescription(mine.getItemNumber(), theirs.getDescription());
+            }
+        }
+        if (!snapshot.isEmpty())
+            registry.registerNewItems(snapshot.values().toArray(new Item[0]));
+        snapshot = new LinkedHashMap<>();
+    }
+
+    private static boolean sameConstantFields(Item a, Item b) {
+        return a.getCategory() == b.getCategory() && Objects.equals(a.getBrand(), b.getBrand()) && Objects.equals(a.getColor(), b.getColor())
+                && a.getWeight() == b.getWeight() && a.getWidth() == b.getWidth() && a.getLength() == b.getLength();
+    }
+
+    private void flush() {
+        flushItems();
+        flushAmounts();
+    }
+
+    private void flushItems() {
+        if (pendingItems.isEmpty())
+            return;
+        registry.registerNewItems(pendingItems.toArray(new Item[0]));
+        pendingItems.clear();
+    }
+
+    /**
+     * Applies the changes to amounts in storage added up so far, along with those held back for the same Items.
+     * A change which would make an amount negative is held back, as the change making it possible has yet to arrive.
+     */
+    private void flushAmounts() {
+        int count = pendingAmounts.size();
+        if (count == 0)
+            return;
+        if (amountItemNumbers.length < count) {
+            int capacity = Math.max(count, 2 * amountItemNumbers.length);
+            amountItemNumbers = new String[capacity];
+            amounts = new int[capacity];
+            amountResults = new int[capacity];
+        }
+        int n = 0;
+        for (Map.Entry<String, Integer> e : pendingAmounts.entrySet()) {
+            Integer held = heldBack.isEmpty() ? null : heldBack.remove(e.getKey());
+            amountItemNumbers[n] = e.getKey();
+            amounts[n++] = held != null ? e.getValue() + held : e.getValue();
+        }
+        pendingAmounts.clear();
+        if (registry.changeAmountsInStorage(amountItemNumbers, amounts, count, amountResults) > 0)
+            for (int i = 0; i < count; i++)
+                if (amountResults[i] == ItemRegistry.INSUFFICIENT_AMOUNT)
+                    heldBack.put(amountItemNumbers[i], amounts[i]);
+        for (int i = 0; i < count; i++)
+            amountItemNumbers[i] = null;
+    }
+}
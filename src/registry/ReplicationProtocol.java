@@ -0,0 +1,86 @@
+package registry;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary protocol <code>ReplicationServer</code> streams the changes of a primary registry to <code>ReplicaRegistry</code> with. Every number is big-endian.
+ * <br><br> The stream is one way, from the primary to the replica, and is a sequence of frames. A frame starts with its length in bytes (<code>int</code>),
+ * not counting the length itself, followed by the sequence number of its last record (<code>long</code>), the time the frame was sent by the primary, in milliseconds since the epoch
+ * (<code>long</code>), and the number of records (<code>int</code>). A frame holds every change the primary made before it was sent that no earlier frame held,
+ * so that a replica having applied it is up to date as of that time. Frames without records are heartbeats.
+ * <br><br> Every record starts with its kind (<code>byte</code>) and, except for <code>SNAPSHOT_END</code>, the item number.
+ * Strings are their length in bytes (<code>int</code>) followed by UTF-8. The stream starts with a <code>REGISTERED</code> record for every Item in the primary,
+ * followed by <code>SNAPSHOT_END</code>, and then every change made since, in the order the primary reported them.
+ */
+final class ReplicationProtocol {
+    private ReplicationProtocol() {}
+
+    /** Every field of an Item, in the order of its constructor, followed by its discount. */
+    static final byte REGISTERED = 0;
+    static final byte DELETED = 1;
+    /** The amount added or withdrawn (<code>int</code>). */
+    static final byte AMOUNT_IN_STORAGE = 2;
+    /** The new price (<code>int</code>). */
+    static final byte PRICE = 3;
+    /** The new discount (<code>float</code>). */
+    static final byte DISCOUNT = 4;
+    /** The new description (string). */
+    static final byte DESCRIPTION = 5;
+    /** Marks the end of the snapshot at the start of the stream. */
+    static final byte SNAPSHOT_END = 6;
+
+    /**
+     * The last record sequence number, the time the frame was sent and the number of records, following the length.
+     */
+    static final int HEADER_LENGTH = Long.BYTES + Long.BYTES + Integer.BYTES;
+    /**
+     * The longest time between two frames. A primary without changes to send sends heartbeats, so replicas can tell a quiet primary from a lost one.
+     */
+    static final long HEARTBEAT_MILLIS = 100;
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            throw new IOException("Malformed replication stream: string of length " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeItem(DataOutput out, Item item) throws IOException {
+        writeString(out, item.getItemNumber());
+        writeString(out, item.getDescription());
+        out.writeInt(item.getAmountInStorage());
+        out.writeInt(item.getPrice());
+        out.writeByte(item.getCategory().ordinal());
+        writeString(out, item.getBrand());
+        out.writeFloat(item.getWeight());
+        out.writeFloat(item.getWidth());
+        out.writeFloat(item.getLength());
+        writeString(out, item.getColor());
+        out.writeFloat(item.getPriceDiscount());
+    }
+
+    static Item readItem(DataInput in) throws IOException {
+        String itemNumber = readString(in);
+        String description = readString(in);
+        int amountInStorage = in.readInt();
+        int price = in.readInt();
+        int category = in.readUnsignedByte();
+        if (category >= ItemCategory.values().length)
+            throw new IOException("Malformed replication stream: unknown category " + category);
+        Item item = new Item(itemNumber, description, amountInStorage, price, ItemCategory.values()[category], readString(in), in.readFloat(), in.readFloat(),
+                in.readFloat(), readString(in));
+        item.setDiscount(in.readFloat());
+        return item;
+    }
+}
@@ -0,0 +1,295 @@
+package registry;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the changes of a primary registry to read replicas in other processes on the same machine, see <code>ReplicaRegistry</code> and <code>ReplicationProtocol</code>.
+ * <br><br> Every replica connecting gets a feed of its own, added as a listener to the registry along with every Item already in it, so that the replica starts from
+ * a snapshot taken atomically with the first change it receives. Changes are encoded into the feed's buffer by the threads making them, and a thread per replica
+ * swaps in an empty buffer and sends everything buffered as one frame whenever the previous frame has been written, so that a replica falling behind receives larger batches rather than more of them.
+ * <br><br> A replica falling more than <code>MAX_BACKLOG_BYTES</code> behind is disconnected, so that it cannot make the primary run out of memory, and must reconnect
+ * to start over from a new snapshot. The server only listens on the loopback address.
+ */
+public class ReplicationServer implements AutoCloseable {
+    /**
+     * The most bytes buffered for a replica, after its snapshot, before it is disconnected.
+     */
+    static final int MAX_BACKLOG_BYTES = 64 << 20;
+
+    private final ItemRegistry registry;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private final CopyOnWriteArrayList<Feed> feeds = new CopyOnWriteArrayList<>();
+    private final AtomicInteger feedNumber = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates and starts a replication server for a registry.
+     * @param registry The primary registry.
+     * @param port The port to listen on, or 0 to pick a free port.
+     * @throws IOException if the server could not listen on the port.
+     */
+    public ReplicationServer(ItemRegistry registry, int port) throws IOException {
+        this.registry = registry;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        acceptor = new Thread(this::accept, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port this server listens on.
+     * @return The port this server listens on.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the number of replicas connected.
+     * @return The number of replicas receiving changes.
+     */
+    public int getReplicaCount() {
+        return feeds.size();
+    }
+
+    /**
+     * Stops this server and disconnects every replica.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (Feed feed : feeds)
+            feed.close();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Feed feed = new Feed(socket);
+                feeds.add(feed);
+                Thread thread = new Thread(feed::run, "replication-feed-" + feedNumber.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!closed)
+                    acceptor.getUncaughtExceptionHandler().uncaughtException(acceptor, e);
+            }
+        }
+    }
+
+    /**
+     * The changes to send to one replica. Every listener method appends a record to the buffer, which the thread of the feed takes as a whole,
+     * replacing it with an empty one, so that the records are written to the socket without holding up the threads changing the registry.
+     */
+    private final class Feed implements RegistryListener {
+        private static final int BUFFER_BYTES = 64 * 1024;
+
+        private final Socket socket;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_BYTES);
+        private DataOutputStream records = new DataOutputStream(buffer);
+        private int bufferedRecords = 0;
+        private long sequence = 0;
+        private boolean snapshotSent = false;
+        private Thread snapshotThread;
+        private boolean overflowed = false;
+        private volatile boolean closed = false;
+
+        Feed(Socket socket) {
+            this.socket = socket;
+        }
+
+        void close() {
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        void run() {
+            try (socket) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_BYTES));
+                // Only used by this thread, between frames
+                ByteArrayOutputStream spare = new ByteArrayOutputStream(BUFFER_BYTES);
+                DataOutputStream spareRecords = new DataOutputStream(spare);
+                synchronized (this) {
+                    snapshotThread = Thread.currentThread();
+                }
+                registry.addListener(this, true);
+                synchronized (this) {
+                    if (!snapshotSent)
+                        endSnapshot();
+                }
+                while (true) {
+                    ByteArrayOutputStream frame;
+                    DataOutputStream frameRecords;
+                    long last, sent;
+                    int count;
+                    synchronized (this) {
+                        if (bufferedRecords == 0 && !closed && !overflowed)
+                            wait(ReplicationProtocol.HEARTBEAT_MILLIS);
+                        if (closed || overflowed)
+                            return;
+                        frame = buffer;
+                        frameRecords = records;
+                        buffer = spare;
+                        records = spareRecords;
+                        count = bufferedRecords;
+                        bufferedRecords = 0;
+                        last = sequence;
+                        sent = System.currentTimeMillis();
+                    }
+                    out.writeInt(ReplicationProtocol.HEADER_LENGTH + frame.size());
+                    out.writeLong(last);
+                    out.writeLong(sent);
+                    out.writeInt(count);
+                    frame.writeTo(out);
+                    out.flush();
+
+                    // A buffer grown by the snapshot or a backlog is dropped rather than kept for good
+                    if (frame.size() > BUFFER_BYTES) {
+                        spare = new ByteArrayOutputStream(BUFFER_BYTES);
+                        spareRecords = new DataOutputStream(spare);
+                    } else {
+                        frame.reset();
+                        spare = frame;
+                        spareRecords = frameRecords;
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // The replica disconnected, or this server was closed
+            } finally {
+                registry.removeListener(this);
+                feeds.remove(this);
+            }
+        }
+
+        @Override
+        public synchronized void itemRegistered(Item item) {
+            try {
+                if (begin(ReplicationProtocol.REGISTERED))
+                    ReplicationProtocol.writeItem(records, item);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            end();
+        }
+
+        @Override
+        public synchronized void itemDeleted(String itemNumber) {
+            try {
+                if (begin(ReplicationProtocol.DELETED))
+                    ReplicationProtocol.writeString(records, itemNumber);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            end();
+        }
+
+        @Override
+        public synchronized void amountInStorageChanged(String itemNumber, int difference) {
+            try {
+                if (begin(ReplicationProtocol.AMOUNT_IN_STORAGE)) {
+                    ReplicationProtocol.writeString(records, itemNumber);
+                    records.writeInt(difference);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            end();
+        }
+
+        @Override
+        public synchronized void priceChanged(String itemNumber, int price) {
+            try {
+                if (begin(ReplicationProtocol.PRICE)) {
+                    ReplicationProtocol.writeString(records, itemNumber);
+                    records.writeInt(price);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            end();
+        }
+
+        @Override
+        public synchronized void discountChanged(String itemNumber, float percentOff) {
+            try {
+                if (begin(ReplicationProtocol.DISCOUNT)) {
+                    ReplicationProtocol.writeString(records, itemNumber);
+                    records.writeFloat(percentOff);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            end();
+        }
+
+        @Override
+        public synchronized void descriptionChanged(String itemNumber, String description) {
+            try {
+                if (begin(ReplicationProtocol.DESCRIPTION)) {
+                    ReplicationProtocol.writeString(records, itemNumber);
+                    ReplicationProtocol.writeString(records, description);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            end();
+        }
+
+        /**
+         * Starts a record, unless the replica has fallen too far behind, in which case records are dropped until its thread disconnects it.
+         * @return True if the record should be written.
+         */
+        private boolean begin(byte kind) throws IOException {
+            if (overflowed || closed)
+                return false;
+            if (!snapshotSent && Thread.currentThread() != snapshotThread)
+                endSnapshot();
+            bufferedRecords++;
+            sequence++;
+            records.writeByte(kind);
+            return true;
+        }
+
+        /**
+         * Ends the snapshot, which is every record reported by the thread adding this feed as a listener, while the registry could not change.
+         * The first change made by another thread may come before that thread gets to end it.
+         */
+        private void endSnapshot() throws IOException {
+            bufferedRecords++;
+            sequence++;
+            records.writeByte(ReplicationProtocol.SNAPSHOT_END);
+            snapshotSent = true;
+        }
+
+        private void end() {
+            if (snapshotSent && buffer.size() > MAX_BACKLOG_BYTES)
+                overflowed = true;
+            if (bufferedRecords == 1 || overflowed)
+                notifyAll();
+        }
+    }
+}
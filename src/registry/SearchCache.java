@@ -0,0 +1,134 @@
+package registry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of search results, used by <code>ItemRegistry</code> to answer repeated searches without scanning the registry.
+ * <br><br> The cache is bounded both by the number of entries and by the total number of item numbers held across all entries, so a few very broad searches cannot push out every other entry.
+ * Every entry is stamped with the registry version it was computed against, and an entry whose stamp no longer matches the current version is treated as a miss. This way, a cached result can never be stale.
+ */
+public class SearchCache {
+    /**
+     * The kinds of searches this cache can hold results for.
+     */
+    enum Mode {
+        ITEM_NUMBER,
+        DESCRIPTION
+    }
+
+    private record Key(Mode mode, String term) {}
+    private record Entry(String[] result, long version) {}
+
+    private final int maxEntries;
+    private final int maxHeldResults;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int heldResults = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Creates a new, empty search cache.
+     * @param maxEntries The maximum number of search results held by this cache. A value of 0 disables caching.
+     * @param maxHeldResults The maximum number of item numbers held across all cached search results.
+     */
+    SearchCache(int maxEntries, int maxHeldResults) {
+        if (maxEntries < 0 || maxHeldResults < 0)
+            throw new IllegalArgumentException("The bounds of a search cache cannot be negative");
+        this.maxEntries = maxEntries;
+        this.maxHeldResults = maxHeldResults;
+    }
+
+    /**
+     * Looks up a cached search result.
+     * @param mode The kind of search performed.
+     * @param normalizedTerm The search term, normalized the same way as when the result was cached.
+     * @param version The current version of the registry content that the search depends on.
+     * @return A copy of the cached result, or null if no valid result was cached for this search.
+     */
+    synchronized String[] get(Mode mode, String normalizedTerm, long version) {
+        Key key = new Key(mode, normalizedTerm);
+        Entry e = entries.get(key);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+
+        if (e.version() != version) { // The registry has changed since this result was computed
+            entries.remove(key);
+            heldResults -= e.result().length;
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return e.result().clone();
+    }
+
+    /**
+     * Caches a search result, evicting the least recently used results if the bounds of this cache are exceeded.
+     * @param mode The kind of search performed.
+     * @param normalizedTerm The normalized search term.
+     * @param version The version of the registry content the result was computed against.
+     * @param result The search result. A copy of this array is cached.
+     */
+    synchronized void put(Mode mode, String normalizedTerm, long version, String[] result) {
+        if (maxEntries == 0 || result.length > maxHeldResults)
+            return;
+
+        Entry previous = entries.put(new Key(mode, normalizedTerm), new Entry(result.clone(), version));
+        if (previous != null)
+            heldResults -= previous.result().length;
+        heldResults += result.length;
+
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries || heldResults > maxHeldResults) {
+            heldResults -= it.next().getValue().result().length;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes every entry from this cache. The hit, miss and eviction counters are left untouched.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        heldResults = 0;
+    }
+
+    /**
+     * Returns the number of searches answered by this cache.
+     * @return The number of cache hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of searches this cache could not answer, including those where the cached result was outdated.
+     * @return The number of cache misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of results removed from this cache to keep it within its bounds.
+     * @return The number of evictions.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of search results currently held by this cache.
+     * @return The number of cached search results.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,62 @@
+package registry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for a search in an <code>ItemRegistry</code>, including any time spent waiting for the registry's lock.
+ * Only searches taking at least a millisecond are recorded by default, with the stack trace of the caller.
+ */
+@Name("registry.Search")
+@Label("Registry Search")
+@Category({ "Warehouse Registry", "Search" })
+@Description("A search in an item registry")
+@Threshold("1 ms")
+@StackTrace(true)
+final class SearchEvent extends jdk.jfr.Event {
+    static final String ITEM_NUMBER = "item number";
+    static final String ITEM_NUMBER_FUZZY = "item number, fuzzy";
+    static final String ITEM_NUMBER_PREFIX = "item number prefix";
+    static final String DESCRIPTION = "description";
+    static final String BRAND = "brand";
+    static final String COLOR = "color";
+    static final String RELEVANCE = "relevance";
+
+    @Label("Mode")
+    @Description("The kind of search performed")
+    String mode;
+
+    @Label("Term")
+    String term;
+
+    @Label("Hits")
+    @Description("The number of results returned")
+    int hits;
+
+    @Label("Scanned")
+    @Description("The number of Items checked one by one, or 0 if the search was answered by an index or the search cache")
+    int scanned;
+
+    @Label("Cached")
+    @Description("True if the result was found in the search cache")
+    boolean cached;
+
+    /**
+     * Ends this event, and commits it with the submitted values if it is enabled and exceeds its threshold.
+     */
+    void commit(String mode, String term, int hits, int scanned, boolean cached) {
+        end();
+        if (shouldCommit()) {
+            this.mode = mode;
+            this.term = term;
+            this.hits = hits;
+            this.scanned = scanned;
+            this.cached = cached;
+            commit();
+        }
+    }
+}
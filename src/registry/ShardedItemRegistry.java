@@ -0,0 +1,287 @@
+package registry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A registry that partitions its Items over a number of independent <code>ItemRegistry</code> shards, by the hash of their item numbers.
+ * <br><br> Every shard has its own lock, so changes to Items in different shards do not wait for each other. Operations on a single Item go straight to the shard owning it,
+ * while searches, listings and aggregations are run on every shard in parallel, and their results merged. Every shard runs its part under its own read lock,
+ * so the shards are not all read at the same point in time, and a result may include some changes made while it was computed but not others.
+ * <br><br> Results merged from several shards are ordered shard by shard. Ranked searches are not offered, since relevance scores computed within different shards cannot be compared.
+ */
+public class ShardedItemRegistry implements AutoCloseable {
+    private final ItemRegistry[] shards;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a new, empty registry with one shard per available processor.
+     */
+    public ShardedItemRegistry() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new, empty registry.
+     * @param numShards The number of shards to partition the Items over.
+     */
+    public ShardedItemRegistry(int numShards) {
+        if (numShards < 1)
+            throw new IllegalArgumentException("A sharded registry needs at least one shard");
+
+        shards = new ItemRegistry[numShards];
+        for (int i = 0; i < numShards; i++)
+            shards[i] = new ItemRegistry();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threads = r -> {
+            Thread t = new Thread(r, "registry-shard-worker-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        // The calling thread always handles one shard itself
+        int workers = Math.max(1, Math.min(numShards - 1, Runtime.getRuntime().availableProcessors()));
+        executor = Executors.newFixedThreadPool(workers, threads);
+    }
+
+    /**
+     * Returns the shard owning the submitted item number.
+     * @param itemNumber The item number to find the shard of.
+     * @return The shard that does or would hold the Item with this item number.
+     */
+    private ItemRegistry shardOf(String itemNumber) {
+        int h = itemNumber.hashCode();
+        h ^= h >>> 16; // Spread the high bits, like HashMap does
+        return shards[Math.floorMod(h, shards.length)];
+    }
+
+    /**
+     * Runs a task on every shard in parallel, and collects the results in shard order. The calling thread runs the task on the first shard itself.
+     */
+    private <T> ArrayList<T> scatter(Function<ItemRegistry, T> task) {
+        ArrayList<Future<T>> futures = new ArrayList<>(shards.length - 1);
+        for (int i = 1; i < shards.length; i++) {
+            ItemRegistry shard = shards[i];
+            futures.add(executor.submit(() -> task.apply(shard)));
+        }
+
+        ArrayList<T> results = new ArrayList<>(shards.length);
+        results.add(task.apply(shards[0]));
+        for (Future<T> f : futures) {
+            try {
+                results.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the shards of a registry", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException re)
+                    throw re;
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private String[] mergeStrings(ArrayList<String[]> parts) {
+        int length = 0;
+        for (String[] part : parts)
+            length += part.length;
+
+        String[] result = new String[length];
+        int offset = 0;
+        for (String[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of shards the Items of this registry are partitioned over.
+     * @return The number of shards in this registry.
+     */
+    public int numShards() {
+        return shards.length;
+    }
+
+    /**
+     * Registers a new Item to the shard owning its item number. See <code>ItemRegistry.registerNewItem(...)</code>.
+     * @throws IllegalArgumentException if the submitted item number has already been claimed by another Item.
+     */
+    public void registerNewItem(String itemNumber, String description, int amountInStorage, int price, ItemCategory category, String brand, float weight, float width, float length, String color) {
+        shardOf(itemNumber).registerNewItem(itemNumber, description, amountInStorage, price, category, brand, weight, width, length, color);
+    }
+
+    /**
+     * Returns a copy of the Item that has the submitted item number. Changes made to the returned Item does not make any changes to this registry.
+     * @param itemNumber The item number of the requested Item.
+     * @return A copy of the requested Item.
+     */
+    public Item getItem(String itemNumber) {
+        return shardOf(itemNumber).getItem(itemNumber);
+    }
+
+    /**
+     * Returns copies of the Items with the submitted item numbers, sorted one to one with 'itemNumbers'. See <code>ItemRegistry.getItems(...)</code>.
+     * @param itemNumbers The item numbers of the requested Items.
+     * @return An array of the requested Items, sorted one to one.
+     */
+    public Item[] getItems(String[] itemNumbers) {
+        Item[] result = new Item[itemNumbers.length];
+        for (int i = 0; i < itemNumbers.length; i++)
+            result[i] = getItem(itemNumbers[i]);
+        return result;
+    }
+
+    /**
+     * Checks if the submitted item number is used by another Item in this registry.
+     * @param itemNumber The item number to check.
+     * @return True of the item number is claimed by another Item, or false if the item number is available.
+     */
+    public boolean itemNumberTaken(String itemNumber) {
+        return shardOf(itemNumber).itemNumberTaken(itemNumber);
+    }
+
+    /**
+     * Increases the amount of a particular item currently stored in the warehouse.
+     * @param itemNumber The item number of the Item to have its amount increased.
+     * @param amount The amount of items to be added to the warehouse storage.
+     */
+    public void increaseAmountInStorage(String itemNumber, int amount) {
+        shardOf(itemNumber).increaseAmountInStorage(itemNumber, amount);
+    }
+
+    /**
+     * Decreases the amount of a particular item currently stored in the warehouse.
+     * @param itemNumber The item number of the Item to have its amount decreased.
+     * @param amount The amount of items to withdraw from the warehouse storage.
+     */
+    public void decreaseAmountInStorage(String itemNumber, int amount) {
+        shardOf(itemNumber).decreaseAmountInStorage(itemNumber, amount);
+    }
+
+    /**
+     * Changes the amount of a particular item currently stored in the warehouse.
+     * @param itemNumber The item number of the Item to have its amount increased or decreased.
+     * @param amount The amount of items to add (positive values) or withdraw (negative values) from the warehouse storage.
+     */
+    public void changeAmountInStorage(String itemNumber, int amount) {
+        shardOf(itemNumber).changeAmountInStorage(itemNumber, amount);
+    }
+
+    /**
+     * Deletes from the registry the item with the submitted item number.
+     * @param itemNumber The item number of the item to be deleted from the registry.
+     * @return True if the item was found and deleted. Otherwise, returns false.
+     */
+    public boolean deleteItemEntry(String itemNumber) {
+        return shardOf(itemNumber).deleteItemEntry(itemNumber);
+    }
+
+    /**
+     * Sets a new price for a specific Item.
+     * @param itemNumber The item number of the Item to set a new price for.
+     * @param newPrice The new price of the Item.
+     */
+    public void setItemPrice(String itemNumber, int newPrice) {
+        shardOf(itemNumber).setItemPrice(itemNumber, newPrice);
+    }
+
+    /**
+     * Sets a new price discount for a specific Item.
+     * @param itemNumber The item number of the Item to set a new price for.
+     * @param percentOff The discount to be assigned to the Item, in percentage between 0 and 100.
+     */
+    public void setItemDiscount(String itemNumber, float percentOff) {
+        shardOf(itemNumber).setItemDiscount(itemNumber, percentOff);
+    }
+
+    /**
+     * Gives a new description to a specific Item.
+     * @param itemNumber The item number of the Item to set a new price for.
+     * @param description The new description for the Item.
+     */
+    public void setItemDescription(String itemNumber, String description) {
+        shardOf(itemNumber).setItemDescription(itemNumber, description);
+    }
+
+    /**
+     * Searches every shard in parallel for any item number that contains the submitted search term. The search performed is NOT case-sensitive.
+     * @param searchTerm The term which all returned items has to contain within their item number.
+     * @return The search result as an array of item numbers.
+     */
+    public String[] searchByItemNumber(String searchTerm) {
+        return mergeStrings(scatter(shard -> shard.searchByItemNumber(searchTerm)));
+    }
+
+    /**
+     * Searches every shard in parallel for any Item with a description that contains the submitted search term. The search performed is NOT case-sensitive.
+     * @param searchTerm The term which all returned items has to contain within their description.
+     * @return The search result as an array of item numbers.
+     */
+    public String[] searchByDescription(String searchTerm) {
+        return mergeStrings(scatter(shard -> shard.searchByDescription(searchTerm)));
+    }
+
+    /**
+     * Returns an array containing a copy of every Item in this registry, collected from every shard in parallel.
+     * @return An array containing a copy of every Item in this registry.
+     */
+    public Item[] getAll() {
+        ArrayList<Item[]> parts = scatter(ItemRegistry::getAll);
+        ArrayList<Item> result = new ArrayList<>();
+        for (Item[] part : parts)
+            result.addAll(Arrays.asList(part));
+        return result.toArray(new Item[0]);
+    }
+
+    /**
+     * Returns the number of Items in this registry. Reading the size of a shard is too quick to be worth handing to a worker thread, so every shard is read by the calling thread.
+     * @return The number of Items in this registry.
+     */
+    public int size() {
+        int size = 0;
+        for (ItemRegistry shard : shards)
+            size += shard.size();
+        return size;
+    }
+
+    /**
+     * Returns the combined amount of every Item currently stored in the warehouse.
+     * @return The sum of the amount in storage of every Item in this registry.
+     */
+    public long totalAmountInStorage() {
+        long total = 0;
+        for (long t : scatter(ItemRegistry::totalAmountInStorage))
+            total += t;
+        return total;
+    }
+
+    /**
+     * Returns the combined value of every Item currently stored in the warehouse, using the prices adjusted by discount.
+     * @return The sum of the price after discount times the amount in storage, of every Item in this registry.
+     */
+    public long totalValueInStorage() {
+        long total = 0;
+        for (long t : scatter(ItemRegistry::totalValueInStorage))
+            total += t;
+        return total;
+    }
+
+    /**
+     * Stops the worker threads of this registry, and closes its shards. Searches, listings and aggregations cannot be performed after this.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        for (ItemRegistry shard : shards)
+            shard.close();
+    }
+}
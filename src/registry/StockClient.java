@@ -0,0 +1,184 @@
+package registry;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A client of a <code>StockServer</code>, over one connection. A client is not safe to use from multiple threads.
+ * <br><br> The simplest way to use it is <code>changeAmountInStorage</code> and <code>changeAmountsInStorage</code>, which send a request and wait for its response.
+ * For higher rates, requests can be pipelined: <code>send</code> queues a request without waiting for anything, and <code>receive</code> waits for the response
+ * to the oldest request which has not been received yet. Queued requests are sent when the send buffer is full, or by <code>flush</code> and <code>receive</code>.
+ * The number of pending requests should be kept bounded, e.g. to a fixed window, since the server stops reading from a connection whose responses are not being read.
+ * <br><br> Results are the amounts in storage after each change, or <code>ItemRegistry.NO_SUCH_ITEM</code> or <code>ItemRegistry.INSUFFICIENT_AMOUNT</code>
+ * for a change which could not be made.
+ */
+public class StockClient implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    /**
+     * Holds the requests not yet sent, ready to be written to.
+     */
+    private ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    /**
+     * Holds the bytes received but not yet read, ready to be read from.
+     */
+    private ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+    private int nextRequestId = 0;
+    private int nextResponseId = 0;
+
+    /**
+     * Connects to a server.
+     * @param host The host name or address of the server.
+     * @param port The port of the server.
+     * @throws IOException if the connection could not be made.
+     */
+    public StockClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    /**
+     * Changes the amount of an item in storage, and waits for the result.
+     * @param itemNumber The item number of the Item to have its amount changed.
+     * @param amount The amount to add (positive values) or withdraw (negative values).
+     * @return The amount in storage after the change, or a negative code if the change could not be made.
+     * @throws IOException if the connection failed.
+     */
+    public int changeAmountInStorage(String itemNumber, int amount) throws IOException {
+        int[] result = new int[1];
+        changeAmountsInStorage(new String[]{itemNumber}, new int[]{amount}, 1, result);
+        return result[0];
+    }
+
+    /**
+     * Changes the amounts of several items in storage in a single request, and waits for the results.
+     * @param itemNumbers The item numbers of the Items to have their amounts changed.
+     * @param amounts The amounts to add or withdraw, one to one with <code>itemNumbers</code>.
+     * @param count The number of changes, from index 0 of the arrays.
+     * @param results Receives the result of each change, one to one with <code>itemNumbers</code>.
+     * @return The number of changes that could not be made.
+     * @throws IOException if the connection failed.
+     */
+    public int changeAmountsInStorage(String[] itemNumbers, int[] amounts, int count, int[] results) throws IOException {
+        if (pending() != 0)
+            throw new IllegalStateException("Every pipelined response must be received first");
+        send(itemNumbers, amounts, count);
+        receive(results);
+        int failures = 0;
+        for (int i = 0; i < count; i++)
+            if (results[i] < 0)
+                failures++;
+        return failures;
+    }
+
+    /**
+     * Queues a request changing the amounts of several items in storage, without waiting for its response.
+     * @param itemNumbers The item numbers of the Items to have their amounts changed.
+     * @param amounts The amounts to add or withdraw, one to one with <code>itemNumbers</code>.
+     * @param count The number of changes, from index 0 of the arrays. At most 65535.
+     * @throws IOException if the connection failed.
+     */
+    public void send(String[] itemNumbers, int[] amounts, int count) throws IOException {
+        if (count < 0 || count > StockProtocol.MAX_CHANGES || count > itemNumbers.length || count > amounts.length)
+            throw new IllegalArgumentException("A request holds between 0 and " + StockProtocol.MAX_CHANGES + " changes, within the submitted arrays");
+
+        int length = StockProtocol.HEADER_LENGTH;
+        byte[][] encoded = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            encoded[i] = itemNumbers[i].getBytes(StandardCharsets.UTF_8);
+            if (encoded[i].length > StockProtocol.MAX_ITEM_NUMBER_LENGTH)
+                throw new IllegalArgumentException("An item number may be at most " + StockProtocol.MAX_ITEM_NUMBER_LENGTH + " bytes: " + itemNumbers[i]);
+            length += 1 + encoded[i].length + Integer.BYTES;
+        }
+        if (length - Integer.BYTES > StockProtocol.MAX_FRAME_LENGTH)
+            throw new IllegalArgumentException("The request is larger than " + StockProtocol.MAX_FRAME_LENGTH + " bytes");
+
+        if (out.remaining() < length) {
+            flush();
+            if (out.capacity() < length)
+                out = ByteBuffer.allocateDirect(length);
+        }
+        out.putInt(length - Integer.BYTES).putInt(nextRequestId++).putShort((short) count);
+        for (int i = 0; i < count; i++)
+            out.put((byte) encoded[i].length).put(encoded[i]).putInt(amounts[i]);
+    }
+
+    /**
+     * Sends every queued request.
+     * @throws IOException if the connection failed.
+     */
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+        out.clear();
+    }
+
+    /**
+     * Waits for the response to the oldest request which has not been received yet, sending every queued request first.
+     * @param results Receives the result of each change of the request, in the order they were sent.
+     * @return The number of changes in the request.
+     * @throws IOException if the connection failed, or the server sent a malformed response.
+     */
+    public int receive(int[] results) throws IOException {
+        if (pending() == 0)
+            throw new IllegalStateException("No requests are waiting for a response");
+        flush();
+
+        fill(Integer.BYTES);
+        int length = in.getInt(in.position());
+        if (length < StockProtocol.HEADER_LENGTH - Integer.BYTES || length > StockProtocol.MAX_FRAME_LENGTH)
+            throw new IOException("Malformed response length: " + length);
+        fill(Integer.BYTES + length);
+        in.getInt();
+        int id = in.getInt();
+        int count = Short.toUnsignedInt(in.getShort());
+        if (id != nextResponseId || StockProtocol.responseLength(count) != Integer.BYTES + length)
+            throw new IOException("Malformed response to request " + nextResponseId);
+        nextResponseId++;
+        if (results.length < count) {
+            in.position(in.position() + count * StockProtocol.RESULT_LENGTH);
+            throw new IllegalArgumentException("The results array holds " + results.length + " results, the response " + count);
+        }
+        for (int i = 0; i < count; i++)
+            results[i] = in.getInt();
+        return count;
+    }
+
+    /**
+     * Returns the number of requests sent or queued whose responses have not been received yet.
+     * @return The number of requests waiting for a response.
+     */
+    public int pending() {
+        return nextRequestId - nextResponseId;
+    }
+
+    /**
+     * Reads from the connection until the receive buffer holds at least the submitted number of bytes.
+     */
+    private void fill(int bytes) throws IOException {
+        if (in.remaining() >= bytes)
+            return;
+        if (in.capacity() < bytes)
+            in = ByteBuffer.allocateDirect(bytes).put(in).flip();
+        in.compact();
+        while (in.position() < bytes)
+            if (channel.read(in) < 0)
+                throw new EOFException("The server closed the connection");
+        in.flip();
+    }
+
+    /**
+     * Closes the connection. Responses not received yet are lost.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
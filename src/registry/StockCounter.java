@@ -0,0 +1,299 @@
+package registry;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An amount in storage which many threads can add to and withdraw from at the same time, without ever going below zero.
+ * <br><br> Like <code>LongAdder</code>, the amount starts out in a single field, and is spread over a number of cells once threads start contending for it,
+ * each thread mostly using a cell of its own. Increments are simply added to the cell of the thread. Every cell also acts as an escrow: a local share
+ * of the amount which the thread may withdraw from without looking at any other cell, as long as it holds enough. A withdrawal larger than the share of
+ * its cell takes a lock, gathers the amount of every cell, makes the withdrawal if the total allows it, and spreads what is left evenly over the cells again.
+ * <br><br> A withdrawal therefore never takes more than the total amount. It fails only when the total, gathered cell by cell, was too small while it was
+ * looking, where increments made to a cell after it was gathered may or may not be counted.
+ */
+public final class StockCounter {
+    private static final int MAX_CELLS = Math.max(4, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+    private static final VarHandle BASE;
+    private static final VarHandle CELLS_BUSY;
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            BASE = lookup.findVarHandle(StockCounter.class, "base", long.class);
+            CELLS_BUSY = lookup.findVarHandle(StockCounter.class, "cellsBusy", int.class);
+            VALUE = lookup.findVarHandle(CellValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /*
+     * A cell is padded on both sides, so that cells of different threads never share a cache line
+     */
+    @SuppressWarnings("unused")
+    private static class CellPadding {
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class CellValue extends CellPadding {
+        volatile long value;
+    }
+
+    @SuppressWarnings("unused")
+    private static final class Cell extends CellValue {
+        long q1, q2, q3, q4, q5, q6, q7;
+    }
+
+    /**
+     * The index each thread starts looking for its cell at, changed whenever the thread runs into another one.
+     */
+    private static final ThreadLocal<int[]> PROBE = ThreadLocal.withInitial(() -> new int[]{ mix(Thread.currentThread().getId()) });
+
+    private volatile long base;
+    private volatile Cell[] cells = null;
+    /**
+     * Held while the cells are created or grown.
+     */
+    private volatile int cellsBusy = 0;
+    /**
+     * Held by withdrawals gathering every cell. While it is held, part of the amount may be in no cell at all.
+     */
+    private final ReentrantLock rebalanceLock = new ReentrantLock();
+    /**
+     * Incremented when a rebalance starts and when it ends, so that <code>get</code> can tell whether it read the cells in the middle of one.
+     */
+    private volatile int rebalances = 0;
+
+    /**
+     * Creates a counter.
+     * @param amount The initial amount.
+     */
+    public StockCounter(long amount) {
+        if (amount < 0)
+            throw new IllegalArgumentException("An amount in storage cannot be negative");
+        base = amount;
+    }
+
+    /**
+     * Returns the current amount. While the amount is being changed, it is the amount at some point during the call.
+     * @return The current amount.
+     */
+    public long get() {
+        while (true) {
+            int before = rebalances;
+            if ((before & 1) == 0) {
+                long sum = base;
+                Cell[] cs = cells;
+                if (cs != null)
+                    for (Cell c : cs)
+                        if (c != null)
+                            sum += c.value;
+                if (rebalances == before)
+                    return sum;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Replaces the amount. This is not atomic with concurrent changes, which may be lost.
+     * @param amount The new amount.
+     */
+    public void set(long amount) {
+        if (amount < 0)
+            throw new IllegalArgumentException("An amount in storage cannot be negative");
+        rebalanceLock.lock();
+        try {
+            rebalances++;
+            Cell[] cs = cells;
+            if (cs != null)
+                for (Cell c : cs)
+                    if (c != null)
+                        c.value = 0;
+            base = amount;
+            rebalances++;
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+
+    /**
+     * Adds to the amount.
+     * @param amount The amount to add, at least 0.
+     */
+    public void add(long amount) {
+        if (amount < 0)
+            throw new IllegalArgumentException("Use tryWithdraw to decrease the amount");
+        Cell[] cs = cells;
+        if (cs == null) {
+            long b = base;
+            if (BASE.compareAndSet(this, b, b + amount))
+                return;
+        }
+        int[] probe = PROBE.get();
+        while (true) {
+            Cell c = cellOf(probe);
+            long v = c.value;
+            if (VALUE.compareAndSet(c, v, v + amount))
+                return;
+            contended(probe);
+        }
+    }
+
+    /**
+     * Adds to the amount, unless the result would be larger than a limit.
+     * <br><br> Before the amount is spread over cells, the limit is checked atomically with the addition. Once spread, the addition is made to the cell of the thread,
+     * and taken back if the total is then over the limit, so that the amount never stays above it, though <code>get</code> may see it above for the instant in between.
+     * Additions refused this way are refused even if a concurrent withdrawal would have made room for them.
+     * @param amount The amount to add, at least 0.
+     * @param limit The largest amount allowed.
+     * @return True if the amount was added, or false if the result would have been larger than the limit.
+     */
+    public boolean tryAdd(long amount, long limit) {
+        if (amount < 0)
+            throw new IllegalArgumentException("Use tryWithdraw to decrease the amount");
+        if (cells == null) {
+            long b = base;
+            if (b > limit - amount)
+                return false;
+            if (BASE.compareAndSet(this, b, b + amount))
+                return true;
+            // Contended, or the cells were created meanwhile: continue with the cells
+        }
+        add(amount);
+        if (get() <= limit)
+            return true;
+        // Fails only if concurrent withdrawals have left less than 'amount', and so room for it, in which case it may stay
+        return !tryWithdraw(amount);
+    }
+
+    /**
+     * Withdraws from the amount, unless it is smaller than the withdrawal.
+     * @param amount The amount to withdraw, at least 0.
+     * @return True if the amount was withdrawn, or false if there was not enough.
+     */
+    public boolean tryWithdraw(long amount) {
+        if (amount < 0)
+            throw new IllegalArgumentException("Use add to increase the amount");
+        if (cells == null) {
+            long b = base;
+            if (b >= amount && BASE.compareAndSet(this, b, b - amount))
+                return true;
+            if (b < amount && cells == null)
+                return false;
+            // Contended, or the cells were created meanwhile: continue with the cells, which are gathered by the first withdrawal from them
+        }
+
+        int[] probe = PROBE.get();
+        Cell c = cellOf(probe);
+        long v;
+        while ((v = c.value) >= amount) {
+            if (VALUE.compareAndSet(c, v, v - amount))
+                return true;
+            contended(probe);
+            c = cellOf(probe);
+        }
+        return withdrawByRebalancing(amount, c);
+    }
+
+    private boolean withdrawByRebalancing(long amount, Cell own) {
+        rebalanceLock.lock();
+        try {
+            // Another withdrawal may have refilled the cell while this one was waiting for the lock
+            long v;
+            while ((v = own.value) >= amount)
+                if (VALUE.compareAndSet(own, v, v - amount))
+                    return true;
+
+            rebalances++;
+            try {
+                Cell[] cs = cells;
+                long total = (long) BASE.getAndSet(this, 0L);
+                for (Cell c : cs)
+                    if (c != null)
+                        total += (long) VALUE.getAndSet(c, 0L);
+
+                boolean withdrawn = total >= amount;
+                if (withdrawn)
+                    total -= amount;
+                int numCells = 0;
+                for (Cell c : cs)
+                    if (c != null)
+                        numCells++;
+                long share = total / numCells;
+                for (Cell c : cs)
+                    if (c != null)
+                        VALUE.getAndAdd(c, share);
+                BASE.getAndAdd(this, total - share * numCells);
+                return withdrawn;
+            } finally {
+                rebalances++;
+            }
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+
+    private Cell cellOf(int[] probe) {
+        Cell[] cs;
+        while ((cs = cells) == null)
+            growCells();
+        Cell c = cs[probe[0] & (cs.length - 1)];
+        while (c == null) {
+            growCells();
+            cs = cells;
+            c = cs[probe[0] & (cs.length - 1)];
+        }
+        return c;
+    }
+
+    /**
+     * Moves a thread which ran into another one on to another cell, and adds cells if there are fewer than allowed.
+     */
+    private void contended(int[] probe) {
+        int h = probe[0];
+        h ^= h << 13;
+        h ^= h >>> 17;
+        h ^= h << 5;
+        probe[0] = h;
+        Cell[] cs = cells;
+        if (cs != null && cs.length < MAX_CELLS)
+            growCells();
+    }
+
+    /**
+     * Creates the cells, or doubles their number, unless another thread is doing so.
+     */
+    private void growCells() {
+        if (!CELLS_BUSY.compareAndSet(this, 0, 1)) {
+            Thread.onSpinWait();
+            return;
+        }
+        try {
+            Cell[] cs = cells;
+            Cell[] grown;
+            if (cs == null) {
+                grown = new Cell[2];
+            } else if (cs.length < MAX_CELLS) {
+                grown = new Cell[cs.length * 2];
+                System.arraycopy(cs, 0, grown, 0, cs.length);
+            } else {
+                grown = cs;
+            }
+            for (int i = 0; i < grown.length; i++)
+                if (grown[i] == null)
+                    grown[i] = new Cell();
+            cells = grown;
+        } finally {
+            cellsBusy = 0;
+        }
+    }
+
+    private static int mix(long seed) {
+        int h = (int) (seed * 0x9E3779B97F4A7C15L >>> 32);
+        return h != 0 ? h : 1;
+    }
+}
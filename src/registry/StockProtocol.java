@@ -0,0 +1,33 @@
+package registry;
+
+/**
+ * The binary protocol spoken between <code>StockServer</code> and <code>StockClient</code>. Every number is big-endian.
+ * <br><br> Both directions are a stream of frames, each starting with its length in bytes as an <code>int</code>, not counting the length itself.
+ * A request frame holds a request id chosen by the client (<code>int</code>) and a number of stock changes (<code>unsigned short</code>), followed by each change:
+ * the length of the item number in bytes (<code>unsigned byte</code>), the item number in UTF-8 and the amount to add or withdraw (<code>int</code>).
+ * <br><br> The response frame to a request holds the same request id and number of changes, followed by the result of each change (<code>int</code>):
+ * the amount in storage after the change, or one of the negative codes of <code>ItemRegistry.changeAmountsInStorage</code>.
+ * A client may send any number of requests without waiting for their responses, which are sent in the same order as the requests.
+ */
+final class StockProtocol {
+    private StockProtocol() {}
+
+    /**
+     * The largest allowed frame, not counting its length. A server closes the connection of a client sending a larger frame.
+     */
+    static final int MAX_FRAME_LENGTH = 1 << 20;
+    static final int MAX_CHANGES = 0xFFFF;
+    static final int MAX_ITEM_NUMBER_LENGTH = 0xFF;
+    /**
+     * The length field, the request id and the number of changes.
+     */
+    static final int HEADER_LENGTH = Integer.BYTES + Integer.BYTES + Short.BYTES;
+    static final int RESULT_LENGTH = Integer.BYTES;
+
+    /**
+     * Returns the length of the response frame to a request with the submitted number of changes, including its length field.
+     */
+    static int responseLength(int changes) {
+        return HEADER_LENGTH + changes * RESULT_LENGTH;
+    }
+}
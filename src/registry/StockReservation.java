@@ -0,0 +1,120 @@
+package registry;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stock set aside for an order by <code>ItemRegistry.reserveAll</code>. The reserved amounts are moved from the available amounts in storage to the reserved
+ * amounts of their Items while the reservation is open, so that no other order can take them. They are then either taken out of storage for good by
+ * <code>confirm</code>, or made available again by <code>release</code>, or by the reservation expiring if it was made with a time limit.
+ * <br><br> A reservation is closed by whichever of these happens first, and the others then have no effect. All of them are safe to call from any thread.
+ */
+public final class StockReservation {
+    /**
+     * Whether a reservation is open, or how it was closed.
+     */
+    public enum State {
+        OPEN,
+        CONFIRMED,
+        RELEASED,
+        EXPIRED
+    }
+
+    private final ItemRegistry registry;
+    private final String[] itemNumbers;
+    private final int[] amounts;
+    private final long expiresAt;
+    private final AtomicReference<State> state = new AtomicReference<>(State.OPEN);
+    private volatile TimerWheel.Timeout expiry = null;
+
+    StockReservation(ItemRegistry registry, String[] itemNumbers, int[] amounts, long expiresAt) {
+        this.registry = registry;
+        this.itemNumbers = itemNumbers;
+        this.amounts = amounts;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Returns the item numbers of the reserved Items, sorted, without duplicates.
+     * @return A copy of the item numbers of the reserved Items.
+     */
+    public String[] getItemNumbers() {
+        return itemNumbers.clone();
+    }
+
+    /**
+     * Returns the reserved amounts, one to one with <code>getItemNumbers</code>.
+     * @return A copy of the reserved amounts.
+     */
+    public int[] getAmounts() {
+        return amounts.clone();
+    }
+
+    /**
+     * Returns when this reservation expires, if still open.
+     * @return The time of expiry in milliseconds since the epoch, or <code>Long.MAX_VALUE</code> if this reservation has no time limit.
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Returns whether this reservation is open, or how it was closed.
+     * @return The state of this reservation.
+     */
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Returns whether this reservation is still open.
+     * @return True if this reservation is open.
+     */
+    public boolean isOpen() {
+        return state.get() == State.OPEN;
+    }
+
+    /**
+     * Closes this reservation, taking the reserved amounts out of storage for good.
+     * @return True if this call closed the reservation, or false if it was already closed.
+     */
+    public boolean confirm() {
+        if (!close(State.CONFIRMED))
+            return false;
+        registry.confirmReservation(itemNumbers, amounts);
+        return true;
+    }
+
+    /**
+     * Closes this reservation, making the reserved amounts available again. Amounts of Items which have been deleted in the meantime are dropped.
+     * @return True if this call closed the reservation, or false if it was already closed.
+     */
+    public boolean release() {
+        if (!close(State.RELEASED))
+            return false;
+        registry.releaseReservation(itemNumbers, amounts);
+        return true;
+    }
+
+    void setExpiry(TimerWheel.Timeout expiry) {
+        this.expiry = expiry;
+        if (!isOpen())
+            expiry.cancel(); // Closed before its expiry was set
+    }
+
+    /**
+     * Releases this reservation once its time limit is up, unless it has been closed.
+     */
+    void expire() {
+        if (state.compareAndSet(State.OPEN, State.EXPIRED))
+            registry.releaseReservation(itemNumbers, amounts);
+    }
+
+    private boolean close(State closedState) {
+        if (!state.compareAndSet(State.OPEN, closedState))
+            return false;
+        TimerWheel.Timeout t = expiry;
+        if (t != null)
+            t.cancel();
+        return true;
+    }
+}
@@ -0,0 +1,290 @@
+package registry;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A server for high rates of small stock changes, speaking the binary protocol of <code>StockProtocol</code> over TCP. See <code>StockClient</code> for the client side.
+ * <br><br> Every connection is served by a single thread with non-blocking I/O. Each connection reads into and writes from direct buffers of its own,
+ * which are reused for every frame, and clients may pipeline any number of requests. All the changes read from every connection in one round are applied
+ * to the registry as a single batch, so that the lock of the registry is taken once per round rather than once per change.
+ * <br><br> A connection sending a malformed frame is closed. Responses are written in the order the requests were read, and a connection which does not
+ * read its responses is not read from until they have been written.
+ */
+public class StockServer implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BACKLOG = 1024;
+
+    private final ItemRegistry registry;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    /*
+     * The batch of changes read from every connection during the current round, and the requests they were read from
+     */
+    private String[] itemNumbers = new String[1024];
+    private int[] amounts = new int[1024];
+    private int[] results = new int[1024];
+    private int numChanges = 0;
+    private final ArrayList<Request> requests = new ArrayList<>();
+    private final ArrayList<Connection> pendingWrites = new ArrayList<>();
+    private final byte[] itemNumberBytes = new byte[StockProtocol.MAX_ITEM_NUMBER_LENGTH];
+
+    private static final class Connection {
+        final SocketChannel channel;
+        SelectionKey key;
+        /**
+         * Holds the bytes read but not yet parsed, ready to be written to.
+         */
+        ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        /**
+         * Holds the responses not yet written, ready to be written to.
+         */
+        ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        boolean pendingWrite = false;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private static final class Request {
+        final Connection connection;
+        final int id;
+        final int firstChange;
+        final int numChanges;
+
+        Request(Connection connection, int id, int firstChange, int numChanges) {
+            this.connection = connection;
+            this.id = id;
+            this.firstChange = firstChange;
+            this.numChanges = numChanges;
+        }
+    }
+
+    /**
+     * Creates and starts a server for a registry.
+     * @param registry The registry to serve.
+     * @param port The port to listen on, or 0 to pick a free port.
+     * @throws IOException if the server could not listen on the port.
+     */
+    public StockServer(ItemRegistry registry, int port) throws IOException {
+        this.registry = registry;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        thread = new Thread(this::run, "stock-server");
+        thread.start();
+    }
+
+    /**
+     * Returns the port this server listens on.
+     * @return The port this server listens on.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops this server and closes every connection. Requests which have been read are answered first, as far as the clients are reading.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection c = (Connection) key.attachment();
+                    try {
+                        if (key.isWritable())
+                            write(c);
+                        if (key.isValid() && key.isReadable())
+                            read(c);
+                    } catch (IOException e) {
+                        close(c);
+                    }
+                }
+                selector.selectedKeys().clear();
+                applyBatch();
+            }
+        } catch (IOException e) {
+            if (!closed)
+                throw new IllegalStateException("The stock server failed", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException ignored) {
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection c = new Connection(channel);
+            c.key = channel.register(selector, SelectionKey.OP_READ, c);
+        }
+    }
+
+    private void close(Connection c) {
+        c.key.cancel();
+        try {
+            c.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Reads what a connection has sent, and adds every complete request to the batch.
+     */
+    private void read(Connection c) throws IOException {
+        if (c.channel.read(c.in) < 0) {
+            close(c);
+            return;
+        }
+
+        ByteBuffer in = c.in.flip();
+        while (in.remaining() >= Integer.BYTES) {
+            int length = in.getInt(in.position());
+            if (length < StockProtocol.HEADER_LENGTH - Integer.BYTES || length > StockProtocol.MAX_FRAME_LENGTH)
+                throw new IOException("Malformed frame length: " + length);
+            if (in.remaining() < Integer.BYTES + length) {
+                if (in.capacity() < Integer.BYTES + length) {
+                    c.in = ByteBuffer.allocateDirect(Integer.BYTES + length).put(in);
+                    return;
+                }
+                break;
+            }
+            readRequest(c, in, in.position() + Integer.BYTES + length);
+        }
+        in.compact();
+    }
+
+    private void readRequest(Connection c, ByteBuffer in, int end) throws IOException {
+        in.getInt();
+        int id = in.getInt();
+        int count = Short.toUnsignedInt(in.getShort());
+        ensureBatchCapacity(numChanges + count);
+        int first = numChanges;
+        for (int i = 0; i < count; i++) {
+            if (in.position() + 1 > end) {
+                numChanges = first;
+                throw new IOException("Malformed frame: the frame ends before change " + i);
+            }
+            int length = Byte.toUnsignedInt(in.get());
+            if (in.position() + length + Integer.BYTES > end) {
+                numChanges = first;
+                throw new IOException("Malformed frame: the frame ends before change " + i);
+            }
+            in.get(itemNumberBytes, 0, length);
+            itemNumbers[numChanges] = new String(itemNumberBytes, 0, length, StandardCharsets.UTF_8);
+            amounts[numChanges++] = in.getInt();
+        }
+        if (in.position() != end) {
+            numChanges = first;
+            throw new IOException("Malformed frame: " + (end - in.position()) + " bytes after the last change");
+        }
+        requests.add(new Request(c, id, first, count));
+    }
+
+    private void ensureBatchCapacity(int capacity) {
+        if (capacity <= itemNumbers.length)
+            return;
+        int newLength = Math.max(capacity, 2 * itemNumbers.length);
+        itemNumbers = Arrays.copyOf(itemNumbers, newLength);
+        amounts = Arrays.copyOf(amounts, newLength);
+        results = Arrays.copyOf(results, newLength);
+    }
+
+    /**
+     * Applies every change read during this round to the registry, and writes the responses.
+     */
+    private void applyBatch() {
+        if (requests.isEmpty())
+            return;
+
+        registry.changeAmountsInStorage(itemNumbers, amounts, numChanges, results);
+        for (Request r : requests) {
+            Connection c = r.connection;
+            if (!c.key.isValid())
+                continue;
+            int length = StockProtocol.responseLength(r.numChanges);
+            if (c.out.remaining() < length)
+                c.out = ByteBuffer.allocateDirect(Math.max(2 * c.out.capacity(), c.out.position() + length)).put(c.out.flip());
+            c.out.putInt(length - Integer.BYTES).putInt(r.id).putShort((short) r.numChanges);
+            for (int i = r.firstChange; i < r.firstChange + r.numChanges; i++)
+                c.out.putInt(results[i]);
+            if (!c.pendingWrite) {
+                c.pendingWrite = true;
+                pendingWrites.add(c);
+            }
+        }
+        requests.clear();
+        Arrays.fill(itemNumbers, 0, numChanges, null);
+        numChanges = 0;
+
+        for (Connection c : pendingWrites) {
+            c.pendingWrite = false;
+            if (!c.key.isValid())
+                continue;
+            try {
+                write(c);
+            } catch (IOException e) {
+                close(c);
+            }
+        }
+        pendingWrites.clear();
+    }
+
+    /**
+     * Writes as many pending responses as the connection accepts. Until all of them are written, the connection is only waited on for writing, not reading.
+     */
+    private void write(Connection c) throws IOException {
+        c.channel.write(c.out.flip());
+        c.out.compact();
+        c.key.interestOps(c.out.position() == 0 ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+    }
+}
@@ -0,0 +1,205 @@
+package registry;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Full-resolution time series of the amount in storage and the price after discount of every Item of a registry, compressed in memory.
+ * <br><br> The store listens to every change of the registry, and adds a point to the series of an Item for every change of its amount in storage,
+ * price or discount. A series is compressed into blocks of at most 1 KiB, see <code>TimeSeries</code>, which takes a few bits per point at regular intervals,
+ * and around 8 bytes at irregular intervals of seconds, rather than the 16 of a raw time and value. Range queries and downsampling only decode the blocks overlapping the range asked for.
+ * <br><br> The series of an Item are dropped when the Item is deleted, so that the store only takes memory for the Items in the registry.
+ * An Item registered again under the same item number starts new series.
+ * <br><br> Stock changes are made concurrently, and may be reported in a different order than they were made in, so the amounts in storage of
+ * consecutive points can differ from what the registry held in between, but always add up to what it holds afterwards.
+ * <br><br> Example: <code>StockTimeSeries series = StockTimeSeries.record(registry);</code>, and later
+ * <code>series.getBuckets("HA56Y3", Metric.AMOUNT_IN_STORAGE, from, to, Duration.ofHours(1))</code>.
+ */
+public class StockTimeSeries implements RegistryListener {
+    /** The values recorded for every Item. */
+    public enum Metric {
+        AMOUNT_IN_STORAGE,
+        PRICE_AFTER_DISCOUNT
+    }
+
+    private static final int MAX_BUCKETS = 1_000_000;
+
+    private final Clock clock;
+    private final ConcurrentHashMap<String, ItemSeries> series = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty store, timing changes by the system clock. It records nothing until added as a listener to a registry.
+     */
+    public StockTimeSeries() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * Creates an empty store. It records nothing until added as a listener to a registry.
+     * @param clock The clock timing the changes.
+     */
+    public StockTimeSeries(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a store recording the time series of a registry, timing changes by the system clock, starting with the values of every Item already in it.
+     * @param registry The registry to record the time series of.
+     * @return The store, recording every change made to the registry from now on.
+     */
+    public static StockTimeSeries record(ItemRegistry registry) {
+        StockTimeSeries store = new StockTimeSeries();
+        registry.addListener(store, true);
+        return store;
+    }
+
+    /**
+     * Returns the points of the time series of an Item within a range of time.
+     * @param itemNumber The item number of the Item.
+     * @param metric The values to return.
+     * @param from The start of the range, inclusive.
+     * @param to The end of the range, exclusive.
+     * @return The points within the range, in order of time. Empty if there are none, or if the item number is unknown.
+     */
+    public TimeSeriesRange getRange(String itemNumber, Metric metric, Instant from, Instant to) {
+        TimeSeriesRange range = new TimeSeriesRange();
+        TimeSeries timeSeries = seriesOf(itemNumber, metric);
+        if (timeSeries != null)
+            timeSeries.range(from.toEpochMilli(), to.toEpochMilli(), range::add);
+        return range;
+    }
+
+    /**
+     * Downsamples the time series of an Item within a range of time into buckets of equal width, holding the number, minimum, maximum and average of the values in them.
+     * A bucket covering only whole blocks of the series is computed from summaries stored with the blocks, without decoding them.
+     * Throws an <code>IllegalArgumentException</code> if the width is not positive, or if the range would be split into more than 1 000 000 buckets.
+     * @param itemNumber The item number of the Item.
+     * @param metric The values to downsample.
+     * @param from The start of the first bucket.
+     * @param to The end of the range, exclusive. The last bucket may extend past it, but holds no values from there.
+     * @param width The width of every bucket, truncated to milliseconds.
+     * @return The buckets holding at least one value, in order of time.
+     */
+    public TimeSeriesBucket[] getBuckets(String itemNumber, Metric metric, Instant from, Instant to, Duration width) {
+        long start = from.toEpochMilli(), end = to.toEpochMilli(), millis = width.toMillis();
+        if (millis <= 0)
+            throw new IllegalArgumentException("The width of the buckets must be at least one millisecond");
+        if (end <= start)
+            return new TimeSeriesBucket[0];
+        long numBuckets = (end - start + millis - 1) / millis;
+        if (numBuckets > MAX_BUCKETS)
+            throw new IllegalArgumentException("The range would be split into " + numBuckets + " buckets, more than " + MAX_BUCKETS);
+        TimeSeries timeSeries = seriesOf(itemNumber, metric);
+        if (timeSeries == null)
+            return new TimeSeriesBucket[0];
+
+        int n = (int) numBuckets;
+        long[] count = new long[n], min = new long[n], max = new long[n], sum = new long[n];
+        timeSeries.buckets(start, end, millis, count, min, max, sum);
+        ArrayList<TimeSeriesBucket> buckets = new ArrayList<>();
+        for (int b = 0; b < n; b++)
+            if (count[b] > 0)
+                buckets.add(new TimeSeriesBucket(start + b * millis, count[b], min[b], max[b], sum[b] / (double) count[b]));
+        return buckets.toArray(new TimeSeriesBucket[0]);
+    }
+
+    /**
+     * Returns the number of points recorded.
+     * @return The number of points in every time series.
+     */
+    public long getPointCount() {
+        long points = 0;
+        for (ItemSeries itemSeries : series.values())
+            points += itemSeries.amounts.points() + itemSeries.prices.points();
+        return points;
+    }
+
+    /**
+     * Returns the memory used by the compressed points, including the room allocated but not yet used in the blocks being filled,
+     * and not counting the overhead of the objects holding them.
+     * @return The size of the compressed points, in bytes.
+     */
+    public long getEncodedBytes() {
+        long bytes = 0;
+        for (ItemSeries itemSeries : series.values())
+            bytes += itemSeries.amounts.bytes() + itemSeries.prices.bytes();
+        return bytes;
+    }
+
+    @Override
+    public void itemRegistered(Item item) {
+        ItemSeries itemSeries = seriesOf(item.getItemNumber());
+        synchronized (itemSeries) {
+            long now = clock.millis();
+            itemSeries.amountInStorage = item.getAmountInStorage();
+            itemSeries.price = item.getPrice();
+            itemSeries.percentOff = item.getPriceDiscount();
+            itemSeries.amounts.append(now, itemSeries.amountInStorage);
+            itemSeries.prices.append(now, item.getPriceAfterDiscount());
+        }
+    }
+
+    @Override
+    public void itemDeleted(String itemNumber) {
+        series.remove(itemNumber);
+    }
+
+    @Override
+    public void amountInStorageChanged(String itemNumber, int difference) {
+        ItemSeries itemSeries = seriesOf(itemNumber);
+        synchronized (itemSeries) {
+            long now = clock.millis();
+            itemSeries.amountInStorage += difference;
+            itemSeries.amounts.append(now, itemSeries.amountInStorage);
+        }
+    }
+
+    @Override
+    public void priceChanged(String itemNumber, int price) {
+        ItemSeries itemSeries = seriesOf(itemNumber);
+        synchronized (itemSeries) {
+            long now = clock.millis();
+            itemSeries.price = price;
+            itemSeries.prices.append(now, itemSeries.priceAfterDiscount());
+        }
+    }
+
+    @Override
+    public void discountChanged(String itemNumber, float percentOff) {
+        ItemSeries itemSeries = seriesOf(itemNumber);
+        synchronized (itemSeries) {
+            long now = clock.millis();
+            itemSeries.percentOff = percentOff;
+            itemSeries.prices.append(now, itemSeries.priceAfterDiscount());
+        }
+    }
+
+    private TimeSeries seriesOf(String itemNumber, Metric metric) {
+        ItemSeries itemSeries = series.get(itemNumber);
+        if (itemSeries == null)
+            return null;
+        return metric == Metric.AMOUNT_IN_STORAGE ? itemSeries.amounts : itemSeries.prices;
+    }
+
+    private ItemSeries seriesOf(String itemNumber) {
+        ItemSeries itemSeries = series.get(itemNumber);
+        return itemSeries != null ? itemSeries : series.computeIfAbsent(itemNumber, n -> new ItemSeries());
+    }
+
+    /** The time series of one item number, along with its current values, guarded by itself. */
+    private static final class ItemSeries {
+        final TimeSeries amounts = new TimeSeries();
+        final TimeSeries prices = new TimeSeries();
+        int amountInStorage;
+        int price;
+        float percentOff;
+
+        int priceAfterDiscount() {
+            // The same rounding as Item.getPriceAfterDiscount()
+            return (int) (price * (1f - percentOff / 100f));
+        }
+    }
+}
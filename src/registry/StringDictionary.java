@@ -0,0 +1,80 @@
+package registry;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dictionary assigning an int code to every distinct String it is given, and translating the codes back to the Strings.
+ * <br><br> Used to store low-cardinality values, like the brand and color of Items, once per distinct value instead of once per Item.
+ * Comparing two values for equality is then reduced to comparing their codes. Codes are assigned from 0 and up, and are never reused, so a dictionary only grows.
+ * <br><br> A dictionary is safe to use from multiple threads. Looking up known values, in either direction, never blocks.
+ */
+final class StringDictionary {
+    /**
+     * Returned by <code>lookup(...)</code> for values without a code.
+     */
+    static final int NO_CODE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    /**
+     * The values of the dictionary, indexed by their codes. Replaced by a larger copy when full, so readers always see a complete array.
+     */
+    private volatile String[] values = new String[INITIAL_CAPACITY];
+    /**
+     * The number of codes assigned. Only changed while synchronized on this dictionary.
+     */
+    private int size = 0;
+
+    /**
+     * Returns the code of the submitted value, assigning it a new code if it does not have one already.
+     * @param value The value to encode.
+     * @return The code of the value.
+     */
+    int encode(String value) {
+        Integer code = codes.get(value);
+        if (code != null)
+            return code;
+
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null)
+                return code;
+
+            String[] v = values;
+            if (size == v.length)
+                v = Arrays.copyOf(v, size * 2);
+            v[size] = value;
+            values = v; // Publish the value before its code becomes visible to other threads
+            codes.put(value, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Returns the code of the submitted value, without assigning it one.
+     * @param value The value to look up.
+     * @return The code of the value, or <code>NO_CODE</code> if the value has never been encoded.
+     */
+    int lookup(String value) {
+        Integer code = codes.get(value);
+        return code == null ? NO_CODE : code;
+    }
+
+    /**
+     * Returns the value with the submitted code.
+     * @param code A code returned by <code>encode(...)</code>.
+     * @return The value with the code.
+     */
+    String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * Returns the number of distinct values in this dictionary.
+     * @return The number of distinct values in this dictionary.
+     */
+    int size() {
+        return codes.size();
+    }
+}
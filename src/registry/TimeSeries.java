@@ -0,0 +1,282 @@
+package registry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A compressed series of (time, value) points in order of time, kept by <code>StockTimeSeries</code>.
+ * <br><br> Points are packed into blocks of at most <code>BLOCK_BYTES</code> bytes, in the style of the Gorilla time-series database:
+ * the time of a point as the difference between its distance to the previous point and the distance before that, which is 0 for regular intervals
+ * and costs a single bit, and its value as the XOR with the previous value, of which only the bits between the leading and trailing zeros are kept.
+ * Every block also holds the number, minimum, maximum and sum of its values, so that queries skip the blocks outside the range asked for,
+ * and downsampling uses the summary instead of decoding a block when all of it falls into the same bucket.
+ * <br><br> A block being filled starts out with room for a few points, and doubles its room as needed, so that a series of a single point takes a few bytes rather than a whole block.
+ * Full blocks are trimmed to the bits in use.
+ * <br><br> Every method is synchronized. Queries decode outside the lock, from the full blocks, which never change, and a copy of the block being filled.
+ */
+final class TimeSeries {
+    static final int BLOCK_BYTES = 1024;
+    private static final int INITIAL_BLOCK_WORDS = 2;
+
+    /** The most bits one point can take: 5 + 64 for the time, and 2 + 5 + 6 + 64 for the value. */
+    private static final int MAX_POINT_BITS = 146;
+
+    /** Receives the points of a query. */
+    interface PointConsumer {
+        void accept(long time, long value);
+    }
+
+    private final ArrayList<Block> full = new ArrayList<>();
+    private Block filling = null;
+    private long points = 0;
+
+    /**
+     * Adds a point after the last one.
+     * @param time The time of the point. A time before that of the last point is treated as the same time.
+     * @param value The value.
+     */
+    synchronized void append(long time, long value) {
+        if (filling == null) {
+            filling = new Block(time, value);
+        } else {
+            time = Math.max(time, filling.lastTime);
+            if (!filling.append(time, value)) {
+                full.add(filling.seal());
+                filling = new Block(time, value);
+            }
+        }
+        points++;
+    }
+
+    synchronized long points() {
+        return points;
+    }
+
+    synchronized long bytes() {
+        long bytes = 0;
+        for (Block block : full)
+            bytes += block.bytes();
+        return filling != null ? bytes + filling.bytes() : bytes;
+    }
+
+    /**
+     * Passes every point from a time, inclusive, up to another, exclusive, to a consumer in order of time. Only the blocks overlapping the range are decoded.
+     * @param from The start of the range.
+     * @param to The end of the range.
+     * @param consumer Receives the points.
+     */
+    void range(long from, long to, PointConsumer consumer) {
+        for (Block block : blocks(from, to))
+            block.decode(from, to, consumer);
+    }
+
+    /**
+     * Computes the number, minimum, maximum and sum of the values in buckets of equal width, starting at a time.
+     * @param from The start of the first bucket.
+     * @param to The end of the last bucket, exclusive.
+     * @param width The width of every bucket.
+     * @param count The number of values per bucket, added to.
+     * @param min The minimum value per bucket, where the count is more than zero.
+     * @param max The maximum value per bucket, where the count is more than zero.
+     * @param sum The sum of the values per bucket, added to.
+     */
+    void buckets(long from, long to, long width, long[] count, long[] min, long[] max, long[] sum) {
+        PointConsumer add = (time, value) -> {
+            int b = (int) ((time - from) / width);
+            min[b] = count[b] == 0 ? value : Math.min(min[b], value);
+            max[b] = count[b] == 0 ? value : Math.max(max[b], value);
+            count[b]++;
+            sum[b] += value;
+        };
+        for (Block block : blocks(from, to)) {
+            int b = (int) ((block.firstTime - from) / width);
+            if (block.firstTime >= from && block.lastTime < to && b == (block.lastTime - from) / width) {
+                min[b] = count[b] == 0 ? block.min : Math.min(min[b], block.min);
+                max[b] = count[b] == 0 ? block.max : Math.max(max[b], block.max);
+                count[b] += block.count;
+                sum[b] += block.sum;
+            } else {
+                block.decode(from, to, add);
+            }
+        }
+    }
+
+    /** Returns the blocks overlapping a range, the one being filled as a copy. */
+    private synchronized ArrayList<Block> blocks(long from, long to) {
+        ArrayList<Block> overlapping = new ArrayList<>();
+        // The first full block ending at or after the start of the range
+        int low = 0, high = full.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (full.get(middle).lastTime < from)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        for (int b = low; b < full.size() && full.get(b).firstTime < to; b++)
+            overlapping.add(full.get(b));
+        if (filling != null && filling.lastTime >= from && filling.firstTime < to)
+            overlapping.add(filling.seal());
+        return overlapping;
+    }
+
+    /** A block of points, encoded as a string of bits, most significant bit first. */
+    private static final class Block {
+        final long firstTime;
+        final long firstValue;
+        long lastTime;
+        int count = 1;
+        long min, max, sum;
+
+        long[] words = new long[INITIAL_BLOCK_WORDS];
+        int bitLength = 0;
+
+        // The encoder state after the last point
+        long lastDelta = 0;
+        long lastValue;
+        int leadingZeros = -1, trailingZeros = 0;
+
+        Block(long time, long value) {
+            firstTime = lastTime = time;
+            firstValue = lastValue = min = max = sum = value;
+        }
+
+        private Block(Block block) {
+            firstTime = block.firstTime;
+            firstValue = block.firstValue;
+            lastTime = block.lastTime;
+            count = block.count;
+            min = block.min;
+            max = block.max;
+            sum = block.sum;
+            words = Arrays.copyOf(block.words, (block.bitLength + 63) >>> 6);
+            bitLength = block.bitLength;
+        }
+
+        /** Returns a copy holding only the words in use, which never changes. */
+        Block seal() {
+            return new Block(this);
+        }
+
+        /** Returns the size of the summary and of the words allocated, which are all in use once sealed. */
+        long bytes() {
+            return 2 * Long.BYTES + (long) words.length * Long.BYTES;
+        }
+
+        boolean append(long time, long value) {
+            if (bitLength + MAX_POINT_BITS > BLOCK_BYTES * Byte.SIZE)
+                return false;
+            int needed = (bitLength + MAX_POINT_BITS + 63) >>> 6;
+            if (needed > words.length)
+                words = Arrays.copyOf(words, Math.min(Math.max(words.length * 2, needed), BLOCK_BYTES / Long.BYTES));
+            long delta = time - lastTime;
+            long deltaOfDelta = delta - lastDelta;
+            if (deltaOfDelta == 0) {
+                write(0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                write(0b10, 2);
+                write(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                write(0b110, 3);
+                write(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                write(0b1110, 4);
+                write(deltaOfDelta + 2047, 12);
+            } else if (deltaOfDelta == (int) deltaOfDelta) {
+                write(0b11110, 5);
+                write(deltaOfDelta, 32);
+            } else {
+                write(0b11111, 5);
+                write(deltaOfDelta, 64);
+            }
+
+            long xor = value ^ lastValue;
+            if (xor == 0) {
+                write(0, 1);
+            } else {
+                int leading = Math.min(Long.numberOfLeadingZeros(xor), 31), trailing = Long.numberOfTrailingZeros(xor);
+                if (leadingZeros >= 0 && leading >= leadingZeros && trailing >= trailingZeros) {
+                    // The changed bits fit the window of the previous value
+                    write(0b10, 2);
+                    write(xor >>> trailingZeros, 64 - leadingZeros - trailingZeros);
+                } else {
+                    int meaningful = 64 - leading - trailing;
+                    write(0b11, 2);
+                    write(leading, 5);
+                    write(meaningful - 1, 6);
+                    write(xor >>> trailing, meaningful);
+                    leadingZeros = leading;
+                    trailingZeros = trailing;
+                }
+            }
+
+            lastTime = time;
+            lastDelta = delta;
+            lastValue = value;
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            return true;
+        }
+
+        void decode(long from, long to, PointConsumer consumer) {
+            long time = firstTime, value = firstValue, delta = 0;
+            int leading = 0, trailing = 0;
+            int[] position = { 0 };
+            for (int p = 0; p < count && time < to; p++) {
+                if (p > 0) {
+                    long deltaOfDelta;
+                    if (read(position, 1) == 0)
+                        deltaOfDelta = 0;
+                    else if (read(position, 1) == 0)
+                        deltaOfDelta = read(position, 7) - 63;
+                    else if (read(position, 1) == 0)
+                        deltaOfDelta = read(position, 9) - 255;
+                    else if (read(position, 1) == 0)
+                        deltaOfDelta = read(position, 12) - 2047;
+                    else if (read(position, 1) == 0)
+                        deltaOfDelta = (int) read(position, 32);
+                    else
+                        deltaOfDelta = read(position, 64);
+                    delta += deltaOfDelta;
+                    time += delta;
+                    if (time >= to)
+                        break;
+
+                    if (read(position, 1) != 0) {
+                        if (read(position, 1) != 0) {
+                            leading = (int) read(position, 5);
+                            trailing = 64 - leading - ((int) read(position, 6) + 1);
+                        }
+                        value ^= read(position, 64 - leading - trailing) << trailing;
+                    }
+                }
+                if (time >= from)
+                    consumer.accept(time, value);
+            }
+        }
+
+        private void write(long value, int bits) {
+            if (bits < 64)
+                value &= (1L << bits) - 1;
+            int word = bitLength >>> 6, free = 64 - (bitLength & 63);
+            if (bits <= free) {
+                words[word] |= value << (free - bits);
+            } else {
+                words[word] |= value >>> (bits - free);
+                words[word + 1] |= value << (64 - (bits - free));
+            }
+            bitLength += bits;
+        }
+
+        private long read(int[] position, int bits) {
+            int word = position[0] >>> 6, offset = position[0] & 63, free = 64 - offset;
+            long value = words[word] << offset >>> (64 - bits);
+            if (bits > free)
+                value |= words[word + 1] >>> (64 - (bits - free));
+            position[0] += bits;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package registry;
+
+import java.time.Instant;
+
+/**
+ * The number, minimum, maximum and average of the values of a time series during one interval, as computed by <code>StockTimeSeries.getBuckets</code>.
+ */
+public final class TimeSeriesBucket {
+    private final long start;
+    private final long count;
+    private final long min;
+    private final long max;
+    private final double average;
+
+    TimeSeriesBucket(long start, long count, long min, long max, double average) {
+        this.start = start;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.average = average;
+    }
+
+    /**
+     * Returns the start of the interval of this bucket.
+     * @return The start of the interval, inclusive.
+     */
+    public Instant getStart() {
+        return Instant.ofEpochMilli(start);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getAverage() {
+        return average;
+    }
+
+    @Override
+    public String toString() {
+        return getStart() + ": " + count + " values, min " + min + ", max " + max + ", average " + average;
+    }
+}
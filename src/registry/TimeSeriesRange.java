@@ -0,0 +1,59 @@
+package registry;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * The points of a time series within a range of time, in order of time, as returned by <code>StockTimeSeries.getRange</code>.
+ */
+public final class TimeSeriesRange {
+    private long[] times = new long[16];
+    private long[] values = new long[16];
+    private int size = 0;
+
+    TimeSeriesRange() {}
+
+    void add(long time, long value) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        times[size] = time;
+        values[size++] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the time of a point.
+     * @param index The index of the point, from 0 to <code>size() - 1</code>.
+     * @return The time of the point.
+     */
+    public Instant getTime(int index) {
+        return Instant.ofEpochMilli(getTimeMillis(index));
+    }
+
+    /**
+     * Returns the time of a point, in milliseconds since the epoch.
+     * @param index The index of the point, from 0 to <code>size() - 1</code>.
+     * @return The time of the point.
+     */
+    public long getTimeMillis(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(index);
+        return times[index];
+    }
+
+    /**
+     * Returns the value of a point.
+     * @param index The index of the point, from 0 to <code>size() - 1</code>.
+     * @return The value of the point.
+     */
+    public long getValue(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(index);
+        return values[index];
+    }
+}
@@ -0,0 +1,185 @@
+package registry;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel, running tasks after a delay on a thread of its own, with any number of tasks pending at a constant cost per task.
+ * <br><br> Time is divided into ticks of a fixed duration, and the wheel into a fixed number of buckets, each holding the tasks due in the ticks hashed to it.
+ * Scheduling a task links it into the bucket of its tick, cancelling unlinks it, and every tick the thread goes through a single bucket and runs the tasks due
+ * in it, so that none of them depends on the number of pending tasks. Each bucket has a lock of its own. A task runs in the first tick after its delay,
+ * so up to a tick late, and delays longer than a turn of the wheel simply stay in their bucket for several turns.
+ * <br><br> Tasks run one at a time on the thread of the wheel, and should be short. An exception thrown by a task is passed to the uncaught exception
+ * handler of the thread, without stopping the wheel.
+ */
+final class TimerWheel implements AutoCloseable {
+    /**
+     * A task scheduled on the wheel.
+     */
+    final class Timeout {
+        private final Runnable task;
+        private final long tick;
+        private volatile Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(Runnable task, long tick) {
+            this.task = task;
+            this.tick = tick;
+        }
+
+        /**
+         * Keeps the task from running, unless it already has.
+         * @return True if the task was cancelled, or false if it had already run or been cancelled.
+         */
+        boolean cancel() {
+            Bucket b = bucket;
+            if (b == null)
+                return false;
+            synchronized (b) {
+                if (bucket != b)
+                    return false;
+                b.unlink(this);
+            }
+            pending.decrementAndGet();
+            return true;
+        }
+    }
+
+    private static final class Bucket {
+        private Timeout head;
+
+        void link(Timeout t) {
+            t.bucket = this;
+            t.next = head;
+            if (head != null)
+                head.previous = t;
+            head = t;
+        }
+
+        void unlink(Timeout t) {
+            if (t.previous != null)
+                t.previous.next = t.next;
+            else
+                head = t.next;
+            if (t.next != null)
+                t.next.previous = t.previous;
+            t.previous = t.next = null;
+            t.bucket = null;
+        }
+    }
+
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final long startNanos;
+    private final Thread thread;
+    private final AtomicLong pending = new AtomicLong();
+    /**
+     * The next tick the thread will go through. Only changed while holding the lock of the bucket of the previous tick.
+     */
+    private volatile long nextTick = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a wheel and starts its thread, as a daemon.
+     * @param threadName The name of the thread of the wheel.
+     * @param tickDuration The duration of a tick, which is how late a task may run at most.
+     * @param unit The unit of <code>tickDuration</code>.
+     * @param numBuckets The number of buckets, rounded up to a power of two. A turn of the wheel lasts <code>numBuckets</code> ticks.
+     */
+    TimerWheel(String threadName, long tickDuration, TimeUnit unit, int numBuckets) {
+        if (tickDuration <= 0 || numBuckets <= 0)
+            throw new IllegalArgumentException("The tick duration and the number of buckets must be positive");
+        tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(numBuckets - 1) << 1;
+        buckets = new Bucket[Math.max(1, size)];
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = new Bucket();
+        mask = buckets.length - 1;
+        startNanos = System.nanoTime();
+        thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedules a task to run once after a delay.
+     * @param task The task to run.
+     * @param delay The delay, 0 or more.
+     * @param unit The unit of <code>delay</code>.
+     * @return The scheduled task, which can be cancelled.
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (closed)
+            throw new IllegalStateException("The timer wheel has been closed");
+        long elapsed = System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+        long tick = (elapsed + tickNanos - 1) / tickNanos;
+        while (true) {
+            long t = Math.max(tick, nextTick);
+            Bucket b = buckets[(int) (t & mask)];
+            synchronized (b) {
+                // The thread may have gone past the tick since it was read, in which case the task would wait a whole turn
+                if (t < nextTick)
+                    continue;
+                Timeout timeout = new Timeout(task, t);
+                b.link(timeout);
+                pending.incrementAndGet();
+                return timeout;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks scheduled which have neither run nor been cancelled.
+     * @return The number of pending tasks.
+     */
+    long pending() {
+        return pending.get();
+    }
+
+    /**
+     * Stops the thread of the wheel. Pending tasks never run.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        ArrayList<Timeout> due = new ArrayList<>();
+        while (!closed) {
+            long tick = nextTick;
+            long deadline = startNanos + tick * tickNanos;
+            long wait;
+            while ((wait = deadline - System.nanoTime()) > 0 && !closed)
+                LockSupport.parkNanos(this, wait);
+            if (closed)
+                return;
+
+            Bucket b = buckets[(int) (tick & mask)];
+            synchronized (b) {
+                for (Timeout t = b.head, next; t != null; t = next) {
+                    next = t.next;
+                    if (t.tick <= tick) {
+                        b.unlink(t);
+                        due.add(t);
+                    }
+                }
+                nextTick = tick + 1;
+            }
+            pending.addAndGet(-due.size());
+            for (Timeout t : due) {
+                try {
+                    t.task.run();
+                } catch (RuntimeException e) {
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+            due.clear();
+        }
+    }
+}
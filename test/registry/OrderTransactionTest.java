@@ -0,0 +1,179 @@
+package registry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that multi-item withdrawals and reservations are all or nothing, and never take more than is in storage, when run from many threads at once.
+ */
+class OrderTransactionTest {
+    private static final int THREADS = 8;
+    private static final int ORDERS_PER_THREAD = 20_000;
+
+    @Test
+    void orderWithAnItemShortTakesNothing() {
+        ItemRegistry registry = registry(3, 10);
+        registry.decreaseAmountInStorage("I2", 10);
+
+        assertFalse(registry.withdrawAll(new String[]{ "I0", "I1", "I2" }, new int[]{ 1, 1, 1 }));
+        assertNull(registry.reserveAll(new String[]{ "I0", "I2" }, new int[]{ 1, 1 }));
+        assertEquals(10, registry.getItem("I0").getAmountInStorage());
+        assertEquals(10, registry.getItem("I1").getAmountInStorage());
+        assertEquals(0, registry.getReservedAmount("I0"));
+    }
+
+    @Test
+    void duplicateLinesAddUp() {
+        ItemRegistry registry = registry(1, 10);
+
+        assertFalse(registry.withdrawAll(new String[]{ "I0", "I0" }, new int[]{ 6, 5 }));
+        assertTrue(registry.withdrawAll(new String[]{ "I0", "I0" }, new int[]{ 6, 4 }));
+        assertEquals(0, registry.getItem("I0").getAmountInStorage());
+    }
+
+    /**
+     * Every order takes one of a scarce Item along with one of a plentiful one, from many threads at once, until the scarce Item runs out.
+     * Exactly as many orders as the scarce Item had in storage must succeed, and the plentiful Item must lose exactly one per order.
+     */
+    @Test
+    void concurrentOrdersNeverOversell() throws InterruptedException {
+        int scarce = 1_000;
+        ItemRegistry registry = registry(THREADS + 1, 1_000_000);
+        registry.decreaseAmountInStorage("I0", 1_000_000 - scarce);
+        AtomicInteger succeeded = new AtomicInteger();
+
+        runConcurrently(t -> {
+            String[] order = { "I0", "I" + (t + 1) };
+            int[] amounts = { 1, 1 };
+            for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                boolean taken = i % 2 == 0 ? registry.withdrawAll(order, amounts) : reserveAndConfirm(registry, order, amounts);
+                if (taken)
+                    succeeded.incrementAndGet();
+            }
+        });
+
+        assertEquals(scarce, succeeded.get());
+        assertEquals(0, registry.getItem("I0").getAmountInStorage());
+        long plentifulTaken = 0;
+        for (int t = 1; t <= THREADS; t++)
+            plentifulTaken += 1_000_000 - registry.getItem("I" + t).getAmountInStorage();
+        assertEquals(scarce, plentifulTaken, "An order took some of its Items without the others");
+    }
+
+    /**
+     * Orders over a small set of shared Items withdraw, reserve and release, or reserve and confirm, while other threads restock them one Item at a time.
+     * Afterwards, the stock must add up, no amount may be negative, and nothing may be left reserved.
+     * Every order also takes the same amount of a tally Item as it does in total of the others, so an order applied in part shows up as a difference.
+     */
+    @Test
+    void concurrentOrdersConserveStock() throws InterruptedException {
+        int hotItems = 16;
+        int initial = 200;
+        ItemRegistry registry = registry(hotItems, initial);
+        registry.registerNewItem("TALLY", "Tally", 1_000_000_000, 1, ItemCategory.Wood, "Brand", 1, 1, 1, "Brown");
+        LongAdder removed = new LongAdder();
+        LongAdder restocked = new LongAdder();
+
+        runConcurrently(t -> {
+            SplittableRandom random = new SplittableRandom(t);
+            String[] order = new String[4];
+            int[] amounts = new int[order.length];
+            for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                int total = 0;
+                for (int line = 0; line < order.length - 1; line++) {
+                    order[line] = "I" + random.nextInt(hotItems);
+                    amounts[line] = 1 + random.nextInt(5);
+                    total += amounts[line];
+                }
+                order[order.length - 1] = "TALLY";
+                amounts[order.length - 1] = total;
+
+                switch (random.nextInt(4)) {
+                    case 0 -> {
+                        if (registry.withdrawAll(order, amounts))
+                            removed.add(total);
+                    }
+                    case 1 -> {
+                        StockReservation reservation = registry.reserveAll(order, amounts);
+                        if (reservation != null)
+                            reservation.release();
+                    }
+                    case 2 -> {
+                        if (reserveAndConfirm(registry, order, amounts))
+                            removed.add(total);
+                    }
+                    default -> {
+                        for (int line = 0; line < order.length - 1; line++)
+                            registry.increaseAmountInStorage(order[line], amounts[line]);
+                        restocked.add(total);
+                    }
+                }
+            }
+        });
+
+        long hotTotal = 0;
+        for (int i = 0; i < hotItems; i++) {
+            int amount = registry.getItem("I" + i).getAmountInStorage();
+            assertTrue(amount >= 0, "Negative amount in storage for I" + i);
+            assertEquals(0, registry.getReservedAmount("I" + i));
+            hotTotal += amount;
+        }
+        assertEquals((long) hotItems * initial - removed.sum() + restocked.sum(), hotTotal);
+        assertEquals(1_000_000_000 - removed.sum(), registry.getItem("TALLY").getAmountInStorage(), "An order took some of its Items without the others");
+        assertEquals(0, registry.getReservedAmount("TALLY"));
+    }
+
+    private static boolean reserveAndConfirm(ItemRegistry registry, String[] order, int[] amounts) {
+        StockReservation reservation = registry.reserveAll(order, amounts);
+        return reservation != null && reservation.confirm();
+    }
+
+    private static ItemRegistry registry(int numItems, int amount) {
+        ItemRegistry registry = new ItemRegistry();
+        for (int i = 0; i < numItems; i++)
+            registry.registerNewItem("I" + i, "Item " + i, amount, 100, ItemCategory.Wood, "Brand", 1, 1, 1, "Brown");
+        return registry;
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    /**
+     * Runs a worker on every thread at once, and rethrows the first failure of any of them.
+     */
+    private static void runConcurrently(Worker worker) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    worker.run(thread);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread t : threads)
+            t.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+    }
+}
@@ -0,0 +1,69 @@
+package registry;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that a search only allocates in proportion to its number of hits, and not in proportion to the size of the registry.
+ * <br><br> Runs the same low-hit searches against a small and a large registry, with the search cache disabled, and compares the bytes allocated per search.
+ */
+class SearchAllocationTest {
+    private static final int SMALL_REGISTRY = 1_000;
+    private static final int LARGE_REGISTRY = 200_000;
+    /** Rounds before measuring the small registry, to compile the searches, and before measuring the large one, which then only scans more Items. */
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int LARGE_WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 100;
+    /**
+     * The amount the allocation per search may grow from the small to the large registry, in bytes. Leaves room for the slightly larger result lists.
+     */
+    private static final long TOLERANCE_BYTES = 512;
+    /**
+     * Terms that hit at most a single item in either registry, since every number in the test data is terminated by a ';'.
+     */
+    private static final String[] SEARCH_TERMS = { "DOOR #17;", "planks #424;", "zz9", "Window #999;", "t17;" };
+
+    @Test
+    void allocationPerSearchDoesNotGrowWithRegistrySize() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Allocation measurement is not supported by this JVM");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        long small = bytesPerSearch(threads, createRegistry(SMALL_REGISTRY), WARMUP_ROUNDS);
+        long large = bytesPerSearch(threads, createRegistry(LARGE_REGISTRY), LARGE_WARMUP_ROUNDS);
+
+        assertTrue(large - small <= TOLERANCE_BYTES, "Bytes per search grew from " + small + " with " + SMALL_REGISTRY + " items to "
+                + large + " with " + LARGE_REGISTRY + " items");
+    }
+
+    private static ItemRegistry createRegistry(int size) {
+        ItemRegistry registry = new ItemRegistry(0); // Disable the search cache, so that every search scans the registry
+        for (int i = 0; i < size; i++)
+            registry.registerNewItem("IT" + i + ";", (i % 2 == 0 ? "Door #" : "Planks #") + i + ";", 1, 100, ItemCategory.Wood, "Bendell", 1f, 1f, 1f, "Brown");
+        return registry;
+    }
+
+    private static long bytesPerSearch(com.sun.management.ThreadMXBean threads, ItemRegistry registry, int warmupRounds) {
+        long sink = 0;
+        for (int i = 0; i < warmupRounds; i++)
+            sink += search(registry, i);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ROUNDS; i++)
+            sink += search(registry, i);
+        long after = threads.getThreadAllocatedBytes(threadId);
+
+        assertTrue(sink >= 0); // Keeps the searches from being optimized away
+        return (after - before) / (MEASURED_ROUNDS * 2L);
+    }
+
+    private static int search(ItemRegistry registry, int round) {
+        String term = SEARCH_TERMS[round % SEARCH_TERMS.length];
+        return registry.searchByDescription(term).length + registry.searchByItemNumber(term).length;
+    }
+}